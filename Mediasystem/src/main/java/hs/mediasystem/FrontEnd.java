@@ -6,25 +6,34 @@ import hs.ddif.JustInTimeDiscoveryPolicy;
 import hs.ddif.PluginManager;
 import hs.ddif.Value;
 import hs.mediasystem.beans.BeanUtils;
+import hs.mediasystem.dao.DatabaseUrlSource;
+import hs.mediasystem.dao.ImageBlobMigrator;
+import hs.mediasystem.dao.ImageBlobStore;
+import hs.mediasystem.dao.ImageStoreMaintainer;
+import hs.mediasystem.dao.ImageUrlIndex;
 import hs.mediasystem.dao.Setting;
 import hs.mediasystem.db.ConnectionPool;
+import hs.mediasystem.db.Database;
 import hs.mediasystem.db.DatabaseStatementTranslator;
 import hs.mediasystem.db.DatabaseUpdater;
+import hs.mediasystem.db.EntityCache;
 import hs.mediasystem.db.SimpleConnectionPoolDataSource;
 import hs.mediasystem.db.SimpleDatabaseStatementTranslator;
+import hs.mediasystem.db.SimpleDatabaseStatementTranslator.UpsertSyntax;
 import hs.mediasystem.entity.Entity;
 import hs.mediasystem.entity.EntityContext;
 import hs.mediasystem.entity.EntityEnricher;
 import hs.mediasystem.entity.EntityListProvider;
 import hs.mediasystem.entity.EntityPersister;
-import hs.mediasystem.framework.DatabaseCache;
 import hs.mediasystem.framework.MediaDataPersister;
 import hs.mediasystem.framework.MediaEnricher;
+import hs.mediasystem.framework.MetadataCache;
 import hs.mediasystem.framework.SettingsStore;
 import hs.mediasystem.framework.player.Player;
 import hs.mediasystem.framework.player.PlayerFactory;
 import hs.mediasystem.persist.PersistQueue;
 import hs.mediasystem.screens.AbstractSetting;
+import hs.mediasystem.screens.ImagePrefetcher;
 import hs.mediasystem.screens.MessagePaneTaskExecutor;
 import hs.mediasystem.screens.ProgramController;
 import hs.mediasystem.screens.SettingGroup;
@@ -37,8 +46,14 @@ import hs.mediasystem.screens.optiondialog.ListOption;
 import hs.mediasystem.screens.optiondialog.Option;
 import hs.mediasystem.screens.playback.PlaybackLayout;
 import hs.mediasystem.screens.playback.PlaybackOverlayPane;
+import hs.mediasystem.util.DebugConsole;
 import hs.mediasystem.util.DuoWindowSceneManager;
+import hs.mediasystem.util.ImageCache;
+import hs.mediasystem.util.ImageVariantStore;
+import hs.mediasystem.util.MetricsMBean;
+import hs.mediasystem.util.MetricsRegistry;
 import hs.mediasystem.util.SceneManager;
+import hs.mediasystem.util.SimpleMetricsRegistry;
 import hs.mediasystem.util.StringBinding;
 import hs.mediasystem.util.ini.Ini;
 import hs.mediasystem.util.ini.Section;
@@ -54,13 +69,18 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.sql.Connection;
+import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -88,6 +108,9 @@ public class FrontEnd extends Application {
   };
 
   private static final Ini INI = new Ini(new File("mediasystem.ini"));
+  private static final Set<String> NON_JDBC_DATABASE_KEYS = new HashSet<>(Arrays.asList("driverClass", "postConnectSql", "url", "statementCacheSize", "entityCacheSize"));
+
+  private final MetricsRegistry metricsRegistry = new SimpleMetricsRegistry();
 
   private SceneManager sceneManager;
   private ConnectionPool pool;
@@ -104,6 +127,13 @@ public class FrontEnd extends Application {
 
     Section generalSection = INI.getSection("general");
     int screenNumber = generalSection == null ? 0 : Integer.parseInt(generalSection.getDefault("screen", "0"));
+    long imageCacheMegabytes = generalSection == null ? 256 : Long.parseLong(generalSection.getDefault("imageCacheMegabytes", "256"));
+    long imageStoreMegabytes = generalSection == null ? 2048 : Long.parseLong(generalSection.getDefault("imageStoreMegabytes", "2048"));
+    long imageVariantStoreMegabytes = generalSection == null ? 512 : Long.parseLong(generalSection.getDefault("imageVariantStoreMegabytes", "512"));
+    boolean useImageBlobStore = generalSection == null ? false : Boolean.parseBoolean(generalSection.getDefault("imageBlobStore", "false"));
+
+    ImageCache.setMaxStrongBytes(imageCacheMegabytes * 1024 * 1024);
+    ImageCache.setVariantStore(imageVariantStoreMegabytes <= 0 ? null : new ImageVariantStore(Paths.get("cache", "image-variants"), imageVariantStoreMegabytes * 1024 * 1024));
 
     sceneManager = new DuoWindowSceneManager("MediaSystem", screenNumber);
 
@@ -111,7 +141,10 @@ public class FrontEnd extends Application {
 
     injector.registerInstance(injector);
     injector.registerInstance(70 * 24 * 60 * 60, AnnotationDescriptor.describe(Named.class, new Value("value", "TheMovieDatabase.expirationSeconds")));
+    injector.registerInstance(365 * 24 * 60 * 60, AnnotationDescriptor.describe(Named.class, new Value("value", "MetadataCache.timeToLiveSeconds")));
+    injector.registerInstance(imageStoreMegabytes * 1024 * 1024, AnnotationDescriptor.describe(Named.class, new Value("value", "ImageStoreMaintainer.maxBytes")));
 
+    configureMetrics(injector);
     configureDatabase(injector);
 
     injector.register(new Provider<SceneManager>() {
@@ -131,7 +164,25 @@ public class FrontEnd extends Application {
     injector.register(MediaEnricher.class);
     injector.register(MediaDataPersister.class);
 
-    injector.register(DatabaseCache.class);
+    injector.register(MetadataCache.class);
+
+    LOGGER.info("Removed " + injector.getInstance(MetadataCache.class).removeExpiredEntries() + " expired metadata cache entries");
+
+    ImageUrlIndex.of(injector.getInstance(Database.class));  // loaded now, so whether images are stored is known from the first frame
+    injector.getInstance(ImageStoreMaintainer.class).start();
+
+    if(useImageBlobStore) {
+      ImageBlobStore imageBlobStore = new ImageBlobStore(Paths.get("cache", "images"));
+      ImageBlobMigrator imageBlobMigrator = new ImageBlobMigrator(injector.getInstance(Database.class), imageBlobStore);
+
+      DatabaseUrlSource.setBlobStore(imageBlobStore);
+
+      Thread thread = new Thread(() -> imageBlobMigrator.migrate(100), "ImageBlobMigrator");
+
+      thread.setDaemon(true);
+      thread.setPriority(Thread.MIN_PRIORITY);
+      thread.start();
+    }
 
     EntityContext context = new EntityContext(new PersistQueue(3000));
 
@@ -264,6 +315,34 @@ public class FrontEnd extends Application {
     return selectedPlayerFactory;
   }
 
+  private void configureMetrics(Injector injector) {
+    injector.register(new Provider<MetricsRegistry>() {
+      @Override
+      public MetricsRegistry get() {
+        return metricsRegistry;
+      }
+    });
+
+    MetricsMBean.register(metricsRegistry, "hs.mediasystem:type=Metrics");
+    ImageCache.registerMetrics(metricsRegistry);
+    ImagePrefetcher.registerMetrics(metricsRegistry);
+
+    DebugConsole.addCommand("metrics", new DebugConsole.CommandCallback() {
+      @Override
+      public String execute(String name, String parameters) {
+        StringBuilder builder = new StringBuilder();
+
+        for(Map.Entry<String, String> entry : metricsRegistry.snapshot().entrySet()) {
+          if(entry.getKey().startsWith(parameters.trim())) {
+            builder.append("\n  ").append(entry.getKey()).append(" = ").append(entry.getValue());
+          }
+        }
+
+        return builder.toString();
+      }
+    });
+  }
+
   private void configureDatabase(Injector injector) {
     Section databaseIniSection = INI.getSection("database");
 
@@ -277,8 +356,11 @@ public class FrontEnd extends Application {
     ConnectionPoolDataSource dataSource = databaseIniSection == null ? new SimpleConnectionPoolDataSource("jdbc:derby:db;create=true") : configureDataSource(databaseIniSection);
     String databaseUrl = databaseIniSection == null ? "jdbc:derby:db;create=true" : databaseIniSection.get("url");
 
-    pool = new ConnectionPool(dataSource, 5);
-    translator = createDatabaseStatementTranslator(databaseUrl);
+    pool = new ConnectionPool(dataSource, 5, 10 * 1000, metricsRegistry);
+    translator = createDatabaseStatementTranslator(databaseUrl, determineUpsertSyntax(pool));
+
+    int entityCacheSize = databaseIniSection == null ? 10000 : Integer.parseInt(databaseIniSection.getDefault("entityCacheSize", "10000"));
+    EntityCache entityCache = new EntityCache(entityCacheSize, 10, TimeUnit.MINUTES, metricsRegistry);
 
     injector.register(new Provider<Connection>() {
       @Override
@@ -294,6 +376,13 @@ public class FrontEnd extends Application {
       }
     });
 
+    injector.register(new Provider<EntityCache>() {
+      @Override
+      public EntityCache get() {
+        return entityCache;
+      }
+    });
+
     DatabaseUpdater updater = injector.getInstance(DatabaseUpdater.class);
 
     updater.updateDatabase();
@@ -324,7 +413,18 @@ public class FrontEnd extends Application {
     }
   }
 
-  private DatabaseStatementTranslator createDatabaseStatementTranslator(String url) {
+  private static UpsertSyntax determineUpsertSyntax(ConnectionPool pool) {
+    try(Connection connection = pool.getConnection()) {
+      return SimpleDatabaseStatementTranslator.determineUpsertSyntax(connection.getMetaData());
+    }
+    catch(SQLException e) {
+      System.out.println("[WARN] FrontEnd.determineUpsertSyntax() - Unable to determine database version, upserts will use separate statements: " + e);
+
+      return UpsertSyntax.NONE;
+    }
+  }
+
+  private DatabaseStatementTranslator createDatabaseStatementTranslator(String url, UpsertSyntax upsertSyntax) {
     String databaseName = url.split(":")[1].toLowerCase();
 
     if(databaseName.equals("postgresql")) {
@@ -333,7 +433,7 @@ public class FrontEnd extends Application {
         put("DropNotNull", "DROP NOT NULL");
         put("Sha256Type", "bytea");
         put("SerialType", "serial4");
-      }});
+      }}, upsertSyntax);
     }
 
     return new SimpleDatabaseStatementTranslator(new HashMap<String, String>() {{
@@ -341,7 +441,7 @@ public class FrontEnd extends Application {
       put("DropNotNull", "NULL");
       put("Sha256Type", "char(32) for bit data");
       put("SerialType", "integer generated always as identity");
-    }});
+    }}, upsertSyntax);
   }
 
   private ConnectionPoolDataSource configureDataSource(Section section)  {
@@ -350,7 +450,7 @@ public class FrontEnd extends Application {
       Properties properties = new Properties();
 
       for(String key : section) {
-        if(!key.equals("driverClass") && !key.equals("postConnectSql") && !key.equals("url")) {
+        if(!NON_JDBC_DATABASE_KEYS.contains(key)) {
           properties.put(key, section.get(key));
         }
       }
@@ -359,6 +459,10 @@ public class FrontEnd extends Application {
 
       dataSource.setPostConnectSql(section.get("postConnectSql"));
 
+      if(section.get("statementCacheSize") != null) {
+        dataSource.setStatementCacheSize(Integer.parseInt(section.get("statementCacheSize")));
+      }
+
       return dataSource;
     }
     catch(ClassNotFoundException e) {
@@ -33,6 +33,14 @@ import javafx.scene.image.Image;
  *   was changed again before the loading completed).
  */
 public class AsyncImageProperty extends SimpleObjectProperty<Image> {
+
+  /**
+   * The maximum size at which images are loaded, and thus the size at which they are
+   * cached in the {@link ImageCache}.
+   */
+  public static final int MAX_WIDTH = 1920;
+  public static final int MAX_HEIGHT = 1200;
+
   private static final ScheduledExecutorService SCHEDULED_EXECUTOR_SERVICE = Executors.newSingleThreadScheduledExecutor();
   private static final ThreadPoolExecutor SLOW_EXECUTOR = new ThreadPoolExecutor(2, 2, 5, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new DefaultThreadFactory("AsyncImageProperty[Slow]", true));
   private static final ThreadPoolExecutor FAST_EXECUTOR = new ThreadPoolExecutor(3, 3, 5, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new DefaultThreadFactory("AsyncImageProperty[Fast]", true));
@@ -168,7 +176,7 @@ public class AsyncImageProperty extends SimpleObjectProperty<Image> {
      */
 
     if(asyncImagePropery != null && imageHandle.equals(asyncImagePropery.imageHandle.get())) {
-      return ImageCache.loadImageUptoMaxSize(imageHandle, 1920, 1200);
+      return ImageCache.loadImageUptoMaxSize(imageHandle, MAX_WIDTH, MAX_HEIGHT);
     }
 
     throw new CancellationException();
@@ -21,6 +21,7 @@ public class KeyMappingsConfiguration {
     add(new KeyCodeCombination(KeyCode.V), "hs.mediasystem.framework.MediaData.viewed:toggle");
     add(new KeyCodeCombination(KeyCode.V, KeyCombination.CONTROL_DOWN, KeyCombination.ALT_DOWN), "hs.mediasystem.screens.collection.CollectionPresentation.groupSet:next");
     add(new KeyCodeCombination(KeyCode.F), "hs.mediasystem.screens.collection.CollectionPresentation.inclusionFilter:trigger");
+    add(new KeyCodeCombination(KeyCode.F5), "hs.mediasystem.screens.collection.CollectionPresentation.rescan:trigger");
 
     // PlayerPresentation
     add(new KeyCodeCombination(KeyCode.LEFT), "hs.mediasystem.screens.playback.PlayerPresentation.position:subtract(10000)");
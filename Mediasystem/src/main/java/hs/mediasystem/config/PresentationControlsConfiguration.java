@@ -22,6 +22,7 @@ public class PresentationControlsConfiguration {
       put("hs.mediasystem.screens.collection.CollectionPresentation.groupSet", "comboBox");
       put("hs.mediasystem.screens.collection.CollectionPresentation.layout", "comboBox");
       put("hs.mediasystem.screens.collection.CollectionPresentation.inclusionFilter", "trigger");
+      put("hs.mediasystem.screens.collection.CollectionPresentation.rescan", "trigger");
     }});
 
     activeActionsByPresentationClass.put(PlayerPresentation.class, new LinkedHashMap<String, String>() {{
@@ -12,6 +12,7 @@ public class Resources {
         {"hs.mediasystem.framework.MediaData.viewed:checkBox.label", "Viewed"},
         {"hs.mediasystem.framework.Media.refresh:trigger.label", "Refresh"},
         {"hs.mediasystem.screens.collection.CollectionPresentation.inclusionFilter:trigger.label", "Filter..."},
+        {"hs.mediasystem.screens.collection.CollectionPresentation.rescan:trigger.label", "Rescan"},
         {"hs.mediasystem.screens.collection.CollectionPresentation.layout:comboBox.label", "Layout"},
         {"hs.mediasystem.screens.collection.CollectionPresentation.groupSet:comboBox.label", "Sorting & Grouping"},
         {"hs.mediasystem.ext.media.movie.AlphaGroupByTitleMediaGroup:label", "Alphabetically, grouped by Title"},
@@ -2,7 +2,6 @@ package hs.mediasystem.dao;
 
 import hs.mediasystem.db.Database;
 import hs.mediasystem.db.Database.Transaction;
-import hs.mediasystem.db.Record;
 import hs.mediasystem.util.Throwables;
 import hs.mediasystem.util.WeakValueMap;
 
@@ -13,6 +12,8 @@ import java.sql.SQLException;
 public final class DatabaseUrlSource implements Source<byte[]> {
   private static final WeakValueMap<String, DatabaseUrlSource> INSTANCES = new WeakValueMap<>();
 
+  private static volatile ImageBlobStore blobStore;
+
   private final Database database;
   private final String url;
 
@@ -44,6 +45,20 @@ public final class DatabaseUrlSource implements Source<byte[]> {
     }
   }
 
+  /**
+   * Sets the {@link ImageBlobStore} in which the data of newly stored images is kept,
+   * instead of in the images table.
+   *
+   * @param blobStore an {@link ImageBlobStore}, or <code>null</code> to store data in the images table
+   */
+  public static void setBlobStore(ImageBlobStore blobStore) {
+    DatabaseUrlSource.blobStore = blobStore;
+  }
+
+  static ImageBlobStore getBlobStore() {
+    return blobStore;
+  }
+
   private DatabaseUrlSource(Database database, String url) {
     assert database != null;
     assert url != null;
@@ -52,6 +67,15 @@ public final class DatabaseUrlSource implements Source<byte[]> {
     this.url = url;
   }
 
+  public String getUrl() {
+    return url;
+  }
+
+  /**
+   * Returns the source to fetch the data from if it is not stored in the database yet,
+   * otherwise <code>null</code>.  Whether it is stored is determined with the
+   * {@link ImageUrlIndex}, without querying the database.
+   */
   private Source<byte[]> getSource() {
     if(checkedSource) {
       return source;
@@ -59,39 +83,58 @@ public final class DatabaseUrlSource implements Source<byte[]> {
 
     checkedSource = true;
 
-    try(Transaction transaction = database.beginReadOnlyTransaction()) {
-      Record record = transaction.selectUnique("url", "images", "url = ?", url);
-
-      try {
-        source = record == null ? new URLImageSource(new URL(url)) : null;
-      }
-      catch(MalformedURLException e) {
-        System.out.println("[WARN] " + getClass().getName() + "::getSource - URL malformed: " + Throwables.formatAsOneLine(e));
-      }
+    if(!ImageUrlIndex.of(database).contains(url)) {
+      source = createURLSource();
     }
 
     return source;
   }
 
+  private Source<byte[]> createURLSource() {
+    try {
+      return new URLImageSource(new URL(url));
+    }
+    catch(MalformedURLException e) {
+      System.out.println("[WARN] " + getClass().getName() + "::getSource - URL malformed: " + Throwables.formatAsOneLine(e));
+
+      return null;
+    }
+  }
+
   private boolean isStoredInDatabase() {
     return getSource() == null || triedSource;
   }
 
   @Override
   public synchronized byte[] get() {
-    if(!isStoredInDatabase()) {
-      triedSource = true;
+    if(isStoredInDatabase()) {
+      byte[] data = getData();
+
+      if(data != null || triedSource) {
+        return data;
+      }
 
-      byte[] data = getSource().get();
+      /*
+       * The index indicated the data was stored, but it was not (a rare hash collision, an
+       * eviction or a missing blob), so fetch it from the original source instead:
+       */
 
-      if(data != null) {
-        storeData(data);
+      source = createURLSource();
+
+      if(source == null) {
+        return null;
       }
+    }
+
+    triedSource = true;
 
-      return data;
+    byte[] data = getSource().get();
+
+    if(data != null) {
+      storeData(data);
     }
 
-    return getData();
+    return data;
   }
 
   private byte[] getData() {
@@ -99,20 +142,49 @@ public final class DatabaseUrlSource implements Source<byte[]> {
       Image image = transaction.selectUnique(Image.class, "url = ?", url);
 
       if(image != null) {
-        return image.getImage();
+        byte[] data = image.getBlobHash() == null ? image.getImage() : readBlob(image.getBlobHash());
+
+        if(data != null) {
+          ImageUrlIndex.of(database).markAccessed(url);
+        }
+
+        return data;
       }
 
       return null;
     }
   }
 
+  private byte[] readBlob(String hash) {
+    ImageBlobStore store = blobStore;
+
+    if(store == null) {
+      System.out.println("[WARN] DatabaseImageSource.readBlob() - Data of '" + url + "' is in a blob store, but no blob store is configured");
+
+      return null;
+    }
+
+    byte[] data = store.read(hash);
+
+    if(data == null) {
+      System.out.println("[WARN] DatabaseImageSource.readBlob() - Blob " + hash + " of '" + url + "' is missing");
+    }
+
+    return data;
+  }
+
   private void storeData(byte[] data) {
     System.out.println("[FINE] DatabaseImageSource.storeData() - Storing data '" + url + "'");
 
+    ImageBlobStore store = blobStore;
+    Image image = store == null ? new Image(url, data) : new Image(url, store.write(data), data.length);
+
     try(Transaction transaction = database.beginTransaction()) {
-      transaction.insert(new Image(url, data));
+      transaction.upsert(image, "url");  // replaces rows of which the data went missing
       transaction.commit();
     }
+
+    ImageUrlIndex.of(database).add(url);
   }
 
   @Override
@@ -16,15 +16,42 @@ public class Image extends DatabaseObject {
   @Column
   private LocalDateTime creationTime;
 
+  @Column
+  private LocalDateTime lastAccessTime;
+
+  @Column
+  private int dataSize;
+
   @Column
   private byte[] image;
 
+  @Column
+  private String blobHash;
+
   public Image(String url, byte[] data) {
     this.url = url;
     this.creationTime = LocalDateTime.now();
+    this.lastAccessTime = creationTime;
+    this.dataSize = data.length;
     this.image = data;
   }
 
+  /**
+   * Constructs a new instance for an image of which the data is stored in an
+   * {@link ImageBlobStore}.
+   *
+   * @param url the url of the image
+   * @param blobHash the hash of the data in the {@link ImageBlobStore}
+   * @param dataSize the size of the data
+   */
+  public Image(String url, String blobHash, int dataSize) {
+    this.url = url;
+    this.creationTime = LocalDateTime.now();
+    this.lastAccessTime = creationTime;
+    this.dataSize = dataSize;
+    this.blobHash = blobHash;
+  }
+
   public Image() {
   }
 
@@ -44,6 +71,22 @@ public class Image extends DatabaseObject {
     this.creationTime = creationTime;
   }
 
+  public LocalDateTime getLastAccessTime() {
+    return lastAccessTime;
+  }
+
+  public void setLastAccessTime(LocalDateTime lastAccessTime) {
+    this.lastAccessTime = lastAccessTime;
+  }
+
+  public int getDataSize() {
+    return dataSize;
+  }
+
+  public void setDataSize(int dataSize) {
+    this.dataSize = dataSize;
+  }
+
   public byte[] getImage() {
     return image;
   }
@@ -51,4 +94,18 @@ public class Image extends DatabaseObject {
   public void setImage(byte[] image) {
     this.image = image;
   }
+
+  /**
+   * Returns the hash of the data in the {@link ImageBlobStore}, or <code>null</code>
+   * if the data is stored in this row.
+   *
+   * @return the hash of the data in the {@link ImageBlobStore}, or <code>null</code> if the data is stored in this row
+   */
+  public String getBlobHash() {
+    return blobHash;
+  }
+
+  public void setBlobHash(String blobHash) {
+    this.blobHash = blobHash;
+  }
 }
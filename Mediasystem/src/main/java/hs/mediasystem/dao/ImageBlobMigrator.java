@@ -0,0 +1,86 @@
+package hs.mediasystem.dao;
+
+import hs.mediasystem.db.Database;
+import hs.mediasystem.db.Database.Transaction;
+import hs.mediasystem.db.Record;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Moves the data of images stored in the images table to an {@link ImageBlobStore},
+ * in batches, each in its own transaction, so the migration can be interrupted at
+ * any time and continued later.
+ */
+public class ImageBlobMigrator {
+  private final Database database;
+  private final ImageBlobStore blobStore;
+
+  public ImageBlobMigrator(Database database, ImageBlobStore blobStore) {
+    this.database = database;
+    this.blobStore = blobStore;
+  }
+
+  /**
+   * Moves the data of all images stored in the images table.
+   *
+   * @param batchSize the number of images to move per transaction
+   * @return the number of images moved
+   */
+  public int migrate(int batchSize) {
+    long startTime = System.currentTimeMillis();
+    int total = 0;
+
+    for(;;) {
+      int count = migrateBatch(batchSize);
+
+      if(count == 0) {
+        break;
+      }
+
+      total += count;
+
+      System.out.println("[FINE] ImageBlobMigrator.migrate() - Moved " + total + " images to blob store");
+    }
+
+    if(total > 0) {
+      System.out.println("[INFO] ImageBlobMigrator.migrate() - Moved " + total + " images to blob store in " + (System.currentTimeMillis() - startTime) + " ms");
+    }
+
+    return total;
+  }
+
+  /**
+   * Moves the data of a batch of images stored in the images table.
+   *
+   * @param batchSize the maximum number of images to move
+   * @return the number of images moved, 0 if there were none left to move
+   */
+  public int migrateBatch(int batchSize) {
+    List<String> urls;
+
+    try(Transaction transaction = database.beginReadOnlyTransaction();
+        Stream<Record> stream = transaction.stream("url", "images", batchSize, "blobhash IS NULL AND image IS NOT NULL")) {
+      urls = stream.limit(batchSize).map(record -> record.getString("url")).collect(Collectors.toList());
+    }
+
+    try(Transaction transaction = database.beginTransaction()) {
+      for(String url : urls) {
+        Image image = transaction.selectUnique(Image.class, "url = ? AND blobhash IS NULL AND image IS NOT NULL", url);
+
+        if(image != null) {
+          image.setBlobHash(blobStore.write(image.getImage()));
+          image.setDataSize(image.getImage().length);
+          image.setImage(null);
+
+          transaction.update(image);
+        }
+      }
+
+      transaction.commit();
+    }
+
+    return urls.size();
+  }
+}
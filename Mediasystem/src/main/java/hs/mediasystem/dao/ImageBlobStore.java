@@ -0,0 +1,130 @@
+package hs.mediasystem.dao;
+
+import hs.mediasystem.util.CryptoUtil;
+import hs.mediasystem.util.io.RuntimeIOException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Stores image data as files named after the SHA-256 hash of their contents, so the
+ * images table only needs to keep the hash.  Files are spread over subdirectories
+ * named after the first two characters of their hash.  Identical data is stored
+ * only once.<p>
+ *
+ * Data is read directly into an array of the exact size, or memory mapped, without
+ * passing through JDBC.
+ */
+public class ImageBlobStore {
+  private final Path directory;
+
+  public ImageBlobStore(Path directory) {
+    this.directory = directory;
+  }
+
+  /**
+   * Stores the given data, unless data with the same hash was stored already.
+   *
+   * @param data the data to store
+   * @return the hash of the data, never null
+   * @throws RuntimeIOException when the data could not be stored
+   */
+  public String write(byte[] data) {
+    String hash = CryptoUtil.sha256(data);
+    Path path = toPath(hash);
+
+    if(Files.exists(path)) {
+      return hash;
+    }
+
+    try {
+      Files.createDirectories(path.getParent());
+
+      Path tempPath = Files.createTempFile(path.getParent(), "blob", ".tmp");
+
+      try {
+        Files.write(tempPath, data);
+        Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      }
+      finally {
+        Files.deleteIfExists(tempPath);
+      }
+    }
+    catch(IOException e) {
+      throw new RuntimeIOException("Unable to store blob " + hash, e);
+    }
+
+    return hash;
+  }
+
+  /**
+   * Returns the data with the given hash.
+   *
+   * @param hash a hash as returned by {@link #write(byte[])}
+   * @return the data, or <code>null</code> if no data with the given hash is stored
+   * @throws RuntimeIOException when the data could not be read
+   */
+  public byte[] read(String hash) {
+    try(FileChannel channel = FileChannel.open(toPath(hash), StandardOpenOption.READ)) {
+      byte[] data = new byte[(int)channel.size()];
+      ByteBuffer buffer = ByteBuffer.wrap(data);
+
+      while(buffer.hasRemaining()) {
+        if(channel.read(buffer) == -1) {
+          throw new IOException("Unexpected end of file, read " + buffer.position() + " of " + data.length + " bytes");
+        }
+      }
+
+      return data;
+    }
+    catch(NoSuchFileException e) {
+      return null;
+    }
+    catch(IOException e) {
+      throw new RuntimeIOException("Unable to read blob " + hash, e);
+    }
+  }
+
+  /**
+   * Returns the data with the given hash as a read only memory mapped buffer.
+   *
+   * @param hash a hash as returned by {@link #write(byte[])}
+   * @return the data, or <code>null</code> if no data with the given hash is stored
+   * @throws RuntimeIOException when the data could not be mapped
+   */
+  public ByteBuffer map(String hash) {
+    try(FileChannel channel = FileChannel.open(toPath(hash), StandardOpenOption.READ)) {
+      return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+    catch(NoSuchFileException e) {
+      return null;
+    }
+    catch(IOException e) {
+      throw new RuntimeIOException("Unable to map blob " + hash, e);
+    }
+  }
+
+  /**
+   * Removes the data with the given hash, if stored.
+   *
+   * @param hash a hash as returned by {@link #write(byte[])}
+   */
+  public void delete(String hash) {
+    try {
+      Files.deleteIfExists(toPath(hash));
+    }
+    catch(IOException e) {
+      System.out.println("[WARN] ImageBlobStore.delete() - Unable to delete blob " + hash + ": " + e);
+    }
+  }
+
+  private Path toPath(String hash) {
+    return directory.resolve(hash.substring(0, 2)).resolve(hash);
+  }
+}
@@ -0,0 +1,237 @@
+package hs.mediasystem.dao;
+
+import hs.mediasystem.db.Database;
+import hs.mediasystem.db.Database.Transaction;
+import hs.mediasystem.db.Record;
+import hs.mediasystem.db.TableUsage;
+import hs.mediasystem.util.ImageCache;
+import hs.mediasystem.util.ImageVariantStore;
+import hs.mediasystem.util.MetricsRegistry;
+import hs.mediasystem.util.MetricsRegistry.Counter;
+import hs.subtitle.DefaultThreadFactory;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+/**
+ * Background job which keeps the images table within a byte budget.<p>
+ *
+ * Periodically, the last access times of images which were accessed are written to
+ * the database.  When no images were stored or accessed for a while, and the images
+ * together exceed the budget, the least recently used images are removed, a small
+ * batch at a time, including their data in the {@link ImageBlobStore} when no other
+ * image refers to it, and their downscaled variants in the {@link ImageVariantStore}.
+ * Removed images are fetched again from their original URL when needed.
+ */
+@Singleton
+public class ImageStoreMaintainer {
+  private static final long INTERVAL_SECONDS = 5 * 60;
+  private static final long BATCH_INTERVAL_SECONDS = 10;
+  private static final long IDLE_MILLIS = 60 * 1000;
+  private static final int BATCH_SIZE = 50;
+
+  private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(new DefaultThreadFactory("ImageStoreMaintainer", Thread.MIN_PRIORITY, true));
+  private final Database database;
+  private final long maxBytes;
+  private final Counter evictions;
+  private final Counter evictedBytes;
+
+  private volatile long storedBytes;
+
+  @Inject
+  public ImageStoreMaintainer(Database database, MetricsRegistry metricsRegistry, @Named("ImageStoreMaintainer.maxBytes") long maxBytes) {
+    this.database = database;
+    this.maxBytes = maxBytes;
+    this.evictions = metricsRegistry.counter("imageStore.evictions");
+    this.evictedBytes = metricsRegistry.counter("imageStore.evictedBytes");
+
+    metricsRegistry.gauge("imageStore.bytes", () -> storedBytes);
+  }
+
+  /**
+   * Starts maintaining the images table in the background, after logging the disk
+   * space used by each table.
+   */
+  public void start() {
+    executor.execute(() -> {
+      try(Transaction transaction = database.beginReadOnlyTransaction()) {
+        for(TableUsage tableUsage : transaction.getTableUsage()) {
+          System.out.println("[INFO] ImageStoreMaintainer.start() - " + tableUsage);
+        }
+      }
+      catch(RuntimeException e) {
+        System.out.println("[WARN] ImageStoreMaintainer.start() - Unable to determine table usage: " + e);
+      }
+    });
+
+    executor.schedule(this::maintain, INTERVAL_SECONDS, TimeUnit.SECONDS);
+  }
+
+  private void maintain() {
+    boolean overBudget = false;
+
+    try {
+      ImageUrlIndex index = ImageUrlIndex.of(database);
+
+      updateLastAccessTimes(index.takeAccessedUrls());
+
+      if(System.currentTimeMillis() - index.getLastActivityMillis() >= IDLE_MILLIS) {
+        overBudget = evictBatch(index);
+      }
+    }
+    catch(RuntimeException e) {
+      System.out.println("[WARN] ImageStoreMaintainer.maintain() - Exception while maintaining image store: " + e);
+    }
+    finally {
+      executor.schedule(this::maintain, overBudget ? BATCH_INTERVAL_SECONDS : INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+  }
+
+  private void updateLastAccessTimes(Set<String> urls) {
+    if(urls.isEmpty()) {
+      return;
+    }
+
+    Map<String, Object> values = new HashMap<>();
+
+    values.put("lastaccesstime", Timestamp.valueOf(LocalDateTime.now()));
+
+    try(Transaction transaction = database.beginTransaction()) {
+      for(String url : urls) {
+        transaction.update("images", values, "url = ?", url);
+      }
+
+      transaction.commit();
+    }
+  }
+
+  /**
+   * Removes a batch of least recently used images if the images exceed the budget.
+   *
+   * @param index the {@link ImageUrlIndex} to remove the images from
+   * @return <code>true</code> if the images still exceed the budget, otherwise <code>false</code>
+   */
+  private boolean evictBatch(ImageUrlIndex index) {
+    long totalBytes;
+    List<StoredImage> candidates = new ArrayList<>();
+
+    try(Transaction transaction = database.beginReadOnlyTransaction()) {
+      Number sum = (Number)transaction.selectUnique("SUM(CAST(datasize AS BIGINT)) AS totalbytes", "images", null).get("totalbytes");  // BigDecimal on PostgreSQL
+
+      totalBytes = sum == null ? 0 : sum.longValue();
+
+      if(totalBytes > maxBytes) {
+        for(Record record : transaction.selectFirst("url, lastaccesstime, datasize, blobhash", "images", BATCH_SIZE, "lastaccesstime", null)) {  // uses images_lastaccesstime index
+          candidates.add(new StoredImage(record.getString("url"), record.getDate("lastaccesstime").getTime(), record.getInteger("datasize"), record.getString("blobhash")));
+        }
+      }
+    }
+
+    storedBytes = totalBytes;
+
+    List<StoredImage> evictedImages = selectForEviction(candidates, totalBytes - maxBytes);
+
+    if(evictedImages.isEmpty()) {
+      return false;
+    }
+
+    long bytes = 0;
+    Set<String> unreferencedBlobHashes = new HashSet<>();
+
+    try(Transaction transaction = database.beginTransaction()) {
+      for(StoredImage image : evictedImages) {
+        transaction.delete("images", "url = ?", image.url);
+        bytes += image.dataSize;
+      }
+
+      for(StoredImage image : evictedImages) {
+        if(image.blobHash != null && transaction.selectUnique("url", "images", "blobhash = ?", image.blobHash) == null) {
+          unreferencedBlobHashes.add(image.blobHash);
+        }
+      }
+
+      transaction.commit();
+    }
+
+    List<String> evictedUrls = new ArrayList<>();
+
+    for(StoredImage image : evictedImages) {
+      index.remove(image.url);
+      evictedUrls.add(image.url);
+    }
+
+    ImageVariantStore variantStore = ImageCache.getVariantStore();
+
+    if(variantStore != null) {
+      variantStore.remove(evictedUrls);
+    }
+
+    ImageBlobStore blobStore = DatabaseUrlSource.getBlobStore();
+
+    if(blobStore != null) {
+      for(String blobHash : unreferencedBlobHashes) {
+        blobStore.delete(blobHash);
+      }
+    }
+
+    storedBytes = totalBytes - bytes;
+    evictions.add(evictedImages.size());
+    evictedBytes.add(bytes);
+
+    System.out.println("[INFO] ImageStoreMaintainer.evictBatch() - Evicted " + evictedImages.size() + " least recently used images (" + bytes + " bytes), images now use " + storedBytes + " of " + maxBytes + " bytes");
+
+    return storedBytes > maxBytes;
+  }
+
+  /**
+   * Returns the images, in order, which need to be removed to free up the given number
+   * of bytes, or as many as are available.
+   */
+  static List<StoredImage> selectForEviction(List<StoredImage> leastRecentlyUsedImages, long excessBytes) {
+    if(excessBytes <= 0) {
+      return Collections.emptyList();
+    }
+
+    List<StoredImage> images = new ArrayList<>();
+    long bytes = 0;
+
+    for(StoredImage image : leastRecentlyUsedImages) {
+      if(bytes >= excessBytes) {
+        break;
+      }
+
+      images.add(image);
+      bytes += image.dataSize;
+    }
+
+    return images;
+  }
+
+  static class StoredImage {
+    final String url;
+    final long lastAccessMillis;
+    final int dataSize;
+    final String blobHash;  // null if the data is stored in the images table
+
+    StoredImage(String url, long lastAccessMillis, int dataSize, String blobHash) {
+      this.url = url;
+      this.lastAccessMillis = lastAccessMillis;
+      this.dataSize = dataSize;
+      this.blobHash = blobHash;
+    }
+  }
+}
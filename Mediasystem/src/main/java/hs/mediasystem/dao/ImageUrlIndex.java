@@ -0,0 +1,224 @@
+package hs.mediasystem.dao;
+
+import hs.mediasystem.db.Database;
+import hs.mediasystem.db.Database.Transaction;
+import hs.mediasystem.db.Record;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Index of the URLs of the images stored in the images table of a database, so it
+ * can be determined whether an image is stored without querying the database.<p>
+ *
+ * Only a 64-bit hash of each URL is kept, in an open addressing hash table, so the
+ * index takes between 16 and 32 bytes per URL.  This means {@link #contains(String)}
+ * may very rarely return <code>true</code> for a URL which is not stored, which
+ * callers must handle by verifying the result when loading the image.  It never
+ * returns <code>false</code> for a URL which was stored.<p>
+ *
+ * The index also collects the URLs of images which were accessed, so their last
+ * access time can be updated in batches by the {@link ImageStoreMaintainer}.
+ */
+public final class ImageUrlIndex {
+  private static final Map<Database, ImageUrlIndex> INSTANCES = new WeakHashMap<>();
+  private static final int FETCH_SIZE = 1000;
+
+  private long[] table = new long[1024];  // 0 marks an empty slot
+  private int size;
+  private Set<String> accessedUrls = new HashSet<>();
+  private long lastActivityMillis = System.currentTimeMillis();
+
+  /**
+   * Returns the index of the given database, loading it first if needed.
+   *
+   * @param database a {@link Database}
+   * @return an {@link ImageUrlIndex}, never null
+   */
+  public static ImageUrlIndex of(Database database) {
+    synchronized(INSTANCES) {
+      ImageUrlIndex index = INSTANCES.get(database);
+
+      if(index == null) {
+        index = new ImageUrlIndex();
+        index.load(database);
+
+        INSTANCES.put(database, index);
+      }
+
+      return index;
+    }
+  }
+
+  ImageUrlIndex() {
+  }
+
+  private void load(Database database) {
+    long startTime = System.currentTimeMillis();
+
+    try(Transaction transaction = database.beginReadOnlyTransaction();
+        Stream<Record> stream = transaction.stream("url", "images", FETCH_SIZE, null)) {
+      stream.forEach(record -> add(record.getString("url")));
+    }
+
+    System.out.println("[INFO] ImageUrlIndex.load() - Indexed " + size + " image urls in " + (System.currentTimeMillis() - startTime) + " ms");
+  }
+
+  /**
+   * Returns whether the image with the given URL is stored.  May very rarely return
+   * <code>true</code> for an image which is not stored.
+   *
+   * @param url a URL
+   * @return <code>true</code> if the image is (most likely) stored, otherwise <code>false</code>
+   */
+  public synchronized boolean contains(String url) {
+    long hash = hash(url);
+    int mask = table.length - 1;
+
+    for(int i = (int)hash & mask; table[i] != 0; i = (i + 1) & mask) {
+      if(table[i] == hash) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  /**
+   * Adds the URL of a newly stored image.
+   *
+   * @param url a URL
+   */
+  public synchronized void add(String url) {
+    if(size * 2 >= table.length) {
+      long[] oldTable = table;
+
+      table = new long[oldTable.length * 2];
+
+      for(long hash : oldTable) {
+        if(hash != 0) {
+          insert(hash);
+        }
+      }
+    }
+
+    if(insert(hash(url))) {
+      size++;
+    }
+
+    lastActivityMillis = System.currentTimeMillis();
+  }
+
+  /**
+   * Removes the URL of an image which was removed from the store.
+   *
+   * @param url a URL
+   */
+  public synchronized void remove(String url) {
+    long hash = hash(url);
+    int mask = table.length - 1;
+    int i = (int)hash & mask;
+
+    while(table[i] != hash) {
+      if(table[i] == 0) {
+        return;
+      }
+
+      i = (i + 1) & mask;
+    }
+
+    /*
+     * Shift back any following entries which would otherwise become unreachable:
+     */
+
+    for(int j = (i + 1) & mask; table[j] != 0; j = (j + 1) & mask) {
+      int k = (int)table[j] & mask;  // slot the entry at j would ideally be in
+
+      if(i <= j ? (i < k && k <= j) : (i < k || k <= j)) {
+        continue;
+      }
+
+      table[i] = table[j];
+      i = j;
+    }
+
+    table[i] = 0;
+    size--;
+    accessedUrls.remove(url);
+  }
+
+  /**
+   * Records that the image with the given URL was accessed.
+   *
+   * @param url a URL
+   */
+  public synchronized void markAccessed(String url) {
+    accessedUrls.add(url);
+    lastActivityMillis = System.currentTimeMillis();
+  }
+
+  /**
+   * Returns the URLs of the images which were accessed since the last call.
+   *
+   * @return a set of URLs, never null
+   */
+  public synchronized Set<String> takeAccessedUrls() {
+    Set<String> urls = accessedUrls;
+
+    accessedUrls = new HashSet<>();
+
+    return urls;
+  }
+
+  /**
+   * Returns the time at which an image was last stored or accessed.
+   *
+   * @return the time at which an image was last stored or accessed, in milliseconds since the epoch
+   */
+  public synchronized long getLastActivityMillis() {
+    return lastActivityMillis;
+  }
+
+  public synchronized int size() {
+    return size;
+  }
+
+  private boolean insert(long hash) {
+    int mask = table.length - 1;
+    int i = (int)hash & mask;
+
+    while(table[i] != 0) {
+      if(table[i] == hash) {
+        return false;
+      }
+
+      i = (i + 1) & mask;
+    }
+
+    table[i] = hash;
+
+    return true;
+  }
+
+  /**
+   * Returns a 64-bit FNV-1a hash of the given URL, with its bits mixed so the lower
+   * bits are suitable as table index.  Never returns 0.
+   */
+  static long hash(String url) {
+    long hash = 0xcbf29ce484222325L;
+
+    for(int i = 0; i < url.length(); i++) {
+      hash ^= url.charAt(i);
+      hash *= 0x100000001b3L;
+    }
+
+    hash ^= hash >>> 33;
+    hash *= 0xff51afd7ed558ccdL;
+    hash ^= hash >>> 33;
+
+    return hash == 0 ? 1 : hash;
+  }
+}
@@ -3,7 +3,9 @@ package hs.mediasystem.dao;
 import hs.mediasystem.db.Database;
 import hs.mediasystem.db.Database.Transaction;
 
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
@@ -25,7 +27,7 @@ public class ItemsDao {
     try(Transaction transaction = database.beginReadOnlyTransaction()) {
       System.out.println("[FINE] ItemsDao.getItem() - Selecting Item with " + providerId);
 
-      Item item = transaction.selectUnique(Item.class, "type=? AND provider=? AND providerid=?", providerId.getType(), providerId.getProvider(), providerId.getId());
+      Item item = transaction.selectUniqueCached(Item.class, "type=? AND provider=? AND providerid=?", providerId.getType(), providerId.getProvider(), providerId.getId());
 
       if(item == null) {
         throw new ItemNotFoundException(providerId);
@@ -35,14 +37,23 @@ public class ItemsDao {
     }
   }
 
+  /**
+   * Loads all MediaData of which the uri starts with the given prefix, joined with
+   * their Identifiers and Items.  Each result contains a MediaData, an Identifier and
+   * an Item, in that order; MediaData with multiple Identifiers occurs multiple times,
+   * and the Identifier and Item are <code>null</code> when absent.
+   *
+   * @param uriPrefix a uri prefix
+   * @return a list of MediaData, Identifier and Item tuples
+   */
   public List<Object[]> loadFullItems(String uriPrefix) {
     try(Transaction transaction = database.beginReadOnlyTransaction()) {
       return transaction.select(
         new Class[] {MediaData.class, Identifier.class, Item.class},
         new String[] {"d", "i", "m"},
         "MediaData d LEFT JOIN Identifiers i ON d.id = i.mediadata_id LEFT JOIN Items m ON m.type = i.mediatype and m.provider = i.provider and m.providerid = i.providerid",
-        "d.uri LIKE ?",
-        (uriPrefix + "\\%").replaceAll("\\\\", "\\\\\\\\")
+        "d.uri LIKE ? ESCAPE '!'",
+        uriPrefix.replaceAll("[!%_]", "!$0") + "%"
       );
     }
   }
@@ -72,18 +83,36 @@ public class ItemsDao {
   }
 
   private void storeCastings(Item item, Transaction transaction) {
-    for(Casting casting : item.getCastings()) {
-      Person person = personsDao.findByName(casting.getPerson().getName());
+    List<Casting> castings = item.getCastings();
+    Map<String, Person> personsByName = new LinkedHashMap<>();
 
-      if(person != null) {
-        casting.getPerson().setId(person.getId());
-        if(casting.getPerson().getPhotoURL() == null) {
-          casting.getPerson().setPhotoURL(person.getPhotoURL());
+    for(Casting casting : castings) {
+      Person person = casting.getPerson();
+
+      if(!personsByName.containsKey(person.getName())) {
+        personsByName.put(person.getName(), person);
+      }
+    }
+
+    Map<String, Person> storedPersons = personsDao.findByNames(personsByName.keySet());
+
+    for(Person person : personsByName.values()) {
+      Person storedPerson = storedPersons.get(person.getName());
+
+      if(storedPerson != null) {
+        person.setId(storedPerson.getId());
+        if(person.getPhotoURL() == null) {
+          person.setPhotoURL(storedPerson.getPhotoURL());
         }
       }
+    }
 
-      transaction.merge(casting.getPerson());
-      transaction.insert(casting);
+    transaction.mergeAll(personsByName.values());
+
+    for(Casting casting : castings) {
+      casting.getPerson().setId(personsByName.get(casting.getPerson().getName()).getId());  // same person can appear in multiple roles
     }
+
+    transaction.insertAll(castings);
   }
 }
\ No newline at end of file
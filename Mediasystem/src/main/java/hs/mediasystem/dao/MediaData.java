@@ -91,4 +91,8 @@ public class MediaData extends DefaultPersistable<MediaData> {
 
     return identifiers;
   }
+
+  public void setIdentifiers(List<Identifier> identifiers) {
+    this.identifiers = identifiers;
+  }
 }
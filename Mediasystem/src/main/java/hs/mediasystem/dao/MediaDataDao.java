@@ -8,6 +8,8 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
@@ -35,7 +37,7 @@ public class MediaDataDao {
 
   private MediaData getMediaData(String whereCondition, Object... parameters) {
     try(Transaction transaction = database.beginReadOnlyTransaction()) {
-      MediaData mediaData = transaction.selectUnique(MediaData.class, whereCondition, parameters);
+      MediaData mediaData = transaction.selectUniqueCached(MediaData.class, whereCondition, parameters);
 
       if(mediaData != null) {
         mediaData.getIdentifiers();
@@ -49,7 +51,6 @@ public class MediaDataDao {
     try(Transaction transaction = database.beginTransaction()) {
 
       if(mediaData.areIdentifiersLoaded()) {
-        transaction.deleteChildren("identifiers", "mediadata", mediaData.getId());
         storeIdentifiers(mediaData, transaction);
       }
 
@@ -58,21 +59,54 @@ public class MediaDataDao {
     }
   }
 
+  /**
+   * Stores the given MediaData, inserting it or updating the row which has the same
+   * hash (or the same uri when there is no hash).  An existing row keeps its id.  A
+   * different row with the same uri, left behind by a file which was replaced, is
+   * deleted first.  The identifiers are stored when they were loaded.
+   *
+   * @param mediaData the MediaData to store
+   */
   public void storeMediaData(MediaData mediaData) {
     try(Transaction transaction = database.beginTransaction()) {
-      transaction.delete("mediadata", "uri = ? or hash = ?", mediaData.getUri(), mediaData.getMediaId().getHash());
-      transaction.insert(mediaData);
+      byte[] hash = mediaData.getMediaId().getHash();
 
-      storeIdentifiers(mediaData, transaction);
+      if(hash == null) {
+        transaction.upsert(mediaData, "uri");
+      }
+      else {
+        transaction.delete("mediadata", "uri = ? AND (hash IS NULL OR hash <> ?)", mediaData.getUri(), hash);
+        transaction.upsert(mediaData, "hash");
+      }
+
+      if(mediaData.areIdentifiersLoaded()) {
+        storeIdentifiers(mediaData, transaction);
+      }
 
       transaction.commit();
     }
   }
 
-  private void storeIdentifiers(MediaData mediaData, Transaction transaction) {
+  /**
+   * Stores the identifiers of the given MediaData.  Each identifier updates the stored
+   * identifier with the same media type and provider, or is inserted if there is none,
+   * and only the stored identifiers which are no longer present are deleted.
+   */
+  private static void storeIdentifiers(MediaData mediaData, Transaction transaction) {
+    List<Object> parameters = new ArrayList<>();
+    StringBuilder keptIds = new StringBuilder();
+
+    parameters.add(mediaData.getId());
+
     for(Identifier identifier : mediaData.getIdentifiers()) {
-      transaction.insert(identifier);
+      identifier.setMediaData(mediaData);
+      transaction.upsert(identifier, "mediadata_id", "mediatype", "provider");
+
+      keptIds.append(keptIds.length() == 0 ? "?" : ", ?");
+      parameters.add(identifier.getId());
     }
+
+    transaction.delete("identifiers", "mediadata_id = ?" + (keptIds.length() == 0 ? "" : " AND id NOT IN (" + keptIds + ")"), parameters.toArray());
   }
 
   public static MediaId createMediaId(String uri) {
@@ -0,0 +1,83 @@
+package hs.mediasystem.dao;
+
+import hs.mediasystem.db.Column;
+import hs.mediasystem.db.DatabaseObject;
+import hs.mediasystem.db.Id;
+import hs.mediasystem.db.Table;
+
+import java.time.LocalDateTime;
+
+@Table(name = "metadata")
+public class Metadata extends DatabaseObject {
+
+  @Id @Column
+  private byte[] urlHash;
+
+  @Column
+  private String url;
+
+  @Column
+  private LocalDateTime creationTime;
+
+  @Column
+  private LocalDateTime expiresAt;
+
+  @Column
+  private byte[] data;
+
+  public Metadata(byte[] urlHash, String url, LocalDateTime creationTime, LocalDateTime expiresAt, byte[] data) {
+    this.urlHash = urlHash;
+    this.url = url;
+    this.creationTime = creationTime;
+    this.expiresAt = expiresAt;
+    this.data = data;
+  }
+
+  public Metadata() {
+  }
+
+  public byte[] getUrlHash() {
+    return urlHash;
+  }
+
+  public void setUrlHash(byte[] urlHash) {
+    this.urlHash = urlHash;
+  }
+
+  public String getUrl() {
+    return url;
+  }
+
+  public void setUrl(String url) {
+    this.url = url;
+  }
+
+  public LocalDateTime getCreationTime() {
+    return creationTime;
+  }
+
+  public void setCreationTime(LocalDateTime creationTime) {
+    this.creationTime = creationTime;
+  }
+
+  public LocalDateTime getExpiresAt() {
+    return expiresAt;
+  }
+
+  public void setExpiresAt(LocalDateTime expiresAt) {
+    this.expiresAt = expiresAt;
+  }
+
+  /**
+   * Returns the deflate compressed data.
+   *
+   * @return the deflate compressed data
+   */
+  public byte[] getData() {
+    return data;
+  }
+
+  public void setData(byte[] data) {
+    this.data = data;
+  }
+}
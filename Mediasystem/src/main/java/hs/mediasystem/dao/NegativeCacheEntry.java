@@ -0,0 +1,66 @@
+package hs.mediasystem.dao;
+
+import hs.mediasystem.db.Column;
+import hs.mediasystem.db.DatabaseObject;
+import hs.mediasystem.db.Id;
+import hs.mediasystem.db.Table;
+
+import java.time.LocalDateTime;
+
+@Table(name = "negativecache")
+public class NegativeCacheEntry extends DatabaseObject {
+
+  @Id @Column
+  private String cacheKey;
+
+  @Column
+  private int failureCount;
+
+  @Column
+  private LocalDateTime lastFailure;
+
+  @Column
+  private LocalDateTime retryAfter;
+
+  public NegativeCacheEntry(String cacheKey, int failureCount, LocalDateTime lastFailure, LocalDateTime retryAfter) {
+    this.cacheKey = cacheKey;
+    this.failureCount = failureCount;
+    this.lastFailure = lastFailure;
+    this.retryAfter = retryAfter;
+  }
+
+  public NegativeCacheEntry() {
+  }
+
+  public String getCacheKey() {
+    return cacheKey;
+  }
+
+  public void setCacheKey(String cacheKey) {
+    this.cacheKey = cacheKey;
+  }
+
+  public int getFailureCount() {
+    return failureCount;
+  }
+
+  public void setFailureCount(int failureCount) {
+    this.failureCount = failureCount;
+  }
+
+  public LocalDateTime getLastFailure() {
+    return lastFailure;
+  }
+
+  public void setLastFailure(LocalDateTime lastFailure) {
+    this.lastFailure = lastFailure;
+  }
+
+  public LocalDateTime getRetryAfter() {
+    return retryAfter;
+  }
+
+  public void setRetryAfter(LocalDateTime retryAfter) {
+    this.retryAfter = retryAfter;
+  }
+}
@@ -3,6 +3,10 @@ package hs.mediasystem.dao;
 import hs.mediasystem.db.Database;
 import hs.mediasystem.db.Database.Transaction;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
 import javax.inject.Inject;
 
 public class PersonsDao {
@@ -15,7 +19,37 @@ public class PersonsDao {
 
   public Person findByName(String name) {
     try(Transaction transaction = database.beginReadOnlyTransaction()) {
-      return transaction.selectUnique(Person.class, "name = ?", name);
+      return transaction.selectUniqueCached(Person.class, "name = ?", name);
     }
   }
+
+  /**
+   * Finds all persons with one of the given names using a single query.
+   *
+   * @param names a collection of names
+   * @return a map of name to Person, containing only the persons that were found
+   */
+  public Map<String, Person> findByNames(Collection<String> names) {
+    Map<String, Person> persons = new HashMap<>();
+
+    if(names.isEmpty()) {
+      return persons;
+    }
+
+    StringBuilder whereCondition = new StringBuilder("name IN (");
+
+    for(int i = 0; i < names.size(); i++) {
+      whereCondition.append(i == 0 ? "?" : ",?");
+    }
+
+    whereCondition.append(")");
+
+    try(Transaction transaction = database.beginReadOnlyTransaction()) {
+      for(Person person : transaction.select(Person.class, whereCondition.toString(), names.toArray())) {
+        persons.put(person.getName(), person);
+      }
+    }
+
+    return persons;
+  }
 }
@@ -2,7 +2,6 @@ package hs.mediasystem.db;
 
 import hs.mediasystem.db.Column.DefaultConverter;
 import hs.mediasystem.db.Database.Transaction;
-import hs.mediasystem.util.WeakValueMap;
 
 import java.lang.annotation.Annotation;
 import java.lang.invoke.MethodHandle;
@@ -13,6 +12,9 @@ import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -22,9 +24,26 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 public final class AnnotatedRecordMapper<T> implements RecordMapper<T> {
-  private static final Map<Class<?>, AnnotatedRecordMapper<?>> RECORD_MAPPERS = new WeakValueMap<>();
+  private static final ClassValue<AnnotatedRecordMapper<?>> RECORD_MAPPERS = new ClassValue<AnnotatedRecordMapper<?>>() {
+    @Override
+    protected AnnotatedRecordMapper<?> computeValue(Class<?> type) {
+      return new AnnotatedRecordMapper<>(type);
+    }
+  };
+  private static final MethodHandle ACCESSOR_SET;
+
+  static {
+    try {
+      ACCESSOR_SET = MethodHandles.lookup().findVirtual(Accessor.class, "set", MethodType.methodType(void.class, Object.class, Object.class));
+    }
+    catch(NoSuchMethodException | IllegalAccessException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
   private static final Comparator<Accessor> EMBEDDABLE_INDEX_ORDER = new Comparator<Accessor>() {
     @Override
     public int compare(Accessor o1, Accessor o2) {
@@ -34,10 +53,13 @@ public final class AnnotatedRecordMapper<T> implements RecordMapper<T> {
 
   private final List<Column> columns = new ArrayList<>();
   private final Map<Class<?>, String[]> relations = new HashMap<>();
+  private final Map<String, ResultSetMapper<T>> resultSetMappers = new ConcurrentHashMap<>();
+  private final Class<T> cls;
   private final String tableName;
 
   private Column idColumn;
   private MethodHandle afterLoadStore;
+  private volatile Constructor<T> emptyConstructor;
 
   private AnnotatedRecordMapper(final Class<T> cls) {
     Table table = cls.getAnnotation(Table.class);
@@ -46,7 +68,8 @@ public final class AnnotatedRecordMapper<T> implements RecordMapper<T> {
       throw new MappingException("Type is missing @Table annotation: " + cls);
     }
 
-    tableName = table.name();
+    this.cls = cls;
+    this.tableName = table.name();
 
     List<Accessor> accessors = getAnnotatedAccessors(cls, null, hs.mediasystem.db.Column.class, Id.class);
 
@@ -114,16 +137,9 @@ public final class AnnotatedRecordMapper<T> implements RecordMapper<T> {
     }
   }
 
+  @SuppressWarnings("unchecked")
   public static <T> AnnotatedRecordMapper<T> create(Class<T> cls) {
-    @SuppressWarnings("unchecked")
-    AnnotatedRecordMapper<T> annotatedRecordMapper = (AnnotatedRecordMapper<T>)RECORD_MAPPERS.get(cls);
-
-    if(annotatedRecordMapper == null) {
-      annotatedRecordMapper = new AnnotatedRecordMapper<>(cls);
-      RECORD_MAPPERS.put(cls, annotatedRecordMapper);
-    }
-
-    return annotatedRecordMapper;
+    return (AnnotatedRecordMapper<T>)RECORD_MAPPERS.get(cls);
   }
 
   private static boolean isRelation(Class<?> type) {
@@ -229,6 +245,49 @@ public final class AnnotatedRecordMapper<T> implements RecordMapper<T> {
     }
   }
 
+  @Override
+  public T createObject(Transaction transaction, Map<String, Object> values) {
+    try {
+      if(emptyConstructor == null) {
+        Constructor<T> constructor = cls.getDeclaredConstructor();
+
+        constructor.setAccessible(true);
+        emptyConstructor = constructor;
+      }
+
+      T instance = emptyConstructor.newInstance();
+
+      applyValues(transaction, instance, values);
+
+      return instance;
+    }
+    catch(NoSuchMethodException | InstantiationException | IllegalAccessException | InvocationTargetException e) {
+      throw new MappingException("Unable to instantiate class: " + cls, e);
+    }
+  }
+
+  @Override
+  public ResultSetMapper<T> getResultSetMapper(ResultSetMetaData metaData, String prefix, boolean optional) throws SQLException {
+    int columnCount = metaData.getColumnCount();
+    String[] columnNames = new String[columnCount];
+    StringBuilder shape = new StringBuilder(prefix).append(optional ? "?" : "!");
+
+    for(int i = 0; i < columnCount; i++) {
+      columnNames[i] = metaData.getColumnName(i + 1).toLowerCase();
+      shape.append(",").append(columnNames[i]);
+    }
+
+    String key = shape.toString();
+    ResultSetMapper<T> resultSetMapper = resultSetMappers.get(key);
+
+    if(resultSetMapper == null) {
+      resultSetMapper = new CompiledResultSetMapper(columnNames, prefix, optional);
+      resultSetMappers.put(key, resultSetMapper);
+    }
+
+    return resultSetMapper;
+  }
+
   @Override
   public void invokeAfterLoadStore(Object object, Database database) throws DatabaseException {
     if(object instanceof DatabaseObject) {
@@ -339,6 +398,18 @@ public final class AnnotatedRecordMapper<T> implements RecordMapper<T> {
     Class<?> getType();
     <A extends Annotation> A getAnnotation(Class<A> cls);
     String getName();
+
+    /**
+     * Returns a MethodHandle of type (Object, Object)void which sets the value of this
+     * accessor on an instance.
+     *
+     * @return a MethodHandle, never null
+     */
+    MethodHandle getSetter();
+  }
+
+  private static MethodHandle toGenericSetter(MethodHandle setter) {
+    return setter.asType(MethodType.methodType(void.class, Object.class, Object.class));
   }
 
   @SafeVarargs
@@ -439,6 +510,16 @@ public final class AnnotatedRecordMapper<T> implements RecordMapper<T> {
     public String getName() {
       return field.getName();
     }
+
+    @Override
+    public MethodHandle getSetter() {
+      try {
+        return toGenericSetter(MethodHandles.lookup().unreflectSetter(field));
+      }
+      catch(IllegalAccessException e) {
+        return ACCESSOR_SET.bindTo(this);
+      }
+    }
   }
 
   public static class MethodAccessor implements Accessor {
@@ -486,15 +567,33 @@ public final class AnnotatedRecordMapper<T> implements RecordMapper<T> {
 
       return name.startsWith("get") ? name.substring(3) : name.substring(2);
     }
+
+    @Override
+    public MethodHandle getSetter() {
+      try {
+        return toGenericSetter(MethodHandles.lookup().unreflect(writeMethod));
+      }
+      catch(IllegalAccessException e) {
+        return ACCESSOR_SET.bindTo(this);
+      }
+    }
   }
 
   public class Column {
     private final String[] names;
     private final Accessor accessor;
+    private final MethodHandle setter;
     private final DataTypeConverter<Object, Object> dataTypeConverter;
+    private final boolean embedded;
+    private final boolean relation;
+
+    private volatile Constructor<?> embeddedConstructor;
 
     public Column(hs.mediasystem.db.Column column, Accessor accessor, Class<DataTypeConverter<Object, Object>> dataTypeConverterClass) {
       this.accessor = accessor;
+      this.setter = accessor.getSetter();
+      this.embedded = accessor.getType().getAnnotation(Embeddable.class) != null;
+      this.relation = isRelation(accessor.getType());
 
       String[] names = column == null ? null : column.name();
 
@@ -525,13 +624,35 @@ public final class AnnotatedRecordMapper<T> implements RecordMapper<T> {
     }
 
     public boolean isEmbedded() {
-      return getType().getAnnotation(Embeddable.class) != null;
+      return embedded;
+    }
+
+    /**
+     * Returns whether this column maps a single database column directly to a Java
+     * value, without involving embedded or related objects.
+     *
+     * @return <code>true</code> if this column is a simple column, otherwise <code>false</code>
+     */
+    public boolean isSimple() {
+      return !embedded && !relation && names.length == 1;
+    }
+
+    public void set(Object instance, Object value) {
+      try {
+        setter.invokeExact(instance, value);
+      }
+      catch(RuntimeException | Error e) {
+        throw e;
+      }
+      catch(Throwable t) {
+        throw new RuntimeException(t);
+      }
     }
 
     public void toStorageType(Object value, Map<String, Object> valuesRef) {
       Object[] values = null;
 
-      if(isRelation(getType())) {
+      if(relation) {
         if(value != null) {
           @SuppressWarnings("unchecked")
           AnnotatedRecordMapper<Object> mapper = (AnnotatedRecordMapper<Object>)create(getType());
@@ -539,7 +660,7 @@ public final class AnnotatedRecordMapper<T> implements RecordMapper<T> {
           values = mapper.getIds(value);
         }
       }
-      else if(isEmbedded()) {
+      else if(embedded) {
         if(value != null) {
           values = getEmbeddedFields(value);
         }
@@ -561,56 +682,220 @@ public final class AnnotatedRecordMapper<T> implements RecordMapper<T> {
     }
 
     public Object toJavaType(Map<String, Object> map, Transaction transaction) {
-      try {
-        if(isEmbedded()) {
-          List<Accessor> accessors = getAnnotatedAccessors(getType(), EMBEDDABLE_INDEX_ORDER, EmbeddableColumn.class);
+      Object[] values = new Object[names.length];
 
-          Class<?>[] types = new Class<?>[names.length];
-          Object[] idValues = new Object[names.length];
-          int nulls = 0;
+      for(int i = 0; i < names.length; i++) {
+        values[i] = map.get(names[i]);
+      }
 
-          for(int i = 0; i < names.length; i++) {
-            Object value = map.get(names[i]);
+      return toJavaType(values, transaction);
+    }
 
-            types[i] = accessors.get(i).getType();
-            idValues[i] = value;
+    /**
+     * Converts the value of a simple column to its Java type.
+     *
+     * @param value the stored value
+     * @return the converted value
+     */
+    public Object toJavaType(Object value) {
+      return dataTypeConverter.toJavaType(value, getType());
+    }
 
+    /**
+     * Converts the stored values of this column, in the same order as the column names,
+     * to its Java type.
+     *
+     * @param values the stored values
+     * @param transaction the current transaction
+     * @return the converted value
+     */
+    public Object toJavaType(Object[] values, Transaction transaction) {
+      try {
+        if(embedded) {
+          int nulls = 0;
+
+          for(Object value : values) {
             if(value == null) {
               nulls++;
             }
           }
 
-          if(nulls == idValues.length) {
+          if(nulls == values.length) {
             return null;
           }
 
-          Constructor<?> constructor = getType().getConstructor(types);
-
-          return constructor.newInstance(idValues);
+          return getEmbeddedConstructor().newInstance(values);
         }
-        else if(isRelation(getType())) {
-          Object[] idValues = new Object[names.length];
-
-          for(int i = 0; i < names.length; i++) {
-            idValues[i] = map.get(names[i]);
-          }
-
-          DatabaseObject associatedObject = transaction.findAssociatedObject(getType(), idValues);
+        else if(relation) {
+          DatabaseObject associatedObject = transaction.findAssociatedObject(getType(), values);
 
           if(associatedObject == null) {
             associatedObject = (DatabaseObject)getType().newInstance();
             associatedObject.setDatabase(transaction.getDatabase());
-            associateStub(associatedObject, idValues);
+            associateStub(associatedObject, values);
           }
 
           return associatedObject;
         }
 
-        return dataTypeConverter.toJavaType(map.get(names[0]), getType());
+        return dataTypeConverter.toJavaType(values[0], getType());
       }
       catch(NoSuchMethodException | SecurityException | IllegalAccessException | IllegalArgumentException | InvocationTargetException | InstantiationException e) {
         throw new RuntimeException(e);
       }
     }
+
+    private Constructor<?> getEmbeddedConstructor() throws NoSuchMethodException {
+      if(embeddedConstructor == null) {
+        List<Accessor> accessors = getAnnotatedAccessors(getType(), EMBEDDABLE_INDEX_ORDER, EmbeddableColumn.class);
+        Class<?>[] types = new Class<?>[names.length];
+
+        for(int i = 0; i < names.length; i++) {
+          types[i] = accessors.get(i).getType();
+        }
+
+        embeddedConstructor = getType().getConstructor(types);
+      }
+
+      return embeddedConstructor;
+    }
+  }
+
+  /**
+   * ResultSetMapper which has its column indices, setters and constructor resolved in
+   * advance for a specific set of columns, so rows can be mapped without intermediate
+   * maps or reflective look-ups.
+   */
+  private final class CompiledResultSetMapper implements ResultSetMapper<T> {
+    private final MethodHandle constructor;
+    private final List<Column> mappedColumns;
+    private final int[][] columnIndices;  // 1-based index in ResultSet for each name of each column, or 0 if not present
+    private final boolean optional;
+
+    CompiledResultSetMapper(String[] columnNames, String prefix, boolean optional) {
+      this.optional = optional;
+
+      Map<String, Integer> indexByName = new HashMap<>();
+
+      for(int i = 0; i < columnNames.length; i++) {
+        if(columnNames[i].startsWith(prefix)) {
+          indexByName.put(columnNames[i].substring(prefix.length()), i + 1);
+        }
+      }
+
+      List<Column> allColumns = new ArrayList<>(columns);
+
+      if(idColumn != null) {
+        allColumns.add(idColumn);
+      }
+
+      this.mappedColumns = allColumns;
+      this.columnIndices = new int[allColumns.size()][];
+
+      for(int c = 0; c < allColumns.size(); c++) {
+        String[] names = allColumns.get(c).getNames();
+
+        columnIndices[c] = new int[names.length];
+
+        for(int i = 0; i < names.length; i++) {
+          Integer index = indexByName.get(names[i]);
+
+          columnIndices[c][i] = index == null ? 0 : index;
+        }
+      }
+
+      try {
+        Constructor<T> declaredConstructor = cls.getDeclaredConstructor();
+
+        declaredConstructor.setAccessible(true);
+
+        this.constructor = MethodHandles.lookup().unreflectConstructor(declaredConstructor).asType(MethodType.methodType(Object.class));
+      }
+      catch(NoSuchMethodException | IllegalAccessException e) {
+        throw new MappingException("Unable to access empty constructor: " + cls, e);
+      }
+    }
+
+    @Override
+    public T map(Transaction transaction, ResultSet rs) throws SQLException {
+      Object instance = optional ? null : newInstance();
+
+      for(int c = 0; c < mappedColumns.size(); c++) {
+        Column column = mappedColumns.get(c);
+        int[] indices = columnIndices[c];
+        Object value;
+
+        if(column.isSimple()) {
+          Object storedValue = indices[0] == 0 ? null : rs.getObject(indices[0]);
+
+          if(instance == null) {
+            if(storedValue == null) {
+              continue;
+            }
+
+            instance = newInstanceWithNullColumns(c, transaction);
+          }
+
+          value = column.toJavaType(storedValue);
+        }
+        else {
+          Object[] storedValues = new Object[indices.length];
+          boolean allNull = true;
+
+          for(int i = 0; i < indices.length; i++) {
+            storedValues[i] = indices[i] == 0 ? null : rs.getObject(indices[i]);
+
+            if(storedValues[i] != null) {
+              allNull = false;
+            }
+          }
+
+          if(instance == null) {
+            if(allNull) {
+              continue;
+            }
+
+            instance = newInstanceWithNullColumns(c, transaction);
+          }
+
+          value = column.toJavaType(storedValues, transaction);
+        }
+
+        column.set(instance, value);
+      }
+
+      @SuppressWarnings("unchecked")
+      T result = (T)instance;
+
+      return result;
+    }
+
+    /**
+     * Creates a new instance and applies null values for the first <code>count</code>
+     * columns; used for optional rows when the first non-null column is encountered.
+     */
+    private Object newInstanceWithNullColumns(int count, Transaction transaction) {
+      Object instance = newInstance();
+
+      for(int c = 0; c < count; c++) {
+        Column column = mappedColumns.get(c);
+
+        column.set(instance, column.toJavaType(new Object[column.getNames().length], transaction));
+      }
+
+      return instance;
+    }
+
+    private Object newInstance() {
+      try {
+        return (Object)constructor.invokeExact();
+      }
+      catch(RuntimeException | Error e) {
+        throw e;
+      }
+      catch(Throwable t) {
+        throw new RuntimeException("Unable to instantiate class: " + cls, t);
+      }
+    }
   }
 }
@@ -4,8 +4,6 @@ import java.lang.annotation.ElementType;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 import java.sql.Blob;
 import java.sql.Date;
 import java.sql.SQLException;
@@ -32,12 +30,11 @@ public @interface Column {
     }
 
     @Override
+    @SuppressWarnings({"unchecked", "rawtypes"})
     public Object toJavaType(Object input, Class<?> type) {
       try {
         if(type.isEnum() && input instanceof String) {
-          Method method = type.getMethod("valueOf", String.class);
-
-          return method.invoke(null, input);
+          return Enum.valueOf((Class<Enum>)type, (String)input);
         }
         else if(input instanceof Blob) {
           Blob blob = (Blob)input;
@@ -59,7 +56,7 @@ public @interface Column {
 
         return input;
       }
-      catch(InvocationTargetException | NoSuchMethodException | SecurityException | IllegalAccessException | IllegalArgumentException | SQLException e) {
+      catch(IllegalArgumentException | SQLException e) {
         throw new RuntimeException("Exception during conversion to " + type + ": " + input, e);
       }
     }
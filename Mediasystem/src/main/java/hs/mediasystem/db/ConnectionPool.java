@@ -1,11 +1,19 @@
 package hs.mediasystem.db;
 
+import hs.mediasystem.util.MetricsRegistry;
+import hs.mediasystem.util.MetricsRegistry.Counter;
+import hs.mediasystem.util.MetricsRegistry.Histogram;
+import hs.mediasystem.util.SimpleMetricsRegistry;
+
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
-import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.Iterator;
-import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 
@@ -15,10 +23,31 @@ import javax.sql.ConnectionPoolDataSource;
 import javax.sql.PooledConnection;
 
 /**
- * JDBC connection pool for use with ConnectionPoolDataSource objects.
+ * JDBC connection pool for use with ConnectionPoolDataSource objects.<p>
+ *
+ * Idle connections are kept in a concurrent deque, most recently returned first, so
+ * borrowing and returning a connection does not require a lock on the pool.  Idle
+ * connections are only validated before being handed out when they have been idle
+ * longer than the validation threshold.  Connections which have been idle longer
+ * than the maximum idle time are closed by a background reaper.<p>
+ *
+ * The pool records the time spent waiting for a connection, the number of active
+ * and idle connections, time-outs and validation failures in a {@link MetricsRegistry}
+ * under names starting with <code>db.pool.</code>.
  */
 public class ConnectionPool implements AutoCloseable {
-  private final Queue<TimedPooledConnection> connections = new ArrayDeque<>();
+  private static final long DEFAULT_VALIDATION_THRESHOLD_MILLIS = 5 * 1000L;
+  private static final long DEFAULT_MAX_IDLE_MILLIS = 300 * 1000L;
+
+  private static final ScheduledExecutorService REAPER = Executors.newSingleThreadScheduledExecutor(r -> {
+    Thread thread = new Thread(r, "ConnectionPool-Reaper");
+
+    thread.setDaemon(true);
+
+    return thread;
+  });
+
+  private final Deque<IdlePooledConnection> idleConnections = new ConcurrentLinkedDeque<>();
   private final ConnectionEventListener poolConnectionEventListener = new ConnectionEventListener() {
     @Override
     public void connectionClosed(ConnectionEvent event) {
@@ -35,60 +64,37 @@ public class ConnectionPool implements AutoCloseable {
   private final Semaphore semaphore;
   private final int maxConnections;
   private final int timeOutMillis;
+  private final long validationThresholdMillis;
+  private final long maxIdleMillis;
+  private final ScheduledFuture<?> reaperFuture;
+
+  private final Histogram borrowWaitMicros;
+  private final Counter timeOuts;
+  private final Counter validationFailures;
+  private final Counter connectionsCreated;
 
-  private boolean useFallBackValidTest;
-  private boolean isClosed;
+  private volatile boolean useFallBackValidTest;
+  private volatile boolean isClosed;
 
-  private static class TimedPooledConnection {
+  private static class IdlePooledConnection {
     private final PooledConnection pooledConnection;
-    private final long creationTime;
+    private final long idleSince;
 
-    public TimedPooledConnection(PooledConnection pooledConnection) {
+    public IdlePooledConnection(PooledConnection pooledConnection) {
       this.pooledConnection = pooledConnection;
-      this.creationTime = System.currentTimeMillis();
-    }
-
-    public boolean hasExpired() {
-      return creationTime + 300 * 1000L < System.currentTimeMillis();
+      this.idleSince = System.currentTimeMillis();
     }
 
-    public void close() throws SQLException {
-      pooledConnection.close();
+    public boolean hasBeenIdleLongerThan(long millis, long now) {
+      return idleSince + millis < now;
     }
 
-    @Override
-    public boolean equals(Object o) {
-      if(this == o) {
-        return true;
-      }
-      if(o == null || getClass() != o.getClass()) {
-        return false;
+    public void close() {
+      try {
+        pooledConnection.close();
       }
-
-      return pooledConnection.equals(((TimedPooledConnection)o).pooledConnection);
-    }
-
-    @Override
-    public int hashCode() {
-      return pooledConnection.hashCode();
-    }
-  }
-
-  public synchronized void closeIdleConnections() {
-    Iterator<TimedPooledConnection> iterator = connections.iterator();
-
-    while(iterator.hasNext()) {
-      TimedPooledConnection connection = iterator.next();
-
-      if(connection.hasExpired()) {
-        iterator.remove();
-
-        try {
-          connection.close();
-        }
-        catch(SQLException e) {
-          // Not interested
-        }
+      catch(SQLException e) {
+        System.out.println("[FINE] ConnectionPool.closeConnection() - exception while closing connection: " + e);
       }
     }
   }
@@ -99,21 +105,66 @@ public class ConnectionPool implements AutoCloseable {
    * @param dataSource data source to obtain pooled connections from
    * @param maxConnections maximum number of connections
    * @param timeOutMillis maximum time to wait for an available connection
+   * @param validationThresholdMillis time a connection must have been idle before it is validated again
+   * @param maxIdleMillis time after which an idle connection is closed
+   * @param metricsRegistry registry to record metrics in
    */
-  public ConnectionPool(ConnectionPoolDataSource dataSource, int maxConnections, int timeOutMillis) {
+  public ConnectionPool(ConnectionPoolDataSource dataSource, int maxConnections, int timeOutMillis, long validationThresholdMillis, long maxIdleMillis, MetricsRegistry metricsRegistry) {
     if(maxConnections < 1) {
       throw new IllegalArgumentException("Parameter 'maxConnections' must be > 0");
     }
+    if(maxIdleMillis < 1) {
+      throw new IllegalArgumentException("Parameter 'maxIdleMillis' must be > 0");
+    }
 
     this.dataSource = dataSource;
     this.maxConnections = maxConnections;
     this.timeOutMillis = timeOutMillis;
+    this.validationThresholdMillis = validationThresholdMillis;
+    this.maxIdleMillis = maxIdleMillis;
 
     semaphore = new Semaphore(maxConnections, true);
+
+    borrowWaitMicros = metricsRegistry.histogram("db.pool.borrowWaitMicros");
+    timeOuts = metricsRegistry.counter("db.pool.timeOuts");
+    validationFailures = metricsRegistry.counter("db.pool.validationFailures");
+    connectionsCreated = metricsRegistry.counter("db.pool.connectionsCreated");
+
+    metricsRegistry.gauge("db.pool.active", this::getActiveCount);
+    metricsRegistry.gauge("db.pool.idle", this::getIdleCount);
+
+    long reaperIntervalMillis = Math.max(maxIdleMillis / 4, 10);
+
+    reaperFuture = REAPER.scheduleWithFixedDelay(this::closeIdleConnections, reaperIntervalMillis, reaperIntervalMillis, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Constructs a ConnectionPool object which validates connections idle for more than
+   * 5 seconds and closes connections idle for more than 5 minutes.
+   *
+   * @param dataSource data source to obtain pooled connections from
+   * @param maxConnections maximum number of connections
+   * @param timeOutMillis maximum time to wait for an available connection
+   * @param metricsRegistry registry to record metrics in
+   */
+  public ConnectionPool(ConnectionPoolDataSource dataSource, int maxConnections, int timeOutMillis, MetricsRegistry metricsRegistry) {
+    this(dataSource, maxConnections, timeOutMillis, DEFAULT_VALIDATION_THRESHOLD_MILLIS, DEFAULT_MAX_IDLE_MILLIS, metricsRegistry);
+  }
+
+  /**
+   * Constructs a ConnectionPool object which validates connections idle for more than
+   * 5 seconds and closes connections idle for more than 5 minutes.
+   *
+   * @param dataSource data source to obtain pooled connections from
+   * @param maxConnections maximum number of connections
+   * @param timeOutMillis maximum time to wait for an available connection
+   */
+  public ConnectionPool(ConnectionPoolDataSource dataSource, int maxConnections, int timeOutMillis) {
+    this(dataSource, maxConnections, timeOutMillis, new SimpleMetricsRegistry());
   }
 
   /**
-   * Constructs a ConnectionPool object with a time-out of 60 seconds.
+   * Constructs a ConnectionPool object with a time-out of 10 seconds.
    *
    * @param dataSource data source to obtain pooled connections from
    * @param maxConnections maximum number of connections
@@ -122,6 +173,27 @@ public class ConnectionPool implements AutoCloseable {
     this(dataSource, maxConnections, 10 * 1000);
   }
 
+  /**
+   * Closes all connections which have been idle longer than the maximum idle time.
+   * This is called periodically by a background reaper.
+   */
+  public void closeIdleConnections() {
+    long now = System.currentTimeMillis();
+    Iterator<IdlePooledConnection> iterator = idleConnections.descendingIterator();  // Oldest first
+
+    while(iterator.hasNext()) {
+      IdlePooledConnection connection = iterator.next();
+
+      if(!connection.hasBeenIdleLongerThan(maxIdleMillis, now)) {
+        break;
+      }
+
+      if(idleConnections.removeLastOccurrence(connection)) {  // Only close it if it was not borrowed concurrently
+        connection.close();
+      }
+    }
+  }
+
   /**
    * Returns a connection from the connection pool. If the maximum number of
    * connections would be exceeded, then this method waits until a connection
@@ -133,16 +205,14 @@ public class ConnectionPool implements AutoCloseable {
    * @return a new Connection object.
    */
   public Connection getConnection() {
-    synchronized(this) {
-      closeIdleConnections();
+    ensureNotClosed();
 
-      if(isClosed) {
-        throw new IllegalStateException("Connection pool is closed");
-      }
-    }
+    long startNanos = System.nanoTime();
 
     try {
       if(!semaphore.tryAcquire(timeOutMillis, TimeUnit.MILLISECONDS)) {
+        timeOuts.increment();
+
         throw new TimeOutException("Unable to acquire connection in " + timeOutMillis + " ms");
       }
     }
@@ -151,7 +221,11 @@ public class ConnectionPool implements AutoCloseable {
     }
 
     try {
-      return getValidConnection();
+      Connection connection = getValidConnection();
+
+      borrowWaitMicros.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos));
+
+      return connection;
     }
     catch(Exception t) {
       semaphore.release();
@@ -159,6 +233,24 @@ public class ConnectionPool implements AutoCloseable {
     }
   }
 
+  /**
+   * Returns the number of connections currently idle in this pool.
+   *
+   * @return the number of idle connections
+   */
+  public int getIdleCount() {
+    return idleConnections.size();
+  }
+
+  /**
+   * Returns the number of connections currently handed out by this pool.
+   *
+   * @return the number of active connections
+   */
+  public int getActiveCount() {
+    return maxConnections - semaphore.availablePermits();
+  }
+
   /**
    * Closes all connections in this connection pool.
    */
@@ -168,23 +260,23 @@ public class ConnectionPool implements AutoCloseable {
       return;
     }
 
-    SQLException firstException = null;
+    isClosed = true;
+    reaperFuture.cancel(false);
 
-    for(TimedPooledConnection connection : connections) {
-      try {
-        connection.close();
-      }
-      catch(SQLException e) {
-        if(firstException == null) {
-          firstException = e;
-        }
-      }
-    }
+    closeAllIdleConnections();
+  }
 
-    isClosed = true;
+  private void closeAllIdleConnections() {
+    IdlePooledConnection connection;
 
-    if(firstException != null) {
-      throw new RuntimeException("Exception while closing connection(s)", firstException);
+    while((connection = idleConnections.pollFirst()) != null) {
+      connection.close();
+    }
+  }
+
+  private void ensureNotClosed() {
+    if(isClosed) {
+      throw new IllegalStateException("Connection pool is closed");
     }
   }
 
@@ -209,43 +301,61 @@ public class ConnectionPool implements AutoCloseable {
     }
   }
 
-  private synchronized Connection getValidConnection() throws SQLException {
-    if(isClosed) {
-      throw new IllegalStateException("Connection pool is closed");
-    }
+  private Connection getValidConnection() throws SQLException {
+    long now = System.currentTimeMillis();
+    IdlePooledConnection idleConnection;
+
+    while((idleConnection = idleConnections.pollFirst()) != null) {
+      if(isClosed) {
+        idleConnection.close();  // pool was closed concurrently, close the connection instead of leaking it
+      }
 
-    for(int tries = 0; tries < 3; tries++) {
-      PooledConnection pooledConnection = connections.isEmpty() ? dataSource.getPooledConnection() : connections.remove().pooledConnection;
+      ensureNotClosed();
+
+      PooledConnection pooledConnection = idleConnection.pooledConnection;
       Connection connection = pooledConnection.getConnection();
 
-      if(isValidConnection(connection)) {
+      if(!idleConnection.hasBeenIdleLongerThan(validationThresholdMillis, now) || isValidConnection(connection)) {
         pooledConnection.addConnectionEventListener(poolConnectionEventListener);
         return connection;
       }
+
+      validationFailures.increment();
+      idleConnection.close();
     }
 
-    throw new SQLException("Could not get a valid connection");
+    ensureNotClosed();
+
+    PooledConnection pooledConnection = dataSource.getPooledConnection();
+
+    connectionsCreated.increment();
+    Connection connection = pooledConnection.getConnection();
+
+    pooledConnection.addConnectionEventListener(poolConnectionEventListener);
+
+    return connection;
   }
 
-  private synchronized void returnConnection(PooledConnection connection, boolean errorOccured) {
+  private void returnConnection(PooledConnection connection, boolean errorOccured) {
     connection.removeConnectionEventListener(poolConnectionEventListener);
 
     if(maxConnections == semaphore.availablePermits()) {
       throw new IllegalStateException("Attempt to return more connections than were used: " + connection);
     }
 
-    semaphore.release();
+    IdlePooledConnection idleConnection = new IdlePooledConnection(connection);
 
     if(errorOccured || isClosed) {
-      try {
-        connection.close();
-      }
-      catch(SQLException e) {
-        System.out.println("[FINE] ConnectionPool.closeConnection() - exception while closing connection: " + e);
-      }
+      idleConnection.close();
     }
     else {
-      connections.add(new TimedPooledConnection(connection));
+      idleConnections.addFirst(idleConnection);
+
+      if(isClosed) {  // Pool was closed concurrently, make sure the connection does not linger
+        closeAllIdleConnections();
+      }
     }
+
+    semaphore.release();
   }
 }
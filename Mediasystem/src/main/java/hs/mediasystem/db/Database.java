@@ -1,8 +1,11 @@
 package hs.mediasystem.db;
 
+import hs.mediasystem.util.MetricsRegistry;
+import hs.mediasystem.util.SimpleMetricsRegistry;
 import hs.mediasystem.util.WeakValueMap;
 
 import java.sql.Connection;
+import java.sql.DatabaseMetaData;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
@@ -13,11 +16,21 @@ import java.sql.Timestamp;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
 import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import javax.inject.Inject;
 import javax.inject.Provider;
@@ -26,16 +39,48 @@ import javax.inject.Singleton;
 @Singleton
 public class Database {
   private static final Logger LOG = Logger.getLogger(Database.class.getName());
+  private static final long SLOW_QUERY_MILLIS = 250;
+  private static final Pattern NAMED_PARAMETER_PATTERN = Pattern.compile(":(\\w+)");
   private static final ThreadLocal<Transaction> CURRENT_TRANSACTION = new ThreadLocal<>();
-  private static final Map<Class<?>, RecordMapper<?>> RECORD_MAPPERS = new HashMap<>();
+  private static final ClassValue<RecordMapper<?>> RECORD_MAPPERS = new ClassValue<RecordMapper<?>>() {
+    @Override
+    protected RecordMapper<?> computeValue(Class<?> type) {
+      return AnnotatedRecordMapper.create(type);
+    }
+  };
+
+  /**
+   * Maximum number of rows sent to the database in a single JDBC batch.
+   */
+  private static final int MAX_BATCH_SIZE = 500;
 
   private static long uniqueIdentifier;
 
   private final Provider<Connection> connectionProvider;
+  private final DatabaseStatementTranslator translator;
+  private final QueryMetrics queryMetrics;
+  private final EntityCache entityCache;  // null when disabled
+
+  private volatile Boolean batchedGeneratedKeysSupported;
 
   @Inject
-  public Database(Provider<Connection> connectionProvider) {
+  public Database(Provider<Connection> connectionProvider, DatabaseStatementTranslator translator, MetricsRegistry metricsRegistry, EntityCache entityCache) {
     this.connectionProvider = connectionProvider;
+    this.translator = translator;
+    this.queryMetrics = new QueryMetrics(metricsRegistry, SLOW_QUERY_MILLIS);
+    this.entityCache = entityCache;
+  }
+
+  public Database(Provider<Connection> connectionProvider, DatabaseStatementTranslator translator, MetricsRegistry metricsRegistry) {
+    this(connectionProvider, translator, metricsRegistry, null);
+  }
+
+  public Database(Provider<Connection> connectionProvider, MetricsRegistry metricsRegistry) {
+    this(connectionProvider, statement -> statement, metricsRegistry);
+  }
+
+  public Database(Provider<Connection> connectionProvider) {
+    this(connectionProvider, new SimpleMetricsRegistry());
   }
 
   public Transaction beginTransaction() throws DatabaseException {
@@ -77,27 +122,75 @@ public class Database {
     }
   }
 
-  public <T> RecordMapper<T> getRecordMapper(Class<T> cls) {
-    @SuppressWarnings("unchecked")
-    RecordMapper<T> recordMapper = (RecordMapper<T>)RECORD_MAPPERS.get(cls);
+  private static String createInsertSql(String tableName, Set<String> columnNames) {
+    StringBuilder fields = new StringBuilder();
+    StringBuilder values = new StringBuilder();
 
-    if(recordMapper == null) {
-      recordMapper = AnnotatedRecordMapper.create(cls);
+    for(String columnName : columnNames) {
+      if(fields.length() > 0) {
+        fields.append(",");
+        values.append(",");
+      }
 
-      RECORD_MAPPERS.put(cls, recordMapper);
+      fields.append(columnName);
+      values.append("?");
     }
 
-    return recordMapper;
+    return "INSERT INTO " + tableName + " (" + fields.toString() + ") VALUES (" + values.toString() + ")";
+  }
+
+  private static String createUpdateSql(String tableName, Set<String> columnNames, String whereCondition) {
+    StringBuilder set = new StringBuilder();
+
+    for(String columnName : columnNames) {
+      if(set.length() > 0) {
+        set.append(",");
+      }
+
+      set.append(columnName);
+      set.append("=?");
+    }
+
+    return "UPDATE " + tableName + " SET " + set.toString() + " WHERE " + whereCondition;
+  }
+
+  /**
+   * Returns whether the database returns a generated key for every row of a batched
+   * insert.  Only drivers which are known to do so are allowed; Derby for example only
+   * returns the key of the last row of a batch, and PostgreSQL drivers before 42 are
+   * not verified.
+   */
+  private boolean isBatchedGeneratedKeysSupported(Connection connection) throws SQLException {
+    if(batchedGeneratedKeysSupported == null) {
+      DatabaseMetaData metaData = connection.getMetaData();
+
+      batchedGeneratedKeysSupported = metaData.getDatabaseProductName().equals("PostgreSQL") && metaData.getDriverMajorVersion() >= 42;
+    }
+
+    return batchedGeneratedKeysSupported;
+  }
+
+  @SuppressWarnings("unchecked")
+  public <T> RecordMapper<T> getRecordMapper(Class<T> cls) {
+    return (RecordMapper<T>)RECORD_MAPPERS.get(cls);
+  }
+
+  private interface RowReader<T> {
+    T read(ResultSet rs) throws SQLException;
   }
 
   public class Transaction implements AutoCloseable {
     private final Transaction parent;
-    private final Connection connection;
-    private final Savepoint savepoint;
     private final long id;
     private final boolean readOnly;
 
+    private Connection connection;  // acquired on first use
+    private Savepoint savepoint;
+    private boolean autoCommit;
+
     private final WeakValueMap<String, DatabaseObject> associatedObjects = new WeakValueMap<>();
+    private final List<Cursor> openCursors = new ArrayList<>();
+    private final List<Runnable> cacheInvalidations = new ArrayList<>();
 
     private int activeNestedTransactions;
     private boolean finished;
@@ -107,27 +200,11 @@ public class Database {
       this.readOnly = readOnly;
       this.id = ++uniqueIdentifier;
 
-      try {
-        if(parent == null) {
-          this.connection = connectionProvider.get();
-          this.savepoint = null;
-
-          connection.setAutoCommit(false);
-        }
-        else {
-          this.connection = parent.getConnection();
-          this.savepoint = connection.setSavepoint();
-
-          parent.activeNestedTransactions++;
-        }
-
-        LOG.finer("New Transaction " + this);
-      }
-      catch(SQLException e) {
-        throw new DatabaseException(this, "Exception while creating new transaction", e);
+      if(parent != null) {
+        parent.activeNestedTransactions++;
       }
 
-      assert (this.parent != null && this.savepoint != null) || (this.parent == null && this.savepoint == null);
+      LOG.finer("New Transaction " + this);
     }
 
     public Database getDatabase() {
@@ -138,16 +215,113 @@ public class Database {
       return connectionProvider;
     }
 
-    public Connection getConnection() {
+    /**
+     * Returns the connection used by this transaction, acquiring it first if this
+     * transaction has not executed any statements yet.<p>
+     *
+     * Top level read only transactions run in auto-commit mode, which avoids a commit
+     * when they end.  Nested transactions share the connection of their parent, and
+     * only set a savepoint when they are not read only.
+     *
+     * @return the connection used by this transaction
+     * @throws DatabaseException when a connection could not be acquired
+     */
+    public synchronized Connection getConnection() throws DatabaseException {
+      if(connection == null) {
+        ensureNotFinished();
+
+        try {
+          if(parent == null) {
+            Connection connection = connectionProvider.get();
+
+            try {
+              connection.setAutoCommit(readOnly);
+            }
+            catch(SQLException e) {
+              connection.close();
+              throw e;
+            }
+
+            this.autoCommit = readOnly;
+            this.connection = connection;
+          }
+          else {
+            Connection connection = parent.getConnection();
+
+            if(!readOnly) {
+              parent.disableAutoCommit();
+              this.savepoint = connection.setSavepoint();
+            }
+
+            this.connection = connection;
+          }
+
+          LOG.finer(this + ": acquired connection" + (autoCommit ? " (auto-commit)" : ""));
+        }
+        catch(SQLException e) {
+          throw new DatabaseException(this, "Exception while acquiring connection", e);
+        }
+      }
+
       return connection;
     }
 
+    /**
+     * Switches the top level transaction out of auto-commit mode, which is needed
+     * for savepoints and for cursors which fetch rows in batches.
+     */
+    private synchronized void disableAutoCommit() throws SQLException {
+      if(parent != null) {
+        parent.disableAutoCommit();
+      }
+      else if(autoCommit) {
+        getConnection().setAutoCommit(false);
+        autoCommit = false;
+      }
+    }
+
     private void ensureNotFinished() {
       if(finished) {
         throw new IllegalStateException(this + ": Transaction already ended");
       }
     }
 
+    /**
+     * Returns whether this transaction can use the {@link EntityCache}; only read only
+     * transactions which are not nested in a writable transaction can, as others may
+     * see changes which are not yet committed.
+     */
+    private boolean isCacheable() {
+      return readOnly && (parent == null || parent.isCacheable());
+    }
+
+    /**
+     * Invalidates entries of the {@link EntityCache}, and invalidates them again when
+     * the root transaction ends, so rows which were read by other transactions before
+     * the changes were committed are not cached.
+     */
+    private void invalidateCache(Runnable invalidation) {
+      if(entityCache != null) {
+        invalidation.run();
+        cacheInvalidations.add(invalidation);
+      }
+    }
+
+    private void invalidateCachedTable(String tableName) {
+      invalidateCache(() -> entityCache.invalidateTable(tableName));
+    }
+
+    private <T> void invalidateCachedObject(RecordMapper<T> recordMapper, T obj) {
+      if(recordMapper.isTransient(obj)) {
+        invalidateCachedTable(recordMapper.getTableName());
+      }
+      else {
+        String entityKey = EntityCache.createEntityKey(obj.getClass(), recordMapper.extractIds(obj).values().toArray());
+
+        invalidateCache(() -> entityCache.invalidate(recordMapper.getTableName(), entityKey));
+      }
+    }
+
     private void ensureNotReadOnly() {
       if(readOnly) {
         throw new DatabaseException(this, "Transaction is read only");
@@ -169,14 +343,26 @@ public class Database {
       return associatedObjects.get(createAssociatedObjectId(cls, ids));
     }
 
+    /**
+     * Returns the total size of the database in bytes.  For PostgreSQL this is the size
+     * of the entire database, for other databases the sum of the sizes reported by
+     * {@link #getTableUsage()}.
+     *
+     * @return the total size of the database in bytes
+     * @throws DatabaseException when a database error occurs
+     */
     public synchronized long getDatabaseSize() throws DatabaseException {
       ensureNotFinished();
 
+      if(!isPostgreSQL()) {
+        return getTableUsage().stream().mapToLong(TableUsage::getTotalBytes).sum();
+      }
+
       String sql = "SELECT pg_database_size('mediasystem')";
 
       LOG.fine(this + ": " + sql);
 
-      try(PreparedStatement statement = connection.prepareStatement(sql);
+      try(PreparedStatement statement = getConnection().prepareStatement(sql);
           ResultSet rs = statement.executeQuery()) {
         if(rs.next()) {
           return rs.getLong(1);
@@ -189,6 +375,51 @@ public class Database {
       }
     }
 
+    /**
+     * Returns the disk space used by each table of the current schema, largest first.
+     * Supported for PostgreSQL and Derby.
+     *
+     * @return a list of {@link TableUsage}s, never null
+     * @throws DatabaseException when a database error occurs
+     */
+    public synchronized List<TableUsage> getTableUsage() throws DatabaseException {
+      ensureNotFinished();
+
+      String sql = isPostgreSQL()
+        ? "SELECT c.relname, pg_table_size(c.oid), pg_indexes_size(c.oid) FROM pg_class c JOIN pg_namespace n ON n.oid = c.relnamespace"
+            + " WHERE c.relkind = 'r' AND n.nspname = current_schema()"
+        : "SELECT t.tablename, SUM(CASE WHEN s.isindex = 0 THEN CAST(s.numallocatedpages + s.numfreepages AS BIGINT) * s.pagesize ELSE 0 END),"
+            + " SUM(CASE WHEN s.isindex = 0 THEN 0 ELSE CAST(s.numallocatedpages + s.numfreepages AS BIGINT) * s.pagesize END)"
+            + " FROM sys.systables t, TABLE(SYSCS_DIAG.SPACE_TABLE(t.tablename)) s WHERE t.tabletype = 'T' GROUP BY t.tablename";
+
+      LOG.fine(this + ": " + sql);
+
+      try(PreparedStatement statement = getConnection().prepareStatement(sql);
+          ResultSet rs = statement.executeQuery()) {
+        List<TableUsage> tableUsages = new ArrayList<>();
+
+        while(rs.next()) {
+          tableUsages.add(new TableUsage(rs.getString(1).toLowerCase(), rs.getLong(2), rs.getLong(3)));
+        }
+
+        tableUsages.sort((a, b) -> Long.compare(b.getTotalBytes(), a.getTotalBytes()));
+
+        return tableUsages;
+      }
+      catch(SQLException e) {
+        throw new DatabaseException(this, sql, e);
+      }
+    }
+
+    private boolean isPostgreSQL() throws DatabaseException {
+      try {
+        return getConnection().getMetaData().getDatabaseProductName().equals("PostgreSQL");
+      }
+      catch(SQLException e) {
+        throw new DatabaseException(this, "Unable to determine database product", e);
+      }
+    }
+
     public Record selectUnique(String fields, String tableName, String whereCondition, Object... parameters) throws DatabaseException {
       List<Record> result = select(fields, tableName, whereCondition, parameters);
 
@@ -196,13 +427,34 @@ public class Database {
     }
 
     public List<Record> select(String fields, String tableName, String whereCondition, Object... parameters) throws DatabaseException {
-      ensureNotFinished();
+      return selectRecords("SELECT " + fields + " FROM " + tableName + (whereCondition == null ? "" : " WHERE " + whereCondition), parameters);
+    }
 
-      String sql = "SELECT " + fields + " FROM " + tableName + (whereCondition == null ? "" : " WHERE " + whereCondition);
+    /**
+     * Selects the first rows in the given order, which, with an index matching the order,
+     * only reads the rows returned instead of all matching rows.
+     *
+     * @param fields the fields to select
+     * @param tableName the table to select from
+     * @param count the maximum number of rows to return
+     * @param orderBy the order of the rows, as in an ORDER BY clause
+     * @param whereCondition a where condition, or <code>null</code> if all rows should be considered
+     * @param parameters the parameters for the where condition
+     * @return a list of at most <code>count</code> Records, never null
+     * @throws DatabaseException when a database error occurs
+     */
+    public List<Record> selectFirst(String fields, String tableName, int count, String orderBy, String whereCondition, Object... parameters) throws DatabaseException {
+      return selectRecords("SELECT " + fields + " FROM " + tableName + (whereCondition == null ? "" : " WHERE " + whereCondition) + " ORDER BY " + orderBy + " FETCH FIRST " + count + " ROWS ONLY", parameters);
+    }
+
+    private List<Record> selectRecords(String sql, Object... parameters) throws DatabaseException {
+      ensureNotFinished();
 
       LOG.fine(this + ": " + sql + ": " + Arrays.toString(parameters));
 
-      try(PreparedStatement statement = connection.prepareStatement(sql)) {
+      long startNanos = System.nanoTime();
+
+      try(PreparedStatement statement = getConnection().prepareStatement(sql)) {
         int parameterIndex = 1;
 
         for(Object o : parameters) {
@@ -229,6 +481,8 @@ public class Database {
             records.add(new Record(values, fieldMapping));
           }
 
+          queryMetrics.record(this, sql, Arrays.asList(parameters), startNanos, records.size());
+
           return records;
         }
       }
@@ -252,7 +506,9 @@ public class Database {
 
       LOG.fine(this + ": " + sql + ": " + Arrays.toString(parameters));
 
-      try(PreparedStatement statement = connection.prepareStatement(sql)) {
+      long startNanos = System.nanoTime();
+
+      try(PreparedStatement statement = getConnection().prepareStatement(sql)) {
         int parameterIndex = 1;
 
         for(Object o : parameters) {
@@ -261,27 +517,21 @@ public class Database {
 
         try(ResultSet rs = statement.executeQuery()) {
           List<T> records = new ArrayList<>();
-          ResultSetMetaData metaData = rs.getMetaData();
+          ResultSetMapper<T> resultSetMapper = recordMapper.getResultSetMapper(rs.getMetaData(), "", false);
 
           while(rs.next()) {
-            Map<String, Object> values = new HashMap<>();
-
-            for(int i = 1; i <= metaData.getColumnCount(); i++) {
-              String columnName = metaData.getColumnName(i).toLowerCase();
-
-              values.put(columnName, rs.getObject(i));
-            }
+            T record = resultSetMapper.map(this, rs);
 
-            T record = cls.newInstance();
-            recordMapper.applyValues(this, record, values);
-            recordMapper.invokeAfterLoadStore(record, Database.this);  // TODO can probably be merged with applyValues now
+            recordMapper.invokeAfterLoadStore(record, Database.this);  // TODO can probably be merged with ResultSetMapper now
 
             records.add(record);
           }
 
+          queryMetrics.record(this, sql, Arrays.asList(parameters), startNanos, records.size());
+
           return records;
         }
-        catch(IllegalAccessException | InstantiationException e) {
+        catch(MappingException e) {
           throw new DatabaseException(this, "Unable to instantiate class: " + cls, e);
         }
       }
@@ -290,6 +540,189 @@ public class Database {
       }
     }
 
+    /**
+     * Selects a single object like {@link #selectUnique(Class, String, Object...)}, but
+     * answers from the {@link EntityCache} of the Database when possible.  The where
+     * condition must select on a unique key, so the result of the query can only change
+     * when the row it found is updated or deleted.<p>
+     *
+     * Each call returns a new object, even when the row was cached.  Without a cache, or
+     * in transactions which are not read only, the database is always queried.
+     *
+     * @param cls the class of the object to select
+     * @param whereCondition a where condition which selects on a unique key
+     * @param parameters the parameters for the where condition
+     * @return the object found, or <code>null</code> if there was none
+     * @throws DatabaseException when a database error occurs
+     */
+    public synchronized <T> T selectUniqueCached(Class<T> cls, String whereCondition, Object... parameters) throws DatabaseException {
+      if(entityCache == null || !isCacheable()) {
+        return selectUnique(cls, whereCondition, parameters);
+      }
+
+      ensureNotFinished();
+
+      RecordMapper<T> recordMapper = getRecordMapper(cls);
+      String queryKey = EntityCache.createQueryKey(cls, whereCondition, parameters);
+      Map<String, Object> values = entityCache.get(queryKey);
+
+      if(values != null) {
+        return createObject(recordMapper, values);
+      }
+
+      String tableName = recordMapper.getTableName();
+      long generation = entityCache.getGeneration(tableName);
+      Record record = selectUnique("*", tableName, whereCondition, parameters);
+
+      if(record == null) {
+        return null;
+      }
+
+      values = record.toMap();
+
+      T object = createObject(recordMapper, values);
+
+      entityCache.put(tableName, generation, queryKey, EntityCache.createEntityKey(cls, recordMapper.extractIds(object).values().toArray()), values);
+
+      return object;
+    }
+
+    private <T> T createObject(RecordMapper<T> recordMapper, Map<String, Object> values) {
+      try {
+        T object = recordMapper.createObject(this, values);
+
+        recordMapper.invokeAfterLoadStore(object, Database.this);
+
+        return object;
+      }
+      catch(MappingException e) {
+        throw new DatabaseException(this, "Unable to instantiate object for table: " + recordMapper.getTableName(), e);
+      }
+    }
+
+    /**
+     * Returns a Stream of Records which reads rows from an open cursor as the Stream is
+     * consumed, instead of loading all rows into memory first.  The Stream must be
+     * closed when no longer needed, and is closed automatically when this transaction
+     * ends.
+     *
+     * @param fields the fields to select
+     * @param tableName the table to select from
+     * @param fetchSize the number of rows to fetch from the database at a time
+     * @param whereCondition a where condition, or <code>null</code> if all rows should be returned
+     * @param parameters the parameters for the where condition
+     * @return a Stream of Records
+     * @throws DatabaseException when a database error occurs
+     */
+    public synchronized Stream<Record> stream(String fields, String tableName, int fetchSize, String whereCondition, Object... parameters) throws DatabaseException {
+      ensureNotFinished();
+
+      String sql = "SELECT " + fields + " FROM " + tableName + (whereCondition == null ? "" : " WHERE " + whereCondition);
+      Cursor cursor = openCursor(sql, fetchSize, parameters);
+
+      try {
+        ResultSetMetaData metaData = cursor.resultSet.getMetaData();
+        int columnCount = metaData.getColumnCount();
+        Map<String, Integer> fieldMapping = new HashMap<>();
+
+        for(int i = 0; i < columnCount; i++) {
+          fieldMapping.put(metaData.getColumnName(i + 1).toLowerCase(), i);
+        }
+
+        return cursor.stream(rs -> {
+          Object[] values = new Object[columnCount];
+
+          for(int i = 1; i <= columnCount; i++) {
+            values[i - 1] = rs.getObject(i);
+          }
+
+          return new Record(values, fieldMapping);
+        });
+      }
+      catch(SQLException e) {
+        cursor.close();
+
+        throw new DatabaseException(this, sql + ": " + Arrays.toString(parameters), e);
+      }
+    }
+
+    /**
+     * Returns a Stream of objects which reads rows from an open cursor as the Stream is
+     * consumed, instead of loading all rows into memory first.  The Stream must be
+     * closed when no longer needed, and is closed automatically when this transaction
+     * ends.
+     *
+     * @param cls the type of objects to select
+     * @param fetchSize the number of rows to fetch from the database at a time
+     * @param whereCondition a where condition, or <code>null</code> if all rows should be returned
+     * @param parameters the parameters for the where condition
+     * @return a Stream of objects
+     * @throws DatabaseException when a database error occurs
+     */
+    public synchronized <T> Stream<T> stream(Class<T> cls, int fetchSize, String whereCondition, Object... parameters) throws DatabaseException {
+      ensureNotFinished();
+
+      RecordMapper<T> recordMapper = getRecordMapper(cls);
+
+      String sql = "SELECT * FROM " + recordMapper.getTableName() + (whereCondition == null ? "" : " WHERE " + whereCondition);
+      Cursor cursor = openCursor(sql, fetchSize, parameters);
+
+      try {
+        ResultSetMapper<T> resultSetMapper = recordMapper.getResultSetMapper(cursor.resultSet.getMetaData(), "", false);
+
+        return cursor.stream(rs -> {
+          T record = resultSetMapper.map(this, rs);
+
+          recordMapper.invokeAfterLoadStore(record, Database.this);
+
+          return record;
+        });
+      }
+      catch(SQLException | MappingException e) {
+        cursor.close();
+
+        throw new DatabaseException(this, sql + ": " + Arrays.toString(parameters), e);
+      }
+    }
+
+    private Cursor openCursor(String sql, int fetchSize, Object... parameters) throws DatabaseException {
+      LOG.fine(this + ": " + sql + ": " + Arrays.toString(parameters) + " (cursor, fetch size " + fetchSize + ")");
+
+      PreparedStatement statement = null;
+      long startNanos = System.nanoTime();
+
+      try {
+        disableAutoCommit();
+
+        statement = getConnection().prepareStatement(sql);
+        statement.setFetchSize(fetchSize);
+
+        int parameterIndex = 1;
+
+        for(Object o : parameters) {
+          statement.setObject(parameterIndex++, o);
+        }
+
+        Cursor cursor = new Cursor(sql, Arrays.asList(parameters), startNanos, statement, statement.executeQuery());
+
+        openCursors.add(cursor);
+
+        return cursor;
+      }
+      catch(SQLException e) {
+        if(statement != null) {
+          try {
+            statement.close();
+          }
+          catch(SQLException e2) {
+            e.addSuppressed(e2);
+          }
+        }
+
+        throw new DatabaseException(this, sql + ": " + Arrays.toString(parameters), e);
+      }
+    }
+
     public synchronized <T> List<Object[]> select(Class<?>[] classes, String[] aliases, String from, String whereCondition, Object... parameters) throws DatabaseException {
       ensureNotFinished();
 
@@ -311,7 +744,9 @@ public class Database {
 
       LOG.fine(this + ": " + sql + ": " + Arrays.toString(parameters));
 
-      try(PreparedStatement statement = connection.prepareStatement(sql)) {
+      long startNanos = System.nanoTime();
+
+      try(PreparedStatement statement = getConnection().prepareStatement(sql)) {
         int parameterIndex = 1;
 
         for(Object o : parameters) {
@@ -321,36 +756,22 @@ public class Database {
         try(ResultSet rs = statement.executeQuery()) {
           List<Object[]> records = new ArrayList<>();
           ResultSetMetaData metaData = rs.getMetaData();
+          RecordMapper<?>[] recordMappers = new RecordMapper<?>[classes.length];
+          ResultSetMapper<?>[] resultSetMappers = new ResultSetMapper<?>[classes.length];
+
+          for(int j = 0; j < classes.length; j++) {
+            recordMappers[j] = getRecordMapper(classes[j]);
+            resultSetMappers[j] = recordMappers[j].getResultSetMapper(metaData, recordMappers[j].getTableName().toLowerCase() + "_", true);
+          }
 
           while(rs.next()) {
             Object[] tuple = new Object[classes.length];
 
             for(int j = 0; j < classes.length; j++) {
-              Class<?> cls = classes[j];
-              RecordMapper<?> recordMapper = getRecordMapper(cls);
-              Map<String, Object> values = new HashMap<>();
-              String prefix = recordMapper.getTableName() + "_";
-              boolean hasNonNullField = false;
+              Object record = resultSetMappers[j].map(this, rs);
 
-              for(int i = 1; i <= metaData.getColumnCount(); i++) {
-                String columnName = metaData.getColumnName(i).toLowerCase();
-
-                if(columnName.startsWith(prefix)) {
-                  Object value = rs.getObject(i);
-
-                  if(value != null) {
-                    hasNonNullField = true;
-                  }
-
-                  values.put(columnName.substring(prefix.length()), value);
-                }
-              }
-
-              if(hasNonNullField) {
-                Object record = cls.newInstance();
-
-                recordMapper.applyValues(this, record, values);
-                recordMapper.invokeAfterLoadStore(record, Database.this);  // TODO can probably be merged with applyValues now
+              if(record != null) {
+                recordMappers[j].invokeAfterLoadStore(record, Database.this);  // TODO can probably be merged with ResultSetMapper now
 
                 tuple[j] = record;
               }
@@ -359,9 +780,11 @@ public class Database {
             records.add(tuple);
           }
 
+          queryMetrics.record(this, sql, Arrays.asList(parameters), startNanos, records.size());
+
           return records;
         }
-        catch(IllegalAccessException | InstantiationException e) {
+        catch(MappingException e) {
           throw new DatabaseException(this, "Unable to instantiate class", e);
         }
       }
@@ -419,50 +842,370 @@ public class Database {
         parameters[parameterIndex++] = ids.get(id);
       }
 
-      update(recordMapper.getTableName(), values, whereCondition, parameters);
+      executeUpdate(recordMapper.getTableName(), values, whereCondition, parameters);
+      invalidateCachedObject(recordMapper, obj);
 
       recordMapper.invokeAfterLoadStore(obj, Database.this);
     }
 
-    public synchronized Object merge(String tableName, int id, Map<String, Object> parameters) throws DatabaseException {
-      if(id == 0) {
-        return insert(tableName, parameters);
+    /**
+     * Inserts the given object, or updates the existing row when a row with the same
+     * values for the given key columns already exists.  The key columns must be
+     * covered by a unique constraint.<p>
+     *
+     * When the database supports it, this is done in a single statement (see
+     * {@link DatabaseStatementTranslator#createUpsert(String, List, List, String)}),
+     * otherwise the row is updated first and inserted when no row was updated.  If the
+     * object has a generated id which is not yet known, it is set afterwards.
+     *
+     * @param obj the object to insert or update
+     * @param keyColumns the columns which identify an existing row
+     * @throws DatabaseException when a database error occurs
+     */
+    public synchronized <T> void upsert(T obj, String... keyColumns) throws DatabaseException {
+      ensureNotFinished();
+      ensureNotReadOnly();
+
+      @SuppressWarnings("unchecked")
+      RecordMapper<T> recordMapper = (RecordMapper<T>)getRecordMapper(obj.getClass());
+
+      String tableName = recordMapper.getTableName();
+      Map<String, Object> values = recordMapper.extractValues(obj);
+      List<String> keys = Arrays.asList(keyColumns);
+
+      if(keys.isEmpty() || !values.keySet().containsAll(keys)) {
+        throw new DatabaseException(this, "Key columns " + keys + " must be a non-empty subset of the columns of " + tableName + ": " + values.keySet());
       }
 
-      update(tableName, id, parameters);
+      Set<String> idColumnNames = recordMapper.extractIds(obj).keySet();
+      String generatedIdColumn = recordMapper.isTransient(obj) && idColumnNames.size() == 1 && !values.containsKey(idColumnNames.iterator().next()) ? idColumnNames.iterator().next() : null;
+      String sql = translator.createUpsert(tableName, keys, new ArrayList<>(values.keySet()), generatedIdColumn);
 
-      return null;
+      Object[] keyValues = new Object[keys.size()];
+      String whereCondition = "";
+
+      for(int i = 0; i < keys.size(); i++) {
+        whereCondition += (i == 0 ? "" : " AND ") + keys.get(i) + " = ?";
+        keyValues[i] = values.get(keys.get(i));
+      }
+
+      Object generatedKey;
+
+      if(sql == null) {
+        generatedKey = executeUpdate(tableName, values, whereCondition, keyValues) == 0 ? insert(tableName, values) : null;
+      }
+      else {
+        generatedKey = executeUpsert(sql, values);
+      }
+
+      if(generatedIdColumn != null) {
+        if(generatedKey == null) {
+          Record record = selectUnique(generatedIdColumn, tableName, whereCondition, keyValues);
+
+          generatedKey = record == null ? null : record.get(generatedIdColumn);
+        }
+
+        if(generatedKey != null) {
+          recordMapper.setGeneratedKey(obj, generatedKey);
+        }
+      }
+
+      invalidateCachedObject(recordMapper, obj);
+      recordMapper.invokeAfterLoadStore(obj, Database.this);
     }
 
-    public synchronized Object insert(String tableName, Map<String, Object> parameters) throws DatabaseException {
+    private Object executeUpsert(String namedSql, Map<String, Object> values) throws DatabaseException {
+      List<Object> parameterValues = new ArrayList<>();
+      StringBuffer sb = new StringBuffer();
+      Matcher matcher = NAMED_PARAMETER_PATTERN.matcher(namedSql);
+
+      while(matcher.find()) {
+        matcher.appendReplacement(sb, "?");
+        parameterValues.add(values.get(matcher.group(1)));
+      }
+
+      matcher.appendTail(sb);
+
+      String sql = sb.toString();
+
+      LOG.fine(this + ": " + sql + ": " + values);
+
+      long startNanos = System.nanoTime();
+
+      try(PreparedStatement statement = getConnection().prepareStatement(sql)) {
+        setParameters(parameterValues, statement);
+
+        Object returnedValue = null;
+
+        if(statement.execute()) {
+          try(ResultSet rs = statement.getResultSet()) {
+            if(rs.next()) {
+              returnedValue = rs.getObject(1);
+            }
+          }
+        }
+
+        queryMetrics.record(this, sql, values, startNanos, 1);
+
+        return returnedValue;
+      }
+      catch(SQLException e) {
+        throw new DatabaseException(this, sql + ": " + values, e);
+      }
+    }
+
+    /**
+     * Inserts or updates all given objects, depending on whether they are transient
+     * or not.  Objects are written in JDBC batches, see {@link #insertAll(Collection)}
+     * and {@link #updateAll(Collection)}.
+     *
+     * @param objects the objects to merge
+     * @throws DatabaseException when a database error occurs
+     */
+    public synchronized <T> void mergeAll(Collection<T> objects) throws DatabaseException {
+      List<T> transientObjects = new ArrayList<>();
+      List<T> persistentObjects = new ArrayList<>();
+
+      for(T obj : objects) {
+        @SuppressWarnings("unchecked")
+        RecordMapper<T> recordMapper = (RecordMapper<T>)getRecordMapper(obj.getClass());
+
+        if(recordMapper.isTransient(obj)) {
+          transientObjects.add(obj);
+        }
+        else {
+          persistentObjects.add(obj);
+        }
+      }
+
+      updateAll(persistentObjects);
+      insertAll(transientObjects);
+    }
+
+    /**
+     * Inserts all given objects.  Objects are grouped by table and set of columns and
+     * each group is sent to the database using JDBC batches.  Generated keys are set on
+     * the objects, and also returned in the same order as the objects were supplied.
+     *
+     * @param objects the objects to insert
+     * @return a list with the generated key for each object, or <code>null</code> for objects without a generated key
+     * @throws DatabaseException when a database error occurs
+     */
+    public synchronized <T> List<Object> insertAll(Collection<T> objects) throws DatabaseException {
       ensureNotFinished();
       ensureNotReadOnly();
 
-      StringBuilder fields = new StringBuilder();
-      StringBuilder values = new StringBuilder();
-      List<Object> parameterValues = new ArrayList<>();
+      List<T> objectList = new ArrayList<>(objects);
+      List<Object> generatedKeys = new ArrayList<>(Arrays.asList(new Object[objectList.size()]));
+      Map<String, List<Integer>> groups = new LinkedHashMap<>();
+      List<Map<String, Object>> valuesList = new ArrayList<>();
+      boolean[] expectsGeneratedKey = new boolean[objectList.size()];
+
+      for(int i = 0; i < objectList.size(); i++) {
+        T obj = objectList.get(i);
+        @SuppressWarnings("unchecked")
+        RecordMapper<T> recordMapper = (RecordMapper<T>)getRecordMapper(obj.getClass());
+        Map<String, Object> values = recordMapper.extractValues(obj);
+        String sql = createInsertSql(recordMapper.getTableName(), values.keySet());
 
-      for(Map.Entry<String, Object> entry : parameters.entrySet()) {
-        if(fields.length() > 0) {
-          fields.append(",");
-          values.append(",");
+        valuesList.add(values);
+        expectsGeneratedKey[i] = recordMapper.isTransient(obj);
+
+        List<Integer> group = groups.get(sql);
+
+        if(group == null) {
+          group = new ArrayList<>();
+          groups.put(sql, group);
         }
 
-        fields.append(entry.getKey());
-        values.append("?");
+        group.add(i);
+      }
+
+      for(Map.Entry<String, List<Integer>> entry : groups.entrySet()) {
+        String sql = entry.getKey();
+        List<Integer> indices = entry.getValue();
+
+        LOG.fine(this + ": " + sql + ": batch of " + indices.size());
+
+        long startNanos = System.nanoTime();
+
+        try(PreparedStatement statement = getConnection().prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+          if(indices.size() > 1 && isBatchedGeneratedKeysSupported(getConnection())) {
+            for(int start = 0; start < indices.size(); start += MAX_BATCH_SIZE) {
+              List<Integer> batch = indices.subList(start, Math.min(indices.size(), start + MAX_BATCH_SIZE));
+
+              for(int index : batch) {
+                setParameters(new ArrayList<>(valuesList.get(index).values()), statement);
+                statement.addBatch();
+              }
+
+              statement.executeBatch();
 
-        parameterValues.add(entry.getValue());
+              int keyCount = 0;
+              int expectedKeyCount = 0;
+
+              try(ResultSet rs = statement.getGeneratedKeys()) {
+                for(int index : batch) {
+                  if(expectsGeneratedKey[index]) {
+                    expectedKeyCount++;
+                  }
+
+                  if(rs != null && rs.next()) {
+                    generatedKeys.set(index, rs.getObject(1));
+                    keyCount++;
+                  }
+                }
+              }
+
+              if(keyCount < expectedKeyCount) {
+                throw new DatabaseException(this, sql + ": driver returned only " + keyCount + " generated keys for a batch of " + batch.size() + " rows");
+              }
+            }
+          }
+          else {
+            for(int index : indices) {
+              setParameters(new ArrayList<>(valuesList.get(index).values()), statement);
+              statement.execute();
+
+              try(ResultSet rs = statement.getGeneratedKeys()) {
+                if(rs != null && rs.next()) {
+                  generatedKeys.set(index, rs.getObject(1));
+                }
+              }
+            }
+          }
+
+          queryMetrics.record(this, sql, "batch of " + indices.size(), startNanos, indices.size());
+        }
+        catch(SQLException e) {
+          throw new DatabaseException(this, sql + ": batch of " + indices.size(), e);
+        }
       }
 
-      String sql = "INSERT INTO " + tableName + " (" + fields.toString() + ") VALUES (" + values.toString() + ")";
+      for(int i = 0; i < objectList.size(); i++) {
+        T obj = objectList.get(i);
+        @SuppressWarnings("unchecked")
+        RecordMapper<T> recordMapper = (RecordMapper<T>)getRecordMapper(obj.getClass());
+
+        if(generatedKeys.get(i) != null) {
+          recordMapper.setGeneratedKey(obj, generatedKeys.get(i));
+        }
+
+        recordMapper.invokeAfterLoadStore(obj, Database.this);
+      }
+
+      return generatedKeys;
+    }
+
+    /**
+     * Updates all given objects.  Objects are grouped by table and set of columns and
+     * each group is sent to the database using JDBC batches.
+     *
+     * @param objects the objects to update
+     * @throws DatabaseException when a database error occurs
+     */
+    public synchronized <T> void updateAll(Collection<T> objects) throws DatabaseException {
+      ensureNotFinished();
+      ensureNotReadOnly();
+
+      Map<String, List<List<Object>>> groups = new LinkedHashMap<>();
+
+      for(T obj : objects) {
+        @SuppressWarnings("unchecked")
+        RecordMapper<T> recordMapper = (RecordMapper<T>)getRecordMapper(obj.getClass());
+
+        Map<String, Object> ids = recordMapper.extractIds(obj);
+        Map<String, Object> values = recordMapper.extractValues(obj);
+
+        if(ids.isEmpty()) {
+          throw new DatabaseException(this, "Cannot update records that donot exist in the database: " + obj);
+        }
+
+        StringBuilder whereCondition = new StringBuilder();
+
+        for(String id : ids.keySet()) {
+          if(whereCondition.length() > 0) {
+            whereCondition.append(" AND ");
+          }
+          whereCondition.append(id).append(" = ?");
+        }
+
+        String sql = createUpdateSql(recordMapper.getTableName(), values.keySet(), whereCondition.toString());
+        List<List<Object>> group = groups.get(sql);
+
+        if(group == null) {
+          group = new ArrayList<>();
+          groups.put(sql, group);
+        }
+
+        List<Object> parameterValues = new ArrayList<>(values.values());
+
+        parameterValues.addAll(ids.values());
+        group.add(parameterValues);
+      }
+
+      for(Map.Entry<String, List<List<Object>>> entry : groups.entrySet()) {
+        String sql = entry.getKey();
+        List<List<Object>> rows = entry.getValue();
+
+        LOG.fine(this + ": " + sql + ": batch of " + rows.size());
+
+        long startNanos = System.nanoTime();
+
+        try(PreparedStatement statement = getConnection().prepareStatement(sql)) {
+          for(int start = 0; start < rows.size(); start += MAX_BATCH_SIZE) {
+            for(List<Object> parameterValues : rows.subList(start, Math.min(rows.size(), start + MAX_BATCH_SIZE))) {
+              setParameters(parameterValues, statement);
+              statement.addBatch();
+            }
+
+            statement.executeBatch();
+          }
+
+          queryMetrics.record(this, sql, "batch of " + rows.size(), startNanos, rows.size());
+        }
+        catch(SQLException e) {
+          throw new DatabaseException(this, sql + ": batch of " + rows.size(), e);
+        }
+      }
+
+      for(T obj : objects) {
+        @SuppressWarnings("unchecked")
+        RecordMapper<T> recordMapper = (RecordMapper<T>)getRecordMapper(obj.getClass());
+
+        invalidateCachedObject(recordMapper, obj);
+        recordMapper.invokeAfterLoadStore(obj, Database.this);
+      }
+    }
+
+    public synchronized Object merge(String tableName, int id, Map<String, Object> parameters) throws DatabaseException {
+      if(id == 0) {
+        return insert(tableName, parameters);
+      }
+
+      update(tableName, id, parameters);
+
+      return null;
+    }
+
+    public synchronized Object insert(String tableName, Map<String, Object> parameters) throws DatabaseException {
+      ensureNotFinished();
+      ensureNotReadOnly();
+
+      List<Object> parameterValues = new ArrayList<>(parameters.values());
+      String sql = createInsertSql(tableName, parameters.keySet());
 
       LOG.fine(this + ": " + sql + ": " + parameters);
 
-      try(PreparedStatement statement = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+      long startNanos = System.nanoTime();
+
+      try(PreparedStatement statement = getConnection().prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
         setParameters(parameterValues, statement);
 
         statement.execute();
 
+        queryMetrics.record(this, sql, parameters, startNanos, 1);
+
         try(ResultSet rs = statement.getGeneratedKeys()) {
           if(rs.next()) {
             return rs.getObject(1);
@@ -481,28 +1224,25 @@ public class Database {
     }
 
     public synchronized int update(String tableName, Map<String, Object> values, String whereCondition, Object... parameters) throws DatabaseException {
-      ensureNotFinished();
-      ensureNotReadOnly();
-
-      StringBuilder set = new StringBuilder();
-      List<Object> parameterValues = new ArrayList<>();
+      int rowCount = executeUpdate(tableName, values, whereCondition, parameters);
 
-      for(Map.Entry<String, Object> entry : values.entrySet()) {
-        if(set.length() > 0) {
-          set.append(",");
-        }
+      invalidateCachedTable(tableName);
 
-        set.append(entry.getKey());
-        set.append("=?");
+      return rowCount;
+    }
 
-        parameterValues.add(entry.getValue());
-      }
+    private int executeUpdate(String tableName, Map<String, Object> values, String whereCondition, Object... parameters) throws DatabaseException {
+      ensureNotFinished();
+      ensureNotReadOnly();
 
-      String sql = "UPDATE " + tableName + " SET " + set.toString() + " WHERE " + whereCondition;
+      List<Object> parameterValues = new ArrayList<>(values.values());
+      String sql = createUpdateSql(tableName, values.keySet(), whereCondition);
 
       LOG.fine(this + ": " + sql + ": " + Arrays.toString(parameters) + ": " + values);
 
-      try(PreparedStatement statement = connection.prepareStatement(sql)) {
+      long startNanos = System.nanoTime();
+
+      try(PreparedStatement statement = getConnection().prepareStatement(sql)) {
         setParameters(parameterValues, statement);
         int parameterIndex = values.size() + 1;
 
@@ -510,7 +1250,11 @@ public class Database {
           statement.setObject(parameterIndex++, o);
         }
 
-        return statement.executeUpdate();
+        int rowCount = statement.executeUpdate();
+
+        queryMetrics.record(this, sql, Arrays.asList(parameters), startNanos, rowCount);
+
+        return rowCount;
       }
       catch(SQLException e) {
         throw new DatabaseException(this, sql + ": " + Arrays.toString(parameters) + ": " + values, e);
@@ -525,14 +1269,21 @@ public class Database {
 
       LOG.fine(this + ": " + sql + ": " + Arrays.toString(parameters));
 
-      try(PreparedStatement statement = connection.prepareStatement(sql)) {
+      long startNanos = System.nanoTime();
+
+      try(PreparedStatement statement = getConnection().prepareStatement(sql)) {
         int parameterIndex = 1;
 
         for(Object o : parameters) {
           statement.setObject(parameterIndex++, o);
         }
 
-        return statement.executeUpdate();
+        int rowCount = statement.executeUpdate();
+
+        queryMetrics.record(this, sql, Arrays.asList(parameters), startNanos, rowCount);
+        invalidateCachedTable(tableName);
+
+        return rowCount;
       }
       catch(SQLException e) {
         throw new DatabaseException(this, sql + ": " + Arrays.toString(parameters), e);
@@ -547,10 +1298,17 @@ public class Database {
 
       LOG.fine(this + ": " + sql + ": [" + parentId + "]");
 
-      try(PreparedStatement statement = connection.prepareStatement(sql)) {
+      long startNanos = System.nanoTime();
+
+      try(PreparedStatement statement = getConnection().prepareStatement(sql)) {
         statement.setLong(1, parentId);
 
-        return statement.executeUpdate();
+        int rowCount = statement.executeUpdate();
+
+        queryMetrics.record(this, sql, "[" + parentId + "]", startNanos, rowCount);
+        invalidateCachedTable(tableName);
+
+        return rowCount;
       }
       catch(SQLException e) {
         throw new DatabaseException(this, sql + ": [" + parentId + "]", e);
@@ -566,37 +1324,49 @@ public class Database {
 
       endTransaction();
 
+      for(Cursor cursor : new ArrayList<>(openCursors)) {
+        LOG.fine(this + ": closing cursor which was left open: " + cursor.sql);
+
+        cursor.close();
+      }
+
       LOG.finer(this + (commit ? ": COMMIT" : ": ROLLBACK"));
 
       try {
         if(parent == null) {
-          try {
-            if(commit) {
-              connection.commit();
-            }
-            else {
-              connection.rollback();
-            }
-          }
-          catch(SQLException e) {
-            throw new DatabaseException(this, "Exception while committing/rolling back connection", e);
-          }
-          finally {
+          if(connection != null) {
             try {
-              connection.close();
+              if(!autoCommit) {
+                if(commit) {
+                  connection.commit();
+                }
+                else {
+                  connection.rollback();
+                }
+              }
             }
             catch(SQLException e) {
-              LOG.fine(this + ": exception while closing connection: " + e);
+              throw new DatabaseException(this, "Exception while committing/rolling back connection", e);
+            }
+            finally {
+              try {
+                connection.close();
+              }
+              catch(SQLException e) {
+                LOG.fine(this + ": exception while closing connection: " + e);
+              }
             }
           }
         }
         else {
           try {
-            if(commit) {
-              connection.releaseSavepoint(savepoint);
-            }
-            else {
-              connection.rollback(savepoint);
+            if(savepoint != null) {
+              if(commit) {
+                connection.releaseSavepoint(savepoint);
+              }
+              else {
+                connection.rollback(savepoint);
+              }
             }
           }
           catch(SQLException e) {
@@ -609,6 +1379,15 @@ public class Database {
       }
       finally {
         finished = true;
+
+        if(parent == null) {
+          for(Runnable invalidation : cacheInvalidations) {
+            invalidation.run();
+          }
+        }
+        else {
+          parent.cacheInvalidations.addAll(cacheInvalidations);
+        }
       }
     }
 
@@ -625,6 +1404,76 @@ public class Database {
       return String.format("T%04d%s", id, parent == null ? "" : " (" + parent + ")");
     }
 
+    /**
+     * An open ResultSet and its statement, which are read as a Stream.  Metrics are
+     * recorded when the cursor is closed, and so include the time the cursor was open.
+     */
+    private class Cursor {
+      private final String sql;
+      private final Object parameters;
+      private final long startNanos;
+      private final PreparedStatement statement;
+      private final ResultSet resultSet;
+
+      private long rowCount;
+
+      Cursor(String sql, Object parameters, long startNanos, PreparedStatement statement, ResultSet resultSet) {
+        this.sql = sql;
+        this.parameters = parameters;
+        this.startNanos = startNanos;
+        this.statement = statement;
+        this.resultSet = resultSet;
+      }
+
+      <T> Stream<T> stream(RowReader<T> rowReader) {
+        Stream<T> stream = StreamSupport.stream(new Spliterators.AbstractSpliterator<T>(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+          @Override
+          public boolean tryAdvance(Consumer<? super T> action) {
+            try {
+              if(!resultSet.next()) {
+                return false;
+              }
+
+              rowCount++;
+              action.accept(rowReader.read(resultSet));
+
+              return true;
+            }
+            catch(SQLException e) {
+              throw new DatabaseException(Transaction.this, sql, e);
+            }
+          }
+        }, false);
+
+        return stream.onClose(this::close);
+      }
+
+      void close() {
+        synchronized(Transaction.this) {
+          if(!openCursors.remove(this)) {
+            return;
+          }
+        }
+
+        queryMetrics.record(Transaction.this, sql, parameters, startNanos, rowCount);
+
+        try {
+          resultSet.close();
+        }
+        catch(SQLException e) {
+          LOG.fine(Transaction.this + ": exception while closing cursor: " + e);
+        }
+        finally {
+          try {
+            statement.close();
+          }
+          catch(SQLException e) {
+            LOG.fine(Transaction.this + ": exception while closing cursor statement: " + e);
+          }
+        }
+      }
+    }
+
     @Override
     public void close() {
       if(!finished) {
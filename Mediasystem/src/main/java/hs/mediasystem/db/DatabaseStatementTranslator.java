@@ -1,5 +1,26 @@
 package hs.mediasystem.db;
 
+import java.util.List;
+
 public interface DatabaseStatementTranslator {
   String translate(String statement);
+
+  /**
+   * Creates a statement which inserts a row into a table, or updates the existing row
+   * when a row with the same values for the key columns already exists.  Values are
+   * referred to with named parameters of the form <code>:column</code>.<p>
+   *
+   * When returnColumn is not <code>null</code> the statement may return the value of
+   * that column for the inserted or updated row as a result set, if the database
+   * supports this.
+   *
+   * @param tableName the table to insert into
+   * @param keyColumns the columns which identify an existing row, must be covered by a unique constraint
+   * @param columns all columns to insert, including the key columns
+   * @param returnColumn a column to return, or <code>null</code>
+   * @return an SQL statement, or <code>null</code> if the database does not support inserting or updating a row in a single statement
+   */
+  default String createUpsert(String tableName, List<String> keyColumns, List<String> columns, String returnColumn) {
+    return null;
+  }
 }
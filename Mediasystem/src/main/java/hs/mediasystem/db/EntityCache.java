@@ -0,0 +1,273 @@
+package hs.mediasystem.db;
+
+import hs.mediasystem.util.MetricsRegistry;
+import hs.mediasystem.util.MetricsRegistry.Counter;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Second-level cache for rows of database objects which is shared by all transactions
+ * of a {@link Database}.  Rows are cached as the stored values of their columns, keyed
+ * by the class of the object and its ids, so each read creates a new object and
+ * objects are never shared between transactions.<p>
+ *
+ * Rows are found through the unique queries which loaded them.  Entries expire after
+ * a fixed time to live and the least recently used entries are evicted when the
+ * cache is full.  The {@link Database} invalidates entries when the rows they were
+ * created from are updated or deleted through it; changes made to the database by
+ * other means are only noticed when entries expire.
+ */
+public class EntityCache {
+  private final int maxEntries;
+  private final long timeToLiveNanos;
+
+  private final Map<String, Entry> entries;
+  private final Map<String, String> entityKeysByQueryKey;
+  private final Map<String, Long> generationsByTableName = new HashMap<>();
+
+  private final Counter hits;
+  private final Counter misses;
+  private final Counter evictions;
+  private final Counter invalidations;
+
+  /**
+   * Constructs a new instance.
+   *
+   * @param maxEntries the maximum number of rows to cache, 0 disables the cache
+   * @param timeToLive the time after which a cached row expires
+   * @param timeUnit the unit of <code>timeToLive</code>
+   * @param metricsRegistry a {@link MetricsRegistry} to record hits, misses, evictions and invalidations in
+   */
+  public EntityCache(int maxEntries, long timeToLive, TimeUnit timeUnit, MetricsRegistry metricsRegistry) {
+    this.maxEntries = maxEntries;
+    this.timeToLiveNanos = timeUnit.toNanos(timeToLive);
+
+    this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+        if(size() > EntityCache.this.maxEntries) {
+          entityKeysByQueryKey.keySet().removeAll(eldest.getValue().queryKeys);
+          evictions.increment();
+
+          return true;
+        }
+
+        return false;
+      }
+    };
+
+    this.entityKeysByQueryKey = new LinkedHashMap<String, String>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+        return size() > EntityCache.this.maxEntries * 2;
+      }
+    };
+
+    this.hits = metricsRegistry.counter("db.entityCache.hits");
+    this.misses = metricsRegistry.counter("db.entityCache.misses");
+    this.evictions = metricsRegistry.counter("db.entityCache.evictions");
+    this.invalidations = metricsRegistry.counter("db.entityCache.invalidations");
+
+    metricsRegistry.gauge("db.entityCache.size", this::size);
+    metricsRegistry.gauge("db.entityCache.hitRatePercent", () -> Math.round(getHitRate() * 100));
+  }
+
+  /**
+   * Creates the key under which the row of an object of the given class and with the
+   * given ids is cached.
+   *
+   * @param cls the class of the object
+   * @param ids the ids of the object
+   * @return a key, never null
+   */
+  static String createEntityKey(Class<?> cls, Object[] ids) {
+    return cls.getName() + ":" + Arrays.deepToString(ids);
+  }
+
+  /**
+   * Creates the key under which the result of a unique query is cached.
+   *
+   * @param cls the class of the object the query returns
+   * @param whereCondition the where condition of the query
+   * @param parameters the parameters of the query
+   * @return a key, never null
+   */
+  static String createQueryKey(Class<?> cls, String whereCondition, Object[] parameters) {
+    return cls.getName() + ":" + whereCondition + ":" + Arrays.deepToString(parameters);
+  }
+
+  /**
+   * Returns a copy of the stored values of the row found by the given query, or
+   * <code>null</code> if the result of the query is not cached or has expired.
+   *
+   * @param queryKey a key created with {@link #createQueryKey(Class, String, Object[])}
+   * @return a copy of the stored values of the row, or <code>null</code> if not cached
+   */
+  synchronized Map<String, Object> get(String queryKey) {
+    String entityKey = entityKeysByQueryKey.get(queryKey);
+    Entry entry = entityKey == null ? null : entries.get(entityKey);
+
+    if(entry != null && System.nanoTime() - entry.creationNanos >= timeToLiveNanos) {
+      remove(entityKey);
+      entry = null;
+    }
+
+    if(entry == null) {
+      misses.increment();
+
+      return null;
+    }
+
+    hits.increment();
+
+    return copy(entry.values);
+  }
+
+  /**
+   * Returns the current generation of the given table.  The generation changes each
+   * time rows of the table are invalidated, and must be obtained before reading rows
+   * which are to be cached with {@link #put(String, long, String, String, Map)}.
+   *
+   * @param tableName a table name
+   * @return the current generation of the table
+   */
+  synchronized long getGeneration(String tableName) {
+    Long generation = generationsByTableName.get(tableName.toLowerCase());
+
+    return generation == null ? 0 : generation;
+  }
+
+  /**
+   * Caches the row found by a query, unless rows of its table were invalidated since
+   * the given generation was obtained.
+   *
+   * @param tableName the table of the row
+   * @param generation the generation of the table before the row was read
+   * @param queryKey a key created with {@link #createQueryKey(Class, String, Object[])}
+   * @param entityKey a key created with {@link #createEntityKey(Class, Object[])}
+   * @param values the stored values of the row
+   */
+  synchronized void put(String tableName, long generation, String queryKey, String entityKey, Map<String, Object> values) {
+    if(maxEntries == 0 || generation != getGeneration(tableName)) {
+      return;
+    }
+
+    Entry entry = entries.get(entityKey);
+
+    if(entry == null) {
+      entry = new Entry(tableName, copy(values));
+      entries.put(entityKey, entry);
+    }
+
+    entry.queryKeys.add(queryKey);
+    entityKeysByQueryKey.put(queryKey, entityKey);
+  }
+
+  /**
+   * Invalidates the cached row of a single object.
+   *
+   * @param tableName the table of the row
+   * @param entityKey a key created with {@link #createEntityKey(Class, Object[])}
+   */
+  synchronized void invalidate(String tableName, String entityKey) {
+    nextGeneration(tableName);
+
+    if(remove(entityKey)) {
+      invalidations.increment();
+    }
+  }
+
+  /**
+   * Invalidates all cached rows of the given table.
+   *
+   * @param tableName a table name
+   */
+  synchronized void invalidateTable(String tableName) {
+    nextGeneration(tableName);
+
+    for(Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator(); iterator.hasNext();) {
+      Entry entry = iterator.next().getValue();
+
+      if(entry.tableName.equalsIgnoreCase(tableName)) {
+        entityKeysByQueryKey.keySet().removeAll(entry.queryKeys);
+        iterator.remove();
+        invalidations.increment();
+      }
+    }
+  }
+
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  public long getHitCount() {
+    return hits.get();
+  }
+
+  public long getMissCount() {
+    return misses.get();
+  }
+
+  /**
+   * Returns the fraction of lookups which were answered from the cache.
+   *
+   * @return the fraction of lookups which were answered from the cache, between 0 and 1
+   */
+  public double getHitRate() {
+    long hitCount = hits.get();
+    long total = hitCount + misses.get();
+
+    return total == 0 ? 0 : (double)hitCount / total;
+  }
+
+  private void nextGeneration(String tableName) {
+    generationsByTableName.put(tableName.toLowerCase(), getGeneration(tableName) + 1);
+  }
+
+  /**
+   * Copies stored values, including the contents of arrays, so cached values cannot be
+   * modified through the objects created from them.
+   */
+  private static Map<String, Object> copy(Map<String, Object> values) {
+    Map<String, Object> copy = new HashMap<>(values);
+
+    for(Map.Entry<String, Object> value : copy.entrySet()) {
+      if(value.getValue() instanceof byte[]) {
+        value.setValue(((byte[])value.getValue()).clone());
+      }
+    }
+
+    return copy;
+  }
+
+  private boolean remove(String entityKey) {
+    Entry entry = entries.remove(entityKey);
+
+    if(entry == null) {
+      return false;
+    }
+
+    entityKeysByQueryKey.keySet().removeAll(entry.queryKeys);
+
+    return true;
+  }
+
+  private static class Entry {
+    final String tableName;
+    final Map<String, Object> values;
+    final Set<String> queryKeys = new HashSet<>();
+    final long creationNanos = System.nanoTime();
+
+    Entry(String tableName, Map<String, Object> values) {
+      this.tableName = tableName;
+      this.values = values;
+    }
+  }
+}
@@ -0,0 +1,74 @@
+package hs.mediasystem.db;
+
+import hs.mediasystem.util.MetricsRegistry;
+import hs.mediasystem.util.MetricsRegistry.Counter;
+import hs.mediasystem.util.MetricsRegistry.Histogram;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Records execution count, latency and rows per SQL template, and logs queries
+ * which took longer than a threshold.<p>
+ *
+ * SQL templates are the SQL statements with their parameters left as placeholders.  To
+ * keep the number of metrics bounded, templates seen after the maximum number of
+ * templates is reached are recorded under a single "other" template.
+ */
+class QueryMetrics {
+  private static final Logger LOG = Logger.getLogger(QueryMetrics.class.getName());
+  private static final int MAX_TEMPLATES = 500;
+
+  private final Map<String, Template> templates = new ConcurrentHashMap<>();
+  private final MetricsRegistry registry;
+  private final long slowQueryNanos;
+  private final Template otherTemplate;
+
+  QueryMetrics(MetricsRegistry registry, long slowQueryMillis) {
+    this.registry = registry;
+    this.slowQueryNanos = TimeUnit.MILLISECONDS.toNanos(slowQueryMillis);
+    this.otherTemplate = new Template("<other>");
+  }
+
+  /**
+   * Records the execution of a statement.
+   *
+   * @param transaction the transaction the statement was executed in, used for logging
+   * @param sql the SQL template
+   * @param parameters a description of the parameters, used for logging
+   * @param startNanos the value of {@link System#nanoTime()} when execution started
+   * @param rows the number of rows returned or affected
+   */
+  void record(Object transaction, String sql, Object parameters, long startNanos, long rows) {
+    long nanos = System.nanoTime() - startNanos;
+    Template template = templates.get(sql);
+
+    if(template == null) {
+      template = templates.size() < MAX_TEMPLATES ? templates.computeIfAbsent(sql, Template::new) : otherTemplate;
+    }
+
+    template.executions.increment();
+    template.latency.record(TimeUnit.NANOSECONDS.toMicros(nanos));
+    template.rows.add(rows);
+
+    if(nanos > slowQueryNanos) {
+      LOG.warning(transaction + ": slow query (" + TimeUnit.NANOSECONDS.toMillis(nanos) + " ms, " + rows + " rows): " + sql + ": " + parameters);
+    }
+  }
+
+  private class Template {
+    final Counter executions;
+    final Histogram latency;
+    final Counter rows;
+
+    Template(String sql) {
+      String prefix = "db.sql[" + sql + "].";
+
+      this.executions = registry.counter(prefix + "executions");
+      this.latency = registry.histogram(prefix + "latencyMicros");
+      this.rows = registry.counter(prefix + "rows");
+    }
+  }
+}
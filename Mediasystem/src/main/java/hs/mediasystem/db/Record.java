@@ -1,6 +1,7 @@
 package hs.mediasystem.db;
 
 import java.util.Date;
+import java.util.HashMap;
 import java.util.Map;
 
 public class Record {
@@ -16,6 +17,21 @@ public class Record {
     return data[fieldMapping.get(fieldName)];
   }
 
+  /**
+   * Returns the values of this record as a map of field name to value.
+   *
+   * @return a new map of field name to value
+   */
+  public Map<String, Object> toMap() {
+    Map<String, Object> map = new HashMap<>();
+
+    for(Map.Entry<String, Integer> entry : fieldMapping.entrySet()) {
+      map.put(entry.getKey(), data[entry.getValue()]);
+    }
+
+    return map;
+  }
+
   public String getString(String fieldName) {
     return (String)get(fieldName);
   }
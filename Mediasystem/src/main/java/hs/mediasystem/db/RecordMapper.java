@@ -2,6 +2,8 @@ package hs.mediasystem.db;
 
 import hs.mediasystem.db.Database.Transaction;
 
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
 import java.util.List;
 import java.util.Map;
 
@@ -13,6 +15,28 @@ public interface RecordMapper<T> {
   Map<String, Object> extractValues(T object);
 
   void applyValues(Transaction transaction, Object object, Map<String, Object> values);
+
+  /**
+   * Creates a new object with the given stored values applied to it.
+   *
+   * @param transaction the current transaction
+   * @param values the stored values by column name
+   * @return a new object, never null
+   */
+  T createObject(Transaction transaction, Map<String, Object> values);
+
+  /**
+   * Returns a mapper which creates objects directly from rows of ResultSets with the
+   * given meta data.  Only the columns which start with the given prefix are used,
+   * with the prefix removed to determine the column name.
+   *
+   * @param metaData the meta data of the ResultSets the mapper will be used for
+   * @param prefix a column prefix, or an empty string if columns have no prefix
+   * @param optional whether the mapper should return <code>null</code> when all mapped columns are <code>null</code>
+   * @return a ResultSetMapper, never null
+   * @throws SQLException when the meta data could not be read
+   */
+  ResultSetMapper<T> getResultSetMapper(ResultSetMetaData metaData, String prefix, boolean optional) throws SQLException;
   void setGeneratedKey(T object, Object key);
 
   void invokeAfterLoadStore(Object object, Database database) throws DatabaseException;
@@ -0,0 +1,24 @@
+package hs.mediasystem.db;
+
+import hs.mediasystem.db.Database.Transaction;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Creates objects directly from rows of a ResultSet with a specific set of columns.
+ *
+ * @param <T> the type of the objects created
+ */
+public interface ResultSetMapper<T> {
+
+  /**
+   * Creates a new object from the current row of the given ResultSet.
+   *
+   * @param transaction the transaction the ResultSet belongs to
+   * @param rs a ResultSet positioned on a row
+   * @return a new object, or <code>null</code> when this mapper was created for optional rows and all mapped columns were <code>null</code>
+   * @throws SQLException when reading from the ResultSet failed
+   */
+  T map(Transaction transaction, ResultSet rs) throws SQLException;
+}
@@ -19,6 +19,7 @@ public class SimpleConnectionPoolDataSource implements ConnectionPoolDataSource
   private String password;
   private String postConnectSql;
   private Properties properties;
+  private int statementCacheSize = SimplePooledConnection.DEFAULT_STATEMENT_CACHE_SIZE;
 
   public SimpleConnectionPoolDataSource(String url) {
     this.url = url;
@@ -39,6 +40,20 @@ public class SimpleConnectionPoolDataSource implements ConnectionPoolDataSource
     this.postConnectSql = postConnectSql;
   }
 
+  /**
+   * Sets the maximum number of prepared statements each pooled connection keeps
+   * open for reuse.
+   *
+   * @param statementCacheSize the maximum number of prepared statements to cache per connection, 0 disables caching
+   */
+  public void setStatementCacheSize(int statementCacheSize) {
+    if(statementCacheSize < 0) {
+      throw new IllegalArgumentException("Parameter 'statementCacheSize' must be >= 0");
+    }
+
+    this.statementCacheSize = statementCacheSize;
+  }
+
   @SuppressWarnings("resource")
   private Connection getConnection() throws SQLException {
     Connection conn = null;
@@ -89,7 +104,7 @@ public class SimpleConnectionPoolDataSource implements ConnectionPoolDataSource
 
   @Override
   public PooledConnection getPooledConnection() throws SQLException {
-    return new SimplePooledConnection(getConnection());
+    return new SimplePooledConnection(getConnection(), statementCacheSize);
   }
 
   @Override
@@ -1,16 +1,72 @@
 package hs.mediasystem.db;
 
+import java.sql.DatabaseMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 public class SimpleDatabaseStatementTranslator implements DatabaseStatementTranslator {
+  public enum UpsertSyntax {
+
+    /**
+     * No single statement upsert support.
+     */
+    NONE,
+
+    /**
+     * <code>INSERT ... ON CONFLICT (...) DO UPDATE SET ...</code>, as supported by PostgreSQL 9.5+.
+     */
+    ON_CONFLICT,
+
+    /**
+     * <code>MERGE INTO ... USING SYSIBM.SYSDUMMY1 ON ...</code>, as supported by Derby 10.11+.
+     */
+    MERGE
+  }
+
   private final Map<String, String> translations;
+  private final UpsertSyntax upsertSyntax;
 
   private static final Pattern VARIABLE_PATTERN = Pattern.compile("\\$\\{(\\w+)\\}");
 
-  public SimpleDatabaseStatementTranslator(Map<String, String> translations) {
+  public SimpleDatabaseStatementTranslator(Map<String, String> translations, UpsertSyntax upsertSyntax) {
     this.translations = translations;
+    this.upsertSyntax = upsertSyntax;
+  }
+
+  public SimpleDatabaseStatementTranslator(Map<String, String> translations) {
+    this(translations, UpsertSyntax.NONE);
+  }
+
+  /**
+   * Determines the upsert syntax supported by the database described by the given meta data.
+   * Databases which are unknown, or older than the versions which introduced the syntax, get
+   * {@link UpsertSyntax#NONE}.
+   *
+   * @param metaData a {@link DatabaseMetaData}, cannot be null
+   * @return an {@link UpsertSyntax}, never null
+   * @throws SQLException when the meta data could not be read
+   */
+  public static UpsertSyntax determineUpsertSyntax(DatabaseMetaData metaData) throws SQLException {
+    String productName = metaData.getDatabaseProductName();
+
+    if("PostgreSQL".equals(productName) && isVersionAtLeast(metaData, 9, 5)) {
+      return UpsertSyntax.ON_CONFLICT;
+    }
+    if("Apache Derby".equals(productName) && isVersionAtLeast(metaData, 10, 11)) {
+      return UpsertSyntax.MERGE;
+    }
+
+    return UpsertSyntax.NONE;
+  }
+
+  private static boolean isVersionAtLeast(DatabaseMetaData metaData, int major, int minor) throws SQLException {
+    int databaseMajor = metaData.getDatabaseMajorVersion();
+
+    return databaseMajor > major || (databaseMajor == major && metaData.getDatabaseMinorVersion() >= minor);
   }
 
   @Override
@@ -26,4 +82,42 @@ public class SimpleDatabaseStatementTranslator implements DatabaseStatementTrans
 
     return sb.toString();
   }
+
+  @Override
+  public String createUpsert(String tableName, List<String> keyColumns, List<String> columns, String returnColumn) {
+    List<String> updateColumns = new ArrayList<>(columns);
+
+    updateColumns.removeAll(keyColumns);
+
+    switch(upsertSyntax) {
+    case ON_CONFLICT:
+      if(updateColumns.isEmpty()) {
+        updateColumns.addAll(keyColumns);  // DO NOTHING would not return the existing row
+      }
+
+      return "INSERT INTO " + tableName + " (" + String.join(", ", columns) + ") VALUES (" + join(columns, ":%s", ", ")
+        + ") ON CONFLICT (" + String.join(", ", keyColumns) + ") DO UPDATE SET " + join(updateColumns, "%s = EXCLUDED.%1$s", ", ")
+        + (returnColumn == null ? "" : " RETURNING " + returnColumn);
+    case MERGE:
+      return "MERGE INTO " + tableName + " USING SYSIBM.SYSDUMMY1 ON " + join(keyColumns, tableName + ".%s = :%1$s", " AND ")
+        + (updateColumns.isEmpty() ? "" : " WHEN MATCHED THEN UPDATE SET " + join(updateColumns, "%s = :%1$s", ", "))
+        + " WHEN NOT MATCHED THEN INSERT (" + String.join(", ", columns) + ") VALUES (" + join(columns, ":%s", ", ") + ")";
+    default:
+      return null;
+    }
+  }
+
+  private static String join(List<String> columns, String format, String separator) {
+    StringBuilder builder = new StringBuilder();
+
+    for(String column : columns) {
+      if(builder.length() > 0) {
+        builder.append(separator);
+      }
+
+      builder.append(String.format(format, column));
+    }
+
+    return builder.toString();
+  }
 }
@@ -27,13 +27,57 @@ import javax.sql.PooledConnection;
 import javax.sql.StatementEventListener;
 
 public class SimplePooledConnection implements PooledConnection {
+  public static final int DEFAULT_STATEMENT_CACHE_SIZE = 32;
+
   private final List<ConnectionEventListener> connectionEventListeners = new ArrayList<>();
   private final Connection connection;
   private final ConnectionWrapper connectionWrapper;
-
-  public SimplePooledConnection(Connection connection) {
+  private final StatementCache statementCache;
+
+  /**
+   * Constructs a new SimplePooledConnection.
+   *
+   * @param connection the physical connection to wrap
+   * @param statementCacheSize the maximum number of prepared statements to cache, 0 disables caching
+   */
+  public SimplePooledConnection(Connection connection, int statementCacheSize) {
     this.connection = connection;
     this.connectionWrapper = new ConnectionWrapper(connection);
+    this.statementCache = new StatementCache(statementCacheSize);
+  }
+
+  public SimplePooledConnection(Connection connection) {
+    this(connection, DEFAULT_STATEMENT_CACHE_SIZE);
+  }
+
+  /**
+   * Returns the number of times a prepared statement could be reused from the
+   * statement cache.
+   *
+   * @return the number of statement cache hits
+   */
+  public long getStatementCacheHits() {
+    return statementCache.getHits();
+  }
+
+  /**
+   * Returns the number of times a prepared statement had to be prepared because it
+   * was not present in the statement cache.
+   *
+   * @return the number of statement cache misses
+   */
+  public long getStatementCacheMisses() {
+    return statementCache.getMisses();
+  }
+
+  /**
+   * Returns the number of prepared statements that were discarded, either because
+   * the statement cache was full or because an error occurred while using them.
+   *
+   * @return the number of statement cache evictions
+   */
+  public long getStatementCacheEvictions() {
+    return statementCache.getEvictions();
   }
 
   @Override
@@ -43,6 +87,7 @@ public class SimplePooledConnection implements PooledConnection {
 
   @Override
   public void close() throws SQLException {
+    statementCache.clear();
     connection.close();
   }
 
@@ -126,7 +171,7 @@ public class SimplePooledConnection implements PooledConnection {
     @Override
     public PreparedStatement prepareStatement(String sql) throws SQLException {
       try {
-        return wrappedConnection.prepareStatement(sql);
+        return statementCache.prepareStatement(wrappedConnection, this, sql, -1);
       }
       catch(SQLException e) {
         notifyError(e);
@@ -467,7 +512,7 @@ public class SimplePooledConnection implements PooledConnection {
     @Override
     public PreparedStatement prepareStatement(String sql, int autoGeneratedKeys) throws SQLException {
       try {
-        return wrappedConnection.prepareStatement(sql, autoGeneratedKeys);
+        return statementCache.prepareStatement(wrappedConnection, this, sql, autoGeneratedKeys);
       }
       catch(SQLException e) {
         notifyError(e);
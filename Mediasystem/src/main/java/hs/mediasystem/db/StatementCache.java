@@ -0,0 +1,257 @@
+package hs.mediasystem.db;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded LRU cache of PreparedStatements for a single physical connection, keyed
+ * by SQL text.<p>
+ *
+ * Statements handed out by this cache are closed logically: closing them clears
+ * their parameters, pending batch and fetch size and returns them to the cache for reuse.  A statement which
+ * caused an SQLException is not returned to the cache but closed physically, as
+ * it may have become invalid (for example after a schema change).<p>
+ *
+ * A statement is removed from the cache while it is in use, so asking for the
+ * same SQL again before the first statement is closed results in a new statement.
+ */
+class StatementCache {
+  private final Map<Key, PreparedStatement> idleStatements;
+  private final int maxSize;
+
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong evictions = new AtomicLong();
+
+  /**
+   * Constructs a new StatementCache.
+   *
+   * @param maxSize the maximum number of idle statements to keep, 0 disables caching
+   */
+  StatementCache(int maxSize) {
+    if(maxSize < 0) {
+      throw new IllegalArgumentException("Parameter 'maxSize' must be >= 0");
+    }
+
+    this.maxSize = maxSize;
+    this.idleStatements = new LinkedHashMap<Key, PreparedStatement>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Key, PreparedStatement> eldest) {
+        if(size() > StatementCache.this.maxSize) {
+          evictions.incrementAndGet();
+          closeQuietly(eldest.getValue());
+
+          return true;
+        }
+
+        return false;
+      }
+    };
+  }
+
+  /**
+   * Returns a cached PreparedStatement for the given SQL, or prepares a new one using
+   * the given connection.
+   *
+   * @param connection the physical connection to prepare statements with
+   * @param proxyConnection the connection to return from {@link PreparedStatement#getConnection()}
+   * @param sql an SQL statement
+   * @param autoGeneratedKeys a flag indicating whether auto-generated keys should be returned, or -1 if not specified
+   * @return a PreparedStatement, never null
+   * @throws SQLException when preparing a new statement failed
+   */
+  PreparedStatement prepareStatement(Connection connection, Connection proxyConnection, String sql, int autoGeneratedKeys) throws SQLException {
+    if(maxSize == 0) {
+      misses.incrementAndGet();
+
+      return autoGeneratedKeys == -1 ? connection.prepareStatement(sql) : connection.prepareStatement(sql, autoGeneratedKeys);
+    }
+
+    Key key = new Key(sql, autoGeneratedKeys);
+    PreparedStatement statement;
+
+    synchronized(idleStatements) {
+      statement = idleStatements.remove(key);
+    }
+
+    if(statement != null) {
+      hits.incrementAndGet();
+    }
+    else {
+      misses.incrementAndGet();
+      statement = autoGeneratedKeys == -1 ? connection.prepareStatement(sql) : connection.prepareStatement(sql, autoGeneratedKeys);
+    }
+
+    return (PreparedStatement)Proxy.newProxyInstance(
+      PreparedStatement.class.getClassLoader(),
+      new Class<?>[] {PreparedStatement.class},
+      new CachedStatementHandler(key, statement, proxyConnection)
+    );
+  }
+
+  /**
+   * Physically closes all idle statements in this cache.
+   */
+  void clear() {
+    List<PreparedStatement> statements;
+
+    synchronized(idleStatements) {
+      statements = new ArrayList<>(idleStatements.values());
+      idleStatements.clear();
+    }
+
+    for(PreparedStatement statement : statements) {
+      closeQuietly(statement);
+    }
+  }
+
+  int size() {
+    synchronized(idleStatements) {
+      return idleStatements.size();
+    }
+  }
+
+  long getHits() {
+    return hits.get();
+  }
+
+  long getMisses() {
+    return misses.get();
+  }
+
+  long getEvictions() {
+    return evictions.get();
+  }
+
+  @Override
+  public String toString() {
+    return "StatementCache[size=" + size() + "/" + maxSize + ", hits=" + hits + ", misses=" + misses + ", evictions=" + evictions + "]";
+  }
+
+  private void release(Key key, PreparedStatement statement, boolean errorOccurred) {
+    if(!errorOccurred) {
+      try {
+        statement.clearParameters();
+        statement.clearBatch();
+        statement.clearWarnings();
+        statement.setFetchSize(0);
+
+        synchronized(idleStatements) {
+          if(!idleStatements.containsKey(key)) {
+            idleStatements.put(key, statement);
+
+            return;
+          }
+        }
+      }
+      catch(SQLException e) {
+        // Statement is not reusable, close it below
+      }
+    }
+    else {
+      evictions.incrementAndGet();
+    }
+
+    closeQuietly(statement);
+  }
+
+  private static void closeQuietly(PreparedStatement statement) {
+    try {
+      statement.close();
+    }
+    catch(SQLException e) {
+      // Not interested
+    }
+  }
+
+  private class CachedStatementHandler implements InvocationHandler {
+    private final Key key;
+    private final PreparedStatement statement;
+    private final Connection proxyConnection;
+
+    private boolean closed;
+    private boolean errorOccurred;
+
+    CachedStatementHandler(Key key, PreparedStatement statement, Connection proxyConnection) {
+      this.key = key;
+      this.statement = statement;
+      this.proxyConnection = proxyConnection;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+      switch(method.getName()) {
+      case "close":
+        if(!closed) {
+          closed = true;
+          release(key, statement, errorOccurred);
+        }
+        return null;
+      case "isClosed":
+        return closed;
+      case "getConnection":
+        return proxyConnection;
+      case "equals":
+        return proxy == args[0];
+      case "hashCode":
+        return System.identityHashCode(proxy);
+      case "toString":
+        return "CachedStatement[" + key.sql + "]";
+      }
+
+      if(closed) {
+        throw new SQLException("Statement is closed");
+      }
+
+      try {
+        return method.invoke(statement, args);
+      }
+      catch(InvocationTargetException e) {
+        if(e.getCause() instanceof SQLException) {
+          errorOccurred = true;
+        }
+
+        throw e.getCause();
+      }
+    }
+  }
+
+  private static class Key {
+    private final String sql;
+    private final int autoGeneratedKeys;
+
+    Key(String sql, int autoGeneratedKeys) {
+      this.sql = sql;
+      this.autoGeneratedKeys = autoGeneratedKeys;
+    }
+
+    @Override
+    public int hashCode() {
+      return sql.hashCode() * 31 + autoGeneratedKeys;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if(this == obj) {
+        return true;
+      }
+      if(obj == null || getClass() != obj.getClass()) {
+        return false;
+      }
+
+      Key other = (Key)obj;
+
+      return autoGeneratedKeys == other.autoGeneratedKeys && sql.equals(other.sql);
+    }
+  }
+}
@@ -0,0 +1,44 @@
+package hs.mediasystem.db;
+
+/**
+ * The disk space used by a single table of a database, as reported by
+ * {@link Database.Transaction#getTableUsage()}.
+ */
+public class TableUsage {
+  private final String tableName;
+  private final long tableBytes;
+  private final long indexBytes;
+
+  public TableUsage(String tableName, long tableBytes, long indexBytes) {
+    this.tableName = tableName;
+    this.tableBytes = tableBytes;
+    this.indexBytes = indexBytes;
+  }
+
+  public String getTableName() {
+    return tableName;
+  }
+
+  /**
+   * Returns the number of bytes used by the rows of the table, including any data
+   * stored out of line, like large binary values.
+   *
+   * @return the number of bytes used by the rows of the table
+   */
+  public long getTableBytes() {
+    return tableBytes;
+  }
+
+  public long getIndexBytes() {
+    return indexBytes;
+  }
+
+  public long getTotalBytes() {
+    return tableBytes + indexBytes;
+  }
+
+  @Override
+  public String toString() {
+    return "TableUsage[" + tableName + ": table=" + tableBytes + ", indices=" + indexBytes + "]";
+  }
+}
@@ -163,6 +163,31 @@ public class EntityContext {
     }
   }
 
+  /**
+   * Dissociates the given keys from the given Entity, so the Entity can no longer be
+   * found with these keys, for example because the file it represents was deleted.  The
+   * Entity remains part of this context, and keeps its keys for any enrichments which
+   * are still in progress.
+   *
+   * @param entity an Entity
+   * @param keys the keys to dissociate
+   */
+  public void dissociate(Entity entity, SourceKey... keys) {
+    try(AutoReentrantLock o = lock.lock()) {
+      if(!keysBySourceByEntity.containsKey(entity)) {
+        throw new IllegalArgumentException("Entity is not part of this context: " + entity);
+      }
+
+      Map<SourceKey, Entity> entitiesByKey = entitiesByKeyByEntityClass.get(entity.getClass());
+
+      for(SourceKey key : keys) {
+        if(entitiesByKey != null && entitiesByKey.get(key) == entity) {
+          entitiesByKey.remove(key);
+        }
+      }
+    }
+  }
+
   public <T extends Entity> void registerPersister(Class<T> entityClass, EntitySource source, Persister<T, ?> persister) {
     try(AutoReentrantLock o = lock.lock()) {
       persistersBySourceByEntityClass
@@ -0,0 +1,262 @@
+package hs.mediasystem.framework;
+
+import hs.mediasystem.util.io.RuntimeIOException;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.Semaphore;
+import java.util.function.BiPredicate;
+import java.util.function.Consumer;
+
+/**
+ * Walks directory trees, listing directories in parallel on a shared {@link ForkJoinPool}.<p>
+ *
+ * The number of directories being listed at the same time is limited per device, as
+ * listing many directories of a local hard disk at once mostly results in seeking,
+ * while a network share benefits from having several requests in flight.  Results are
+ * passed to the caller as soon as they are found, on the threads of the pool.
+ */
+public class DirectoryScanner {
+  private static final Set<String> NETWORK_FILE_STORE_TYPES = new HashSet<>(Arrays.asList(
+    "nfs", "nfs4", "cifs", "smb", "smbfs", "smb2", "smb3", "afpfs", "9p", "fuse.sshfs", "davfs", "webdav"
+  ));
+
+  private static final DirectoryScanner DEFAULT = new DirectoryScanner(8, 2, 4);
+
+  private final ForkJoinPool pool;
+  private final int localConcurrency;
+  private final int networkConcurrency;
+  private final Map<Object, Semaphore> semaphoresByDevice = new HashMap<>();  // guarded by itself
+
+  /**
+   * Returns the DirectoryScanner shared by all scans, which lists at most 2 directories
+   * of a local device, and at most 4 directories of a network device at the same time.
+   *
+   * @return the shared DirectoryScanner, never null
+   */
+  public static DirectoryScanner getDefault() {
+    return DEFAULT;
+  }
+
+  /**
+   * Constructs a new instance.
+   *
+   * @param parallelism the number of threads of the pool
+   * @param localConcurrency the maximum number of directories of a local device to list at the same time
+   * @param networkConcurrency the maximum number of directories of a network device to list at the same time
+   */
+  public DirectoryScanner(int parallelism, int localConcurrency, int networkConcurrency) {
+    this.pool = new ForkJoinPool(parallelism, p -> {
+      ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+
+      thread.setName("DirectoryScanner-" + thread.getPoolIndex());
+      thread.setPriority(Thread.NORM_PRIORITY - 1);
+
+      return thread;
+    }, null, false);
+    this.localConcurrency = localConcurrency;
+    this.networkConcurrency = networkConcurrency;
+  }
+
+  /**
+   * Finds the paths below the given root which match the given filter, passing each
+   * to the given consumer as soon as it is found.  The consumer is called concurrently
+   * from several threads.  Returns when all directories were listed.
+   *
+   * @param root the directory to scan
+   * @param maxDepth the maximum depth, relative to the root, of the paths to find; 1 only finds the direct children of the root
+   * @param filter a {@link BiPredicate} which determines which paths to pass to the consumer
+   * @param consumer a {@link Consumer} for the paths found
+   * @throws RuntimeIOException when a directory could not be listed
+   */
+  public void scan(Path root, int maxDepth, BiPredicate<Path, BasicFileAttributes> filter, Consumer<Path> consumer) {
+    walk(root, maxDepth, (directory, depth) -> {
+      List<Path> subdirectories = new ArrayList<>();
+
+      try(DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+        for(Path path : stream) {
+          BasicFileAttributes attributes = readAttributes(path);
+
+          if(attributes != null) {
+            if(filter.test(path, attributes)) {
+              consumer.accept(path);
+            }
+
+            if(attributes.isDirectory()) {
+              subdirectories.add(path);
+            }
+          }
+        }
+      }
+
+      return subdirectories;
+    });
+  }
+
+  /**
+   * Visits the directories below the given root, starting with the root itself.  Each
+   * directory is visited by a {@link DirectoryVisitor}, which determines the directories
+   * to visit next.  Visits of directories of the same device are limited in concurrency.
+   * Returns when all directories were visited.
+   *
+   * @param root the directory to start with
+   * @param maxDepth the maximum depth, relative to the root, of the paths the visitor is interested in; directories at this depth are not visited
+   * @param visitor a {@link DirectoryVisitor}, which is called concurrently from several threads
+   * @throws RuntimeIOException when a directory could not be visited
+   */
+  public void walk(Path root, int maxDepth, DirectoryVisitor visitor) {
+    pool.invoke(new VisitTask(root, 0, maxDepth, visitor, getSemaphore(root)));
+  }
+
+  /**
+   * Returns the attributes of the given path, following links, or <code>null</code> if
+   * they could not be read, for example because the path is a broken link.
+   *
+   * @param path a path
+   * @return the attributes of the given path, or <code>null</code> if they could not be read
+   */
+  public static BasicFileAttributes readAttributes(Path path) {
+    try {
+      return Files.readAttributes(path, BasicFileAttributes.class);
+    }
+    catch(IOException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Returns whether the given path is on a network file system.  Paths which are not
+   * available, perhaps because a share is not mounted, are considered to be on a network
+   * file system.
+   *
+   * @param path a path
+   * @return <code>true</code> if the given path is on a network file system, otherwise <code>false</code>
+   */
+  public static boolean isOnNetworkFileStore(Path path) {
+    try {
+      return NETWORK_FILE_STORE_TYPES.contains(Files.getFileStore(path).type().toLowerCase());
+    }
+    catch(IOException e) {
+      return true;
+    }
+  }
+
+  private Semaphore getSemaphore(Path root) {
+    Object device;
+    boolean network = isOnNetworkFileStore(root);
+
+    try {
+      device = Files.getFileStore(root);
+    }
+    catch(IOException e) {
+      device = root;  // unavailable, use a separate limit for this root
+    }
+
+    synchronized(semaphoresByDevice) {
+      return semaphoresByDevice.computeIfAbsent(device, k -> new Semaphore(network ? networkConcurrency : localConcurrency));
+    }
+  }
+
+  /**
+   * Visitor of a directory.
+   */
+  public interface DirectoryVisitor {
+
+    /**
+     * Visits a directory, and returns the directories to visit next.
+     *
+     * @param directory the directory to visit
+     * @param depth the depth of the directory relative to the root, 0 for the root itself
+     * @return the directories to visit next, never null
+     * @throws IOException when the directory could not be visited
+     */
+    List<Path> visit(Path directory, int depth) throws IOException;
+  }
+
+  private static class VisitTask extends RecursiveAction {
+    private final Path directory;
+    private final int depth;
+    private final int maxDepth;
+    private final DirectoryVisitor visitor;
+    private final Semaphore semaphore;
+
+    VisitTask(Path directory, int depth, int maxDepth, DirectoryVisitor visitor, Semaphore semaphore) {
+      this.directory = directory;
+      this.depth = depth;
+      this.maxDepth = maxDepth;
+      this.visitor = visitor;
+      this.semaphore = semaphore;
+    }
+
+    @Override
+    protected void compute() {
+      List<Path> subdirectories;
+
+      acquire();
+
+      try {
+        subdirectories = visitor.visit(directory, depth);
+      }
+      catch(IOException e) {
+        throw new RuntimeIOException("Exception while scanning \"" + directory + "\"", e);
+      }
+      finally {
+        semaphore.release();
+      }
+
+      if(depth + 1 < maxDepth && !subdirectories.isEmpty()) {
+        List<VisitTask> tasks = new ArrayList<>();
+
+        for(Path subdirectory : subdirectories) {
+          tasks.add(new VisitTask(subdirectory, depth + 1, maxDepth, visitor, semaphore));
+        }
+
+        invokeAll(tasks);
+      }
+    }
+
+    /**
+     * Acquires a permit, allowing the pool to compensate for the blocked thread.
+     */
+    private void acquire() {
+      try {
+        ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker() {
+          private boolean acquired;
+
+          @Override
+          public boolean block() throws InterruptedException {
+            if(!acquired) {
+              semaphore.acquire();
+              acquired = true;
+            }
+
+            return true;
+          }
+
+          @Override
+          public boolean isReleasable() {
+            return acquired || (acquired = semaphore.tryAcquire());
+          }
+        });
+      }
+      catch(InterruptedException e) {
+        Thread.currentThread().interrupt();
+
+        throw new RuntimeIOException("Interrupted while scanning \"" + directory + "\"", e);
+      }
+    }
+  }
+}
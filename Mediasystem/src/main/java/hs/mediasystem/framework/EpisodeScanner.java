@@ -2,24 +2,17 @@ package hs.mediasystem.framework;
 
 import hs.mediasystem.util.io.RuntimeIOException;
 
-import java.io.IOException;
-import java.nio.file.FileVisitOption;
-import java.nio.file.FileVisitResult;
-import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.SimpleFileVisitor;
-import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Set;
-import java.util.regex.Pattern;
 
 public class EpisodeScanner {
-  private static final Pattern EXTENSION_PATTERN = Pattern.compile("(?i).+\\.(avi|flv|mkv|mov|mp4|mpg|mpeg)");
-  private static final Set<FileVisitOption> FOLLOW_LINKS = new HashSet<FileVisitOption>() {{
-    add(FileVisitOption.FOLLOW_LINKS);
-  }};
+  private static final Set<String> EXTENSIONS = new HashSet<>(Arrays.asList("avi", "flv", "mkv", "mov", "mp4", "mpg", "mpeg"));
 
   private final int maxDepth;
 
@@ -27,25 +20,31 @@ public class EpisodeScanner {
     this.maxDepth = maxDepth;
   }
 
+  /**
+   * Returns whether the given path has the extension of a media file.
+   *
+   * @param path a path
+   * @return <code>true</code> if the given path has the extension of a media file, otherwise <code>false</code>
+   */
+  public static boolean isMediaFile(Path path) {
+    String name = path.getFileName().toString();
+    int dot = name.lastIndexOf('.');
+
+    return dot > 0 && EXTENSIONS.contains(name.substring(dot + 1).toLowerCase(Locale.ROOT));
+  }
+
+  /**
+   * Returns the media files below the given path, using the shared {@link DirectoryScanner}.
+   *
+   * @param scanPath the directory to scan
+   * @return a list of media files, never null
+   * @throws RuntimeIOException when a directory could not be listed
+   */
   public List<Path> scan(Path scanPath) {
-    try {
-      final List<Path> results = new ArrayList<>();
-
-      Files.walkFileTree(scanPath, FOLLOW_LINKS, maxDepth, new SimpleFileVisitor<Path>() {
-        @Override
-        public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
-          if(!attrs.isDirectory() && file.getFileName().toString().matches(EXTENSION_PATTERN.pattern())) {
-            results.add(file);
-          }
-
-          return FileVisitResult.CONTINUE;
-        }
-      });
-
-      return results;
-    }
-    catch(IOException e) {
-      throw new RuntimeIOException("Exception while scanning \"" + scanPath + "\"", e);
-    }
+    List<Path> results = Collections.synchronizedList(new ArrayList<>());
+
+    DirectoryScanner.getDefault().scan(scanPath, maxDepth, (path, attributes) -> !attributes.isDirectory() && isMediaFile(path), results::add);
+
+    return new ArrayList<>(results);
   }
 }
@@ -0,0 +1,116 @@
+package hs.mediasystem.framework;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Caches the items of a {@link MediaRoot}, so a root which is expensive to scan, like
+ * a directory tree on a network share, is only scanned again after its items were
+ * invalidated or have become older than a maximum age.<p>
+ *
+ * Callers requesting the items while they are being scanned wait for the scan to
+ * complete instead of starting another one.<p>
+ *
+ * Items can also be added and removed incrementally, for example when files are
+ * created or deleted, which is reported to the registered {@link ItemsListener}s.
+ *
+ * @param <T> the type of the items
+ */
+public class ItemsCache<T> {
+  private final long maxAgeNanos;
+  private final Supplier<List<T>> loader;
+  private final List<ItemsListener<? super T>> listeners = new CopyOnWriteArrayList<>();
+
+  private List<T> items;  // guarded by this, null when invalid
+  private long loadNanos;  // guarded by this
+
+  /**
+   * Constructs a new instance.
+   *
+   * @param maxAge the maximum age of the items after which they are loaded again
+   * @param unit the unit of maxAge
+   * @param loader a {@link Supplier} which loads the items
+   */
+  public ItemsCache(long maxAge, TimeUnit unit, Supplier<List<T>> loader) {
+    this.maxAgeNanos = unit.toNanos(maxAge);
+    this.loader = loader;
+  }
+
+  /**
+   * Returns the items, loading them first if they were invalidated or have become too
+   * old.  The returned list is a copy which can be freely modified.
+   *
+   * @return the items, never null
+   */
+  public synchronized List<T> get() {
+    if(items == null || System.nanoTime() - loadNanos > maxAgeNanos) {
+      items = new ArrayList<>(loader.get());
+      loadNanos = System.nanoTime();
+    }
+
+    return new ArrayList<>(items);
+  }
+
+  /**
+   * Invalidates the items, so they are loaded again when next requested.
+   */
+  public synchronized void invalidate() {
+    items = null;
+  }
+
+  /**
+   * Adds and removes items, without loading the items again.  When the items were not
+   * loaded yet, or were invalidated, nothing happens as the changes will be picked up
+   * when the items are loaded.  Added items which are already present are ignored.<p>
+   *
+   * The listeners are notified of the changes on the calling thread, if there were any.
+   *
+   * @param addedItems the items to add
+   * @param removalFilter a {@link Predicate} which returns <code>true</code> for items to remove
+   */
+  public void update(List<T> addedItems, Predicate<? super T> removalFilter) {
+    List<T> added = new ArrayList<>();
+    List<T> removed = new ArrayList<>();
+
+    synchronized(this) {
+      if(items == null) {
+        return;
+      }
+
+      for(Iterator<T> iterator = items.iterator(); iterator.hasNext();) {
+        T item = iterator.next();
+
+        if(removalFilter.test(item)) {
+          iterator.remove();
+          removed.add(item);
+        }
+      }
+
+      for(T item : addedItems) {
+        if(!items.contains(item)) {
+          items.add(item);
+          added.add(item);
+        }
+      }
+    }
+
+    if(!added.isEmpty() || !removed.isEmpty()) {
+      for(ItemsListener<? super T> listener : listeners) {
+        listener.itemsChanged(added, removed);
+      }
+    }
+  }
+
+  public void addListener(ItemsListener<? super T> listener) {
+    listeners.add(listener);
+  }
+
+  public void removeListener(ItemsListener<? super T> listener) {
+    listeners.remove(listener);
+  }
+}
@@ -0,0 +1,20 @@
+package hs.mediasystem.framework;
+
+import java.util.List;
+
+/**
+ * Listener which is notified of items being added to or removed from a collection of
+ * items, like the items of a {@link MediaRoot}.
+ *
+ * @param <T> the type of the items
+ */
+public interface ItemsListener<T> {
+
+  /**
+   * Called when items were added or removed.  Either list can be empty, but not both.
+   *
+   * @param addedItems the items which were added, never null
+   * @param removedItems the items which were removed, never null
+   */
+  void itemsChanged(List<? extends T> addedItems, List<? extends T> removedItems);
+}
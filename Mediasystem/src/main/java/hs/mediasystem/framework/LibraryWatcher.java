@@ -0,0 +1,462 @@
+package hs.mediasystem.framework;
+
+import hs.subtitle.DefaultThreadFactory;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.NotDirectoryException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches directory trees containing media for files and directories being created
+ * or deleted, and reports these changes in batches to a {@link Listener}.<p>
+ *
+ * Directories are watched with a {@link WatchService} when possible.  Directories on
+ * network file systems, where changes made by other machines are usually not noticed,
+ * and directories which cannot be watched are polled instead.  When polling, only the
+ * directories of which the last modified time changed are listed again.<p>
+ *
+ * Changes are coalesced: a batch is reported once no further changes were seen for a
+ * quiet period, or when the oldest change in the batch reaches a maximum delay.  A
+ * burst of changes, like a torrent client creating all files of a season, therefore
+ * results in a single batch.  Renames are reported as the deletion of the old path and
+ * the creation of the new path.  When a directory is deleted, everything below it is
+ * reported as deleted as well; when a directory is created, everything below it is
+ * reported as created.<p>
+ *
+ * The listener is called on the thread of the watcher.
+ */
+public class LibraryWatcher {
+  private static final long DEFAULT_QUIET_MILLIS = 5 * 1000;
+  private static final long DEFAULT_MAX_DELAY_MILLIS = 60 * 1000;
+  private static final long DEFAULT_POLL_MILLIS = 60 * 1000;
+
+  private final List<Path> roots;
+  private final int maxDepth;
+  private final long quietMillis;
+  private final long maxDelayMillis;
+  private final long pollMillis;
+  private final boolean pollOnly;
+  private final Listener listener;
+  private final Thread thread;
+
+  /*
+   * Fields below are only accessed by the watcher thread:
+   */
+
+  private final Map<Path, DirectoryState> directories = new HashMap<>();
+  private final Map<WatchKey, Path> watchedDirectories = new HashMap<>();
+  private final Set<Path> dirtyDirectories = new HashSet<>();
+
+  private WatchService watchService;
+  private long firstChangeMillis;
+  private long lastChangeMillis;
+  private long nextPollMillis;
+
+  private volatile boolean closed;
+
+  /**
+   * Constructs a new instance which reports changes after 5 seconds without further
+   * changes, but at most after a minute, and which polls once a minute.
+   *
+   * @param name a name for the watcher thread
+   * @param roots the directories to watch
+   * @param maxDepth the maximum depth, relative to a root, of the paths to report; 1 only reports the direct children of each root
+   * @param listener the {@link Listener} to report changes to
+   */
+  public LibraryWatcher(String name, List<Path> roots, int maxDepth, Listener listener) {
+    this(name, roots, maxDepth, DEFAULT_QUIET_MILLIS, DEFAULT_MAX_DELAY_MILLIS, DEFAULT_POLL_MILLIS, listener);
+  }
+
+  /**
+   * Constructs a new instance.
+   *
+   * @param name a name for the watcher thread
+   * @param roots the directories to watch
+   * @param maxDepth the maximum depth, relative to a root, of the paths to report; 1 only reports the direct children of each root
+   * @param quietMillis the time without further changes after which changes are reported
+   * @param maxDelayMillis the maximum time after which changes are reported, even if changes are still occurring
+   * @param pollMillis the interval at which directories which cannot be watched are polled
+   * @param listener the {@link Listener} to report changes to
+   */
+  public LibraryWatcher(String name, List<Path> roots, int maxDepth, long quietMillis, long maxDelayMillis, long pollMillis, Listener listener) {
+    this(name, roots, maxDepth, quietMillis, maxDelayMillis, pollMillis, false, listener);
+  }
+
+  LibraryWatcher(String name, List<Path> roots, int maxDepth, long quietMillis, long maxDelayMillis, long pollMillis, boolean pollOnly, Listener listener) {
+    if(maxDepth < 1) {
+      throw new IllegalArgumentException("maxDepth must be positive: " + maxDepth);
+    }
+
+    this.roots = new ArrayList<>(roots);
+    this.maxDepth = maxDepth;
+    this.quietMillis = quietMillis;
+    this.maxDelayMillis = maxDelayMillis;
+    this.pollMillis = pollMillis;
+    this.pollOnly = pollOnly;
+    this.listener = listener;
+    this.thread = new DefaultThreadFactory("LibraryWatcher-" + name, Thread.MIN_PRIORITY, true).newThread(this::run);
+  }
+
+  /**
+   * Starts watching the roots.  The current contents of the roots are not reported.
+   */
+  public void start() {
+    thread.start();
+  }
+
+  /**
+   * Stops watching the roots.  Changes which were not reported yet are discarded.
+   */
+  public void close() {
+    closed = true;
+    thread.interrupt();
+  }
+
+  private void run() {
+    try {
+      if(!pollOnly) {
+        try {
+          watchService = FileSystems.getDefault().newWatchService();
+        }
+        catch(IOException | UnsupportedOperationException e) {
+          System.out.println("[WARN] LibraryWatcher.run() - Unable to create watch service, polling instead: " + e);
+        }
+      }
+
+      for(Path root : roots) {
+        addDirectory(root, 0, watchService == null || DirectoryScanner.isOnNetworkFileStore(root), null);
+      }
+
+      nextPollMillis = System.currentTimeMillis() + pollMillis;
+
+      while(!closed) {
+        WatchKey key = waitForChange(computeWaitMillis());
+
+        while(key != null) {
+          processWatchKey(key);
+          key = watchService.poll();
+        }
+
+        long now = System.currentTimeMillis();
+
+        if(now >= nextPollMillis) {
+          pollDirectories();
+          nextPollMillis = now + pollMillis;
+        }
+
+        if(!dirtyDirectories.isEmpty() && (now - lastChangeMillis >= quietMillis || now - firstChangeMillis >= maxDelayMillis)) {
+          reportChanges();
+        }
+      }
+    }
+    catch(InterruptedException e) {
+      // Closed
+    }
+    finally {
+      if(watchService != null) {
+        try {
+          watchService.close();
+        }
+        catch(IOException e) {
+          // Ignore
+        }
+      }
+    }
+  }
+
+  private long computeWaitMillis() {
+    long now = System.currentTimeMillis();
+    long deadline = nextPollMillis;
+
+    if(!dirtyDirectories.isEmpty()) {
+      deadline = Math.min(deadline, Math.min(lastChangeMillis + quietMillis, firstChangeMillis + maxDelayMillis));
+    }
+
+    return Math.max(1, deadline - now);
+  }
+
+  private WatchKey waitForChange(long millis) throws InterruptedException {
+    if(watchService == null) {
+      Thread.sleep(millis);
+
+      return null;
+    }
+
+    return watchService.poll(millis, TimeUnit.MILLISECONDS);
+  }
+
+  private void processWatchKey(WatchKey key) {
+    Path directory = watchedDirectories.get(key);
+
+    if(directory != null) {
+      for(WatchEvent<?> event : key.pollEvents()) {
+        if(event.kind() == StandardWatchEventKinds.OVERFLOW) {
+
+          /*
+           * Events were lost, check all directories below the affected directory:
+           */
+
+          for(Path path : directories.keySet()) {
+            if(path.startsWith(directory)) {
+              markDirty(path);
+            }
+          }
+        }
+        else {
+          markDirty(directory);
+        }
+      }
+
+      if(!key.reset()) {  // directory was deleted or became inaccessible
+        DirectoryState state = directories.get(directory);
+
+        if(state != null) {
+          state.watchKey = null;
+        }
+
+        watchedDirectories.remove(key);
+        markDirty(directory);
+
+        if(directory.getParent() != null && directories.containsKey(directory.getParent())) {
+          markDirty(directory.getParent());
+        }
+      }
+    }
+  }
+
+  private void pollDirectories() {
+    for(Map.Entry<Path, DirectoryState> entry : directories.entrySet()) {
+      DirectoryState state = entry.getValue();
+
+      if(state.polled && !dirtyDirectories.contains(entry.getKey()) && state.lastModifiedMillis != getLastModifiedMillis(entry.getKey())) {  // already dirty directories would otherwise keep extending the quiet period
+        markDirty(entry.getKey());
+      }
+    }
+  }
+
+  private void markDirty(Path directory) {
+    long now = System.currentTimeMillis();
+
+    if(dirtyDirectories.isEmpty()) {
+      firstChangeMillis = now;
+    }
+
+    dirtyDirectories.add(directory);
+    lastChangeMillis = now;
+  }
+
+  private void reportChanges() {
+    Set<Path> createdPaths = new HashSet<>();
+    Set<Path> deletedPaths = new HashSet<>();
+
+    for(Path directory : new ArrayList<>(dirtyDirectories)) {
+      if(directories.containsKey(directory)) {  // may have been removed while synchronizing its parent
+        synchronizeDirectory(directory, createdPaths, deletedPaths);
+      }
+    }
+
+    dirtyDirectories.clear();
+
+    if(!createdPaths.isEmpty() || !deletedPaths.isEmpty()) {
+      System.out.println("[FINE] LibraryWatcher.reportChanges() - Created " + createdPaths.size() + ", deleted " + deletedPaths.size() + " paths below " + roots);
+
+      try {
+        listener.filesChanged(Collections.unmodifiableSet(createdPaths), Collections.unmodifiableSet(deletedPaths));
+      }
+      catch(RuntimeException e) {
+        System.out.println("[WARN] LibraryWatcher.reportChanges() - Exception while reporting changes: " + e);
+      }
+    }
+  }
+
+  /**
+   * Lists the given directory again and determines which children were created or
+   * deleted since it was last listed.
+   */
+  private void synchronizeDirectory(Path directory, Set<Path> createdPaths, Set<Path> deletedPaths) {
+    DirectoryState state = directories.get(directory);
+    long lastModifiedMillis = getLastModifiedMillis(directory);  // determined before listing, so changes made during listing are noticed on the next poll
+    Map<Path, Boolean> children = listDirectory(directory);
+
+    if(children == null) {
+      return;  // keep the old state, the directory may be temporarily unavailable
+    }
+
+    for(Map.Entry<Path, Boolean> entry : state.children.entrySet()) {
+      if(!entry.getValue().equals(children.get(entry.getKey()))) {
+        deletedPaths.add(entry.getKey());
+
+        if(entry.getValue()) {
+          removeDirectory(entry.getKey(), deletedPaths);
+        }
+      }
+    }
+
+    for(Map.Entry<Path, Boolean> entry : children.entrySet()) {
+      if(!entry.getValue().equals(state.children.get(entry.getKey()))) {
+        createdPaths.add(entry.getKey());
+
+        if(entry.getValue() && state.depth + 1 < maxDepth) {
+          addDirectory(entry.getKey(), state.depth + 1, state.polled, createdPaths);
+        }
+      }
+    }
+
+    if(state.watchKey == null && !state.polled && watchService != null) {
+      register(directory, state);  // the directory was (re)created
+    }
+
+    state.children = children;
+    state.lastModifiedMillis = lastModifiedMillis;
+  }
+
+  /**
+   * Starts tracking the given directory and the directories below it.
+   *
+   * @param createdPaths a set to add the contents of the directory to, or <code>null</code> if the contents are not to be reported
+   */
+  private void addDirectory(Path directory, int depth, boolean polled, Set<Path> createdPaths) {
+    DirectoryState state = new DirectoryState(depth, polled);
+
+    state.lastModifiedMillis = getLastModifiedMillis(directory);
+
+    if(!polled) {
+      register(directory, state);  // registered before listing, so no changes are missed
+    }
+
+    Map<Path, Boolean> children = listDirectory(directory);
+
+    state.children = children == null ? new HashMap<>() : children;
+    directories.put(directory, state);
+
+    for(Map.Entry<Path, Boolean> entry : state.children.entrySet()) {
+      if(createdPaths != null) {
+        createdPaths.add(entry.getKey());
+      }
+
+      if(entry.getValue() && depth + 1 < maxDepth) {
+        addDirectory(entry.getKey(), depth + 1, state.polled, createdPaths);
+      }
+    }
+  }
+
+  private void removeDirectory(Path directory, Set<Path> deletedPaths) {
+    DirectoryState state = directories.remove(directory);
+
+    if(state == null) {
+      return;
+    }
+
+    if(state.watchKey != null) {
+      state.watchKey.cancel();
+      watchedDirectories.remove(state.watchKey);
+    }
+
+    for(Map.Entry<Path, Boolean> entry : state.children.entrySet()) {
+      deletedPaths.add(entry.getKey());
+
+      if(entry.getValue()) {
+        removeDirectory(entry.getKey(), deletedPaths);
+      }
+    }
+  }
+
+  private void register(Path directory, DirectoryState state) {
+    try {
+      state.watchKey = directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE);
+      watchedDirectories.put(state.watchKey, directory);
+    }
+    catch(NoSuchFileException e) {
+
+      /*
+       * The directory does not exist (yet), for example because a share is not mounted.  It
+       * is polled until it appears:
+       */
+
+      state.polled = state.depth == 0;
+    }
+    catch(IOException | UnsupportedOperationException e) {
+      System.out.println("[WARN] LibraryWatcher.register() - Unable to watch \"" + directory + "\", polling instead: " + e);
+
+      state.polled = true;
+    }
+  }
+
+  /**
+   * Returns the children of the given directory, mapped to whether they are directories
+   * themselves.  Returns an empty map if the directory does not exist, and <code>null</code>
+   * if it could not be listed.
+   */
+  private static Map<Path, Boolean> listDirectory(Path directory) {
+    Map<Path, Boolean> children = new HashMap<>();
+
+    try(DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+      for(Path path : stream) {
+        children.put(path, Files.isDirectory(path));
+      }
+
+      return children;
+    }
+    catch(NoSuchFileException | NotDirectoryException e) {
+      return children;
+    }
+    catch(IOException e) {
+      System.out.println("[WARN] LibraryWatcher.listDirectory() - Unable to list \"" + directory + "\": " + e);
+
+      return null;
+    }
+  }
+
+  private static long getLastModifiedMillis(Path path) {
+    try {
+      return Files.getLastModifiedTime(path).toMillis();
+    }
+    catch(IOException e) {
+      return -1;
+    }
+  }
+
+  /**
+   * Listener which is notified of created and deleted paths.
+   */
+  public interface Listener {
+
+    /**
+     * Called when paths were created or deleted.  Either set can be empty, but not both.
+     *
+     * @param createdPaths the files and directories which were created, never null
+     * @param deletedPaths the files and directories which were deleted, never null
+     */
+    void filesChanged(Set<Path> createdPaths, Set<Path> deletedPaths);
+  }
+
+  private static class DirectoryState {
+    final int depth;
+
+    boolean polled;
+    long lastModifiedMillis;
+    WatchKey watchKey;
+    Map<Path, Boolean> children;  // mapped to whether the child is a directory
+
+    DirectoryState(int depth, boolean polled) {
+      this.depth = depth;
+      this.polled = polled;
+    }
+  }
+}
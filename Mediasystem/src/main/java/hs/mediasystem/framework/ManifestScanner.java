@@ -0,0 +1,271 @@
+package hs.mediasystem.framework;
+
+import hs.mediasystem.framework.NameDecoder.DecodeResult;
+import hs.mediasystem.framework.ScanManifest.Entry;
+import hs.mediasystem.util.CryptoUtil;
+import hs.mediasystem.util.io.RuntimeIOException;
+import hs.subtitle.DefaultThreadFactory;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * Scans roots for media, keeping a {@link ScanManifest} on disk for each root.<p>
+ *
+ * When a manifest of a root is available, its entries are returned immediately,
+ * without accessing the root, and the root is reconciled with the manifest in the
+ * background.  Reconciling only lists the directories of which the last modified time
+ * changed, and only decodes the names of paths which were not in the manifest, which
+ * on an unchanged library comes down to checking the last modified time of each
+ * directory.  Any differences found are reported to a {@link Listener}, and the
+ * manifest is updated.
+ */
+public class ManifestScanner {
+  private static final Path DEFAULT_DIRECTORY = Paths.get("cache", "scan-manifests");
+  private static final Executor EXECUTOR = Executors.newSingleThreadExecutor(new DefaultThreadFactory("ManifestScanner", Thread.MIN_PRIORITY, true));
+
+  /**
+   * Directories modified this close to the start of the previous scan are listed again,
+   * as the last modified time may not have changed for modifications made during the
+   * scan on file systems with a coarse time resolution.
+   */
+  private static final long TIME_RESOLUTION_MILLIS = 2000;
+
+  private final String name;
+  private final Path directory;
+  private final int maxDepth;
+  private final String decoderVersion;
+  private final Decoder decoder;
+  private final DirectoryScanner directoryScanner;
+  private final Executor executor;
+
+  /**
+   * Constructs a new instance.
+   *
+   * @param name a name which, together with a root, identifies a manifest
+   * @param maxDepth the maximum depth, relative to a root, of the paths to find; 1 only finds the direct children of each root
+   * @param decoderVersion the version of the given decoder; manifests created with a different version are discarded
+   * @param decoder a {@link Decoder} which determines which paths to include and decodes their names
+   */
+  public ManifestScanner(String name, int maxDepth, String decoderVersion, Decoder decoder) {
+    this(name, DEFAULT_DIRECTORY, maxDepth, decoderVersion, decoder, DirectoryScanner.getDefault(), EXECUTOR);
+  }
+
+  ManifestScanner(String name, Path directory, int maxDepth, String decoderVersion, Decoder decoder, DirectoryScanner directoryScanner, Executor executor) {
+    this.name = name;
+    this.directory = directory;
+    this.maxDepth = maxDepth;
+    this.decoderVersion = decoderVersion;
+    this.decoder = decoder;
+    this.directoryScanner = directoryScanner;
+    this.executor = executor;
+  }
+
+  /**
+   * Returns the paths found in the given root.  If a manifest is available, its entries
+   * are returned and the root is reconciled in the background, reporting differences to
+   * the given listener.  Otherwise the root is scanned before returning.
+   *
+   * @param root the root to scan
+   * @param listener a {@link Listener} to report differences found while reconciling to
+   * @return a list of {@link Entry}s, never null
+   * @throws RuntimeIOException when no manifest was available and the root could not be scanned
+   */
+  public List<Entry> scan(Path root, Listener listener) {
+    long startTime = System.currentTimeMillis();
+    Path file = getManifestFile(root);
+    ScanManifest manifest = null;
+
+    try {
+      manifest = ScanManifest.read(file, root, decoderVersion);
+    }
+    catch(IOException e) {
+      System.out.println("[WARN] ManifestScanner.scan() - Unable to read manifest of \"" + root + "\", scanning instead: " + e);
+    }
+
+    if(manifest != null) {
+      ScanManifest previousManifest = manifest;
+
+      System.out.println("[INFO] ManifestScanner.scan() - Read " + manifest.getEntries().size() + " entries of \"" + root + "\" from manifest in " + (System.currentTimeMillis() - startTime) + " ms");
+
+      executor.execute(() -> reconcile(previousManifest, file, listener));
+
+      return manifest.getEntries();
+    }
+
+    manifest = createManifest(root, null);
+
+    System.out.println("[INFO] ManifestScanner.scan() - Scanned " + manifest.getEntries().size() + " entries of \"" + root + "\" in " + (System.currentTimeMillis() - startTime) + " ms");
+
+    write(manifest, file);
+
+    return manifest.getEntries();
+  }
+
+  private void reconcile(ScanManifest previousManifest, Path file, Listener listener) {
+    try {
+      long startTime = System.currentTimeMillis();
+      ScanManifest manifest = createManifest(previousManifest.getRoot(), previousManifest);
+      Map<Path, Entry> previousEntries = new HashMap<>();
+      List<Entry> addedEntries = new ArrayList<>();
+      List<Entry> removedEntries = new ArrayList<>();
+
+      for(Entry entry : previousManifest.getEntries()) {
+        previousEntries.put(entry.getPath(), entry);
+      }
+
+      for(Entry entry : manifest.getEntries()) {
+        if(previousEntries.remove(entry.getPath()) == null) {
+          addedEntries.add(entry);
+        }
+      }
+
+      removedEntries.addAll(previousEntries.values());
+
+      System.out.println("[INFO] ManifestScanner.reconcile() - Reconciled \"" + previousManifest.getRoot() + "\" in " + (System.currentTimeMillis() - startTime) + " ms, added " + addedEntries.size() + ", removed " + removedEntries.size() + " entries");
+
+      write(manifest, file);
+
+      if(!addedEntries.isEmpty() || !removedEntries.isEmpty()) {
+        listener.entriesChanged(addedEntries, removedEntries);
+      }
+    }
+    catch(RuntimeException e) {
+      System.out.println("[WARN] ManifestScanner.reconcile() - Unable to reconcile \"" + previousManifest.getRoot() + "\": " + e);
+    }
+  }
+
+  /**
+   * Scans the given root, only listing the directories which changed since the given
+   * previous manifest was created.  Directories are visited in parallel by the
+   * {@link DirectoryScanner}.
+   *
+   * @param root the root to scan
+   * @param previousManifest a {@link ScanManifest} created by an earlier scan, can be null
+   * @return a new {@link ScanManifest}, never null
+   * @throws RuntimeIOException when the root could not be scanned
+   */
+  ScanManifest createManifest(Path root, ScanManifest previousManifest) {
+    long scanMillis = System.currentTimeMillis();
+    Map<Path, Long> directories = new ConcurrentHashMap<>();
+    Map<Path, Entry> previousEntries = new HashMap<>();
+    Queue<Entry> entries = new ConcurrentLinkedQueue<>();
+
+    if(previousManifest != null) {
+      for(Entry entry : previousManifest.getEntries()) {
+        previousEntries.put(entry.getPath(), entry);
+      }
+    }
+
+    directoryScanner.walk(root, maxDepth, (directory, depth) -> visitDirectory(directory, depth, previousManifest, previousEntries, directories, entries));
+
+    return new ScanManifest(root, decoderVersion, scanMillis, directories, new ArrayList<>(entries));
+  }
+
+  private List<Path> visitDirectory(Path directory, int depth, ScanManifest previousManifest, Map<Path, Entry> previousEntries, Map<Path, Long> directories, Queue<Entry> entries) throws IOException {
+    long lastModifiedMillis = Files.getLastModifiedTime(directory).toMillis();
+    Long previousLastModifiedMillis = previousManifest == null ? null : previousManifest.getDirectories().get(directory);
+    List<Path> subdirectories = new ArrayList<>();
+
+    directories.put(directory, lastModifiedMillis);
+
+    if(previousLastModifiedMillis != null && previousLastModifiedMillis == lastModifiedMillis && lastModifiedMillis < previousManifest.getScanMillis() - TIME_RESOLUTION_MILLIS) {
+
+      /*
+       * Directory did not change, so its children are the same as before; directories below
+       * it may have changed though:
+       */
+
+      entries.addAll(previousManifest.getEntries(directory));
+
+      for(Path subdirectory : previousManifest.getDirectories(directory)) {
+        if(Files.isDirectory(subdirectory)) {  // could have been replaced by a file of the same name without changing the last modified time of the parent on some file systems
+          subdirectories.add(subdirectory);
+        }
+      }
+
+      return subdirectories;
+    }
+
+    try(DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+      for(Path path : stream) {
+        BasicFileAttributes attributes = DirectoryScanner.readAttributes(path);
+
+        if(attributes == null) {
+          continue;  // for example a broken link
+        }
+
+        Entry previousEntry = previousEntries.get(path);
+        DecodeResult decodeResult = previousEntry != null && previousEntry.isDirectory() == attributes.isDirectory() ? previousEntry.getDecodeResult() : decoder.decode(path, attributes, depth + 1);
+
+        if(decodeResult != null) {
+          entries.add(new Entry(path, attributes.isDirectory(), attributes.size(), attributes.lastModifiedTime().toMillis(), decodeResult));
+        }
+
+        if(attributes.isDirectory()) {
+          subdirectories.add(path);
+        }
+      }
+    }
+
+    return subdirectories;
+  }
+
+  private static void write(ScanManifest manifest, Path file) {
+    try {
+      manifest.write(file);
+    }
+    catch(IOException e) {
+      System.out.println("[WARN] ManifestScanner.write() - Unable to write manifest of \"" + manifest.getRoot() + "\": " + e);
+    }
+  }
+
+  private Path getManifestFile(Path root) {
+    return directory.resolve(name + "-" + CryptoUtil.sha256(root.toAbsolutePath().toString()).substring(0, 16) + ".manifest");
+  }
+
+  /**
+   * Determines which paths to include in a manifest, and decodes their names.
+   */
+  public interface Decoder {
+
+    /**
+     * Decodes the name of the given path, if it is to be included.
+     *
+     * @param path a path
+     * @param attributes the attributes of the path
+     * @param depth the depth of the path relative to the root, 1 for the direct children of the root
+     * @return a {@link DecodeResult}, or <code>null</code> if the path is not to be included
+     */
+    DecodeResult decode(Path path, BasicFileAttributes attributes, int depth);
+  }
+
+  /**
+   * Listener which is notified of differences found while reconciling a root with its
+   * manifest.
+   */
+  public interface Listener {
+
+    /**
+     * Called when paths were found which were not in the manifest, or paths in the
+     * manifest were not found.  Either list can be empty, but not both.
+     *
+     * @param addedEntries the {@link Entry}s which were not in the manifest, never null
+     * @param removedEntries the {@link Entry}s in the manifest which were not found, never null
+     */
+    void entriesChanged(List<Entry> addedEntries, List<Entry> removedEntries);
+  }
+}
@@ -47,6 +47,8 @@ public abstract class Media extends Entity {
 
   private final EntityDescriptors entityDescriptors;
 
+  private volatile boolean refreshRequested;
+
   public Media(EntityDescriptors entityDescriptors, MediaItem mediaItem) {
     this.mediaItem.set(mediaItem);
     this.entityDescriptors = entityDescriptors;
@@ -104,11 +106,25 @@ public abstract class Media extends Entity {
   @Expose
   public void refresh(Event event) {
     mediaItem.get().mediaData.get().identifiers.get().clear();
+    refreshRequested = true;
 
     reidentify();
     event.consume();
   }
 
+  /**
+   * Returns whether a refresh was requested since the last call, and resets it.
+   *
+   * @return <code>true</code> if a refresh was requested since the last call, otherwise <code>false</code>
+   */
+  boolean takeRefreshRequest() {
+    boolean requested = refreshRequested;
+
+    refreshRequested = false;
+
+    return requested;
+  }
+
   public EntityDescriptors getEntityDescriptors() {
     return entityDescriptors;
   }
@@ -0,0 +1,138 @@
+package hs.mediasystem.framework;
+
+import hs.mediasystem.dao.Identifier;
+import hs.mediasystem.dao.ItemsDao;
+import hs.mediasystem.dao.MediaData;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+/**
+ * Loads the MediaData, including its identifiers, of all files below a root path
+ * with a single query, so enriching the Media of a large collection does not require
+ * a query per item.<p>
+ *
+ * Preloaded MediaData is handed out only once, and only for a limited time after it
+ * was loaded, after which the database is consulted again.
+ */
+@Singleton
+public class MediaDataPreloader {
+  private static final long MAX_AGE_NANOS = TimeUnit.MINUTES.toNanos(5);
+
+  private final ItemsDao itemsDao;
+  private final Map<String, Snapshot> snapshotsByPrefix = new ConcurrentHashMap<>();
+
+  @Inject
+  public MediaDataPreloader(ItemsDao itemsDao) {
+    this.itemsDao = itemsDao;
+  }
+
+  /**
+   * Loads the MediaData of all files below the given root, replacing any MediaData
+   * preloaded earlier for the same root.  If loading fails, MediaData preloaded earlier
+   * for the same root is discarded, so it is looked up per item instead.
+   *
+   * @param root a root path
+   */
+  public void preload(Path root) {
+    long startNanos = System.nanoTime();
+    String prefix = root.toString().endsWith(File.separator) ? root.toString() : root.toString() + File.separator;
+    Map<Integer, MediaData> mediaDataById = new HashMap<>();
+    Map<Integer, List<Identifier>> identifiersById = new HashMap<>();
+
+    snapshotsByPrefix.remove(prefix);
+
+    for(Object[] tuple : itemsDao.loadFullItems(prefix)) {
+      MediaData mediaData = (MediaData)tuple[0];
+      Identifier identifier = (Identifier)tuple[1];
+
+      mediaDataById.putIfAbsent(mediaData.getId(), mediaData);
+
+      List<Identifier> identifiers = identifiersById.computeIfAbsent(mediaData.getId(), k -> new ArrayList<>());
+
+      if(identifier != null) {
+        identifiers.add(identifier);
+      }
+    }
+
+    Map<String, MediaData> mediaDataByUri = new ConcurrentHashMap<>();
+
+    for(MediaData mediaData : mediaDataById.values()) {
+      mediaData.setIdentifiers(identifiersById.get(mediaData.getId()));
+      mediaDataByUri.put(mediaData.getUri(), mediaData);
+    }
+
+    snapshotsByPrefix.put(prefix, new Snapshot(mediaDataByUri));
+
+    System.out.println("[FINE] MediaDataPreloader.preload() - Preloaded " + mediaDataByUri.size() + " items below \"" + root + "\" in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos) + " ms");
+  }
+
+  /**
+   * Returns whether the given uri is below a root for which MediaData was recently
+   * preloaded and was not taken yet, in which case {@link #take(String)} returns its
+   * MediaData, or <code>null</code> if the database had no MediaData for it.
+   *
+   * @param uri a uri
+   * @return <code>true</code> if the uri is below a recently preloaded root and was not taken yet, otherwise <code>false</code>
+   */
+  public boolean isPreloaded(String uri) {
+    Snapshot snapshot = findSnapshot(uri);
+
+    return snapshot != null && !snapshot.takenUris.contains(uri);
+  }
+
+  /**
+   * Returns the preloaded MediaData for the given uri and removes it, so later calls
+   * return fresh data from the database instead.
+   *
+   * @param uri a uri
+   * @return the preloaded MediaData for the given uri, or <code>null</code> if there was none
+   */
+  public MediaData take(String uri) {
+    Snapshot snapshot = findSnapshot(uri);
+
+    if(snapshot == null) {
+      return null;
+    }
+
+    snapshot.takenUris.add(uri);
+
+    return snapshot.mediaDataByUri.remove(uri);
+  }
+
+  private Snapshot findSnapshot(String uri) {
+    for(Map.Entry<String, Snapshot> entry : snapshotsByPrefix.entrySet()) {
+      Snapshot snapshot = entry.getValue();
+
+      if(uri.startsWith(entry.getKey())) {
+        if(System.nanoTime() - snapshot.creationNanos < MAX_AGE_NANOS) {
+          return snapshot;
+        }
+
+        snapshotsByPrefix.remove(entry.getKey(), snapshot);
+      }
+    }
+
+    return null;
+  }
+
+  private static class Snapshot {
+    final Map<String, MediaData> mediaDataByUri;
+    final Set<String> takenUris = ConcurrentHashMap.newKeySet();
+    final long creationNanos = System.nanoTime();
+
+    Snapshot(Map<String, MediaData> mediaDataByUri) {
+      this.mediaDataByUri = mediaDataByUri;
+    }
+  }
+}
@@ -25,15 +25,19 @@ import javax.inject.Inject;
 public class MediaEnricher implements Enricher<Media, Object> {
   private final DatabaseEntitySource databaseEntitySource;
   private final MediaDataDao mediaDataDao;
+  private final MediaDataPreloader mediaDataPreloader;
   private final Set<MediaIdentifier<?>> mediaItemIdentifiers;
   private final SourceMatcher sourceMatcher;
+  private final NegativeCache negativeCache;
 
   @Inject
-  public MediaEnricher(DatabaseEntitySource databaseEntitySource, MediaDataDao mediaDataDao, Set<MediaIdentifier<?>> mediaItemIdentifiers, SourceMatcher sourceMatcher) {
+  public MediaEnricher(DatabaseEntitySource databaseEntitySource, MediaDataDao mediaDataDao, MediaDataPreloader mediaDataPreloader, Set<MediaIdentifier<?>> mediaItemIdentifiers, SourceMatcher sourceMatcher, NegativeCache negativeCache) {
     this.databaseEntitySource = databaseEntitySource;
     this.mediaDataDao = mediaDataDao;
+    this.mediaDataPreloader = mediaDataPreloader;
     this.mediaItemIdentifiers = mediaItemIdentifiers;
     this.sourceMatcher = sourceMatcher;
+    this.negativeCache = negativeCache;
   }
 
   @Override
@@ -50,7 +54,8 @@ public class MediaEnricher implements Enricher<Media, Object> {
 
   private hs.mediasystem.dao.MediaData fetchMediaData(Media media) {
     MediaItem mediaItem = media.getMediaItem();
-    hs.mediasystem.dao.MediaData mediaData = mediaDataDao.getMediaDataByUri(mediaItem.getUri());
+    String uri = mediaItem.getUri();
+    hs.mediasystem.dao.MediaData mediaData = mediaDataPreloader.isPreloaded(uri) ? mediaDataPreloader.take(uri) : mediaDataDao.getMediaDataByUri(uri);
 
     if(mediaData == null) {
       MediaId mediaId = MediaDataDao.createMediaId(mediaItem.getUri());
@@ -124,16 +129,27 @@ public class MediaEnricher implements Enricher<Media, Object> {
     return currentStage.thenAcceptAsync(newIdentifiers -> finalizeEnrichment(context, media, newIdentifiers), context.getUpdateExecutor());
   }
 
-  private List<Identifier> identify(Media media) {
+  List<Identifier> identify(Media media) {
     MediaData mediaData = media.getMediaItem().mediaData.get();
     List<Identifier> newIdentifiers = new ArrayList<>();
     String mediaType = media.getClass().getSimpleName();
+    boolean refreshRequested = media.takeRefreshRequest();
 
     for(MediaIdentifier<?> mediaIdentifier : mediaItemIdentifiers) {
       if(mediaIdentifier.getMediaType().equals(mediaType)) {
         Identifier identifier = mediaData.findIdentifier(mediaType, mediaIdentifier.getSource());
 
-        if(identifier == null) { // TODO add lastupdated check here!
+        if(identifier == null) {
+          String negativeCacheKey = "identify:" + mediaIdentifier.getSource() + ":" + mediaType + ":" + media.getMediaItem().getUri();
+
+          if(refreshRequested) {
+            negativeCache.clear(negativeCacheKey);
+          }
+          else if(negativeCache.isBackingOff(negativeCacheKey)) {
+            System.out.println("[FINE] " + getClass().getName() + "::identify - " + mediaIdentifier + ": Skipping, identification failed recently: " + media);
+            continue;
+          }
+
           try {
             @SuppressWarnings("unchecked")
             MediaIdentifier<Media> castedMediaItemIdentifier = (MediaIdentifier<Media>)mediaIdentifier;
@@ -142,12 +158,15 @@ public class MediaEnricher implements Enricher<Media, Object> {
           }
           catch(RuntimeException e) {
             System.out.println("[WARN] " + getClass().getName() + "::identify - " + mediaIdentifier + ": Error identifying: " + media + ": " + Throwables.formatAsOneLine(e));
+            continue;  // errors are not remembered, only lookups which found nothing
           }
 
           if(identifier != null) {
             newIdentifiers.add(identifier);
+            negativeCache.clear(negativeCacheKey);
           }
           else {
+            negativeCache.recordFailure(negativeCacheKey);
             System.out.println("[INFO] " + getClass().getName() + "::identify - " + mediaIdentifier + ": Identification failed (not found): " + media);
           }
         }
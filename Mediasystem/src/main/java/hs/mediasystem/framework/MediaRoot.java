@@ -14,4 +14,29 @@ public interface MediaRoot {
   String getRootName();
   List<? extends Media> getItems();
   MediaRoot getParent();
+
+  /**
+   * Invalidates any cached items, so the items are determined again on the next call
+   * of {@link #getItems()}.
+   */
+  default void invalidate() {
+  }
+
+  /**
+   * Adds a listener which is notified when items are added or removed after the items
+   * were determined, for example because files were created or deleted.  The listener
+   * can be called on any thread.
+   *
+   * @param listener an {@link ItemsListener}
+   */
+  default void addItemsListener(ItemsListener<Media> listener) {
+  }
+
+  /**
+   * Removes a listener added with {@link #addItemsListener(ItemsListener)}.
+   *
+   * @param listener an {@link ItemsListener}
+   */
+  default void removeItemsListener(ItemsListener<Media> listener) {
+  }
 }
@@ -0,0 +1,133 @@
+package hs.mediasystem.framework;
+
+import hs.mediasystem.dao.Metadata;
+import hs.mediasystem.db.Database;
+import hs.mediasystem.db.Database.Transaction;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+
+/**
+ * Cache for metadata, like the responses of web services, stored in its own table
+ * separate from images.  Entries are keyed by a hash of their URL, stored deflate
+ * compressed and expire after a fixed time to live.
+ */
+public class MetadataCache implements Cache<byte[]> {
+  private final Database database;
+  private final int timeToLiveSeconds;
+
+  @Inject
+  public MetadataCache(Database database, @Named("MetadataCache.timeToLiveSeconds") int timeToLiveSeconds) {
+    this.database = database;
+    this.timeToLiveSeconds = timeToLiveSeconds;
+  }
+
+  @Override
+  public CacheEntry<byte[]> lookup(String key) {
+    try(Transaction transaction = database.beginReadOnlyTransaction()) {
+      Metadata metadata = transaction.selectUnique(Metadata.class, "urlhash=?", hash(key));
+
+      if(metadata == null || !metadata.getUrl().equals(key) || metadata.getExpiresAt().isBefore(LocalDateTime.now())) {
+        return null;
+      }
+
+      return new CacheEntry<>(decompress(metadata.getData()), metadata.getCreationTime());
+    }
+  }
+
+  @Override
+  public void store(String key, byte[] data) {
+    LocalDateTime now = LocalDateTime.now();
+
+    try(Transaction transaction = database.beginTransaction()) {
+      transaction.upsert(new Metadata(hash(key), key, now, now.plusSeconds(timeToLiveSeconds), compress(data)), "urlhash");
+      transaction.commit();
+    }
+  }
+
+  /**
+   * Removes all expired entries.
+   *
+   * @return the number of entries removed
+   */
+  public int removeExpiredEntries() {
+    try(Transaction transaction = database.beginTransaction()) {
+      int count = transaction.delete("metadata", "expiresat < ?", Timestamp.valueOf(LocalDateTime.now()));
+
+      transaction.commit();
+
+      return count;
+    }
+  }
+
+  static byte[] compress(byte[] data) {
+    Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+
+    try(ByteArrayOutputStream stream = new ByteArrayOutputStream(data.length / 4 + 16)) {
+      byte[] buffer = new byte[8192];
+
+      deflater.setInput(data);
+      deflater.finish();
+
+      while(!deflater.finished()) {
+        stream.write(buffer, 0, deflater.deflate(buffer));
+      }
+
+      return stream.toByteArray();
+    }
+    catch(IOException e) {
+      throw new IllegalStateException(e);
+    }
+    finally {
+      deflater.end();
+    }
+  }
+
+  static byte[] decompress(byte[] data) {
+    Inflater inflater = new Inflater();
+
+    try(ByteArrayOutputStream stream = new ByteArrayOutputStream(data.length * 4)) {
+      byte[] buffer = new byte[8192];
+
+      inflater.setInput(data);
+
+      while(!inflater.finished()) {
+        int count = inflater.inflate(buffer);
+
+        if(count == 0 && !inflater.finished() && (inflater.needsInput() || inflater.needsDictionary())) {
+          throw new IllegalStateException("Corrupt compressed data");
+        }
+
+        stream.write(buffer, 0, count);
+      }
+
+      return stream.toByteArray();
+    }
+    catch(DataFormatException | IOException e) {
+      throw new IllegalStateException("Corrupt compressed data", e);
+    }
+    finally {
+      inflater.end();
+    }
+  }
+
+  private static byte[] hash(String key) {
+    try {
+      return MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+    }
+    catch(NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
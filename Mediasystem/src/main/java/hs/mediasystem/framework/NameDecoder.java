@@ -6,56 +6,61 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.EnumSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 public class NameDecoder {
+
+  /**
+   * Increase when changes are made which cause names to be decoded differently, so
+   * stored results (see {@link ScanManifest}) are decoded again.
+   */
+  private static final int VERSION = 1;
+
   private static final String RELEASE_YEAR = "[0-9]{4}(?=(?:[ ,]|$))";  // match exactly 4 digits, but only if followed by space, comma or EOL
   private static final String IMDB = "\\(([0-9]++)\\)";
 
   private static final String DELIMITER = "((?<=%1$s)|(?=%1$s))";
 
   private static final Pattern INFO = Pattern.compile("(" + RELEASE_YEAR + ")?(?: ?(?:" + IMDB + ")?)?.*");
+  private static final Pattern NAME_PARTS_DELIMITER = Pattern.compile(String.format(DELIMITER, "[- \\(\\)\\[\\]]"));
+  private static final Pattern TITLE_SEPARATOR = Pattern.compile("[- ]");
 
   private static final Set<String> KNOWN_DOUBLE_EXTENSIONS = new LinkedHashSet<String>() {{
     add("tar");
   }};
 
-  private static final Set<String> SPACE_REPLACERS = new LinkedHashSet<String>() {{
-    add("_");
-    add(".");
+  private static final Map<String, Pattern> SPACE_REPLACERS = new LinkedHashMap<String, Pattern>() {{
+    put("_", Pattern.compile("_", Pattern.LITERAL));
+    put(".", Pattern.compile(".", Pattern.LITERAL));
   }};
 
-  private static final String SEASON = "([0-9]{1,2})";
-  private static final String EPISODE = "([0-9]{1,2})(?:-?[Ee]?([0-9]{1,2}))?";
-  private static final String NOT_PRECEDED_BY_DIGIT = "(?<!\\d)";
-  private static final String NOT_SUCCEEDED_BY_DIGIT_OR_LETTER = "(?!(?:\\d|\\p{L}))";
-
-  private static final Set<Pattern> EPISODE_SEQUENCE_PATTERNS = new LinkedHashSet<Pattern>() {{
-    add(Pattern.compile("(.*?)" + "-" + SEASON + "x" + EPISODE + "-" + "(.*?)"));
-    add(Pattern.compile("(.*?)" + "\\(" + SEASON + "x" + EPISODE + "\\)" + "(.*?)"));
-    add(Pattern.compile("(.*?)" + "\\[" + SEASON + "x" + EPISODE + "\\]" + "(.*?)"));
-    add(Pattern.compile("(.*?)" + NOT_PRECEDED_BY_DIGIT + "[Ss]" + SEASON + " ?[Ee]" + EPISODE + NOT_SUCCEEDED_BY_DIGIT_OR_LETTER + "(.*?)"));
-    add(Pattern.compile("(.*?)" + "-[Ss]" + SEASON + " ?[Ee]" + EPISODE + "-" + "(.*?)"));
-    add(Pattern.compile("(.*?)" + "\\([Ss]" + SEASON + " ?[Ee]" + EPISODE + "\\)" + "(.*?)"));
-    add(Pattern.compile("(.*?)" + "\\[[Ss]" + SEASON + " ?[Ee]" + EPISODE + "\\]" + "(.*?)"));
-    add(Pattern.compile("(.*?)" + NOT_PRECEDED_BY_DIGIT + SEASON + "x" + EPISODE + NOT_SUCCEEDED_BY_DIGIT_OR_LETTER + "(.*?)"));
-
-    add(Pattern.compile("(.*?)" + NOT_PRECEDED_BY_DIGIT + "([1-3][0-9]|0?[1-9])([1-3][0-9]|0[1-9])()" + "\\b" + "(.*?)"));    // matches seasons upto 39, episodes upto 39 when written without space
-
-    add(Pattern.compile("(.*?)" + "()#" + EPISODE + "(.*?)"));  // No Season
-    add(Pattern.compile("(.*?)" + "()(?:Part|part|PART) " + EPISODE + "(.*?)"));  // No Season
-    add(Pattern.compile("(.*?)" + NOT_PRECEDED_BY_DIGIT + "[Ss]" + SEASON + "()()" + NOT_SUCCEEDED_BY_DIGIT_OR_LETTER + "(.*?)")); // Season Only
+  private static final Set<SequencePattern> EPISODE_SEQUENCE_PATTERNS = new LinkedHashSet<SequencePattern>() {{
+    add(SequencePattern.DASHED_CROSS);
+    add(SequencePattern.PARENTHESIZED_CROSS);
+    add(SequencePattern.BRACKETED_CROSS);
+    add(SequencePattern.SEASON_EPISODE);
+    add(SequencePattern.DASHED_SEASON_EPISODE);
+    add(SequencePattern.PARENTHESIZED_SEASON_EPISODE);
+    add(SequencePattern.BRACKETED_SEASON_EPISODE);
+    add(SequencePattern.CROSS);
+    add(SequencePattern.DIGITS);
+    add(SequencePattern.NUMBER);  // No Season
+    add(SequencePattern.PART);  // No Season
+    add(SequencePattern.SEASON);  // Season Only
   }};
 
-  private static final Set<Pattern> MOVIE_SEQUENCE_PATTERNS = new LinkedHashSet<Pattern>() {{
-    add(Pattern.compile("(.*?)" + "- " + SEASON + "()()(( [-\\[]|$).*?)"));
+  private static final Set<SequencePattern> MOVIE_SEQUENCE_PATTERNS = new LinkedHashSet<SequencePattern>() {{
+    add(SequencePattern.MOVIE_SEQUENCE);
   }};
 
-  private final Set<Pattern> sequencePatternsToCheck = new LinkedHashSet<>();
+  private final Set<SequencePattern> sequencePatternsToCheck = new LinkedHashSet<>();
+  private final SequencePattern[] sequencePatterns;
 
   public enum Hint {EPISODE, FOLDER_NAMES, MOVIE}
 
@@ -75,6 +80,18 @@ public class NameDecoder {
       sequencePatternsToCheck.addAll(EPISODE_SEQUENCE_PATTERNS);
       sequencePatternsToCheck.addAll(MOVIE_SEQUENCE_PATTERNS);
     }
+
+    this.sequencePatterns = sequencePatternsToCheck.toArray(new SequencePattern[sequencePatternsToCheck.size()]);
+  }
+
+  /**
+   * Returns a version which changes whenever the results of this decoder change, taking
+   * into account the hints it was constructed with.
+   *
+   * @return a version, never null
+   */
+  public String getVersion() {
+    return VERSION + ":" + hints;
   }
 
   public DecodeResult decode(String input) {
@@ -144,7 +161,7 @@ public class NameDecoder {
       subtitleIndex = sequenceParts[0].length() + 1;
     }
 
-    Parts parts = new Parts(leftoverInput, "[- \\(\\)\\[\\]]");
+    Parts parts = new Parts(leftoverInput, NAME_PARTS_DELIMITER);
 
     Group splitter = parts.groupAt(subtitleIndex);
     Group title = parts.before(splitter);
@@ -173,8 +190,8 @@ public class NameDecoder {
       }
     }
 
-    title.trim(Pattern.compile("[- ]"));
-    subtitle.trim(Pattern.compile("[- ]"));
+    title.trim(TITLE_SEPARATOR);
+    subtitle.trim(TITLE_SEPARATOR);
 
 //    System.out.println("FULL: [" + title.getStartIndex() + "-" + (title.getEndIndex() - 1) + "] [" + subtitle.getStartIndex() + "-" + subtitle.getEndIndex() + "]: " + parts);
 
@@ -212,16 +229,49 @@ public class NameDecoder {
     return result;
   }
 
-  private String[] decodeAsSequence(String text) {
-    for(Pattern pattern : sequencePatternsToCheck) {
-      String[] groups = match(pattern, text);
+  /**
+   * Finds the sequence (season and episode) in the given text.  The sequence patterns are
+   * checked in a single pass over the text: at each position, all patterns which could
+   * still produce a better result than the best found so far are tried.  The result is
+   * the match at the leftmost position of the first pattern in {@link #sequencePatternsToCheck}
+   * which matches anywhere.
+   *
+   * @param text a text
+   * @return the text before the sequence, the season, the episode, the end episode and the text after the sequence, or <code>null</code> if no sequence was found
+   */
+  String[] decodeAsSequence(String text) {
+    if(containsLineTerminator(text)) {
+      return null;  // the text surrounding a sequence can't contain line terminators, so no pattern can match
+    }
+
+    String[] bestGroups = null;
+    int bestPatternIndex = sequencePatterns.length;
+
+    for(int start = 0; start < text.length() && bestPatternIndex > 0; start++) {
+      for(int i = 0; i < bestPatternIndex; i++) {
+        String[] groups = sequencePatterns[i].match(text, start);
+
+        if(groups != null) {
+          bestGroups = groups;
+          bestPatternIndex = i;
+          break;
+        }
+      }
+    }
 
-      if(groups != null) {
-        return groups;
+    return bestGroups;
+  }
+
+  private static boolean containsLineTerminator(String text) {
+    for(int i = 0; i < text.length(); i++) {
+      char c = text.charAt(i);
+
+      if(c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029') {
+        return true;
       }
     }
 
-    return null;
+    return false;
   }
 
   private static String cleanInput(String input) {
@@ -229,17 +279,17 @@ public class NameDecoder {
       String bestReplacer = null;
       int bestCount = 0;
 
-      for(String spaceReplacer : SPACE_REPLACERS) {
-        String[] split = input.split(Pattern.quote(spaceReplacer));
+      for(Map.Entry<String, Pattern> spaceReplacer : SPACE_REPLACERS.entrySet()) {
+        String[] split = spaceReplacer.getValue().split(input);
 
         if(split.length > bestCount) {
-          bestReplacer = spaceReplacer;
+          bestReplacer = spaceReplacer.getKey();
           bestCount = split.length;
         }
       }
 
       if(bestReplacer != null) {
-        return input.replaceAll(Pattern.quote(bestReplacer), " ");
+        return input.replace(bestReplacer, " ");
       }
     }
 
@@ -262,6 +312,329 @@ public class NameDecoder {
     return null;
   }
 
+  /**
+   * The patterns which can be recognized as a sequence, each matching at a given position
+   * in the same way as the regular expression in its comment would when preceded by
+   * <code>(.*?)</code> and followed by <code>(.*?)</code>.  Where the regular expression
+   * has a choice, the alternatives are tried in the same order, so the results are the
+   * same, without the backtracking over the whole text which trying a dozen such regular
+   * expressions in turn caused for long names.<p>
+   *
+   * In the comments, EPISODE stands for <code>([0-9]{1,2})(?:-?[Ee]?([0-9]{1,2}))?</code>.
+   */
+  private enum SequencePattern {
+
+    /**
+     * <code>-([0-9]{1,2})x EPISODE -</code>
+     */
+    DASHED_CROSS {
+      @Override
+      String[] match(String text, int start) {
+        return text.startsWith("-", start) ? matchSeasonAndEpisode(text, start, start + 1, false, DASH) : null;
+      }
+    },
+
+    /**
+     * <code>\(([0-9]{1,2})x EPISODE \)</code>
+     */
+    PARENTHESIZED_CROSS {
+      @Override
+      String[] match(String text, int start) {
+        return text.startsWith("(", start) ? matchSeasonAndEpisode(text, start, start + 1, false, CLOSING_PARENTHESIS) : null;
+      }
+    },
+
+    /**
+     * <code>\[([0-9]{1,2})x EPISODE \]</code>
+     */
+    BRACKETED_CROSS {
+      @Override
+      String[] match(String text, int start) {
+        return text.startsWith("[", start) ? matchSeasonAndEpisode(text, start, start + 1, false, CLOSING_BRACKET) : null;
+      }
+    },
+
+    /**
+     * <code>(?&lt;!\d)[Ss]([0-9]{1,2}) ?[Ee] EPISODE (?!(?:\d|\p{L}))</code>
+     */
+    SEASON_EPISODE {
+      @Override
+      String[] match(String text, int start) {
+        return isS(text, start) && !isDigit(text, start - 1) ? matchSeasonAndEpisode(text, start, start + 1, true, NOT_FOLLOWED_BY_DIGIT_OR_LETTER) : null;
+      }
+    },
+
+    /**
+     * <code>-[Ss]([0-9]{1,2}) ?[Ee] EPISODE -</code>
+     */
+    DASHED_SEASON_EPISODE {
+      @Override
+      String[] match(String text, int start) {
+        return text.startsWith("-", start) && isS(text, start + 1) ? matchSeasonAndEpisode(text, start, start + 2, true, DASH) : null;
+      }
+    },
+
+    /**
+     * <code>\([Ss]([0-9]{1,2}) ?[Ee] EPISODE \)</code>
+     */
+    PARENTHESIZED_SEASON_EPISODE {
+      @Override
+      String[] match(String text, int start) {
+        return text.startsWith("(", start) && isS(text, start + 1) ? matchSeasonAndEpisode(text, start, start + 2, true, CLOSING_PARENTHESIS) : null;
+      }
+    },
+
+    /**
+     * <code>\[[Ss]([0-9]{1,2}) ?[Ee] EPISODE \]</code>
+     */
+    BRACKETED_SEASON_EPISODE {
+      @Override
+      String[] match(String text, int start) {
+        return text.startsWith("[", start) && isS(text, start + 1) ? matchSeasonAndEpisode(text, start, start + 2, true, CLOSING_BRACKET) : null;
+      }
+    },
+
+    /**
+     * <code>(?&lt;!\d)([0-9]{1,2})x EPISODE (?!(?:\d|\p{L}))</code>
+     */
+    CROSS {
+      @Override
+      String[] match(String text, int start) {
+        return !isDigit(text, start - 1) ? matchSeasonAndEpisode(text, start, start, false, NOT_FOLLOWED_BY_DIGIT_OR_LETTER) : null;
+      }
+    },
+
+    /**
+     * <code>(?&lt;!\d)([1-3][0-9]|0?[1-9])([1-3][0-9]|0[1-9])()\b</code>, which matches seasons
+     * upto 39 and episodes upto 39 when written without space.
+     */
+    DIGITS {
+      @Override
+      String[] match(String text, int start) {
+        if(!isDigit(text, start) || isDigit(text, start - 1)) {
+          return null;
+        }
+
+        for(int seasonEnd : new int[] {
+          isBetween(text, start, '1', '3') && isDigit(text, start + 1) ? start + 2 : -1,
+          text.startsWith("0", start) && isBetween(text, start + 1, '1', '9') ? start + 2 : -1,
+          isBetween(text, start, '1', '9') ? start + 1 : -1
+        }) {
+          if(seasonEnd >= 0) {
+            for(int end : new int[] {
+              isBetween(text, seasonEnd, '1', '3') && isDigit(text, seasonEnd + 1) ? seasonEnd + 2 : -1,
+              text.startsWith("0", seasonEnd) && isBetween(text, seasonEnd + 1, '1', '9') ? seasonEnd + 2 : -1
+            }) {
+              if(end >= 0 && !isWordCharacter(text, end)) {  // word boundary, as the previous character is a digit
+                return new String[] {text.substring(0, start), text.substring(start, seasonEnd), text.substring(seasonEnd, end), "", text.substring(end)};
+              }
+            }
+          }
+        }
+
+        return null;
+      }
+    },
+
+    /**
+     * <code>()# EPISODE</code>
+     */
+    NUMBER {
+      @Override
+      String[] match(String text, int start) {
+        return text.startsWith("#", start) ? matchEpisode(text, start, start + 1, "", ANYTHING) : null;
+      }
+    },
+
+    /**
+     * <code>()(?:Part|part|PART) EPISODE</code>
+     */
+    PART {
+      @Override
+      String[] match(String text, int start) {
+        return text.startsWith("Part ", start) || text.startsWith("part ", start) || text.startsWith("PART ", start) ? matchEpisode(text, start, start + 5, "", ANYTHING) : null;
+      }
+    },
+
+    /**
+     * <code>(?&lt;!\d)[Ss]([0-9]{1,2})()()(?!(?:\d|\p{L}))</code>
+     */
+    SEASON {
+      @Override
+      String[] match(String text, int start) {
+        if(!isS(text, start) || isDigit(text, start - 1)) {
+          return null;
+        }
+
+        for(int seasonEnd = start + 1 + countDigits(text, start + 1); seasonEnd > start + 1; seasonEnd--) {
+          if(NOT_FOLLOWED_BY_DIGIT_OR_LETTER.match(text, seasonEnd) >= 0) {
+            return new String[] {text.substring(0, start), text.substring(start + 1, seasonEnd), "", "", text.substring(seasonEnd)};
+          }
+        }
+
+        return null;
+      }
+    },
+
+    /**
+     * <code>- ([0-9]{1,2})()()(( [-\[]|$).*?)</code>
+     */
+    MOVIE_SEQUENCE {
+      @Override
+      String[] match(String text, int start) {
+        if(!text.startsWith("- ", start)) {
+          return null;
+        }
+
+        for(int seasonEnd = start + 2 + countDigits(text, start + 2); seasonEnd > start + 2; seasonEnd--) {
+          if(seasonEnd == text.length() || text.startsWith(" -", seasonEnd) || text.startsWith(" [", seasonEnd)) {
+            return new String[] {text.substring(0, start), text.substring(start + 2, seasonEnd), "", "", text.substring(seasonEnd)};
+          }
+        }
+
+        return null;
+      }
+    };
+
+    private static final Boundary DASH = literal('-');
+    private static final Boundary CLOSING_PARENTHESIS = literal(')');
+    private static final Boundary CLOSING_BRACKET = literal(']');
+    private static final Boundary NOT_FOLLOWED_BY_DIGIT_OR_LETTER = (text, index) -> index < text.length() && (isDigit(text, index) || Character.isLetter(text.codePointAt(index))) ? -1 : index;
+    private static final Boundary ANYTHING = (text, index) -> index;
+
+    /**
+     * Matches this pattern at the given position.
+     *
+     * @param text a text
+     * @param start the position at which the sequence must start
+     * @return the text before the sequence, the season, the episode, the end episode and the text after the sequence, or <code>null</code> if this pattern does not match at the given position
+     */
+    abstract String[] match(String text, int start);
+
+    /**
+     * Matches <code>([0-9]{1,2})</code> followed by either <code>x</code> or <code> ?[Ee]</code>, and
+     * then an episode followed by the given boundary.
+     */
+    private static String[] matchSeasonAndEpisode(String text, int start, int index, boolean separatedByE, Boundary boundary) {
+      for(int seasonEnd = index + countDigits(text, index); seasonEnd > index; seasonEnd--) {
+        String season = text.substring(index, seasonEnd);
+
+        if(!separatedByE) {
+          if(text.startsWith("x", seasonEnd)) {
+            String[] groups = matchEpisode(text, start, seasonEnd + 1, season, boundary);
+
+            if(groups != null) {
+              return groups;
+            }
+          }
+
+          continue;
+        }
+
+        for(int episodeStart = text.startsWith(" ", seasonEnd) ? seasonEnd + 1 : seasonEnd; episodeStart >= seasonEnd; episodeStart--) {
+          if(isE(text, episodeStart)) {
+            String[] groups = matchEpisode(text, start, episodeStart + 1, season, boundary);
+
+            if(groups != null) {
+              return groups;
+            }
+          }
+        }
+      }
+
+      return null;
+    }
+
+    /**
+     * Matches <code>([0-9]{1,2})(?:-?[Ee]?([0-9]{1,2}))?</code> followed by the given boundary.
+     */
+    private static String[] matchEpisode(String text, int start, int index, String season, Boundary boundary) {
+      for(int episodeEnd = index + countDigits(text, index); episodeEnd > index; episodeEnd--) {
+        for(int dashEnd = text.startsWith("-", episodeEnd) ? episodeEnd + 1 : episodeEnd; dashEnd >= episodeEnd; dashEnd--) {
+          for(int endEpisodeStart = isE(text, dashEnd) ? dashEnd + 1 : dashEnd; endEpisodeStart >= dashEnd; endEpisodeStart--) {
+            for(int endEpisodeEnd = endEpisodeStart + countDigits(text, endEpisodeStart); endEpisodeEnd > endEpisodeStart; endEpisodeEnd--) {
+              int end = boundary.match(text, endEpisodeEnd);
+
+              if(end >= 0) {
+                return new String[] {text.substring(0, start), season, text.substring(index, episodeEnd), text.substring(endEpisodeStart, endEpisodeEnd), text.substring(end)};
+              }
+            }
+          }
+        }
+
+        int end = boundary.match(text, episodeEnd);
+
+        if(end >= 0) {
+          return new String[] {text.substring(0, start), season, text.substring(index, episodeEnd), null, text.substring(end)};
+        }
+      }
+
+      return null;
+    }
+
+    /**
+     * Returns the number of digits, upto 2, at the given position.
+     */
+    private static int countDigits(String text, int index) {
+      return !isDigit(text, index) ? 0 : !isDigit(text, index + 1) ? 1 : 2;
+    }
+
+    private static boolean isDigit(String text, int index) {
+      return isBetween(text, index, '0', '9');
+    }
+
+    private static boolean isBetween(String text, int index, char from, char to) {
+      if(index < 0 || index >= text.length()) {
+        return false;
+      }
+
+      char c = text.charAt(index);
+
+      return c >= from && c <= to;
+    }
+
+    private static boolean isS(String text, int index) {
+      return text.startsWith("S", index) || text.startsWith("s", index);
+    }
+
+    private static boolean isE(String text, int index) {
+      return text.startsWith("E", index) || text.startsWith("e", index);
+    }
+
+    /**
+     * Returns whether the character at the given position is a word character for the purpose of
+     * <code>\b</code>, following a letter or digit.
+     */
+    private static boolean isWordCharacter(String text, int index) {
+      if(index >= text.length()) {
+        return false;
+      }
+
+      int codePoint = text.codePointAt(index);
+
+      return codePoint == '_' || Character.isLetterOrDigit(codePoint) || Character.getType(codePoint) == Character.NON_SPACING_MARK;
+    }
+
+    private static Boundary literal(char c) {
+      return (text, index) -> index < text.length() && text.charAt(index) == c ? index + 1 : -1;
+    }
+
+    /**
+     * Matches what must follow an episode.
+     */
+    private interface Boundary {
+
+      /**
+       * Matches this boundary at the given position.
+       *
+       * @param text a text
+       * @param index a position in the text
+       * @return the position after the boundary, or -1 if it does not match
+       */
+      int match(String text, int index);
+    }
+  }
+
   public static class DecodeResult {
     private final String title;
     private final String alternativeTitle;
@@ -315,7 +688,17 @@ public class NameDecoder {
     private final List<Group> managedGroups = new ArrayList<>();
 
     public Parts(String input, String delimiterPattern) {
-      parts = new ArrayList<>(Arrays.asList(input.split(String.format(DELIMITER, delimiterPattern))));
+      this(input, Pattern.compile(String.format(DELIMITER, delimiterPattern)));
+    }
+
+    /**
+     * Constructs a new instance.
+     *
+     * @param input the text to split
+     * @param delimiter a {@link Pattern} matching the positions to split at, see {@link NameDecoder#DELIMITER}
+     */
+    Parts(String input, Pattern delimiter) {
+      parts = new ArrayList<>(Arrays.asList(delimiter.split(input)));
     }
 
     public Group groupAt(int charIndex) {
@@ -0,0 +1,130 @@
+package hs.mediasystem.framework;
+
+import hs.mediasystem.dao.NegativeCacheEntry;
+import hs.mediasystem.db.Database;
+import hs.mediasystem.db.Database.Transaction;
+import hs.mediasystem.util.CryptoUtil;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+/**
+ * Remembers failed lookups, like identifications which found nothing or URLs which
+ * returned 404, so they are not repeated on every start.  After each consecutive
+ * failure of a lookup, the time before it should be retried doubles, starting at one
+ * hour and up to a maximum of 30 days.<p>
+ *
+ * Entries are persisted, and kept in memory after first use.
+ */
+@Singleton
+public class NegativeCache {
+  private static final Duration INITIAL_BACKOFF = Duration.ofHours(1);
+  private static final Duration MAX_BACKOFF = Duration.ofDays(30);
+  private static final int MAX_KEY_LENGTH = 2000;
+
+  private final Database database;
+  private final Map<String, NegativeCacheEntry> entries = new HashMap<>();  // guarded by this
+
+  private boolean loaded;  // guarded by this
+
+  @Inject
+  public NegativeCache(Database database) {
+    this.database = database;
+  }
+
+  /**
+   * Returns whether a lookup with the given key failed recently and should not be
+   * retried yet.
+   *
+   * @param key a key identifying the lookup
+   * @return <code>true</code> if the lookup should not be retried yet, otherwise <code>false</code>
+   */
+  public synchronized boolean isBackingOff(String key) {
+    NegativeCacheEntry entry = getEntries().get(toCacheKey(key));
+
+    return entry != null && entry.getRetryAfter().isAfter(LocalDateTime.now());
+  }
+
+  /**
+   * Records a failure of the lookup with the given key, doubling the time before it
+   * should be retried.
+   *
+   * @param key a key identifying the lookup
+   */
+  public void recordFailure(String key) {
+    String cacheKey = toCacheKey(key);
+    LocalDateTime now = LocalDateTime.now();
+    NegativeCacheEntry entry;
+
+    synchronized(this) {
+      NegativeCacheEntry previousEntry = getEntries().get(cacheKey);
+      int failureCount = previousEntry == null ? 1 : previousEntry.getFailureCount() + 1;
+
+      entry = new NegativeCacheEntry(cacheKey, failureCount, now, now.plus(getBackoff(failureCount)));
+      entries.put(cacheKey, entry);
+    }
+
+    try(Transaction transaction = database.beginTransaction()) {
+      transaction.upsert(entry, "cachekey");
+      transaction.commit();
+    }
+  }
+
+  /**
+   * Forgets any failures of the lookup with the given key, for example because it
+   * succeeded or because the user requested it to be retried.
+   *
+   * @param key a key identifying the lookup
+   */
+  public void clear(String key) {
+    String cacheKey = toCacheKey(key);
+
+    synchronized(this) {
+      if(getEntries().remove(cacheKey) == null) {
+        return;
+      }
+    }
+
+    try(Transaction transaction = database.beginTransaction()) {
+      transaction.delete("negativecache", "cachekey = ?", cacheKey);
+      transaction.commit();
+    }
+  }
+
+  static Duration getBackoff(int failureCount) {
+    Duration backoff = INITIAL_BACKOFF.multipliedBy(1L << Math.min(failureCount - 1, 30));
+
+    return backoff.compareTo(MAX_BACKOFF) > 0 ? MAX_BACKOFF : backoff;
+  }
+
+  private Map<String, NegativeCacheEntry> getEntries() {
+    if(!loaded) {
+      try(Transaction transaction = database.beginReadOnlyTransaction()) {
+        for(NegativeCacheEntry entry : transaction.select(NegativeCacheEntry.class, null)) {
+          entries.putIfAbsent(entry.getCacheKey(), entry);
+        }
+      }
+
+      loaded = true;
+    }
+
+    return entries;
+  }
+
+  /**
+   * Converts a key to one which fits the database column, by replacing keys which are
+   * too long with a hash.
+   */
+  private static String toCacheKey(String key) {
+    if(key.length() <= MAX_KEY_LENGTH) {
+      return key;
+    }
+
+    return "sha256:" + CryptoUtil.sha256(key);
+  }
+}
@@ -0,0 +1,291 @@
+package hs.mediasystem.framework;
+
+import hs.mediasystem.framework.NameDecoder.DecodeResult;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The result of scanning a root for media: the paths found, with their size, last
+ * modified time and decoded name, and the last modified times of the directories which
+ * were scanned.  A manifest can be stored on disk, so the result of the last scan is
+ * available immediately after a restart, and the next scan only needs to list the
+ * directories which changed since.<p>
+ *
+ * Manifests are stored in a compact binary format, compressed with GZIP, with all paths
+ * relative to the root.  The version of the decoder which decoded the names is stored
+ * as well, so a manifest is discarded when names would be decoded differently.
+ */
+public class ScanManifest {
+  private static final int MAGIC = 0x4D534D46;  // "MSMF"
+  private static final int VERSION = 2;
+
+  private final Path root;
+  private final String decoderVersion;
+  private final long scanMillis;
+  private final Map<Path, Long> directories;
+  private final List<Entry> entries;
+
+  private Map<Path, List<Entry>> entriesByParent;  // created when first needed
+  private Map<Path, List<Path>> directoriesByParent;  // created when first needed
+
+  /**
+   * Constructs a new instance.
+   *
+   * @param root the root which was scanned
+   * @param decoderVersion the version of the decoder which decoded the names of the entries
+   * @param scanMillis the time at which the scan started
+   * @param directories the last modified times of the directories which were scanned, including the root
+   * @param entries the paths which were found
+   */
+  public ScanManifest(Path root, String decoderVersion, long scanMillis, Map<Path, Long> directories, List<Entry> entries) {
+    this.root = root;
+    this.decoderVersion = decoderVersion;
+    this.scanMillis = scanMillis;
+    this.directories = Collections.unmodifiableMap(new LinkedHashMap<>(directories));
+    this.entries = Collections.unmodifiableList(new ArrayList<>(entries));
+  }
+
+  public Path getRoot() {
+    return root;
+  }
+
+  public String getDecoderVersion() {
+    return decoderVersion;
+  }
+
+  /**
+   * Returns the time at which the scan started.  Changes made to directories shortly
+   * before this time may not be reflected in their last modified time, depending on
+   * its resolution.
+   *
+   * @return the time at which the scan started, in milliseconds since the epoch
+   */
+  public long getScanMillis() {
+    return scanMillis;
+  }
+
+  /**
+   * Returns the last modified times of the directories which were scanned, including
+   * the root.
+   *
+   * @return the last modified times of the directories which were scanned, never null
+   */
+  public Map<Path, Long> getDirectories() {
+    return directories;
+  }
+
+  public List<Entry> getEntries() {
+    return entries;
+  }
+
+  synchronized List<Entry> getEntries(Path parent) {
+    if(entriesByParent == null) {
+      entriesByParent = new HashMap<>();
+
+      for(Entry entry : entries) {
+        entriesByParent.computeIfAbsent(entry.getPath().getParent(), k -> new ArrayList<>()).add(entry);
+      }
+    }
+
+    return entriesByParent.getOrDefault(parent, Collections.emptyList());
+  }
+
+  synchronized List<Path> getDirectories(Path parent) {
+    if(directoriesByParent == null) {
+      directoriesByParent = new HashMap<>();
+
+      for(Path directory : directories.keySet()) {
+        if(!directory.equals(root)) {
+          directoriesByParent.computeIfAbsent(directory.getParent(), k -> new ArrayList<>()).add(directory);
+        }
+      }
+    }
+
+    return directoriesByParent.getOrDefault(parent, Collections.emptyList());
+  }
+
+  /**
+   * Reads a manifest from the given file.
+   *
+   * @param file the file to read
+   * @param root the root the manifest must be for
+   * @param decoderVersion the version of the decoder the names in the manifest must have been decoded with
+   * @return a {@link ScanManifest}, or <code>null</code> if the file does not exist, is of a different version, is for a different root or was decoded with a different decoder version
+   * @throws IOException when the file could not be read
+   */
+  public static ScanManifest read(Path file, Path root, String decoderVersion) throws IOException {
+    if(!Files.exists(file)) {
+      return null;
+    }
+
+    try(DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(Files.newInputStream(file), 65536)))) {
+      if(in.readInt() != MAGIC || in.readInt() != VERSION || !in.readUTF().equals(root.toString()) || !in.readUTF().equals(decoderVersion)) {
+        return null;
+      }
+
+      long scanMillis = in.readLong();
+      int directoryCount = in.readInt();
+      Map<Path, Long> directories = new LinkedHashMap<>();
+
+      for(int i = 0; i < directoryCount; i++) {
+        directories.put(root.resolve(in.readUTF()), in.readLong());
+      }
+
+      int entryCount = in.readInt();
+      List<Entry> entries = new ArrayList<>(entryCount);
+
+      for(int i = 0; i < entryCount; i++) {
+        Path path = root.resolve(in.readUTF());
+        boolean directory = in.readBoolean();
+        long size = in.readLong();
+        long lastModifiedMillis = in.readLong();
+        DecodeResult decodeResult = new DecodeResult(
+          readNullableString(in),
+          readNullableString(in),
+          readNullableString(in),
+          readNullableString(in),
+          readNullableString(in),
+          in.readBoolean() ? in.readInt() : null,
+          readNullableString(in)
+        );
+
+        entries.add(new Entry(path, directory, size, lastModifiedMillis, decodeResult));
+      }
+
+      return new ScanManifest(root, decoderVersion, scanMillis, directories, entries);
+    }
+  }
+
+  /**
+   * Writes this manifest to the given file.  The file is replaced atomically, so a
+   * partially written manifest is never read.
+   *
+   * @param file the file to write
+   * @throws IOException when the file could not be written
+   */
+  public void write(Path file) throws IOException {
+    Files.createDirectories(file.toAbsolutePath().getParent());
+
+    Path tempFile = Files.createTempFile(file.toAbsolutePath().getParent(), "manifest", ".tmp");
+
+    try {
+      try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(Files.newOutputStream(tempFile), 65536)))) {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeUTF(root.toString());
+        out.writeUTF(decoderVersion);
+        out.writeLong(scanMillis);
+        out.writeInt(directories.size());
+
+        for(Map.Entry<Path, Long> directory : directories.entrySet()) {
+          out.writeUTF(root.relativize(directory.getKey()).toString());
+          out.writeLong(directory.getValue());
+        }
+
+        out.writeInt(entries.size());
+
+        for(Entry entry : entries) {
+          DecodeResult decodeResult = entry.getDecodeResult();
+
+          out.writeUTF(root.relativize(entry.getPath()).toString());
+          out.writeBoolean(entry.isDirectory());
+          out.writeLong(entry.getSize());
+          out.writeLong(entry.getLastModifiedMillis());
+          writeNullableString(out, decodeResult.getTitle());
+          writeNullableString(out, decodeResult.getAlternativeTitle());
+          writeNullableString(out, decodeResult.getSubtitle());
+          writeNullableString(out, decodeResult.getSequence());
+          writeNullableString(out, decodeResult.getCode());
+          out.writeBoolean(decodeResult.getReleaseYear() != null);
+
+          if(decodeResult.getReleaseYear() != null) {
+            out.writeInt(decodeResult.getReleaseYear());
+          }
+
+          writeNullableString(out, decodeResult.getExtension());
+        }
+      }
+
+      Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    finally {
+      Files.deleteIfExists(tempFile);
+    }
+  }
+
+  private static String readNullableString(DataInputStream in) throws IOException {
+    return in.readBoolean() ? in.readUTF() : null;
+  }
+
+  private static void writeNullableString(DataOutputStream out, String value) throws IOException {
+    out.writeBoolean(value != null);
+
+    if(value != null) {
+      out.writeUTF(value);
+    }
+  }
+
+  /**
+   * A path found while scanning.
+   */
+  public static class Entry {
+    private final Path path;
+    private final boolean directory;
+    private final long size;
+    private final long lastModifiedMillis;
+    private final DecodeResult decodeResult;
+
+    public Entry(Path path, boolean directory, long size, long lastModifiedMillis, DecodeResult decodeResult) {
+      this.path = path;
+      this.directory = directory;
+      this.size = size;
+      this.lastModifiedMillis = lastModifiedMillis;
+      this.decodeResult = decodeResult;
+    }
+
+    public Path getPath() {
+      return path;
+    }
+
+    public boolean isDirectory() {
+      return directory;
+    }
+
+    public long getSize() {
+      return size;
+    }
+
+    public long getLastModifiedMillis() {
+      return lastModifiedMillis;
+    }
+
+    /**
+     * Returns the result of decoding the file name of the path.
+     *
+     * @return the result of decoding the file name of the path, never null
+     */
+    public DecodeResult getDecodeResult() {
+      return decodeResult;
+    }
+
+    @Override
+    public String toString() {
+      return "Entry[" + path + "]";
+    }
+  }
+}
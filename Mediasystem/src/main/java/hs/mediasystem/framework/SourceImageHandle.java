@@ -1,5 +1,6 @@
 package hs.mediasystem.framework;
 
+import hs.mediasystem.dao.DatabaseUrlSource;
 import hs.mediasystem.dao.Source;
 import hs.mediasystem.util.ImageHandle;
 
@@ -24,6 +25,15 @@ public class SourceImageHandle implements ImageHandle {
     return key;
   }
 
+  /**
+   * Returns the url of the image for images stored in the database, so their variants
+   * are not used once the url changes, and can be removed when the image is evicted.
+   */
+  @Override
+  public String getVariantKey() {
+    return source instanceof DatabaseUrlSource ? ((DatabaseUrlSource)source).getUrl() : key;
+  }
+
   @Override
   public boolean isFastSource() {
     return source.isLocal();
@@ -0,0 +1,192 @@
+package hs.mediasystem.screens;
+
+import hs.mediasystem.beans.AsyncImageProperty;
+import hs.mediasystem.framework.Media;
+import hs.mediasystem.util.ImageCache;
+import hs.mediasystem.util.ImageHandle;
+import hs.mediasystem.util.MetricsRegistry;
+import hs.subtitle.DefaultThreadFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import javafx.beans.property.ObjectProperty;
+
+/**
+ * Warms the {@link ImageCache} with the images of the MediaNodes surrounding the
+ * focused MediaNode of a list, so their images can be shown immediately when focus
+ * moves to them, instead of only after the settling delay of {@link AsyncImageProperty}
+ * and the time it takes to load them.<p>
+ *
+ * Images are loaded at low priority, starting with the MediaNodes closest to the
+ * focused one in the direction focus is moving.  Prefetches which were not started
+ * yet are cancelled when focus moves again.  A prefetch counts as a hit when focus
+ * moves to a MediaNode of which the images were prefetched.<p>
+ *
+ * This class must be used from the JavaFX thread.
+ */
+public class ImagePrefetcher {
+  private static final ThreadPoolExecutor EXECUTOR = new ThreadPoolExecutor(2, 2, 5, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new DefaultThreadFactory("ImagePrefetcher", Thread.MIN_PRIORITY, true));
+
+  private static final LongAdder PREFETCHES = new LongAdder();
+  private static final LongAdder CANCELLATIONS = new LongAdder();
+  private static final LongAdder HITS = new LongAdder();
+
+  static {
+    EXECUTOR.allowCoreThreadTimeOut(true);
+  }
+
+  private final int distance;
+  private final List<Function<Media, ObjectProperty<ImageHandle>>> imageProperties;
+  private final List<Future<?>> futures = new ArrayList<>();
+  private final Set<ImageHandle> prefetchedImageHandles = ConcurrentHashMap.newKeySet();
+
+  private Object focusedList;  // the parent MediaNode or list of top level MediaNodes containing the focused MediaNode
+  private int focusedIndex = -1;
+
+  /**
+   * Constructs a new instance.
+   *
+   * @param distance the number of MediaNodes to prefetch on either side of the focused MediaNode
+   * @param imageProperties functions returning the properties of a Media containing the images to prefetch
+   */
+  @SafeVarargs
+  public ImagePrefetcher(int distance, Function<Media, ObjectProperty<ImageHandle>>... imageProperties) {
+    this.distance = distance;
+    this.imageProperties = Arrays.asList(imageProperties);
+  }
+
+  /**
+   * Registers the prefetch, cancellation and hit counts as gauges with the given
+   * registry.
+   *
+   * @param registry a {@link MetricsRegistry}
+   */
+  public static void registerMetrics(MetricsRegistry registry) {
+    registry.gauge("imagePrefetcher.prefetches", PREFETCHES::sum);
+    registry.gauge("imagePrefetcher.cancellations", CANCELLATIONS::sum);
+    registry.gauge("imagePrefetcher.hits", HITS::sum);
+  }
+
+  public static long getPrefetchCount() {
+    return PREFETCHES.sum();
+  }
+
+  public static long getHitCount() {
+    return HITS.sum();
+  }
+
+  /**
+   * Prefetches the images of the MediaNodes surrounding the given focused MediaNode,
+   * cancelling any prefetches which were not started yet.  The MediaNodes surrounding
+   * a MediaNode are its siblings if it has a parent, otherwise the given top level
+   * MediaNodes.
+   *
+   * @param topLevelMediaNodes the top level MediaNodes
+   * @param focusedMediaNode the focused MediaNode, or <code>null</code> to only cancel prefetches
+   */
+  public void focusChanged(List<? extends MediaNode> topLevelMediaNodes, MediaNode focusedMediaNode) {
+    MediaNode parent = focusedMediaNode == null ? null : focusedMediaNode.getParent();
+    List<? extends MediaNode> nodes = parent == null ? topLevelMediaNodes : parent.getChildren();
+    Object list = parent == null ? topLevelMediaNodes : parent;
+    int index = focusedMediaNode == null ? -1 : nodes.indexOf(focusedMediaNode);
+    int direction = list == focusedList && index < focusedIndex ? -1 : 1;
+
+    focusedList = list;
+    focusedIndex = index;
+
+    cancel();
+
+    if(index == -1) {
+      prefetchedImageHandles.clear();
+      return;
+    }
+
+    for(ImageHandle imageHandle : getImageHandles(focusedMediaNode)) {
+      if(prefetchedImageHandles.contains(imageHandle)) {
+        HITS.increment();
+      }
+    }
+
+    /*
+     * Determine images to prefetch, closest in the direction focus is moving first:
+     */
+
+    Set<ImageHandle> imageHandles = new LinkedHashSet<>();
+
+    for(int i = 1; i <= distance; i++) {
+      addImageHandles(imageHandles, nodes, index + direction * i);
+    }
+
+    for(int i = 1; i <= distance; i++) {
+      addImageHandles(imageHandles, nodes, index - direction * i);
+    }
+
+    prefetchedImageHandles.retainAll(imageHandles);
+
+    for(ImageHandle imageHandle : imageHandles) {
+      if(!prefetchedImageHandles.contains(imageHandle)) {
+        futures.add(EXECUTOR.submit(() -> prefetch(imageHandle)));
+      }
+    }
+  }
+
+  /**
+   * Cancels all prefetches which were not started yet.
+   */
+  public void cancel() {
+    for(Future<?> future : futures) {
+      if(future.cancel(false)) {
+        CANCELLATIONS.increment();
+      }
+    }
+
+    futures.clear();
+    EXECUTOR.purge();
+  }
+
+  private void prefetch(ImageHandle imageHandle) {
+    try {
+      if(ImageCache.loadImageUptoMaxSize(imageHandle, AsyncImageProperty.MAX_WIDTH, AsyncImageProperty.MAX_HEIGHT) != null) {
+        prefetchedImageHandles.add(imageHandle);
+        PREFETCHES.increment();
+      }
+    }
+    catch(Exception e) {
+      System.out.println("[FINE] ImagePrefetcher.prefetch() - Unable to prefetch " + imageHandle + ": " + e);
+    }
+  }
+
+  private void addImageHandles(Set<ImageHandle> imageHandles, List<? extends MediaNode> nodes, int index) {
+    if(index >= 0 && index < nodes.size()) {
+      imageHandles.addAll(getImageHandles(nodes.get(index)));
+    }
+  }
+
+  private List<ImageHandle> getImageHandles(MediaNode mediaNode) {
+    List<ImageHandle> imageHandles = new ArrayList<>();
+    Media media = mediaNode.getMedia();
+
+    if(media != null) {
+      for(Function<Media, ObjectProperty<ImageHandle>> imageProperty : imageProperties) {
+        ImageHandle imageHandle = imageProperty.apply(media).get();
+
+        if(imageHandle != null) {
+          imageHandles.add(imageHandle);
+        }
+      }
+    }
+
+    return imageHandles;
+  }
+}
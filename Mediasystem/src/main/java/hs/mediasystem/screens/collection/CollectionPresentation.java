@@ -5,6 +5,7 @@ import hs.ddif.Injector;
 import hs.ddif.Value;
 import hs.mediasystem.MediaRootType;
 import hs.mediasystem.dao.Setting.PersistLevel;
+import hs.mediasystem.framework.ItemsListener;
 import hs.mediasystem.framework.Media;
 import hs.mediasystem.framework.MediaData;
 import hs.mediasystem.framework.MediaRoot;
@@ -31,6 +32,7 @@ import java.util.List;
 import java.util.Set;
 import java.util.function.Predicate;
 
+import javafx.application.Platform;
 import javafx.beans.Observable;
 import javafx.beans.property.ObjectProperty;
 import javafx.beans.property.ReadOnlyBooleanProperty;
@@ -50,6 +52,7 @@ import javax.inject.Inject;
 public class CollectionPresentation extends MainLocationPresentation<CollectionLocation> {
   private final ReadOnlyListWrapper<MediaNode> mediaNodesWrapper = new ReadOnlyListWrapper<>(FXCollections.<MediaNode>observableArrayList());
   private final ReadOnlyBooleanWrapper expandTopLevelWrapper = new ReadOnlyBooleanWrapper();
+  private final ItemsListener<Media> itemsListener = (addedItems, removedItems) -> Platform.runLater(this::updateMediaNodes);
 
   /**
    * The collection root under which the media items to be displayed are located.
@@ -110,6 +113,19 @@ public class CollectionPresentation extends MainLocationPresentation<CollectionL
     layout.addListener(userLayoutSettingUpdater);
     groupSet.addListener(mediaGroupSettingUpdater);
 
+    /*
+     * Keep track of items being added to or removed from the current MediaRoot.
+     */
+
+    mediaRoot.addListener((observable, old, current) -> {
+      if(old != null) {
+        old.removeItemsListener(itemsListener);
+      }
+      if(current != null) {
+        current.addItemsListener(itemsListener);
+      }
+    });
+
     /*
      * Add Location listener to update the underlying view with a new MediaRoot.
      */
@@ -218,7 +234,45 @@ public class CollectionPresentation extends MainLocationPresentation<CollectionL
     inclusionFilter.addListener(this::createMediaNodes);
   }
 
+  @Override
+  public void dispose() {
+    super.dispose();
+
+    mediaRoot.set(null);  // removes the items listener from the MediaRoot, which outlives this presentation
+  }
+
+  /**
+   * Rescans the items of the current MediaRoot, instead of using the items found
+   * earlier.
+   */
+  @Expose
+  public void rescan(Event event) {
+    mediaRoot.get().invalidate();
+    createMediaNodes(null);
+    event.consume();
+  }
+
+  /**
+   * Groups and filters the items of the current MediaRoot.  The items are only scanned
+   * when the MediaRoot has no cached items, so changing the group set or filter is
+   * cheap.
+   */
   private void createMediaNodes(@SuppressWarnings("unused") Observable observable) {
+    mediaNodesWrapper.setAll(groupAndFilterItems());
+  }
+
+  /**
+   * Updates the MediaNodes after items were added to or removed from the current
+   * MediaRoot.  Only the MediaNodes which changed are replaced, so the nodes being
+   * displayed, and the focus, are left alone as much as possible.
+   */
+  private void updateMediaNodes() {
+    if(mediaRoot.get() != null && groupSet.get() != null) {
+      updateInPlace(mediaNodesWrapper, groupAndFilterItems());
+    }
+  }
+
+  private List<MediaNode> groupAndFilterItems() {
     @SuppressWarnings("unchecked")
     MediaGroup<Media> mediaGroup = (MediaGroup<Media>)groupSet.get();
     expandTopLevelWrapper.set(mediaGroup.showTopLevelExpanded());
@@ -232,7 +286,56 @@ public class CollectionPresentation extends MainLocationPresentation<CollectionL
       }
     }
 
-    mediaNodesWrapper.setAll(mediaGroup.getMediaNodes(mediaRoot.get(), filteredItems));
+    return mediaGroup.getMediaNodes(mediaRoot.get(), filteredItems);
+  }
+
+  /**
+   * Makes the given list of MediaNodes equal to the given new MediaNodes, keeping the
+   * existing MediaNodes which did not change.
+   */
+  static void updateInPlace(List<MediaNode> nodes, List<MediaNode> newNodes) {
+    Set<String> newIds = new HashSet<>();
+
+    for(MediaNode newNode : newNodes) {
+      newIds.add(newNode.getId());
+    }
+
+    nodes.removeIf(node -> !newIds.contains(node.getId()));
+
+    for(int i = 0; i < newNodes.size(); i++) {
+      MediaNode newNode = newNodes.get(i);
+
+      if(i < nodes.size() && nodes.get(i).getId().equals(newNode.getId())) {
+        if(!isSameTree(nodes.get(i), newNode)) {
+          nodes.set(i, newNode);
+        }
+      }
+      else {
+        nodes.add(i, newNode);
+      }
+    }
+
+    if(nodes.size() > newNodes.size()) {
+      nodes.subList(newNodes.size(), nodes.size()).clear();  // nodes which moved to an earlier position
+    }
+  }
+
+  private static boolean isSameTree(MediaNode node, MediaNode otherNode) {
+    if(!node.getId().equals(otherNode.getId()) || node.isLeaf() != otherNode.isLeaf() || node.getChildren().size() != otherNode.getChildren().size()) {
+      return false;
+    }
+
+    if(node.isLeaf()) {
+      return node.getMedia() == otherNode.getMedia();
+    }
+
+    for(int i = 0; i < node.getChildren().size(); i++) {
+      if(!isSameTree(node.getChildren().get(i), otherNode.getChildren().get(i))) {
+        return false;
+      }
+    }
+
+    return true;
   }
 
   /**
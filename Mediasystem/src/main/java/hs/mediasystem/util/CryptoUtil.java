@@ -1,6 +1,8 @@
 package hs.mediasystem.util;
 
+import java.nio.charset.StandardCharsets;
 import java.security.InvalidKeyException;
+import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 
@@ -68,6 +70,39 @@ public class CryptoUtil {
     return result;
   }
 
+  /**
+   * Returns the SHA-256 hash of the given data as a lower case hexadecimal string.
+   *
+   * @param data the data to hash
+   * @return a string of 64 hexadecimal digits, never null
+   */
+  public static String sha256(byte[] data) {
+    try {
+      byte[] digest = MessageDigest.getInstance("SHA-256").digest(data);
+      StringBuilder result = new StringBuilder(2 * digest.length);
+
+      for(byte b : digest) {
+        result.append(LOWER_CASE_HEX.charAt((b >> 4) & 0x0f)).append(LOWER_CASE_HEX.charAt(b & 0x0f));
+      }
+
+      return result.toString();
+    }
+    catch(NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Returns the SHA-256 hash of the UTF-8 encoding of the given text as a lower case
+   * hexadecimal string.
+   *
+   * @param text the text to hash
+   * @return a string of 64 hexadecimal digits, never null
+   */
+  public static String sha256(String text) {
+    return sha256(text.getBytes(StandardCharsets.UTF_8));
+  }
+
   public static String toHex(byte[] buf) {
     if(buf == null) {
       return "";
@@ -83,4 +118,5 @@ public class CryptoUtil {
   }
 
   private static final String HEX = "0123456789ABCDEF";
+  private static final String LOWER_CASE_HEX = "0123456789abcdef";
 }
@@ -2,26 +2,112 @@ package hs.mediasystem.util;
 
 import java.awt.Dimension;
 import java.io.ByteArrayInputStream;
-import java.io.IOException;
 import java.lang.ref.ReferenceQueue;
-import java.lang.ref.WeakReference;
+import java.lang.ref.SoftReference;
+import java.nio.ByteBuffer;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.SortedMap;
 import java.util.TreeMap;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Supplier;
 
 import javafx.scene.image.Image;
 
-import javax.imageio.ImageIO;
-import javax.imageio.ImageReader;
-import javax.imageio.stream.ImageInputStream;
-
+/**
+ * Cache for decoded images, consisting of two tiers.  The most recently used images
+ * are strongly referenced, up to a maximum number of bytes of decoded pixel data.
+ * Images evicted from this tier, or too large to fit in it, remain available through
+ * soft references until the garbage collector needs the memory.<p>
+ *
+ * Concurrent loads of the same image are de-duplicated: only one thread decodes the
+ * image while the others wait for the result.<p>
+ *
+ * When an {@link ImageVariantStore} is set, images which are scaled down to fit a
+ * maximum size are stored in it, and later loads at the same size read the stored
+ * variant instead of fetching and scaling the original again.
+ */
 public class ImageCache {
   private static final ReferenceQueue<CompletableFuture<Image>> REFERENCE_QUEUE = new ReferenceQueue<>();
-  private static final SortedMap<String, WeakReference<CompletableFuture<Image>>> CACHE = new TreeMap<>();
+  private static final SortedMap<String, SoftReference<CompletableFuture<Image>>> CACHE = new TreeMap<>();  // all images, sorted for expunging by prefix
+  private static final LinkedHashMap<String, StrongEntry> STRONG_CACHE = new LinkedHashMap<>(16, 0.75f, true);  // guarded by CACHE
+  private static final int BYTES_PER_PIXEL = 4;
+
+  private static final LongAdder HITS = new LongAdder();
+  private static final LongAdder MISSES = new LongAdder();
+  private static final LongAdder EVICTIONS = new LongAdder();
+
+  private static long maxStrongBytes = 256L * 1024 * 1024;  // guarded by CACHE
+  private static long strongBytes;  // guarded by CACHE
+  private static volatile ImageVariantStore variantStore;
+
+  /**
+   * Sets the store for downscaled variants of images.
+   *
+   * @param store an {@link ImageVariantStore}, or <code>null</code> to disable storing variants
+   */
+  public static void setVariantStore(ImageVariantStore store) {
+    variantStore = store;
+  }
+
+  public static ImageVariantStore getVariantStore() {
+    return variantStore;
+  }
+
+  /**
+   * Sets the maximum number of bytes of decoded pixel data which is strongly
+   * referenced by the cache.  Images beyond this size are only softly referenced.
+   *
+   * @param maxBytes the maximum number of bytes of decoded pixel data
+   */
+  public static void setMaxStrongBytes(long maxBytes) {
+    synchronized(CACHE) {
+      maxStrongBytes = maxBytes;
+      evictStrongEntries();
+    }
+  }
+
+  /**
+   * Registers the hit, miss and eviction counts and the size of the cache as gauges
+   * with the given registry.
+   *
+   * @param registry a {@link MetricsRegistry}
+   */
+  public static void registerMetrics(MetricsRegistry registry) {
+    registry.gauge("imageCache.hits", HITS::sum);
+    registry.gauge("imageCache.misses", MISSES::sum);
+    registry.gauge("imageCache.evictions", EVICTIONS::sum);
+    registry.gauge("imageCache.strongBytes", () -> {
+      synchronized(CACHE) {
+        return strongBytes;
+      }
+    });
+    registry.gauge("imageCache.strongImages", () -> {
+      synchronized(CACHE) {
+        return STRONG_CACHE.size();
+      }
+    });
+    registry.gauge("imageCache.images", () -> {
+      synchronized(CACHE) {
+        return CACHE.size();
+      }
+    });
+  }
+
+  public static long getHitCount() {
+    return HITS.sum();
+  }
+
+  public static long getMissCount() {
+    return MISSES.sum();
+  }
+
+  public static long getEvictionCount() {
+    return EVICTIONS.sum();
+  }
 
   public static Image loadImage(ImageHandle handle) {
     cleanReferenceQueue();
@@ -35,22 +121,33 @@ public class ImageCache {
     String key = createKey(handle.getKey(), w, h, true);
 
     return loadImage(key, () -> {
-      Image image = null;
-      byte[] data = handle.getImageData();
+      ImageVariantStore store = variantStore;
 
-      if(data != null) {
-        Dimension size = determineSize(data);
+      if(store != null) {
+        ByteBuffer variant = store.read(handle.getVariantKey(), w, h);
 
-        if(size != null) {
-          if(size.width <= w && size.height <= h) {
-            image = new Image(new ByteArrayInputStream(data));
-          }
-          else {
-            image = new Image(new ByteArrayInputStream(data), w, h, true, true);
+        if(variant != null) {
+          Image image = new Image(ImageVariantStore.asInputStream(variant));
+
+          if(!image.isError()) {
+            return image;
           }
         }
       }
 
+      byte[] data = handle.getImageData();
+
+      if(data == null) {
+        return null;
+      }
+
+      Image image = ImageDecoder.decode(data, w, h);
+      Dimension size = ImageDecoder.readSize(data);
+
+      if(store != null && image != null && !image.isError() && size != null && (size.width > w || size.height > h)) {
+        store.writeAsync(handle.getVariantKey(), w, h, image, ImageDecoder.isJpeg(data));
+      }
+
       return image;
     });
   }
@@ -73,7 +170,7 @@ public class ImageCache {
      */
 
     synchronized(CACHE) {
-      WeakReference<CompletableFuture<Image>> futureImageRef = CACHE.get(key);
+      SoftReference<CompletableFuture<Image>> futureImageRef = CACHE.get(key);
 
       futureImage = futureImageRef != null ? futureImageRef.get() : null;
 
@@ -81,6 +178,14 @@ public class ImageCache {
         futureImage = new CompletableFuture<>();
         store(key, futureImage);
         needsCompletion = true;
+        MISSES.increment();
+      }
+      else {
+        HITS.increment();
+
+        if(futureImage.isDone() && !futureImage.isCompletedExceptionally() && STRONG_CACHE.get(key) == null) {
+          admit(key, futureImage, futureImage.getNow(null));  // promote from the soft tier
+        }
       }
     }
 
@@ -102,9 +207,12 @@ public class ImageCache {
         futureImage.completeExceptionally(e);
       }
 
-      if(image == null) {
-        synchronized(CACHE) {
-          CACHE.remove(key);
+      synchronized(CACHE) {
+        if(image == null) {
+          remove(key);
+        }
+        else if(isCurrent(key, futureImage)) {
+          admit(key, futureImage, image);
         }
       }
     }
@@ -121,32 +229,59 @@ public class ImageCache {
     }
   }
 
-  private static Dimension determineSize(byte[] data) {
-    try(ImageInputStream is = ImageIO.createImageInputStream(new ByteArrayInputStream(data))) {
-      Iterator<ImageReader> imageReaders = ImageIO.getImageReaders(is);
+  private static boolean isCurrent(String key, CompletableFuture<Image> futureImage) {
+    SoftReference<CompletableFuture<Image>> ref = CACHE.get(key);
 
-      if(imageReaders.hasNext()) {
-        ImageReader imageReader = imageReaders.next();
+    return ref != null && ref.get() == futureImage;
+  }
 
-        imageReader.setInput(is);
+  /**
+   * Adds a loaded image to the strongly referenced tier, evicting the least recently
+   * used images if the tier grows too large.  Images which are larger than the tier
+   * itself are not added.
+   */
+  private static void admit(String key, CompletableFuture<Image> futureImage, Image image) {
+    if(image == null) {
+      return;
+    }
 
-        int w = imageReader.getWidth(imageReader.getMinIndex());
-        int h = imageReader.getHeight(imageReader.getMinIndex());
+    long bytes = (long)image.getWidth() * (long)image.getHeight() * BYTES_PER_PIXEL;
 
-        imageReader.dispose();
+    if(bytes > maxStrongBytes) {
+      return;
+    }
 
-        return new Dimension(w, h);
-      }
+    StrongEntry previous = STRONG_CACHE.put(key, new StrongEntry(futureImage, bytes));
 
-      return null;
+    if(previous != null) {
+      strongBytes -= previous.bytes;
     }
-    catch(IOException e) {
-      return null;
+
+    strongBytes += bytes;
+
+    evictStrongEntries();
+  }
+
+  private static void evictStrongEntries() {
+    for(Iterator<StrongEntry> iterator = STRONG_CACHE.values().iterator(); strongBytes > maxStrongBytes && iterator.hasNext();) {
+      strongBytes -= iterator.next().bytes;
+      iterator.remove();
+      EVICTIONS.increment();
+    }
+  }
+
+  private static void remove(String key) {
+    CACHE.remove(key);
+
+    StrongEntry entry = STRONG_CACHE.remove(key);
+
+    if(entry != null) {
+      strongBytes -= entry.bytes;
     }
   }
 
   private static void store(String key, CompletableFuture<Image> imageFuture) {
-    ImageFutureWeakReference imageRef = new ImageFutureWeakReference(key, imageFuture, REFERENCE_QUEUE);
+    ImageFutureSoftReference imageRef = new ImageFutureSoftReference(key, imageFuture, REFERENCE_QUEUE);
 
     synchronized(CACHE) {
       CACHE.put(key, imageRef);
@@ -161,15 +296,15 @@ public class ImageCache {
       size = CACHE.size();
 
       for(;;) {
-        ImageFutureWeakReference ref = (ImageFutureWeakReference)REFERENCE_QUEUE.poll();
+        ImageFutureSoftReference ref = (ImageFutureSoftReference)REFERENCE_QUEUE.poll();
 
         if(ref == null) {
           break;
         }
 
-        CACHE.remove(ref.getKey());
-
-        counter++;
+        if(CACHE.remove(ref.getKey(), ref)) {
+          counter++;
+        }
       }
     }
 
@@ -185,25 +320,47 @@ public class ImageCache {
   public static void expunge(ImageHandle handle) {
     if(handle != null) {
       String keyToRemove = handle.getKey();
+      ImageVariantStore store = variantStore;
+
+      if(store != null) {
+        store.remove(handle.getVariantKey());
+      }
 
       synchronized(CACHE) {
-        for(Iterator<Map.Entry<String, WeakReference<CompletableFuture<Image>>>> iterator = CACHE.tailMap(keyToRemove).entrySet().iterator(); iterator.hasNext();) {
-          Map.Entry<String, WeakReference<CompletableFuture<Image>>> entry = iterator.next();
+        for(Iterator<Map.Entry<String, SoftReference<CompletableFuture<Image>>>> iterator = CACHE.tailMap(keyToRemove).entrySet().iterator(); iterator.hasNext();) {
+          Map.Entry<String, SoftReference<CompletableFuture<Image>>> entry = iterator.next();
 
           if(!entry.getKey().startsWith(keyToRemove)) {
             break;
           }
 
+          StrongEntry strongEntry = STRONG_CACHE.remove(entry.getKey());
+
+          if(strongEntry != null) {
+            strongBytes -= strongEntry.bytes;
+          }
+
           iterator.remove();
         }
       }
     }
   }
 
-  private static class ImageFutureWeakReference extends WeakReference<CompletableFuture<Image>> {
+  private static class StrongEntry {
+    @SuppressWarnings("unused")
+    final CompletableFuture<Image> futureImage;  // keeps the soft reference in CACHE from being cleared
+    final long bytes;
+
+    StrongEntry(CompletableFuture<Image> futureImage, long bytes) {
+      this.futureImage = futureImage;
+      this.bytes = bytes;
+    }
+  }
+
+  private static class ImageFutureSoftReference extends SoftReference<CompletableFuture<Image>> {
     private final String key;
 
-    public ImageFutureWeakReference(String key, CompletableFuture<Image> referent, ReferenceQueue<? super CompletableFuture<Image>> q) {
+    public ImageFutureSoftReference(String key, CompletableFuture<Image> referent, ReferenceQueue<? super CompletableFuture<Image>> q) {
       super(referent, q);
 
       this.key = key;
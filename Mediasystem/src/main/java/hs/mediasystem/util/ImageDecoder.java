@@ -0,0 +1,250 @@
+package hs.mediasystem.util;
+
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javafx.embed.swing.SwingFXUtils;
+import javafx.scene.image.Image;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+/**
+ * Decodes encoded images into JavaFX Images which fit a maximum size.<p>
+ *
+ * The size of JPEG and PNG images is read directly from their headers.  Images which
+ * are larger than the maximum size are decoded with source subsampling, so only a
+ * fraction of the pixels of the original is ever held in memory, and are then scaled
+ * the remaining amount to fit.  Decoding happens on a pool with a bounded number of
+ * threads, limiting how many images are being decoded, and how much memory is used
+ * for decoding, at the same time.
+ */
+public class ImageDecoder {
+  private static final AtomicInteger THREAD_NUMBER = new AtomicInteger();
+  private static final int THREAD_COUNT = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+  private static final ExecutorService DECODE_POOL = new ThreadPoolExecutor(THREAD_COUNT, THREAD_COUNT, 0, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+    Thread thread = new Thread(r, "ImageDecoder-" + THREAD_NUMBER.incrementAndGet());
+
+    thread.setDaemon(true);
+
+    return thread;
+  });
+
+  /**
+   * Decodes an image on the decode pool, scaling it down to fit the given size while
+   * keeping its aspect ratio.  Images which already fit are decoded at their original
+   * size.  This method blocks until the image is decoded.
+   *
+   * @param data the encoded image
+   * @param w the maximum width
+   * @param h the maximum height
+   * @return the decoded image, or <code>null</code> if the data could not be decoded
+   */
+  public static Image decode(byte[] data, int w, int h) {
+    try {
+      return DECODE_POOL.submit(() -> decodeNow(data, w, h)).get();
+    }
+    catch(InterruptedException e) {
+      Thread.currentThread().interrupt();
+
+      throw new RuntimeException(e);
+    }
+    catch(ExecutionException e) {
+      throw new RuntimeException(e.getCause());
+    }
+  }
+
+  /**
+   * Decodes an image on the calling thread, scaling it down to fit the given size
+   * while keeping its aspect ratio.
+   *
+   * @param data the encoded image
+   * @param w the maximum width
+   * @param h the maximum height
+   * @return the decoded image, or <code>null</code> if the data could not be decoded
+   */
+  static Image decodeNow(byte[] data, int w, int h) {
+    Dimension size = readSize(data);
+
+    if(size == null) {
+      return null;
+    }
+
+    if(size.width <= w && size.height <= h) {
+      return new Image(new ByteArrayInputStream(data));
+    }
+
+    double scale = Math.min((double)w / size.width, (double)h / size.height);
+    int targetWidth = Math.max(1, (int)Math.round(size.width * scale));
+    int targetHeight = Math.max(1, (int)Math.round(size.height * scale));
+    BufferedImage subsampledImage = readSubsampled(data, Math.max(1, Math.min(size.width / targetWidth, size.height / targetHeight)));
+
+    if(subsampledImage == null) {  // formats ImageIO cannot handle, like CMYK JPEGs
+      return new Image(new ByteArrayInputStream(data), w, h, true, true);
+    }
+
+    BufferedImage scaledImage = new BufferedImage(targetWidth, targetHeight, BufferedImage.TYPE_INT_ARGB_PRE);
+    Graphics2D graphics = scaledImage.createGraphics();
+
+    graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+    graphics.drawImage(subsampledImage, 0, 0, targetWidth, targetHeight, null);
+    graphics.dispose();
+
+    return SwingFXUtils.toFXImage(scaledImage, null);
+  }
+
+  /**
+   * Returns the size of an encoded image.  The size of JPEG and PNG images is read
+   * from their headers, other formats are probed with ImageIO.
+   *
+   * @param data the encoded image
+   * @return the size of the image, or <code>null</code> if it could not be determined
+   */
+  public static Dimension readSize(byte[] data) {
+    if(isPng(data)) {
+      return readPngSize(data);
+    }
+    if(isJpeg(data)) {
+      return readJpegSize(data);
+    }
+
+    return readSizeWithImageIO(data);
+  }
+
+  public static boolean isJpeg(byte[] data) {
+    return data.length > 2 && (data[0] & 0xff) == 0xFF && (data[1] & 0xff) == 0xD8;
+  }
+
+  public static boolean isPng(byte[] data) {
+    return data.length > 8 && (data[0] & 0xff) == 0x89 && data[1] == 'P' && data[2] == 'N' && data[3] == 'G';
+  }
+
+  /**
+   * Reads the size from the IHDR chunk, which must be the first chunk of a PNG image.
+   */
+  private static Dimension readPngSize(byte[] data) {
+    if(data.length < 24 || data[12] != 'I' || data[13] != 'H' || data[14] != 'D' || data[15] != 'R') {
+      return null;
+    }
+
+    return new Dimension(readInt(data, 16), readInt(data, 20));
+  }
+
+  /**
+   * Reads the size from the first start of frame segment of a JPEG image, skipping any
+   * segments (like EXIF data) preceding it.
+   */
+  private static Dimension readJpegSize(byte[] data) {
+    int offset = 2;
+
+    while(offset + 3 < data.length) {
+      if((data[offset] & 0xff) != 0xFF) {
+        return null;
+      }
+
+      int marker = data[offset + 1] & 0xff;
+
+      if(marker == 0xFF) {  // fill byte
+        offset++;
+        continue;
+      }
+      if(marker == 0x01 || (marker >= 0xD0 && marker <= 0xD8)) {  // markers without a segment
+        offset += 2;
+        continue;
+      }
+      if(marker == 0xD9 || marker == 0xDA) {  // end of image or start of scan, no frame found
+        return null;
+      }
+
+      int length = readShort(data, offset + 2);
+
+      if(isStartOfFrame(marker)) {
+        if(offset + 8 >= data.length) {
+          return null;
+        }
+
+        return new Dimension(readShort(data, offset + 7), readShort(data, offset + 5));
+      }
+
+      offset += 2 + length;
+    }
+
+    return null;
+  }
+
+  private static boolean isStartOfFrame(int marker) {
+    return marker >= 0xC0 && marker <= 0xCF && marker != 0xC4 && marker != 0xC8 && marker != 0xCC;
+  }
+
+  private static int readShort(byte[] data, int offset) {
+    return (data[offset] & 0xff) << 8 | data[offset + 1] & 0xff;
+  }
+
+  private static int readInt(byte[] data, int offset) {
+    return readShort(data, offset) << 16 | readShort(data, offset + 2);
+  }
+
+  private static Dimension readSizeWithImageIO(byte[] data) {
+    try(ImageInputStream is = ImageIO.createImageInputStream(new ByteArrayInputStream(data))) {
+      Iterator<ImageReader> imageReaders = ImageIO.getImageReaders(is);
+
+      if(imageReaders.hasNext()) {
+        ImageReader imageReader = imageReaders.next();
+
+        try {
+          imageReader.setInput(is);
+
+          return new Dimension(imageReader.getWidth(imageReader.getMinIndex()), imageReader.getHeight(imageReader.getMinIndex()));
+        }
+        finally {
+          imageReader.dispose();
+        }
+      }
+
+      return null;
+    }
+    catch(IOException e) {
+      return null;
+    }
+  }
+
+  private static BufferedImage readSubsampled(byte[] data, int subsampling) {
+    try(ImageInputStream is = ImageIO.createImageInputStream(new ByteArrayInputStream(data))) {
+      Iterator<ImageReader> imageReaders = ImageIO.getImageReaders(is);
+
+      if(imageReaders.hasNext()) {
+        ImageReader imageReader = imageReaders.next();
+
+        try {
+          ImageReadParam param = imageReader.getDefaultReadParam();
+
+          param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+          imageReader.setInput(is, true, true);
+
+          return imageReader.read(imageReader.getMinIndex(), param);
+        }
+        finally {
+          imageReader.dispose();
+        }
+      }
+
+      return null;
+    }
+    catch(IOException | RuntimeException e) {
+      return null;
+    }
+  }
+}
@@ -4,4 +4,14 @@ public interface ImageHandle {
   byte[] getImageData();
   String getKey();
   boolean isFastSource();
+
+  /**
+   * Returns the key under which downscaled variants of this image are stored.  By
+   * default this is the key of the image.
+   *
+   * @return a key, never null
+   */
+  default String getVariantKey() {
+    return getKey();
+  }
 }
@@ -0,0 +1,313 @@
+package hs.mediasystem.util;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javafx.embed.swing.SwingFXUtils;
+import javafx.scene.image.Image;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Stores downscaled variants of images on disk, so an image which is shown at a
+ * smaller size than its original does not need to be fetched and scaled again.<p>
+ *
+ * Variants are stored as separate files, named after a hash of the key of the image
+ * and the size the image was scaled to fit.  Variants are written asynchronously and
+ * read using memory mapping.<p>
+ *
+ * The variants are kept within a byte budget.  When a write exceeds it, the least
+ * recently used variants are removed, using the last modified times of the files, which
+ * are updated for variants which were read.
+ */
+public class ImageVariantStore {
+  private final Path directory;
+  private final long maxBytes;
+  private final Executor writer;
+  private final Set<Path> readPaths = ConcurrentHashMap.newKeySet();  // read since the last clean up
+
+  private long storedBytes = -1;  // only accessed by the writer, -1 until determined
+
+  /**
+   * Constructs a new instance.
+   *
+   * @param directory the directory to store the variants in
+   * @param maxBytes the maximum number of bytes the variants may use
+   */
+  public ImageVariantStore(Path directory, long maxBytes) {
+    this(directory, maxBytes, new ThreadPoolExecutor(1, 1, 0, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+      Thread thread = new Thread(r, "ImageVariantStore-Writer");
+
+      thread.setDaemon(true);
+      thread.setPriority(Thread.MIN_PRIORITY);
+
+      return thread;
+    }));
+  }
+
+  ImageVariantStore(Path directory, long maxBytes, Executor writer) {
+    this.directory = directory;
+    this.maxBytes = maxBytes;
+    this.writer = writer;
+  }
+
+  /**
+   * Returns the contents of a stored variant of an image, or <code>null</code> if no
+   * such variant was stored.
+   *
+   * @param key the key of the image
+   * @param w the width the image was scaled to fit
+   * @param h the height the image was scaled to fit
+   * @return the contents of the variant as a read only memory mapped buffer, or <code>null</code> if there is no such variant
+   */
+  public ByteBuffer read(String key, int w, int h) {
+    Path path = directory.resolve(createFileName(key, w, h));
+
+    try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+      readPaths.add(path);
+
+      return buffer;
+    }
+    catch(NoSuchFileException e) {
+      return null;
+    }
+    catch(IOException e) {
+      System.out.println("[WARN] ImageVariantStore.read() - Unable to read variant of " + key + " (" + w + "x" + h + "): " + e);
+
+      return null;
+    }
+  }
+
+  /**
+   * Stores a variant of an image in the background.
+   *
+   * @param key the key of the image
+   * @param w the width the image was scaled to fit
+   * @param h the height the image was scaled to fit
+   * @param image the scaled image
+   * @param opaque whether the image can be stored without its alpha channel, allowing a more compact format
+   */
+  public void writeAsync(String key, int w, int h, Image image, boolean opaque) {
+    writer.execute(() -> {
+      Path path = directory.resolve(createFileName(key, w, h));
+
+      try {
+        Files.createDirectories(directory);
+
+        Path tempPath = Files.createTempFile(directory, "variant", ".tmp");
+
+        try {
+          BufferedImage bufferedImage = SwingFXUtils.fromFXImage(image, null);
+
+          if(opaque) {
+            BufferedImage rgbImage = new BufferedImage(bufferedImage.getWidth(), bufferedImage.getHeight(), BufferedImage.TYPE_INT_RGB);
+            Graphics2D graphics = rgbImage.createGraphics();
+
+            graphics.drawImage(bufferedImage, 0, 0, null);
+            graphics.dispose();
+
+            bufferedImage = rgbImage;
+          }
+
+          ImageIO.write(bufferedImage, opaque ? "jpg" : "png", tempPath.toFile());
+          Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        finally {
+          Files.deleteIfExists(tempPath);
+        }
+
+        if(storedBytes < 0) {
+          cleanUp();  // determines the bytes used
+        }
+        else {
+          storedBytes += Files.size(path);
+
+          if(storedBytes > maxBytes) {
+            cleanUp();
+          }
+        }
+      }
+      catch(IOException | RuntimeException e) {
+        System.out.println("[WARN] ImageVariantStore.writeAsync() - Unable to store variant of " + key + " (" + w + "x" + h + "): " + e);
+      }
+    });
+  }
+
+  /**
+   * Removes all stored variants of an image.
+   *
+   * @param key the key of the image
+   */
+  public void remove(String key) {
+    remove(Collections.singleton(key));
+  }
+
+  /**
+   * Removes all stored variants of the given images.
+   *
+   * @param keys the keys of the images
+   */
+  public void remove(Collection<String> keys) {
+    Set<String> prefixes = new HashSet<>();
+
+    for(String key : keys) {
+      prefixes.add(CryptoUtil.sha256(key) + "-");
+    }
+
+    writer.execute(() -> {
+      if(!Files.isDirectory(directory)) {
+        return;
+      }
+
+      try(DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+        for(Path path : stream) {
+          String fileName = path.getFileName().toString();
+
+          if(prefixes.contains(fileName.substring(0, fileName.indexOf('-') + 1))) {
+            long size = Files.size(path);
+
+            Files.delete(path);
+
+            if(storedBytes >= 0) {
+              storedBytes -= size;
+            }
+          }
+        }
+      }
+      catch(IOException e) {
+        System.out.println("[WARN] ImageVariantStore.remove() - Unable to remove variants of " + keys.size() + " images: " + e);
+      }
+    });
+  }
+
+  /**
+   * Determines the bytes used by the variants, and if they exceed the budget, removes
+   * the least recently used variants until they use at most three quarters of it, so
+   * not every write needs a clean up.  Must be called by the writer.
+   */
+  void cleanUp() throws IOException {
+    FileTime now = FileTime.fromMillis(System.currentTimeMillis());
+
+    for(Iterator<Path> iterator = readPaths.iterator(); iterator.hasNext();) {
+      Path path = iterator.next();
+
+      iterator.remove();
+
+      try {
+        Files.setLastModifiedTime(path, now);
+      }
+      catch(NoSuchFileException e) {
+        // removed since it was read
+      }
+    }
+
+    List<Path> paths = new ArrayList<>();
+    Map<Path, BasicFileAttributes> attributesByPath = new HashMap<>();
+    long bytes = 0;
+
+    if(Files.isDirectory(directory)) {
+      try(DirectoryStream<Path> stream = Files.newDirectoryStream(directory, path -> !path.getFileName().toString().endsWith(".tmp"))) {
+        for(Path path : stream) {
+          BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+
+          paths.add(path);
+          attributesByPath.put(path, attributes);
+          bytes += attributes.size();
+        }
+      }
+    }
+
+    if(bytes > maxBytes) {
+      int count = 0;
+
+      paths.sort(Comparator.comparing(path -> attributesByPath.get(path).lastModifiedTime()));
+
+      for(Path path : paths) {
+        if(bytes <= maxBytes / 4 * 3) {
+          break;
+        }
+
+        try {
+          Files.delete(path);
+          bytes -= attributesByPath.get(path).size();
+          count++;
+        }
+        catch(IOException e) {
+          // in use or already removed, left for a later clean up
+        }
+      }
+
+      System.out.println("[INFO] ImageVariantStore.cleanUp() - Removed " + count + " least recently used variants, variants now use " + bytes + " of " + maxBytes + " bytes");
+    }
+
+    storedBytes = bytes;
+  }
+
+  /**
+   * Returns an InputStream which reads the remaining contents of the given buffer.
+   *
+   * @param buffer a ByteBuffer
+   * @return an InputStream, never null
+   */
+  public static InputStream asInputStream(ByteBuffer buffer) {
+    ByteBuffer source = buffer.duplicate();
+
+    return new InputStream() {
+      @Override
+      public int read() {
+        return source.hasRemaining() ? source.get() & 0xff : -1;
+      }
+
+      @Override
+      public int read(byte[] bytes, int offset, int length) {
+        if(!source.hasRemaining()) {
+          return -1;
+        }
+
+        int count = Math.min(length, source.remaining());
+
+        source.get(bytes, offset, count);
+
+        return count;
+      }
+
+      @Override
+      public int available() {
+        return source.remaining();
+      }
+    };
+  }
+
+  private static String createFileName(String key, int w, int h) {
+    return CryptoUtil.sha256(key) + "-" + w + "x" + h;
+  }
+}
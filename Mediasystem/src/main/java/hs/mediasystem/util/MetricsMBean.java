@@ -0,0 +1,104 @@
+package hs.mediasystem.util;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.SortedMap;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+
+/**
+ * Exposes all metrics of a {@link MetricsRegistry} as read only JMX attributes.
+ */
+public class MetricsMBean implements DynamicMBean {
+  private final MetricsRegistry registry;
+
+  private MetricsMBean(MetricsRegistry registry) {
+    this.registry = registry;
+  }
+
+  /**
+   * Registers the given registry with the platform MBean server.
+   *
+   * @param registry a {@link MetricsRegistry}
+   * @param objectName the object name to register the metrics under, for example <code>hs.mediasystem:type=Metrics</code>
+   */
+  public static void register(MetricsRegistry registry, String objectName) {
+    try {
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      ObjectName name = new ObjectName(objectName);
+
+      if(server.isRegistered(name)) {
+        server.unregisterMBean(name);
+      }
+
+      server.registerMBean(new MetricsMBean(registry), name);
+    }
+    catch(JMException e) {
+      System.out.println("[WARN] MetricsMBean.register() - Unable to register metrics with JMX: " + e);
+    }
+  }
+
+  @Override
+  public Object getAttribute(String attribute) throws AttributeNotFoundException {
+    String value = registry.snapshot().get(attribute);
+
+    if(value == null) {
+      throw new AttributeNotFoundException(attribute);
+    }
+
+    return value;
+  }
+
+  @Override
+  public AttributeList getAttributes(String[] attributes) {
+    SortedMap<String, String> snapshot = registry.snapshot();
+    AttributeList list = new AttributeList();
+
+    for(String attribute : attributes) {
+      String value = snapshot.get(attribute);
+
+      if(value != null) {
+        list.add(new Attribute(attribute, value));
+      }
+    }
+
+    return list;
+  }
+
+  @Override
+  public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+    throw new AttributeNotFoundException("Metrics are read only: " + attribute.getName());
+  }
+
+  @Override
+  public AttributeList setAttributes(AttributeList attributes) {
+    return new AttributeList();
+  }
+
+  @Override
+  public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+    throw new ReflectionException(new NoSuchMethodException(actionName), "Metrics have no operations: " + actionName);
+  }
+
+  @Override
+  public MBeanInfo getMBeanInfo() {
+    SortedMap<String, String> snapshot = registry.snapshot();
+    MBeanAttributeInfo[] attributeInfos = new MBeanAttributeInfo[snapshot.size()];
+    int index = 0;
+
+    for(Map.Entry<String, String> entry : snapshot.entrySet()) {
+      attributeInfos[index++] = new MBeanAttributeInfo(entry.getKey(), String.class.getName(), entry.getKey(), true, false, false);
+    }
+
+    return new MBeanInfo(getClass().getName(), "MediaSystem metrics", attributeInfos, null, null, null);
+  }
+}
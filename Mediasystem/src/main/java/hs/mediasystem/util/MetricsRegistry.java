@@ -0,0 +1,66 @@
+package hs.mediasystem.util;
+
+import java.util.SortedMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Registry of named metrics which can be read at runtime.  Metrics are created on
+ * first use; asking for a metric with the same name again returns the same metric.
+ */
+public interface MetricsRegistry {
+
+  /**
+   * Returns the counter with the given name, creating it if needed.
+   *
+   * @param name a name
+   * @return a {@link Counter}, never null
+   */
+  Counter counter(String name);
+
+  /**
+   * Returns the histogram with the given name, creating it if needed.
+   *
+   * @param name a name
+   * @return a {@link Histogram}, never null
+   */
+  Histogram histogram(String name);
+
+  /**
+   * Registers a gauge, a metric of which the value is determined when it is read.
+   * Registering a gauge with the same name as an existing gauge replaces it.
+   *
+   * @param name a name
+   * @param supplier a supplier for the value of the gauge
+   */
+  void gauge(String name, LongSupplier supplier);
+
+  /**
+   * Returns the current values of all metrics in this registry, formatted as text
+   * and sorted by name.
+   *
+   * @return the current values of all metrics, never null
+   */
+  SortedMap<String, String> snapshot();
+
+  public interface Counter {
+    void increment();
+    void add(long amount);
+    long get();
+  }
+
+  public interface Histogram {
+    void record(long value);
+    long getCount();
+    long getMax();
+    double getMean();
+
+    /**
+     * Returns an upper bound for the value below which the given fraction of the
+     * recorded values falls.
+     *
+     * @param fraction a fraction between 0 and 1
+     * @return an upper bound for the value at the given fraction
+     */
+    long getPercentile(double fraction);
+  }
+}
@@ -0,0 +1,152 @@
+package hs.mediasystem.util;
+
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * In memory {@link MetricsRegistry}.  Histograms use power of two buckets, so
+ * percentiles are reported as the upper bound of the bucket they fall in.
+ */
+public class SimpleMetricsRegistry implements MetricsRegistry {
+  private final Map<String, Object> metrics = new ConcurrentHashMap<>();
+
+  @Override
+  public Counter counter(String name) {
+    return get(name, SimpleCounter.class, SimpleCounter::new);
+  }
+
+  @Override
+  public Histogram histogram(String name) {
+    return get(name, SimpleHistogram.class, SimpleHistogram::new);
+  }
+
+  @Override
+  public void gauge(String name, LongSupplier supplier) {
+    metrics.compute(name, (k, previous) -> {
+      if(previous != null && !(previous instanceof LongSupplier)) {
+        throw new IllegalArgumentException("Metric '" + name + "' already exists with a different type: " + previous.getClass().getSimpleName());
+      }
+
+      return supplier;
+    });
+  }
+
+  @Override
+  public SortedMap<String, String> snapshot() {
+    SortedMap<String, String> snapshot = new TreeMap<>();
+
+    for(Map.Entry<String, Object> entry : metrics.entrySet()) {
+      Object metric = entry.getValue();
+
+      snapshot.put(entry.getKey(), metric instanceof LongSupplier ? "" + ((LongSupplier)metric).getAsLong() : metric.toString());
+    }
+
+    return snapshot;
+  }
+
+  private <T> T get(String name, Class<T> type, Supplier<T> factory) {
+    Object metric = metrics.get(name);  // Avoids locking in computeIfAbsent for the common case
+
+    if(metric == null) {
+      metric = metrics.computeIfAbsent(name, k -> factory.get());
+    }
+
+    if(!type.isInstance(metric)) {
+      throw new IllegalArgumentException("Metric '" + name + "' already exists with a different type: " + metric.getClass().getSimpleName());
+    }
+
+    return type.cast(metric);
+  }
+
+  private static class SimpleCounter implements Counter {
+    private final LongAdder value = new LongAdder();
+
+    @Override
+    public void increment() {
+      value.increment();
+    }
+
+    @Override
+    public void add(long amount) {
+      value.add(amount);
+    }
+
+    @Override
+    public long get() {
+      return value.sum();
+    }
+
+    @Override
+    public String toString() {
+      return "" + value.sum();
+    }
+  }
+
+  private static class SimpleHistogram implements Histogram {
+    private final LongAdder[] buckets = new LongAdder[64];  // bucket i holds values with bit length i
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    SimpleHistogram() {
+      for(int i = 0; i < buckets.length; i++) {
+        buckets[i] = new LongAdder();
+      }
+    }
+
+    @Override
+    public void record(long value) {
+      long v = Math.max(0, value);
+
+      buckets[64 - Long.numberOfLeadingZeros(v)].increment();
+      count.increment();
+      sum.add(v);
+      max.accumulate(v);
+    }
+
+    @Override
+    public long getCount() {
+      return count.sum();
+    }
+
+    @Override
+    public long getMax() {
+      return max.get();
+    }
+
+    @Override
+    public double getMean() {
+      long n = count.sum();
+
+      return n == 0 ? 0 : (double)sum.sum() / n;
+    }
+
+    @Override
+    public long getPercentile(double fraction) {
+      long n = count.sum();
+      long threshold = (long)Math.ceil(n * fraction);
+      long seen = 0;
+
+      for(int i = 0; i < buckets.length; i++) {
+        seen += buckets[i].sum();
+
+        if(seen >= threshold && seen > 0) {
+          return Math.min((1L << i) - 1, max.get());
+        }
+      }
+
+      return max.get();
+    }
+
+    @Override
+    public String toString() {
+      return String.format("count=%d mean=%.1f p50<=%d p90<=%d p99<=%d max=%d", getCount(), getMean(), getPercentile(0.5), getPercentile(0.9), getPercentile(0.99), getMax());
+    }
+  }
+}
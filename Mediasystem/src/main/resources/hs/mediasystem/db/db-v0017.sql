@@ -0,0 +1,14 @@
+CREATE TABLE metadata (
+  urlhash ${Sha256Type} NOT NULL,
+  url varchar(2000) NOT NULL,
+  creationtime timestamp NOT NULL,
+  expiresat timestamp NOT NULL,
+  data ${BinaryType} NOT NULL,
+
+  CONSTRAINT metadata_urlhash PRIMARY KEY (urlhash)
+);
+
+CREATE INDEX metadata_creationtime ON metadata (creationtime);
+CREATE INDEX metadata_expiresat ON metadata (expiresat);
+
+DELETE FROM images WHERE url LIKE 'http://api.themoviedb.org/%';
@@ -0,0 +1,8 @@
+CREATE TABLE negativecache (
+  cachekey varchar(2000) NOT NULL,
+  failurecount integer NOT NULL,
+  lastfailure timestamp NOT NULL,
+  retryafter timestamp NOT NULL,
+
+  CONSTRAINT negativecache_cachekey PRIMARY KEY (cachekey)
+);
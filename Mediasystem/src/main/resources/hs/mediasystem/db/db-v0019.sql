@@ -0,0 +1,6 @@
+ALTER TABLE images ADD COLUMN lastaccesstime timestamp NOT NULL DEFAULT current_timestamp;
+ALTER TABLE images ADD COLUMN datasize integer NOT NULL DEFAULT 0;
+
+UPDATE images SET lastaccesstime = creationtime, datasize = length(image);
+
+CREATE INDEX images_lastaccesstime ON images (lastaccesstime);
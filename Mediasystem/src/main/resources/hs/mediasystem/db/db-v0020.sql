@@ -0,0 +1,4 @@
+ALTER TABLE images ALTER COLUMN image ${DropNotNull};
+ALTER TABLE images ADD COLUMN blobhash char(64);
+
+CREATE INDEX images_blobhash ON images (blobhash);
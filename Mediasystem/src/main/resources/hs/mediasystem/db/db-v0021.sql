@@ -0,0 +1,3 @@
+DELETE FROM identifiers WHERE id NOT IN (SELECT MAX(id) FROM identifiers GROUP BY mediadata_id, mediatype, provider);
+
+ALTER TABLE identifiers ADD CONSTRAINT identifiers_mediadata_id_mediatype_provider UNIQUE (mediadata_id, mediatype, provider);
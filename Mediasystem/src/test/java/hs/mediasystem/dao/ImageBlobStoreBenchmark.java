@@ -0,0 +1,123 @@
+package hs.mediasystem.dao;
+
+import hs.mediasystem.db.ConnectionPool;
+import hs.mediasystem.db.Database;
+import hs.mediasystem.db.Database.Transaction;
+import hs.mediasystem.db.SimpleConnectionPoolDataSource;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Compares the latency of loading images from the images table with loading them
+ * from an {@link ImageBlobStore}, both by reading them into an array and by memory
+ * mapping them.  Images consist of random data, which like JPEG data does not
+ * compress.<p>
+ *
+ * Run with: <code>java hs.mediasystem.dao.ImageBlobStoreBenchmark [images] [kilobytes per image] [jdbc url]</code><p>
+ *
+ * The default database is an in-memory Derby database.  A different database must
+ * already contain an images table, of which the rows starting with
+ * <code>benchmark:</code> are replaced.
+ */
+public class ImageBlobStoreBenchmark {
+
+  public static void main(String[] args) throws Exception {
+    int imageCount = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+    int imageKilobytes = args.length > 1 ? Integer.parseInt(args[1]) : 300;
+    String url = args.length > 2 ? args[2] : "jdbc:derby:memory:ImageBlobStoreBenchmark;create=true";
+    Path directory = Files.createTempDirectory("blobs");
+
+    try(ConnectionPool pool = new ConnectionPool(new SimpleConnectionPoolDataSource(url), 5, 60 * 1000)) {
+      Database database = new Database(pool::getConnection);
+      ImageBlobStore store = new ImageBlobStore(directory);
+      List<String> urls = new ArrayList<>();
+      List<String> hashes = new ArrayList<>();
+      Random random = new Random(1);
+
+      if(args.length <= 2) {
+        createTable(pool);
+      }
+
+      try(Transaction transaction = database.beginTransaction()) {
+        transaction.delete("images", "url LIKE 'benchmark:%'");
+
+        for(int i = 0; i < imageCount; i++) {
+          byte[] data = new byte[imageKilobytes * 1024];
+
+          random.nextBytes(data);
+
+          urls.add("benchmark:" + i);
+          hashes.add(store.write(data));
+          transaction.insert(new Image("benchmark:" + i, data));
+        }
+
+        transaction.commit();
+      }
+
+      for(int round = 0; round < 2; round++) {  // first round is warm up
+        System.out.println(round == 0 ? "Warm up:" : "Results:");
+
+        run("  Database", urls, u -> {
+          try(Transaction transaction = database.beginReadOnlyTransaction()) {
+            return transaction.selectUnique(Image.class, "url = ?", u).getImage().length;
+          }
+        });
+        run("  Blob store (read)", hashes, h -> store.read(h).length);
+        run("  Blob store (mapped)", hashes, h -> {
+          ByteBuffer buffer = store.map(h);
+          int sum = 0;
+
+          while(buffer.hasRemaining()) {  // touch all data, like a decoder would
+            sum += buffer.get();
+          }
+
+          return sum == Integer.MIN_VALUE ? 0 : buffer.capacity();
+        });
+      }
+
+      try(Transaction transaction = database.beginTransaction()) {
+        transaction.delete("images", "url LIKE 'benchmark:%'");
+        transaction.commit();
+      }
+    }
+    finally {
+      try(Stream<Path> stream = Files.walk(directory)) {
+        stream.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+      }
+    }
+  }
+
+  private static void createTable(ConnectionPool pool) throws Exception {
+    try(Connection connection = pool.getConnection();
+        Statement statement = connection.createStatement()) {
+      statement.execute("CREATE TABLE images (url varchar(1000) NOT NULL, creationtime timestamp NOT NULL, lastaccesstime timestamp NOT NULL, datasize integer NOT NULL, image blob, blobhash char(64), CONSTRAINT images_url PRIMARY KEY (url))");
+    }
+  }
+
+  private static void run(String name, List<String> keys, Function<String, Integer> loader) {
+    long[] nanos = new long[keys.size()];
+    long bytes = 0;
+
+    for(int i = 0; i < keys.size(); i++) {
+      long startNanos = System.nanoTime();
+
+      bytes += loader.apply(keys.get(i));
+      nanos[i] = System.nanoTime() - startNanos;
+    }
+
+    Arrays.sort(nanos);
+
+    System.out.printf("%-24s avg %,8d us, p50 %,8d us, p99 %,8d us, %,d MB%n", name, Arrays.stream(nanos).sum() / nanos.length / 1000, nanos[nanos.length / 2] / 1000, nanos[nanos.length * 99 / 100] / 1000, bytes / 1024 / 1024);
+  }
+}
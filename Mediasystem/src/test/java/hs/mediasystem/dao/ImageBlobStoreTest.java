@@ -0,0 +1,65 @@
+package hs.mediasystem.dao;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ImageBlobStoreTest {
+  private Path directory;
+  private ImageBlobStore store;
+
+  @Before
+  public void before() throws IOException {
+    directory = Files.createTempDirectory("blobs");
+    store = new ImageBlobStore(directory);
+  }
+
+  @After
+  public void after() throws IOException {
+    try(Stream<Path> stream = Files.walk(directory)) {
+      stream.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+    }
+  }
+
+  @Test
+  public void shouldStoreDataUnderItsHash() {
+    byte[] data = new byte[] {1, 2, 3, 4, 5};
+    String hash = store.write(data);
+
+    assertEquals("74f81fe167d99b4cb41d6d0ccda82278caee9f3e2f25d5e5a3936ff3dcec60d0", hash);
+    assertArrayEquals(data, store.read(hash));
+
+    ByteBuffer buffer = store.map(hash);
+    byte[] mappedData = new byte[buffer.remaining()];
+
+    buffer.get(mappedData);
+
+    assertArrayEquals(data, mappedData);
+  }
+
+  @Test
+  public void shouldStoreIdenticalDataOnce() {
+    assertEquals(store.write(new byte[] {1, 2, 3}), store.write(new byte[] {1, 2, 3}));
+  }
+
+  @Test
+  public void shouldReturnNullForMissingData() {
+    String hash = store.write(new byte[] {1, 2, 3});
+
+    store.delete(hash);
+
+    assertNull(store.read(hash));
+    assertNull(store.map(hash));
+  }
+}
@@ -0,0 +1,35 @@
+package hs.mediasystem.dao;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import hs.mediasystem.dao.ImageStoreMaintainer.StoredImage;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class ImageStoreMaintainerTest {
+  private static final List<StoredImage> IMAGES = Arrays.asList(  // least recently used first
+    new StoredImage("a", 1000, 100, null),
+    new StoredImage("b", 2000, 100, null),
+    new StoredImage("c", 3000, 100, null),
+    new StoredImage("d", 4000, 100, null),
+    new StoredImage("e", 5000, 100, null)
+  );
+
+  @Test
+  public void shouldSelectOnlyEnoughImagesToFreeExcessBytes() {
+    List<StoredImage> images = ImageStoreMaintainer.selectForEviction(IMAGES, 150);
+
+    assertEquals(2, images.size());
+    assertEquals("a", images.get(0).url);
+    assertEquals("b", images.get(1).url);
+  }
+
+  @Test
+  public void shouldSelectNothingWhenWithinBudget() {
+    assertTrue(ImageStoreMaintainer.selectForEviction(IMAGES, 0).isEmpty());
+    assertTrue(ImageStoreMaintainer.selectForEviction(IMAGES, -100).isEmpty());
+  }
+}
@@ -0,0 +1,66 @@
+package hs.mediasystem.dao;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class ImageUrlIndexTest {
+
+  @Test
+  public void shouldContainAddedUrls() {
+    ImageUrlIndex index = new ImageUrlIndex();
+
+    for(int i = 0; i < 10000; i++) {
+      index.add("http://image.tmdb.org/t/p/original/" + i + ".jpg");
+    }
+
+    assertEquals(10000, index.size());
+
+    for(int i = 0; i < 10000; i++) {
+      assertTrue(index.contains("http://image.tmdb.org/t/p/original/" + i + ".jpg"));
+      assertFalse(index.contains("http://image.tmdb.org/t/p/w185/" + i + ".jpg"));
+    }
+  }
+
+  @Test
+  public void shouldRemoveUrls() {
+    ImageUrlIndex index = new ImageUrlIndex();
+
+    for(int i = 0; i < 10000; i++) {
+      index.add("http://image.tmdb.org/t/p/original/" + i + ".jpg");
+    }
+
+    for(int i = 0; i < 10000; i += 2) {
+      index.remove("http://image.tmdb.org/t/p/original/" + i + ".jpg");
+    }
+
+    assertEquals(5000, index.size());
+
+    for(int i = 0; i < 10000; i++) {
+      assertEquals(i % 2 == 1, index.contains("http://image.tmdb.org/t/p/original/" + i + ".jpg"));
+    }
+  }
+
+  @Test
+  public void shouldCollectAccessedUrls() {
+    ImageUrlIndex index = new ImageUrlIndex();
+
+    index.markAccessed("http://image.tmdb.org/t/p/original/1.jpg");
+    index.markAccessed("http://image.tmdb.org/t/p/original/1.jpg");
+
+    assertEquals(1, index.takeAccessedUrls().size());
+    assertTrue(index.takeAccessedUrls().isEmpty());
+  }
+
+  @Test
+  public void shouldNotCountDuplicates() {
+    ImageUrlIndex index = new ImageUrlIndex();
+
+    index.add("http://image.tmdb.org/t/p/original/1.jpg");
+    index.add("http://image.tmdb.org/t/p/original/1.jpg");
+
+    assertEquals(1, index.size());
+  }
+}
@@ -0,0 +1,126 @@
+package hs.mediasystem.db;
+
+import java.io.PrintWriter;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Logger;
+
+import javax.sql.ConnectionPoolDataSource;
+import javax.sql.PooledConnection;
+
+/**
+ * Measures borrow/return throughput of {@link ConnectionPool} with a number of
+ * concurrent borrowers.  Connections are backed by a stub which takes 100 us to
+ * answer {@link Connection#isValid(int)}, to simulate a round trip to the database.<p>
+ *
+ * Run with: <code>java hs.mediasystem.db.ConnectionPoolBenchmark [threads] [seconds]</code>
+ */
+public class ConnectionPoolBenchmark {
+  private static final long VALIDATION_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+  public static void main(String[] args) throws Exception {
+    int threadCount = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+    int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+    try(ConnectionPool pool = new ConnectionPool(new StubDataSource(), 5, 60 * 1000)) {
+      run(pool, threadCount, 1);  // warm up
+      System.out.printf("%d borrowers: %,d borrows/s%n", threadCount, run(pool, threadCount, seconds) / seconds);
+    }
+  }
+
+  private static long run(ConnectionPool pool, int threadCount, int seconds) throws InterruptedException {
+    LongAdder borrows = new LongAdder();
+    AtomicBoolean stop = new AtomicBoolean();
+    CountDownLatch done = new CountDownLatch(threadCount);
+    List<Thread> threads = new ArrayList<>();
+
+    for(int i = 0; i < threadCount; i++) {
+      threads.add(new Thread(() -> {
+        try {
+          while(!stop.get()) {
+            try(Connection connection = pool.getConnection()) {
+              connection.getAutoCommit();
+            }
+
+            borrows.increment();
+          }
+        }
+        catch(Exception e) {
+          e.printStackTrace();
+        }
+        finally {
+          done.countDown();
+        }
+      }));
+    }
+
+    for(Thread thread : threads) {
+      thread.start();
+    }
+
+    Thread.sleep(seconds * 1000L);
+    stop.set(true);
+    done.await();
+
+    return borrows.sum();
+  }
+
+  private static class StubDataSource implements ConnectionPoolDataSource {
+    @Override
+    public PooledConnection getPooledConnection() {
+      Connection connection = (Connection)Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[] {Connection.class}, (proxy, method, args) -> {
+        switch(method.getName()) {
+        case "isValid":
+          LockSupport.parkNanos(VALIDATION_NANOS);
+          return true;
+        case "getAutoCommit":
+        case "isClosed":
+          return false;
+        case "hashCode":
+          return System.identityHashCode(proxy);
+        case "equals":
+          return proxy == args[0];
+        }
+
+        return null;
+      });
+
+      return new SimplePooledConnection(connection, 0);
+    }
+
+    @Override
+    public PooledConnection getPooledConnection(String user, String password) {
+      return getPooledConnection();
+    }
+
+    @Override
+    public PrintWriter getLogWriter() {
+      return null;
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) {
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) {
+    }
+
+    @Override
+    public int getLoginTimeout() {
+      return 0;
+    }
+
+    @Override
+    public Logger getParentLogger() {
+      return null;
+    }
+  }
+}
@@ -0,0 +1,123 @@
+package hs.mediasystem.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import hs.mediasystem.util.MetricsRegistry;
+import hs.mediasystem.util.SimpleMetricsRegistry;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import javax.sql.ConnectionPoolDataSource;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+public class ConnectionPoolTest {
+  @Mock private ConnectionPoolDataSource dataSource;
+  @Mock private Connection connection1;
+  @Mock private Connection connection2;
+
+  private final MetricsRegistry metricsRegistry = new SimpleMetricsRegistry();
+
+  private ConnectionPool pool;
+
+  @Before
+  public void before() throws SQLException {
+    MockitoAnnotations.initMocks(this);
+
+    when(dataSource.getPooledConnection()).thenReturn(new SimplePooledConnection(connection1, 0)).thenReturn(new SimplePooledConnection(connection2, 0));
+    when(connection1.isValid(1)).thenReturn(true);
+  }
+
+  @After
+  public void after() {
+    pool.close();
+  }
+
+  @Test
+  public void shouldReuseRecentlyReturnedConnectionWithoutValidation() throws SQLException {
+    pool = new ConnectionPool(dataSource, 2, 1000, 60 * 1000, 60 * 1000, metricsRegistry);
+
+    pool.getConnection().close();
+    pool.getConnection().close();
+
+    verify(dataSource, times(1)).getPooledConnection();
+    verify(connection1, never()).isValid(1);
+    assertEquals(1, pool.getIdleCount());
+    assertEquals(0, pool.getActiveCount());
+  }
+
+  @Test
+  public void shouldValidateConnectionIdleLongerThanThreshold() throws SQLException, InterruptedException {
+    pool = new ConnectionPool(dataSource, 2, 1000, 1, 60 * 1000, metricsRegistry);
+
+    pool.getConnection().close();
+
+    Thread.sleep(10);
+
+    pool.getConnection().close();
+
+    verify(dataSource, times(1)).getPooledConnection();
+    verify(connection1).isValid(1);
+  }
+
+  @Test
+  public void shouldReplaceInvalidConnection() throws SQLException, InterruptedException {
+    when(connection1.isValid(1)).thenReturn(false);
+
+    pool = new ConnectionPool(dataSource, 2, 1000, 1, 60 * 1000, metricsRegistry);
+
+    pool.getConnection().close();
+
+    Thread.sleep(10);
+
+    try(Connection connection = pool.getConnection()) {
+      assertEquals(1, pool.getActiveCount());
+    }
+
+    verify(dataSource, times(2)).getPooledConnection();
+    verify(connection1).close();
+    verify(connection2, never()).isValid(1);
+    assertEquals(1, metricsRegistry.counter("db.pool.validationFailures").get());
+    assertEquals(2, metricsRegistry.histogram("db.pool.borrowWaitMicros").getCount());
+  }
+
+  @Test
+  public void shouldCloseConnectionsIdleLongerThanMaxIdleTime() throws SQLException, InterruptedException {
+    pool = new ConnectionPool(dataSource, 2, 1000, 60 * 1000, 1, metricsRegistry);
+
+    pool.getConnection().close();
+
+    Thread.sleep(10);
+
+    pool.closeIdleConnections();
+
+    verify(connection1).close();
+    assertEquals(0, pool.getIdleCount());
+  }
+
+  @Test
+  public void shouldTimeOutWhenAllConnectionsAreInUse() {
+    pool = new ConnectionPool(dataSource, 1, 10, metricsRegistry);
+
+    pool.getConnection();
+
+    try {
+      pool.getConnection();
+    }
+    catch(TimeOutException e) {
+      assertEquals(1, metricsRegistry.counter("db.pool.timeOuts").get());
+      assertEquals("1", metricsRegistry.snapshot().get("db.pool.active"));
+      return;
+    }
+
+    throw new AssertionError("Expected TimeOutException");
+  }
+}
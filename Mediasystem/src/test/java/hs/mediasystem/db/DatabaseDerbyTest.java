@@ -0,0 +1,144 @@
+package hs.mediasystem.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import hs.mediasystem.db.Database.Transaction;
+import hs.mediasystem.db.SimpleDatabaseStatementTranslator.UpsertSyntax;
+import hs.mediasystem.db.TestEmployee.Hours;
+import hs.mediasystem.util.SimpleMetricsRegistry;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+/**
+ * Runs upserts against an embedded in-memory Derby database, both with separate
+ * statements and with the syntax the embedded Derby version supports.
+ */
+@RunWith(Parameterized.class)
+public class DatabaseDerbyTest {
+  private final boolean useSupportedSyntax;
+
+  private ConnectionPool pool;
+  private Database database;
+
+  @Parameters
+  public static Collection<Object[]> parameters() {
+    return Arrays.asList(new Object[][] {{false}, {true}});
+  }
+
+  public DatabaseDerbyTest(boolean useSupportedSyntax) {
+    this.useSupportedSyntax = useSupportedSyntax;
+  }
+
+  @Before
+  public void before() throws SQLException {
+    pool = new ConnectionPool(new SimpleConnectionPoolDataSource("jdbc:derby:memory:DatabaseDerbyTest;create=true"), 2, 60 * 1000);
+
+    try(Connection connection = pool.getConnection();
+        Statement statement = connection.createStatement()) {
+      UpsertSyntax upsertSyntax = useSupportedSyntax ? SimpleDatabaseStatementTranslator.determineUpsertSyntax(connection.getMetaData()) : UpsertSyntax.NONE;
+
+      database = new Database(pool::getConnection, new SimpleDatabaseStatementTranslator(new HashMap<String, String>(), upsertSyntax), new SimpleMetricsRegistry());
+
+      statement.execute("CREATE TABLE employees (id integer generated always as identity, employers_id integer, fired boolean NOT NULL, hours varchar(20), name varchar(100) NOT NULL, CONSTRAINT employees_id PRIMARY KEY (id), CONSTRAINT employees_name UNIQUE (name))");
+    }
+  }
+
+  @After
+  public void after() throws SQLException {
+    try(Connection connection = pool.getConnection();
+        Statement statement = connection.createStatement()) {
+      statement.execute("DROP TABLE employees");
+    }
+
+    pool.close();
+  }
+
+  @Test
+  public void shouldInsertWhenUpsertingNewRow() {
+    TestEmployee employee = new TestEmployee("Derby Joe");
+
+    employee.setHours(Hours.PART_TIME);
+
+    try(Transaction transaction = database.beginTransaction()) {
+      transaction.upsert(employee, "name");
+      transaction.commit();
+    }
+
+    assertNotNull(employee.getId());
+
+    try(Transaction transaction = database.beginReadOnlyTransaction()) {
+      TestEmployee storedEmployee = transaction.selectUnique(TestEmployee.class, "name = ?", "Derby Joe");
+
+      assertEquals(employee.getId(), storedEmployee.getId());
+      assertEquals(Hours.PART_TIME, storedEmployee.getHours());
+    }
+  }
+
+  @Test
+  public void shouldUpdateWhenUpsertingExistingRow() {
+    TestEmployee employee = new TestEmployee("Derby Joe");
+    TestEmployee otherEmployee = new TestEmployee("Derby Jane");
+
+    employee.setHours(Hours.PART_TIME);
+    otherEmployee.setHours(Hours.PART_TIME);
+
+    try(Transaction transaction = database.beginTransaction()) {
+      transaction.upsert(employee, "name");
+      transaction.upsert(otherEmployee, "name");
+      transaction.commit();
+    }
+
+    TestEmployee updatedEmployee = new TestEmployee("Derby Joe");
+
+    updatedEmployee.setHours(Hours.FULL_TIME);
+    updatedEmployee.setFired(true);
+
+    try(Transaction transaction = database.beginTransaction()) {
+      transaction.upsert(updatedEmployee, "name");
+      transaction.commit();
+    }
+
+    assertEquals(employee.getId(), updatedEmployee.getId());
+
+    try(Transaction transaction = database.beginReadOnlyTransaction()) {
+      List<TestEmployee> employees = transaction.select(TestEmployee.class, "name = ?", "Derby Joe");
+
+      assertEquals(1, employees.size());
+      assertEquals(Hours.FULL_TIME, employees.get(0).getHours());
+      assertEquals(true, employees.get(0).isFired());
+      assertEquals(Hours.PART_TIME, transaction.selectUnique(TestEmployee.class, "name = ?", "Derby Jane").getHours());
+    }
+  }
+
+  @Test
+  public void shouldSelectFirstRowsInOrder() {
+    try(Transaction transaction = database.beginTransaction()) {
+      for(String name : new String[] {"Derby Joe", "Derby Ann", "Derby Max", "Derby Bob"}) {
+        transaction.insert(new TestEmployee(name));
+      }
+
+      transaction.commit();
+    }
+
+    try(Transaction transaction = database.beginReadOnlyTransaction()) {
+      List<Record> records = transaction.selectFirst("name", "employees", 2, "name", "fired = ?", false);
+
+      assertEquals(2, records.size());
+      assertEquals("Derby Ann", records.get(0).getString("name"));
+      assertEquals("Derby Bob", records.get(1).getString("name"));
+    }
+  }
+}
@@ -1,13 +1,20 @@
 package hs.mediasystem.db;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import hs.mediasystem.db.Database.Transaction;
+import hs.mediasystem.db.SimpleDatabaseStatementTranslator.UpsertSyntax;
 import hs.mediasystem.db.TestEmployee.Hours;
+import hs.mediasystem.util.MetricsRegistry;
+import hs.mediasystem.util.SimpleMetricsRegistry;
 
 import java.sql.Connection;
+import java.sql.DatabaseMetaData;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
@@ -15,8 +22,14 @@ import java.sql.SQLException;
 import java.sql.Savepoint;
 import java.sql.Statement;
 import java.sql.Timestamp;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import javax.inject.Provider;
 
@@ -24,6 +37,7 @@ import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Matchers;
 import org.mockito.Mock;
+import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
 
 public class DatabaseTest {
@@ -33,18 +47,22 @@ public class DatabaseTest {
   private Database database;
 
   @Mock private Connection connection;
+  @Mock private DatabaseMetaData databaseMetaData;
   @Mock private Savepoint savepoint;
   @Mock private PreparedStatement statement;
   @Mock private ResultSet employeeResultSet;
   @Mock private ResultSet generatedKeysResultSet;
   @Mock private ResultSetMetaData employeeResultSetMetaData;
   @Mock private ResultSetMetaData generatedKeysResultSetMetaData;
+  @Mock private ResultSet joinResultSet;
+  @Mock private ResultSetMetaData joinResultSetMetaData;
 
   @Before
   public void before() throws SQLException {
     MockitoAnnotations.initMocks(this);
 
     when(connection.setSavepoint()).thenReturn(savepoint);
+    when(connection.getMetaData()).thenReturn(databaseMetaData);
     when(connection.prepareStatement(Matchers.anyString())).thenReturn(statement);
     when(connection.prepareStatement(Matchers.anyString(), Matchers.anyInt())).thenReturn(statement);
 
@@ -70,6 +88,9 @@ public class DatabaseTest {
     when(generatedKeysResultSet.getMetaData()).thenReturn(generatedKeysResultSetMetaData);
     when(generatedKeysResultSet.getObject(1)).thenReturn(1001);
 
+    when(databaseMetaData.getDatabaseProductName()).thenReturn("PostgreSQL");
+    when(databaseMetaData.getDriverMajorVersion()).thenReturn(42);
+
     when(generatedKeysResultSetMetaData.getColumnCount()).thenReturn(1);
     when(generatedKeysResultSetMetaData.getColumnName(1)).thenReturn("id");
 
@@ -86,6 +107,8 @@ public class DatabaseTest {
   @Test(expected = IllegalArgumentException.class)
   public void shouldAutoRollbackTransaction() throws SQLException {
     try(Transaction transaction = database.beginTransaction()) {
+      transaction.selectUnique("*", "employees", "id=?", 1001);
+
       throw new IllegalArgumentException();
     }
     finally {
@@ -97,6 +120,7 @@ public class DatabaseTest {
   @Test
   public void shouldCommitTransaction() throws SQLException {
     try(Transaction transaction = database.beginTransaction()) {
+      transaction.selectUnique("*", "employees", "id=?", 1001);
       transaction.commit();
     }
 
@@ -124,9 +148,11 @@ public class DatabaseTest {
   public void shouldAllowNestedTransaction() throws SQLException {
     try(Transaction transaction = database.beginTransaction()) {
       try(Transaction nestedTransaction = database.beginTransaction()) {
+        nestedTransaction.selectUnique("*", "employees", "id=?", 1001);
         nestedTransaction.commit();
       }
 
+      verify(connection).releaseSavepoint(savepoint);
       verify(connection, never()).rollback();
       verify(connection, never()).commit();
 
@@ -136,6 +162,52 @@ public class DatabaseTest {
     verify(connection).commit();
   }
 
+  @Test
+  public void shouldNotAcquireConnectionUntilFirstStatement() throws SQLException {
+    @SuppressWarnings("unchecked")
+    Provider<Connection> provider = Mockito.mock(Provider.class);
+
+    database = new Database(provider);
+
+    try(Transaction transaction = database.beginTransaction()) {
+      try(Transaction nestedTransaction = database.beginReadOnlyTransaction()) {
+        nestedTransaction.commit();
+      }
+
+      transaction.commit();
+    }
+
+    verify(provider, never()).get();
+    verify(connection, never()).setSavepoint();
+    verify(connection, never()).commit();
+  }
+
+  @Test
+  public void shouldRunReadOnlyTransactionInAutoCommitMode() throws SQLException {
+    try(Transaction transaction = database.beginReadOnlyTransaction()) {
+      try(Transaction nestedTransaction = database.beginReadOnlyTransaction()) {
+        nestedTransaction.selectUnique("*", "employees", "id=?", 1001);
+      }
+    }
+
+    verify(connection).setAutoCommit(true);
+    verify(connection, never()).setSavepoint();
+    verify(connection, never()).commit();
+    verify(connection, never()).rollback();
+    verify(connection).close();
+  }
+
+  @Test
+  public void shouldLeaveAutoCommitModeWhenStreamingInReadOnlyTransaction() throws SQLException {
+    try(Transaction transaction = database.beginReadOnlyTransaction()) {
+      transaction.stream("*", "employees", 50, null).close();
+    }
+
+    verify(connection).setAutoCommit(true);
+    verify(connection).setAutoCommit(false);
+    verify(connection).commit();
+  }
+
   @Test(expected = DatabaseException.class)
   public void shouldNotAllowUncommitedNestedTransactions() {
     try(Transaction transaction = database.beginTransaction()) {
@@ -258,6 +330,151 @@ public class DatabaseTest {
     verify(statement).setObject(1, 1001);
   }
 
+  @Test
+  public void shouldUpsertObjectInSingleStatementAndSetId() throws SQLException {
+    when(statement.execute()).thenReturn(true);
+    when(statement.getResultSet()).thenReturn(generatedKeysResultSet);
+
+    database = new Database(connectionProvider, new SimpleDatabaseStatementTranslator(new HashMap<String, String>(), UpsertSyntax.ON_CONFLICT), new SimpleMetricsRegistry());
+
+    TestEmployee testEmployee = new TestEmployee();
+
+    testEmployee.setName("Upsert Joe");
+
+    try(Transaction transaction = database.beginTransaction()) {
+      transaction.upsert(testEmployee, "name");
+      transaction.commit();
+    }
+
+    verify(connection).prepareStatement("INSERT INTO employees (employers_id, fired, hours, name) VALUES (?, ?, ?, ?) ON CONFLICT (name) DO UPDATE SET employers_id = EXCLUDED.employers_id, fired = EXCLUDED.fired, hours = EXCLUDED.hours RETURNING id");
+    verify(statement).setObject(4, "Upsert Joe");
+    verify(statement, never()).executeUpdate();
+    assertEquals(new Integer(1001), testEmployee.getId());
+  }
+
+  @Test
+  public void shouldUpsertByUpdatingBeforeInsertingWhenNotSupportedInSingleStatement() throws SQLException {
+    when(statement.executeUpdate()).thenReturn(0);
+
+    TestEmployee testEmployee = new TestEmployee();
+
+    testEmployee.setName("Upsert Joe");
+
+    try(Transaction transaction = database.beginTransaction()) {
+      transaction.upsert(testEmployee, "name");
+      transaction.commit();
+    }
+
+    verify(connection).prepareStatement("UPDATE employees SET employers_id=?,fired=?,hours=?,name=? WHERE name = ?");
+    verify(connection).prepareStatement("INSERT INTO employees (employers_id,fired,hours,name) VALUES (?,?,?,?)", Statement.RETURN_GENERATED_KEYS);
+    assertEquals(new Integer(1001), testEmployee.getId());
+  }
+
+  @Test
+  public void shouldRecordMetricsPerSqlTemplate() throws SQLException {
+    MetricsRegistry metricsRegistry = new SimpleMetricsRegistry();
+
+    database = new Database(connectionProvider, metricsRegistry);
+
+    try(Transaction transaction = database.beginTransaction()) {
+      transaction.select(TestEmployee.class, "id=?", 1001);
+      transaction.delete("employees", "id=?", 1001);
+    }
+
+    assertEquals(1, metricsRegistry.counter("db.sql[SELECT * FROM employees WHERE id=?].executions").get());
+    assertEquals(1, metricsRegistry.counter("db.sql[SELECT * FROM employees WHERE id=?].rows").get());
+    assertEquals(1, metricsRegistry.histogram("db.sql[SELECT * FROM employees WHERE id=?].latencyMicros").getCount());
+    assertEquals(1, metricsRegistry.counter("db.sql[DELETE FROM employees WHERE id=?].executions").get());
+  }
+
+  @Test
+  public void shouldSelectFromEntityCacheUntilObjectIsUpdated() throws SQLException {
+    EntityCache entityCache = new EntityCache(100, 1, TimeUnit.MINUTES, new SimpleMetricsRegistry());
+
+    database = new Database(connectionProvider, sql -> sql, new SimpleMetricsRegistry(), entityCache);
+
+    when(employeeResultSet.next()).thenReturn(true).thenReturn(false).thenReturn(true).thenReturn(false);
+
+    TestEmployee first;
+    TestEmployee second;
+
+    try(Transaction transaction = database.beginReadOnlyTransaction()) {
+      first = transaction.selectUniqueCached(TestEmployee.class, "id=?", 1001);
+    }
+
+    try(Transaction transaction = database.beginReadOnlyTransaction()) {
+      second = transaction.selectUniqueCached(TestEmployee.class, "id=?", 1001);
+    }
+
+    assertNotSame(first, second);
+    assertEquals(new Integer(1001), second.getId());
+    assertEquals("Database Joe", second.getName());
+    assertEquals(Hours.PART_TIME, second.getHours());
+    assertEquals(new Date(2), second.getLastLoad());
+    verify(connection, times(1)).prepareStatement("SELECT * FROM employees WHERE id=?");
+
+    try(Transaction transaction = database.beginTransaction()) {
+      transaction.update(second);
+      transaction.commit();
+    }
+
+    try(Transaction transaction = database.beginReadOnlyTransaction()) {
+      transaction.selectUniqueCached(TestEmployee.class, "id=?", 1001);
+    }
+
+    verify(connection, times(2)).prepareStatement("SELECT * FROM employees WHERE id=?");
+    assertEquals(1, entityCache.getHitCount());
+    assertEquals(2, entityCache.getMissCount());
+  }
+
+  @Test
+  public void shouldNotUseEntityCacheInWritableTransactions() throws SQLException {
+    EntityCache entityCache = new EntityCache(100, 1, TimeUnit.MINUTES, new SimpleMetricsRegistry());
+
+    database = new Database(connectionProvider, sql -> sql, new SimpleMetricsRegistry(), entityCache);
+
+    try(Transaction transaction = database.beginTransaction()) {
+      transaction.selectUniqueCached(TestEmployee.class, "id=?", 1001);
+    }
+
+    assertEquals(0, entityCache.size());
+    assertEquals(0, entityCache.getMissCount());
+  }
+
+  @Test
+  public void shouldStreamObjectsAndCloseCursor() throws SQLException {
+    when(employeeResultSet.next()).thenReturn(true).thenReturn(true).thenReturn(false);
+    when(employeeResultSet.getObject(1)).thenReturn(1001).thenReturn(1002);
+
+    try(Transaction transaction = database.beginTransaction()) {
+      try(Stream<TestEmployee> stream = transaction.stream(TestEmployee.class, 50, "hours=?", "PART_TIME")) {
+        List<Integer> ids = stream.map(TestEmployee::getId).collect(Collectors.toList());
+
+        assertEquals(Arrays.asList(1001, 1002), ids);
+      }
+
+      verify(employeeResultSet).close();
+      verify(statement).close();
+    }
+
+    verify(connection).prepareStatement("SELECT * FROM employees WHERE hours=?");
+    verify(statement).setFetchSize(50);
+    verify(statement).setObject(1, "PART_TIME");
+  }
+
+  @Test
+  public void shouldCloseCursorsLeftOpenWhenTransactionEnds() throws SQLException {
+    try(Transaction transaction = database.beginTransaction()) {
+      Stream<Record> stream = transaction.stream("*", "employees", 50, null);
+
+      assertEquals("Database Joe", stream.findFirst().get().getString("name"));
+    }
+
+    verify(connection).prepareStatement("SELECT * FROM employees");
+    verify(employeeResultSet).close();
+    verify(statement).close();
+  }
+
   @Test(expected = DatabaseException.class)
   public void shouldThrowExceptionWhenSelectObjectClassIsMissingEmptyConstructor() {
     try(Transaction transaction = database.beginTransaction()) {
@@ -287,4 +504,170 @@ public class DatabaseTest {
     verify(connection).prepareStatement("DELETE FROM castings WHERE items_id = ?");
     verify(statement).setLong(1, 15);
   }
+
+  @Test
+  public void shouldInsertObjectsInBatchAndSetIds() throws SQLException {
+    when(generatedKeysResultSet.next()).thenReturn(true).thenReturn(true).thenReturn(false);
+    when(generatedKeysResultSet.getObject(1)).thenReturn(1001).thenReturn(1002);
+
+    TestEmployee employee1 = new TestEmployee("John Doe");
+    TestEmployee employee2 = new TestEmployee("Jane Doe");
+
+    try(Transaction transaction = database.beginTransaction()) {
+      List<Object> keys = transaction.insertAll(Arrays.asList(employee1, employee2));
+
+      assertEquals(Arrays.<Object>asList(1001, 1002), keys);
+    }
+
+    assertEquals(new Integer(1001), employee1.getId());
+    assertEquals(new Integer(1002), employee2.getId());
+    assertEquals(new Date(2), employee2.getLastLoad());
+    verify(connection, times(1)).prepareStatement("INSERT INTO employees (employers_id,fired,hours,name) VALUES (?,?,?,?)", Statement.RETURN_GENERATED_KEYS);
+    verify(statement).setObject(4, "John Doe");
+    verify(statement).setObject(4, "Jane Doe");
+    verify(statement, times(2)).addBatch();
+    verify(statement).executeBatch();
+    verify(statement, never()).execute();
+  }
+
+  @Test
+  public void shouldInsertObjectsOneByOneWhenBatchedKeysAreNotSupported() throws SQLException {
+    when(databaseMetaData.getDatabaseProductName()).thenReturn("Apache Derby");
+    when(generatedKeysResultSet.next()).thenReturn(true).thenReturn(true);
+    when(generatedKeysResultSet.getObject(1)).thenReturn(1001).thenReturn(1002);
+
+    TestEmployee employee1 = new TestEmployee("John Doe");
+    TestEmployee employee2 = new TestEmployee("Jane Doe");
+
+    try(Transaction transaction = database.beginTransaction()) {
+      transaction.insertAll(Arrays.asList(employee1, employee2));
+    }
+
+    assertEquals(new Integer(1001), employee1.getId());
+    assertEquals(new Integer(1002), employee2.getId());
+    verify(connection, times(1)).prepareStatement("INSERT INTO employees (employers_id,fired,hours,name) VALUES (?,?,?,?)", Statement.RETURN_GENERATED_KEYS);
+    verify(statement, times(2)).execute();
+    verify(statement, never()).executeBatch();
+  }
+
+  @Test
+  public void shouldInsertObjectsOneByOneWithUnverifiedPostgreSqlDriver() throws SQLException {
+    when(databaseMetaData.getDriverMajorVersion()).thenReturn(9);
+    when(generatedKeysResultSet.next()).thenReturn(true).thenReturn(true);
+    when(generatedKeysResultSet.getObject(1)).thenReturn(1001).thenReturn(1002);
+
+    TestEmployee employee1 = new TestEmployee("John Doe");
+    TestEmployee employee2 = new TestEmployee("Jane Doe");
+
+    try(Transaction transaction = database.beginTransaction()) {
+      transaction.insertAll(Arrays.asList(employee1, employee2));
+    }
+
+    assertEquals(new Integer(1001), employee1.getId());
+    assertEquals(new Integer(1002), employee2.getId());
+    verify(statement, times(2)).execute();
+    verify(statement, never()).executeBatch();
+  }
+
+  @Test(expected = DatabaseException.class)
+  public void shouldFailWhenBatchReturnsTooFewGeneratedKeys() throws SQLException {
+    when(generatedKeysResultSet.next()).thenReturn(true).thenReturn(false);
+
+    try(Transaction transaction = database.beginTransaction()) {
+      transaction.insertAll(Arrays.asList(new TestEmployee("John Doe"), new TestEmployee("Jane Doe")));
+    }
+  }
+
+  @Test
+  public void shouldUpdateObjectsInBatch() throws SQLException {
+    TestEmployee employee1 = new TestEmployee("John Doe");
+    TestEmployee employee2 = new TestEmployee("Jane Doe");
+
+    employee1.setId(1001);
+    employee2.setId(1002);
+
+    try(Transaction transaction = database.beginTransaction()) {
+      transaction.updateAll(Arrays.asList(employee1, employee2));
+    }
+
+    verify(connection, times(1)).prepareStatement("UPDATE employees SET employers_id=?,fired=?,hours=?,name=? WHERE id = ?");
+    verify(statement).setObject(5, 1001);
+    verify(statement).setObject(5, 1002);
+    verify(statement, times(2)).addBatch();
+    verify(statement).executeBatch();
+  }
+
+  @Test
+  public void shouldMergeObjectsInBatches() throws SQLException {
+    TestEmployee employee1 = new TestEmployee("John Doe");
+    TestEmployee employee2 = new TestEmployee("Jane Doe");
+
+    employee1.setId(1001);
+
+    try(Transaction transaction = database.beginTransaction()) {
+      transaction.mergeAll(Arrays.asList(employee1, employee2));
+    }
+
+    assertEquals(new Integer(1001), employee2.getId());
+    verify(connection).prepareStatement("UPDATE employees SET employers_id=?,fired=?,hours=?,name=? WHERE id = ?");
+    verify(connection).prepareStatement("INSERT INTO employees (employers_id,fired,hours,name) VALUES (?,?,?,?)", Statement.RETURN_GENERATED_KEYS);
+  }
+
+  @Test
+  public void shouldSelectJoinedObjects() throws SQLException {
+    when(statement.executeQuery()).thenReturn(joinResultSet);
+
+    when(joinResultSet.getMetaData()).thenReturn(joinResultSetMetaData);
+    when(joinResultSet.next()).thenReturn(true).thenReturn(true).thenReturn(false);
+    when(joinResultSet.getObject(1)).thenReturn(1001).thenReturn(1002);
+    when(joinResultSet.getObject(2)).thenReturn(false).thenReturn(true);
+    when(joinResultSet.getObject(3)).thenReturn("Database Joe").thenReturn("Database Jane");
+    when(joinResultSet.getObject(4)).thenReturn(501).thenReturn(null);
+    when(joinResultSet.getObject(5)).thenReturn("Acme").thenReturn(null);
+
+    when(joinResultSetMetaData.getColumnCount()).thenReturn(5);
+    when(joinResultSetMetaData.getColumnName(1)).thenReturn("EMPLOYEES_ID");
+    when(joinResultSetMetaData.getColumnName(2)).thenReturn("EMPLOYEES_FIRED");
+    when(joinResultSetMetaData.getColumnName(3)).thenReturn("EMPLOYEES_NAME");
+    when(joinResultSetMetaData.getColumnName(4)).thenReturn("EMPLOYERS_ID");
+    when(joinResultSetMetaData.getColumnName(5)).thenReturn("EMPLOYERS_NAME");
+
+    try(Transaction transaction = database.beginReadOnlyTransaction()) {
+      List<Object[]> tuples = transaction.select(new Class<?>[] {TestEmployee.class, TestEmployer.class}, new String[] {"e", "r"}, "employees e LEFT JOIN employers r ON r.id = e.employers_id", null);
+
+      assertEquals(2, tuples.size());
+
+      TestEmployee employee1 = (TestEmployee)tuples.get(0)[0];
+      TestEmployer employer1 = (TestEmployer)tuples.get(0)[1];
+      TestEmployee employee2 = (TestEmployee)tuples.get(1)[0];
+
+      assertEquals(new Integer(1001), employee1.getId());
+      assertEquals("Database Joe", employee1.getName());
+      assertEquals(new Date(2), employee1.getLastLoad());
+      assertEquals(new Integer(501), employer1.getId());
+      assertEquals("Acme", employer1.getName());
+      assertEquals(new Integer(1002), employee2.getId());
+      assertEquals("Database Jane", employee2.getName());
+      assertNull(tuples.get(1)[1]);
+    }
+  }
+
+  @Test
+  public void shouldReportTableUsageLargestFirst() throws SQLException {
+    when(employeeResultSet.next()).thenReturn(true).thenReturn(true).thenReturn(false);
+    when(employeeResultSet.getString(1)).thenReturn("persons").thenReturn("IMAGES");
+    when(employeeResultSet.getLong(2)).thenReturn(1000L).thenReturn(50000L);
+    when(employeeResultSet.getLong(3)).thenReturn(100L).thenReturn(2000L);
+
+    try(Transaction transaction = database.beginReadOnlyTransaction()) {
+      List<TableUsage> tableUsages = transaction.getTableUsage();
+
+      assertEquals(2, tableUsages.size());
+      assertEquals("images", tableUsages.get(0).getTableName());
+      assertEquals(52000L, tableUsages.get(0).getTotalBytes());
+      assertEquals("persons", tableUsages.get(1).getTableName());
+      assertEquals(1000L, tableUsages.get(1).getTableBytes());
+      assertEquals(100L, tableUsages.get(1).getIndexBytes());
+    }
+  }
 }
@@ -0,0 +1,110 @@
+package hs.mediasystem.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import hs.mediasystem.util.MetricsRegistry;
+import hs.mediasystem.util.SimpleMetricsRegistry;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class EntityCacheTest {
+  private final MetricsRegistry metricsRegistry = new SimpleMetricsRegistry();
+  private final EntityCache cache = new EntityCache(2, 1, TimeUnit.MINUTES, metricsRegistry);
+
+  @Test
+  public void shouldFindRowThroughEachQueryWhichLoadedIt() {
+    put("id=1", 1, "Joe");
+    put("name=Joe", 1, "Joe");
+
+    assertEquals("Joe", cache.get("id=1").get("name"));
+    assertEquals("Joe", cache.get("name=Joe").get("name"));
+    assertEquals(1, cache.size());
+    assertEquals(2, cache.getHitCount());
+    assertEquals(1.0, cache.getHitRate(), 0.001);
+  }
+
+  @Test
+  public void shouldReturnCopiesOfArrays() {
+    Map<String, Object> values = new HashMap<>();
+    byte[] hash = new byte[] {1, 2, 3};
+
+    values.put("hash", hash);
+
+    cache.put("employees", cache.getGeneration("employees"), "id=1", "TestEmployee:[1]", values);
+
+    hash[0] = 9;
+
+    byte[] cachedHash = (byte[])cache.get("id=1").get("hash");
+
+    assertNotSame(hash, cachedHash);
+    assertEquals(1, cachedHash[0]);
+  }
+
+  @Test
+  public void shouldEvictLeastRecentlyUsedRows() {
+    put("id=1", 1, "Joe");
+    put("id=2", 2, "Jane");
+
+    cache.get("id=1");
+
+    put("id=3", 3, "John");
+
+    assertEquals(2, cache.size());
+    assertNull(cache.get("id=2"));
+    assertEquals("Joe", cache.get("id=1").get("name"));
+    assertEquals(1, metricsRegistry.counter("db.entityCache.evictions").get());
+  }
+
+  @Test
+  public void shouldExpireRows() {
+    EntityCache cache = new EntityCache(2, 0, TimeUnit.MILLISECONDS, metricsRegistry);
+
+    cache.put("employees", cache.getGeneration("employees"), "id=1", "TestEmployee:[1]", Collections.<String, Object>singletonMap("name", "Joe"));
+
+    assertNull(cache.get("id=1"));
+    assertEquals(0, cache.size());
+  }
+
+  @Test
+  public void shouldInvalidateRowsAndTheirQueries() {
+    put("id=1", 1, "Joe");
+    put("name=Joe", 1, "Joe");
+    put("id=2", 2, "Jane");
+
+    cache.invalidate("employees", "TestEmployee:[1]");
+
+    assertNull(cache.get("id=1"));
+    assertNull(cache.get("name=Joe"));
+    assertEquals("Jane", cache.get("id=2").get("name"));
+
+    cache.invalidateTable("EMPLOYEES");
+
+    assertNull(cache.get("id=2"));
+    assertEquals(0, cache.size());
+  }
+
+  @Test
+  public void shouldNotCacheRowsReadBeforeTheirTableWasInvalidated() {
+    long generation = cache.getGeneration("employees");
+
+    cache.invalidate("employees", "TestEmployee:[1]");
+    cache.put("employees", generation, "id=1", "TestEmployee:[1]", Collections.<String, Object>singletonMap("name", "Joe"));
+
+    assertNull(cache.get("id=1"));
+  }
+
+  private void put(String queryKey, int id, String name) {
+    Map<String, Object> values = new HashMap<>();
+
+    values.put("id", id);
+    values.put("name", name);
+
+    cache.put("employees", cache.getGeneration("employees"), queryKey, "TestEmployee:[" + id + "]", values);
+  }
+}
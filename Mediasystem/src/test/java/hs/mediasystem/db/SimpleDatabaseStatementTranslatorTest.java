@@ -0,0 +1,58 @@
+package hs.mediasystem.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.when;
+import hs.mediasystem.db.SimpleDatabaseStatementTranslator.UpsertSyntax;
+
+import java.sql.DatabaseMetaData;
+import java.sql.SQLException;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+public class SimpleDatabaseStatementTranslatorTest {
+
+  @Mock private DatabaseMetaData metaData;
+
+  @Before
+  public void before() {
+    MockitoAnnotations.initMocks(this);
+  }
+
+  @Test
+  public void shouldNotUseMergeBeforeDerby10_11() throws SQLException {
+    assertEquals(UpsertSyntax.NONE, determineUpsertSyntax("Apache Derby", 10, 9));
+  }
+
+  @Test
+  public void shouldUseMergeForDerby10_11AndLater() throws SQLException {
+    assertEquals(UpsertSyntax.MERGE, determineUpsertSyntax("Apache Derby", 10, 11));
+    assertEquals(UpsertSyntax.MERGE, determineUpsertSyntax("Apache Derby", 10, 14));
+  }
+
+  @Test
+  public void shouldNotUseOnConflictBeforePostgreSql9_5() throws SQLException {
+    assertEquals(UpsertSyntax.NONE, determineUpsertSyntax("PostgreSQL", 9, 1));
+  }
+
+  @Test
+  public void shouldUseOnConflictForPostgreSql9_5AndLater() throws SQLException {
+    assertEquals(UpsertSyntax.ON_CONFLICT, determineUpsertSyntax("PostgreSQL", 9, 5));
+    assertEquals(UpsertSyntax.ON_CONFLICT, determineUpsertSyntax("PostgreSQL", 10, 0));
+  }
+
+  @Test
+  public void shouldNotUseSingleStatementUpsertForUnknownDatabases() throws SQLException {
+    assertEquals(UpsertSyntax.NONE, determineUpsertSyntax("H2", 99, 0));
+  }
+
+  private UpsertSyntax determineUpsertSyntax(String productName, int majorVersion, int minorVersion) throws SQLException {
+    when(metaData.getDatabaseProductName()).thenReturn(productName);
+    when(metaData.getDatabaseMajorVersion()).thenReturn(majorVersion);
+    when(metaData.getDatabaseMinorVersion()).thenReturn(minorVersion);
+
+    return SimpleDatabaseStatementTranslator.determineUpsertSyntax(metaData);
+  }
+}
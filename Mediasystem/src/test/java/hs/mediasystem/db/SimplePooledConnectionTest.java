@@ -0,0 +1,152 @@
+package hs.mediasystem.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+public class SimplePooledConnectionTest {
+  @Mock private Connection connection;
+  @Mock private PreparedStatement statement1;
+  @Mock private PreparedStatement statement2;
+  @Mock private PreparedStatement statement3;
+
+  private SimplePooledConnection pooledConnection;
+
+  @Before
+  public void before() throws SQLException {
+    MockitoAnnotations.initMocks(this);
+
+    when(connection.prepareStatement("SELECT 1")).thenReturn(statement1).thenReturn(statement3);
+    when(connection.prepareStatement("SELECT 2")).thenReturn(statement2);
+    when(connection.prepareStatement("INSERT 1", Statement.RETURN_GENERATED_KEYS)).thenReturn(statement3);
+
+    pooledConnection = new SimplePooledConnection(connection, 1);
+  }
+
+  @Test
+  public void shouldReuseStatementAfterLogicalClose() throws SQLException {
+    Connection c = pooledConnection.getConnection();
+
+    try(PreparedStatement statement = c.prepareStatement("SELECT 1")) {
+      statement.setObject(1, "a");
+    }
+
+    try(PreparedStatement statement = c.prepareStatement("SELECT 1")) {
+      statement.setObject(1, "b");
+    }
+
+    verify(connection, times(1)).prepareStatement("SELECT 1");
+    verify(statement1).setObject(1, "a");
+    verify(statement1).setObject(1, "b");
+    verify(statement1, times(2)).clearParameters();
+    verify(statement1, never()).close();
+
+    assertEquals(1, pooledConnection.getStatementCacheHits());
+    assertEquals(1, pooledConnection.getStatementCacheMisses());
+  }
+
+  @Test
+  public void shouldPrepareNewStatementWhenCachedOneIsInUse() throws SQLException {
+    Connection c = pooledConnection.getConnection();
+
+    try(PreparedStatement outer = c.prepareStatement("SELECT 1")) {
+      try(PreparedStatement inner = c.prepareStatement("SELECT 1")) {
+        inner.execute();
+      }
+
+      outer.execute();
+    }
+
+    verify(connection, times(2)).prepareStatement("SELECT 1");
+    verify(statement1).execute();
+    verify(statement3).execute();
+    verify(statement1).close();  // Only one can be kept in the cache
+  }
+
+  @Test
+  public void shouldKeyOnGeneratedKeysFlag() throws SQLException {
+    Connection c = pooledConnection.getConnection();
+
+    c.prepareStatement("INSERT 1", Statement.RETURN_GENERATED_KEYS).close();
+    c.prepareStatement("INSERT 1", Statement.RETURN_GENERATED_KEYS).close();
+
+    verify(connection, times(1)).prepareStatement("INSERT 1", Statement.RETURN_GENERATED_KEYS);
+    verify(connection, never()).prepareStatement("INSERT 1");
+  }
+
+  @Test
+  public void shouldEvictLeastRecentlyUsedStatement() throws SQLException {
+    Connection c = pooledConnection.getConnection();
+
+    c.prepareStatement("SELECT 1").close();
+    c.prepareStatement("SELECT 2").close();
+
+    verify(statement1).close();
+    verify(statement2, never()).close();
+    assertEquals(1, pooledConnection.getStatementCacheEvictions());
+  }
+
+  @Test
+  public void shouldEvictStatementOnError() throws SQLException {
+    when(statement1.execute()).thenThrow(new SQLException("cached plan must not change result type"));
+
+    Connection c = pooledConnection.getConnection();
+
+    try(PreparedStatement statement = c.prepareStatement("SELECT 1")) {
+      statement.execute();
+    }
+    catch(SQLException e) {
+      // expected
+    }
+
+    verify(statement1).close();
+
+    c.prepareStatement("SELECT 1").close();
+
+    verify(connection, times(2)).prepareStatement("SELECT 1");
+  }
+
+  @Test
+  public void shouldRejectUseAfterLogicalClose() throws SQLException {
+    PreparedStatement statement = pooledConnection.getConnection().prepareStatement("SELECT 1");
+
+    assertFalse(statement.isClosed());
+
+    statement.close();
+
+    assertTrue(statement.isClosed());
+
+    try {
+      statement.execute();
+    }
+    catch(SQLException e) {
+      verify(statement1, never()).execute();
+      return;
+    }
+
+    throw new AssertionError("Expected SQLException");
+  }
+
+  @Test
+  public void shouldCloseCachedStatementsWhenPhysicallyClosed() throws SQLException {
+    pooledConnection.getConnection().prepareStatement("SELECT 1").close();
+    pooledConnection.close();
+
+    verify(statement1).close();
+    verify(connection).close();
+  }
+}
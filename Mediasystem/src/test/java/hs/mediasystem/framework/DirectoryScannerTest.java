@@ -0,0 +1,102 @@
+package hs.mediasystem.framework;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import hs.mediasystem.util.io.RuntimeIOException;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DirectoryScannerTest {
+  private final DirectoryScanner scanner = new DirectoryScanner(4, 2, 2);
+
+  private Path root;
+
+  @Before
+  public void before() throws IOException {
+    root = Files.createTempDirectory("scanner");
+
+    Files.createFile(root.resolve("Alien.mkv"));
+    Files.createFile(root.resolve("notes.txt"));
+    Files.createFile(Files.createDirectories(root.resolve("Serie/Season 1")).resolve("Serie 1x01.avi"));
+    Files.createFile(root.resolve("Serie/Serie 1x00.mp4"));
+    Files.createFile(Files.createDirectories(root.resolve("Serie/Season 1/Extras/Deep")).resolve("Too Deep.mkv"));
+  }
+
+  @After
+  public void after() throws IOException {
+    try(Stream<Path> stream = Files.walk(root)) {
+      stream.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+    }
+  }
+
+  @Test
+  public void shouldFindMatchingPathsUpToMaxDepth() {
+    Set<Path> paths = Collections.synchronizedSet(new HashSet<>());
+
+    scanner.scan(root, 3, (path, attributes) -> !attributes.isDirectory() && EpisodeScanner.isMediaFile(path), paths::add);
+
+    assertEquals(new HashSet<>(Arrays.asList(root.resolve("Alien.mkv"), root.resolve("Serie/Serie 1x00.mp4"), root.resolve("Serie/Season 1/Serie 1x01.avi"))), paths);
+  }
+
+  @Test
+  public void shouldOnlyFindDirectChildrenWithMaxDepthOne() {
+    Set<Path> paths = Collections.synchronizedSet(new HashSet<>());
+
+    scanner.scan(root, 1, (path, attributes) -> true, paths::add);
+
+    assertEquals(new HashSet<>(Arrays.asList(root.resolve("Alien.mkv"), root.resolve("notes.txt"), root.resolve("Serie"))), paths);
+  }
+
+  @Test
+  public void shouldVisitDirectoriesReturnedByVisitor() {
+    Map<Path, Integer> depths = new ConcurrentHashMap<>();
+
+    scanner.walk(root, 5, (directory, depth) -> {
+      depths.put(directory, depth);
+
+      return directory.equals(root) ? Arrays.asList(root.resolve("Serie")) : new ArrayList<>();
+    });
+
+    assertEquals(2, depths.size());
+    assertEquals(Integer.valueOf(0), depths.get(root));
+    assertEquals(Integer.valueOf(1), depths.get(root.resolve("Serie")));
+  }
+
+  @Test(expected = RuntimeIOException.class)
+  public void shouldThrowExceptionWhenRootDoesNotExist() {
+    scanner.scan(root.resolve("missing"), 2, (path, attributes) -> true, path -> {});
+  }
+
+  @Test
+  public void shouldRecognizeMediaFilesByExtension() {
+    List<String> mediaFiles = Arrays.asList("a.mkv", "b.AVI", "c.d.mpeg", "e.Mp4");
+    List<String> otherFiles = Arrays.asList("mkv", ".mkv", "a.txt", "a.mkv.part", "a.");
+
+    for(String name : mediaFiles) {
+      assertTrue(name, EpisodeScanner.isMediaFile(Paths.get(name)));
+    }
+
+    for(String name : otherFiles) {
+      assertFalse(name, EpisodeScanner.isMediaFile(Paths.get(name)));
+    }
+  }
+}
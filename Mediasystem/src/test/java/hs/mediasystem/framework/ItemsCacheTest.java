@@ -0,0 +1,92 @@
+package hs.mediasystem.framework;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class ItemsCacheTest {
+  private final AtomicInteger loadCount = new AtomicInteger();
+
+  private List<String> load() {
+    loadCount.incrementAndGet();
+
+    return Arrays.asList("a", "b");
+  }
+
+  @Test
+  public void shouldLoadItemsOnlyOnce() {
+    ItemsCache<String> cache = new ItemsCache<>(1, TimeUnit.HOURS, this::load);
+
+    assertEquals(Arrays.asList("a", "b"), cache.get());
+    assertEquals(Arrays.asList("a", "b"), cache.get());
+    assertEquals(1, loadCount.get());
+  }
+
+  @Test
+  public void shouldLoadItemsAgainAfterInvalidation() {
+    ItemsCache<String> cache = new ItemsCache<>(1, TimeUnit.HOURS, this::load);
+
+    cache.get();
+    cache.invalidate();
+    cache.get();
+
+    assertEquals(2, loadCount.get());
+  }
+
+  @Test
+  public void shouldLoadItemsAgainWhenTooOld() throws InterruptedException {
+    ItemsCache<String> cache = new ItemsCache<>(1, TimeUnit.MILLISECONDS, this::load);
+
+    cache.get();
+    Thread.sleep(5);
+    cache.get();
+
+    assertEquals(2, loadCount.get());
+  }
+
+  @Test
+  public void shouldReturnModifiableCopy() {
+    ItemsCache<String> cache = new ItemsCache<>(1, TimeUnit.HOURS, this::load);
+
+    cache.get().clear();
+
+    assertEquals(Arrays.asList("a", "b"), cache.get());
+  }
+
+  @Test
+  public void shouldUpdateItemsAndNotifyListeners() {
+    ItemsCache<String> cache = new ItemsCache<>(1, TimeUnit.HOURS, this::load);
+    List<Object> changes = new ArrayList<>();
+
+    cache.addListener((addedItems, removedItems) -> {
+      changes.add(addedItems);
+      changes.add(removedItems);
+    });
+
+    cache.get();
+    cache.update(Arrays.asList("b", "c"), item -> item.equals("a"));
+
+    assertEquals(Arrays.asList("b", "c"), cache.get());
+    assertEquals(Arrays.asList(Arrays.asList("c"), Arrays.asList("a")), changes);
+    assertEquals(1, loadCount.get());
+  }
+
+  @Test
+  public void shouldIgnoreUpdatesWhenNotLoaded() {
+    ItemsCache<String> cache = new ItemsCache<>(1, TimeUnit.HOURS, this::load);
+    List<Object> changes = new ArrayList<>();
+
+    cache.addListener((addedItems, removedItems) -> changes.add(addedItems));
+    cache.update(Arrays.asList("c"), item -> true);
+
+    assertEquals(Arrays.asList("a", "b"), cache.get());
+    assertEquals(Collections.emptyList(), changes);
+  }
+}
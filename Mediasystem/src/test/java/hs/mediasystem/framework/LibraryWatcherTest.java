@@ -0,0 +1,135 @@
+package hs.mediasystem.framework;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class LibraryWatcherTest {
+  private final BlockingQueue<Set<Path>[]> batches = new LinkedBlockingQueue<>();
+
+  private Path root;
+  private LibraryWatcher watcher;
+
+  @Before
+  public void before() throws IOException {
+    root = Files.createTempDirectory("library");
+  }
+
+  @After
+  public void after() throws IOException {
+    if(watcher != null) {
+      watcher.close();
+    }
+
+    try(Stream<Path> stream = Files.walk(root)) {
+      stream.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+    }
+  }
+
+  @Test
+  public void shouldReportCreatedAndDeletedFiles() throws Exception {
+    Path existingFile = Files.createFile(root.resolve("existing.mkv"));
+
+    startWatcher(1, false);
+
+    Path file = Files.createFile(root.resolve("new.mkv"));
+    Files.delete(existingFile);
+
+    Set<Path>[] batch = nextBatch();
+
+    assertEquals(new HashSet<>(Arrays.asList(file)), batch[0]);
+    assertEquals(new HashSet<>(Arrays.asList(existingFile)), batch[1]);
+  }
+
+  @Test
+  public void shouldCoalesceBurstIntoSingleBatch() throws Exception {
+    startWatcher(2, false);
+
+    Path directory = Files.createDirectory(root.resolve("Season 1"));
+    Set<Path> expected = new HashSet<>(Arrays.asList(directory));
+
+    for(int i = 1; i <= 10; i++) {
+      expected.add(Files.createFile(directory.resolve("episode" + i + ".mkv")));
+    }
+
+    Set<Path>[] batch = nextBatch();
+
+    assertEquals(expected, batch[0]);
+    assertEquals(new HashSet<>(), batch[1]);
+    assertNull(batches.poll(500, TimeUnit.MILLISECONDS));
+  }
+
+  @Test
+  public void shouldReportContentsOfDeletedDirectory() throws Exception {
+    Path directory = Files.createDirectory(root.resolve("Serie"));
+    Path file = Files.createFile(directory.resolve("episode.mkv"));
+
+    startWatcher(2, false);
+
+    Files.delete(file);
+    Files.delete(directory);
+
+    Set<Path>[] batch = nextBatch();
+
+    assertEquals(new HashSet<>(), batch[0]);
+    assertEquals(new HashSet<>(Arrays.asList(directory, file)), batch[1]);
+  }
+
+  @Test
+  public void shouldIgnorePathsBeyondMaxDepth() throws Exception {
+    Path directory = Files.createDirectory(root.resolve("Serie"));
+
+    startWatcher(1, false);
+
+    Files.createFile(directory.resolve("episode.mkv"));
+    Path file = Files.createFile(root.resolve("movie.mkv"));
+
+    Set<Path>[] batch = nextBatch();
+
+    assertEquals(new HashSet<>(Arrays.asList(file)), batch[0]);
+  }
+
+  @Test
+  public void shouldReportChangesWhenPolling() throws Exception {
+    startWatcher(2, true);
+
+    Path directory = Files.createDirectory(root.resolve("Serie"));
+    Path file = Files.createFile(directory.resolve("episode.mkv"));
+
+    Set<Path>[] batch = nextBatch();
+
+    assertEquals(new HashSet<>(Arrays.asList(directory, file)), batch[0]);
+  }
+
+  @SuppressWarnings("unchecked")
+  private void startWatcher(int maxDepth, boolean pollOnly) throws InterruptedException {
+    watcher = new LibraryWatcher("test", Arrays.asList(root), maxDepth, 300, 10000, 100, pollOnly, (createdPaths, deletedPaths) -> batches.add(new Set[] {createdPaths, deletedPaths}));
+    watcher.start();
+
+    Thread.sleep(200);  // allow the watcher to register its directories
+  }
+
+  private Set<Path>[] nextBatch() throws InterruptedException {
+    Set<Path>[] batch = batches.poll(10, TimeUnit.SECONDS);
+
+    assertNotNull(batch);
+
+    return batch;
+  }
+}
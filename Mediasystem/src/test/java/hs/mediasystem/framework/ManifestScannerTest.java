@@ -0,0 +1,161 @@
+package hs.mediasystem.framework;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import hs.mediasystem.framework.NameDecoder.Hint;
+import hs.mediasystem.framework.ScanManifest.Entry;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ManifestScannerTest {
+  private static final NameDecoder NAME_DECODER = new NameDecoder(Hint.MOVIE);
+  private static final FileTime OLD_TIME = FileTime.fromMillis(System.currentTimeMillis() - 60 * 1000);
+
+  private final List<List<Entry>> changes = new ArrayList<>();
+
+  private Path directory;
+  private Path root;
+  private ManifestScanner scanner;
+
+  @Before
+  public void before() throws IOException {
+    directory = Files.createTempDirectory("manifests");
+    root = Files.createDirectory(directory.resolve("Movies"));
+    scanner = new ManifestScanner("test", directory.resolve("cache"), 2, NAME_DECODER.getVersion(), (path, attributes, depth) -> !attributes.isDirectory() && path.toString().endsWith(".mkv") ? NAME_DECODER.decode(path.getFileName().toString()) : null, new DirectoryScanner(2, 1, 1), Runnable::run);
+  }
+
+  @After
+  public void after() throws IOException {
+    try(Stream<Path> stream = Files.walk(directory)) {
+      stream.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+    }
+  }
+
+  @Test
+  public void shouldScanRootWithoutManifest() throws IOException {
+    Files.createFile(root.resolve("Alien [1979].mkv"));
+    Files.createFile(root.resolve("notes.txt"));
+    Files.createFile(Files.createDirectory(root.resolve("Sub")).resolve("Aliens [1986].mkv"));
+
+    List<Entry> entries = scanner.scan(root, this::entriesChanged);
+
+    assertEquals(new HashSet<>(Arrays.asList(root.resolve("Alien [1979].mkv"), root.resolve("Sub/Aliens [1986].mkv"))), toPaths(entries));
+    assertEquals(Integer.valueOf(1979), find(entries, "Alien [1979].mkv").getDecodeResult().getReleaseYear());
+    assertEquals("Alien", find(entries, "Alien [1979].mkv").getDecodeResult().getTitle());
+  }
+
+  @Test
+  public void shouldReturnManifestEntriesAndReportDifferences() throws IOException {
+    Path removedFile = Files.createFile(root.resolve("Alien [1979].mkv"));
+
+    Files.createFile(root.resolve("Aliens [1986].mkv"));
+    makeOld(root);
+
+    scanner.scan(root, this::entriesChanged);
+
+    Files.delete(removedFile);
+    Path addedFile = Files.createFile(root.resolve("Alien 3 [1992].mkv"));
+
+    List<Entry> entries = scanner.scan(root, this::entriesChanged);  // reconciles immediately with the direct executor
+
+    assertEquals(new HashSet<>(Arrays.asList(removedFile, root.resolve("Aliens [1986].mkv"))), toPaths(entries));
+    assertEquals(2, changes.size());
+    assertEquals(new HashSet<>(Arrays.asList(addedFile)), toPaths(changes.get(0)));
+    assertEquals(new HashSet<>(Arrays.asList(removedFile)), toPaths(changes.get(1)));
+
+    changes.clear();
+
+    entries = scanner.scan(root, this::entriesChanged);  // manifest was updated by reconciliation
+
+    assertEquals(new HashSet<>(Arrays.asList(addedFile, root.resolve("Aliens [1986].mkv"))), toPaths(entries));
+    assertEquals(0, changes.size());
+  }
+
+  @Test
+  public void shouldNotListUnchangedDirectories() throws IOException {
+    Path subDirectory = Files.createDirectory(root.resolve("Sub"));
+
+    Files.createFile(subDirectory.resolve("Aliens [1986].mkv"));
+    makeOld(subDirectory);
+    makeOld(root);
+
+    ScanManifest manifest = scanner.createManifest(root, null);
+
+    /*
+     * Create a file without changing the last modified time of its directory, which
+     * therefore should not be found:
+     */
+
+    Files.createFile(subDirectory.resolve("Alien [1979].mkv"));
+    makeOld(subDirectory);
+
+    assertEquals(new HashSet<>(Arrays.asList(subDirectory.resolve("Aliens [1986].mkv"))), toPaths(scanner.createManifest(root, manifest).getEntries()));
+
+    Files.setLastModifiedTime(subDirectory, FileTime.fromMillis(System.currentTimeMillis()));
+
+    assertEquals(2, scanner.createManifest(root, manifest).getEntries().size());
+  }
+
+  @Test
+  public void shouldReadWrittenManifest() throws IOException {
+    Files.createFile(root.resolve("Alien [1979].mkv"));
+
+    ScanManifest manifest = scanner.createManifest(root, null);
+    Path file = directory.resolve("test.manifest");
+
+    manifest.write(file);
+
+    ScanManifest readManifest = ScanManifest.read(file, root, NAME_DECODER.getVersion());
+
+    assertNotNull(readManifest);
+    assertEquals(manifest.getDirectories(), readManifest.getDirectories());
+    assertEquals(manifest.getScanMillis(), readManifest.getScanMillis());
+    assertEquals(1, readManifest.getEntries().size());
+
+    Entry entry = readManifest.getEntries().get(0);
+
+    assertEquals(root.resolve("Alien [1979].mkv"), entry.getPath());
+    assertEquals(manifest.getEntries().get(0).getLastModifiedMillis(), entry.getLastModifiedMillis());
+    assertEquals("Alien", entry.getDecodeResult().getTitle());
+    assertEquals(Integer.valueOf(1979), entry.getDecodeResult().getReleaseYear());
+    assertEquals("mkv", entry.getDecodeResult().getExtension());
+    assertNull(entry.getDecodeResult().getSubtitle());
+
+    assertNull(ScanManifest.read(file, directory, NAME_DECODER.getVersion()));  // different root
+    assertNull(ScanManifest.read(file, root, new NameDecoder(Hint.EPISODE).getVersion()));  // different decoder
+  }
+
+  private void entriesChanged(List<Entry> addedEntries, List<Entry> removedEntries) {
+    changes.add(addedEntries);
+    changes.add(removedEntries);
+  }
+
+  private static void makeOld(Path path) throws IOException {
+    Files.setLastModifiedTime(path, OLD_TIME);
+  }
+
+  private static Set<Path> toPaths(List<Entry> entries) {
+    return entries.stream().map(Entry::getPath).collect(Collectors.toSet());
+  }
+
+  private Entry find(List<Entry> entries, String name) {
+    return entries.stream().filter(e -> e.getPath().equals(root.resolve(name))).findFirst().orElse(null);
+  }
+}
@@ -0,0 +1,93 @@
+package hs.mediasystem.framework;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.when;
+import hs.mediasystem.dao.Identifier;
+import hs.mediasystem.dao.ItemsDao;
+import hs.mediasystem.dao.MediaData;
+
+import java.io.File;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+public class MediaDataPreloaderTest {
+  private static final String ROOT = File.separator + "movies";
+
+  @Mock private ItemsDao itemsDao;
+
+  private MediaDataPreloader preloader;
+
+  @Before
+  public void before() {
+    MockitoAnnotations.initMocks(this);
+
+    preloader = new MediaDataPreloader(itemsDao);
+  }
+
+  @Test
+  public void shouldGroupIdentifiersAndHandOutMediaDataOnce() {
+    MediaData alien = createMediaData(1, ROOT + File.separator + "Alien.avi");
+    MediaData brazil = createMediaData(2, ROOT + File.separator + "Brazil.avi");
+    Identifier identifier1 = new Identifier();
+    Identifier identifier2 = new Identifier();
+
+    when(itemsDao.loadFullItems(ROOT + File.separator)).thenReturn(Arrays.asList(
+      new Object[] {alien, identifier1, null},
+      new Object[] {alien, identifier2, null},
+      new Object[] {brazil, null, null}
+    ));
+
+    preloader.preload(Paths.get(ROOT));
+
+    assertTrue(preloader.isPreloaded(alien.getUri()));
+    assertEquals(alien, preloader.take(alien.getUri()));
+    assertEquals(Arrays.asList(identifier1, identifier2), alien.getIdentifiers());
+    assertFalse(preloader.isPreloaded(alien.getUri()));
+
+    assertEquals(0, preloader.take(brazil.getUri()).getIdentifiers().size());
+  }
+
+  @Test
+  public void shouldKnowUrisBelowRootWithoutMediaData() {
+    when(itemsDao.loadFullItems(ROOT + File.separator)).thenReturn(Arrays.<Object[]>asList());
+
+    preloader.preload(Paths.get(ROOT));
+
+    assertTrue(preloader.isPreloaded(ROOT + File.separator + "New.avi"));
+    assertNull(preloader.take(ROOT + File.separator + "New.avi"));
+    assertFalse(preloader.isPreloaded(File.separator + "series" + File.separator + "New.avi"));
+  }
+
+  @Test
+  public void shouldDiscardEarlierPreloadWhenPreloadFails() {
+    when(itemsDao.loadFullItems(ROOT + File.separator)).thenReturn(Arrays.<Object[]>asList()).thenThrow(new IllegalStateException("Database unavailable"));
+
+    preloader.preload(Paths.get(ROOT));
+
+    try {
+      preloader.preload(Paths.get(ROOT));
+      fail();
+    }
+    catch(IllegalStateException e) {
+      assertFalse(preloader.isPreloaded(ROOT + File.separator + "New.avi"));
+    }
+  }
+
+  private static MediaData createMediaData(int id, String uri) {
+    MediaData mediaData = new MediaData();
+
+    mediaData.setId(id);
+    mediaData.setUri(uri);
+
+    return mediaData;
+  }
+}
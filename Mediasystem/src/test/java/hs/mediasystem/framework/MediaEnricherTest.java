@@ -0,0 +1,157 @@
+package hs.mediasystem.framework;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import hs.mediasystem.dao.Identifier.MatchType;
+import hs.mediasystem.dao.ProviderId;
+import hs.mediasystem.db.ConnectionPool;
+import hs.mediasystem.db.Database;
+import hs.mediasystem.db.SimpleConnectionPoolDataSource;
+
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.List;
+
+import javafx.collections.FXCollections;
+import javafx.event.Event;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MediaEnricherTest {
+  private static final String URI = "/movies/Alien.avi";
+  private static final String NEGATIVE_CACHE_KEY = "identify:TMDB:Movie:" + URI;
+
+  private ConnectionPool pool;
+  private Database database;
+  private NegativeCache negativeCache;
+  private CountingMediaIdentifier mediaIdentifier;
+  private MediaEnricher mediaEnricher;
+  private Movie movie;
+
+  @Before
+  public void before() throws SQLException {
+    pool = new ConnectionPool(new SimpleConnectionPoolDataSource("jdbc:derby:memory:MediaEnricherTest;create=true"), 2, 60 * 1000);
+    database = new Database(pool::getConnection);
+
+    NegativeCacheTest.createTable(pool);
+
+    negativeCache = new NegativeCache(database);
+    mediaIdentifier = new CountingMediaIdentifier();
+    mediaEnricher = new MediaEnricher(null, null, null, Collections.<MediaIdentifier<?>>singleton(mediaIdentifier), null, negativeCache);
+    movie = new Movie(new MediaItem(URI));
+
+    movie.getMediaItem().mediaData.set(new MediaData().setAll(URI, 0, null, 0, false, FXCollections.observableArrayList()));
+  }
+
+  @After
+  public void after() throws SQLException {
+    NegativeCacheTest.dropTable(pool);
+
+    pool.close();
+  }
+
+  @Test
+  public void shouldRememberIdentificationWhichFoundNothing() {
+    assertEquals(0, mediaEnricher.identify(movie).size());
+    assertEquals(1, mediaIdentifier.identifyCount);
+    assertTrue(negativeCache.isBackingOff(NEGATIVE_CACHE_KEY));
+  }
+
+  @Test
+  public void shouldSkipIdentificationWhileBackingOff() {
+    negativeCache.recordFailure(NEGATIVE_CACHE_KEY);
+
+    mediaIdentifier.identifier = createIdentifier();
+
+    assertEquals(0, mediaEnricher.identify(movie).size());
+    assertEquals(0, mediaIdentifier.identifyCount);
+  }
+
+  @Test
+  public void shouldSkipIdentificationWhichFoundNothingAfterRestart() {
+    mediaEnricher.identify(movie);
+
+    MediaEnricher restartedMediaEnricher = new MediaEnricher(null, null, null, Collections.<MediaIdentifier<?>>singleton(mediaIdentifier), null, new NegativeCache(database));
+
+    restartedMediaEnricher.identify(movie);
+
+    assertEquals(1, mediaIdentifier.identifyCount);
+  }
+
+  @Test
+  public void shouldRetryIdentificationOnceWhenRefreshRequested() {
+    mediaEnricher.identify(movie);
+
+    movie.refresh(new Event(Event.ANY));
+    mediaEnricher.identify(movie);
+
+    assertEquals(2, mediaIdentifier.identifyCount);
+
+    mediaEnricher.identify(movie);
+
+    assertEquals(2, mediaIdentifier.identifyCount);  // refresh request was taken
+    assertTrue(negativeCache.isBackingOff(NEGATIVE_CACHE_KEY));
+  }
+
+  @Test
+  public void shouldForgetFailuresWhenIdentifiedAfterRefresh() {
+    mediaEnricher.identify(movie);
+
+    mediaIdentifier.identifier = createIdentifier();
+    movie.refresh(new Event(Event.ANY));
+
+    List<Identifier> identifiers = mediaEnricher.identify(movie);
+
+    assertEquals(1, identifiers.size());
+    assertEquals(mediaIdentifier.identifier, identifiers.get(0));
+    assertFalse(negativeCache.isBackingOff(NEGATIVE_CACHE_KEY));
+    assertFalse(new NegativeCache(database).isBackingOff(NEGATIVE_CACHE_KEY));
+  }
+
+  @Test
+  public void shouldNotRememberIdentificationErrors() {
+    mediaIdentifier.exception = new IllegalStateException("Service unavailable");
+
+    assertEquals(0, mediaEnricher.identify(movie).size());
+    assertFalse(negativeCache.isBackingOff(NEGATIVE_CACHE_KEY));
+  }
+
+  private static Identifier createIdentifier() {
+    return new Identifier().setAll(new ProviderId("Movie", "TMDB", "348"), MatchType.NAME, 1.0f);
+  }
+
+  private static class Movie extends Media {
+    Movie(MediaItem mediaItem) {
+      super(null, mediaItem);
+    }
+
+    @Override
+    protected void reidentify() {
+      // not part of an EntityContext
+    }
+  }
+
+  private static class CountingMediaIdentifier extends MediaIdentifier<Media> {
+    Identifier identifier;
+    RuntimeException exception;
+    int identifyCount;
+
+    CountingMediaIdentifier() {
+      super("TMDB", "Movie");
+    }
+
+    @Override
+    public Identifier identify(Media media) {
+      identifyCount++;
+
+      if(exception != null) {
+        throw exception;
+      }
+
+      return identifier;
+    }
+  }
+}
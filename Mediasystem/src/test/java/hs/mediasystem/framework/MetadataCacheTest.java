@@ -0,0 +1,36 @@
+package hs.mediasystem.framework;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+public class MetadataCacheTest {
+
+  @Test
+  public void shouldCompressAndDecompress() {
+    StringBuilder builder = new StringBuilder();
+
+    for(int i = 0; i < 1000; i++) {
+      builder.append("{\"id\":" + i + ",\"title\":\"Some Title\",\"overview\":\"Some overview of the movie.\"},");
+    }
+
+    byte[] data = builder.toString().getBytes(StandardCharsets.UTF_8);
+    byte[] compressedData = MetadataCache.compress(data);
+
+    assertTrue(compressedData.length < data.length / 4);
+    assertArrayEquals(data, MetadataCache.decompress(compressedData));
+  }
+
+  @Test
+  public void shouldCompressAndDecompressEmptyData() {
+    assertArrayEquals(new byte[0], MetadataCache.decompress(MetadataCache.compress(new byte[0])));
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void shouldRejectCorruptData() {
+    MetadataCache.decompress(new byte[] {1, 2, 3, 4});
+  }
+}
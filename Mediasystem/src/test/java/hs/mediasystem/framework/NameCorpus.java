@@ -0,0 +1,103 @@
+package hs.mediasystem.framework;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates file names for testing and benchmarking {@link NameDecoder}.  Half of the
+ * names are built from the kind of parts found in real movie and episode names, the
+ * other half are random strings of the characters which the sequence patterns care
+ * about, to cover the unusual cases.
+ */
+public class NameCorpus {
+  private static final String[] WORDS = {
+    "The", "the", "Of", "of", "a", "Birds", "Prey", "Monk", "Heroes", "Star", "Wars", "Die", "Hard", "Alien", "Universe",
+    "Stargate", "Police", "Squad!", "King's", "Speech", "Caf\u00e9", "\u03a9mega", "Na\u00efve", "e\u0301", "\ud835\udc00", "Part", "part", "PART",
+    "x264", "h264", "720p", "1080p", "HDTV", "WEB-DL", "BluRay", "DD5.1", "AAC2.0", "XViD-ANON", "CtrlHD", "2003", "24",
+    "Season", "S", "E", "x", "ttscc", "Cleopatra", "2525", "9", "33", "Rabbits", "Bonus", "DiRTY", "AJP69", "s", "e"
+  };
+
+  private static final String[] SEQUENCES = {
+    "S01E15", "s01e10", "S1E2", "S03 E20", "S01E01-02", "S01E01-E03", "S04E16E17", "S04", "s12", "S123E456",
+    "1x05", "1x05-06", "02x01", "2x18", "12x123", "(1x01)", "[1x04]", "-2x11-", "(S01E02)", "[S01 E03]", "-S01E02-",
+    "215", "0215", "208", "3939", "4040", "101", "#10", "#1-2", "#7e8", "Part 1", "part 12", "PART 3-4",
+    "- 03", "- 1", "- 123", "0x00", "S00E00"
+  };
+
+  private static final String[] EXTRAS = {
+    "[2009]", "[2010, 1080p]", "[2002 (246460), Action, 720p]", "(documentary)", "(Howl's Moving Castle)", "[tvu.org.ru]",
+    "[(1461312), Fantasy]", "[sfcc]", "[1080p]", "(TV mini-series)", "[1979]", "(2001)"
+  };
+
+  private static final String[] SEPARATORS = {" ", ".", "_", "-", " - ", ".-.", "_-_"};
+  private static final String[] EXTENSIONS = {".mkv", ".avi", ".mpg", ".mp4", ".tar.gz", "", ".", ".part.mkv"};
+  private static final String RANDOM_CHARACTERS = "0123456789SsEexX-_. ()[]#Ppta\u00e9\u0301";
+
+  /**
+   * Generates the given number of names.  The same seed always results in the same names.
+   *
+   * @param count the number of names to generate
+   * @param seed a seed
+   * @return a list of names, never null
+   */
+  public static List<String> generate(int count, long seed) {
+    Random random = new Random(seed);
+    List<String> names = new ArrayList<>(count);
+
+    for(int i = 0; i < count; i++) {
+      names.add(i % 2 == 0 ? generateName(random) : generateRandomName(random));
+    }
+
+    return names;
+  }
+
+  private static String generateName(Random random) {
+    String separator = pick(random, SEPARATORS);
+    StringBuilder builder = new StringBuilder();
+    int wordCount = 1 + random.nextInt(4);
+
+    for(int i = 0; i < wordCount; i++) {
+      append(builder, separator, pick(random, WORDS));
+    }
+
+    if(random.nextInt(5) > 0) {
+      append(builder, random.nextBoolean() ? separator : pick(random, SEPARATORS), pick(random, SEQUENCES));
+    }
+
+    int subtitleCount = random.nextInt(6);
+
+    for(int i = 0; i < subtitleCount; i++) {
+      append(builder, separator, pick(random, WORDS));
+    }
+
+    if(random.nextInt(3) == 0) {
+      append(builder, " ", pick(random, EXTRAS));
+    }
+
+    return builder.append(pick(random, EXTENSIONS)).toString();
+  }
+
+  private static String generateRandomName(Random random) {
+    StringBuilder builder = new StringBuilder();
+    int length = random.nextInt(30);
+
+    for(int i = 0; i < length; i++) {
+      builder.append(RANDOM_CHARACTERS.charAt(random.nextInt(RANDOM_CHARACTERS.length())));
+    }
+
+    return builder.toString();
+  }
+
+  private static void append(StringBuilder builder, String separator, String text) {
+    if(builder.length() > 0) {
+      builder.append(separator);
+    }
+
+    builder.append(text);
+  }
+
+  private static String pick(Random random, String[] choices) {
+    return choices[random.nextInt(choices.length)];
+  }
+}
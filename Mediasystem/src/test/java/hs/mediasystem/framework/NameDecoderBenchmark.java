@@ -0,0 +1,77 @@
+package hs.mediasystem.framework;
+
+import hs.mediasystem.framework.NameDecoder.Hint;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Measures the throughput and allocation of {@link NameDecoder} on names generated by
+ * {@link NameCorpus}.  Finding the sequence in a name is measured both with the
+ * regular expressions it used before and with its single pass matcher, and the full
+ * decode is measured separately.  Allocation is only reported on JVMs which support
+ * measuring it per thread.<p>
+ *
+ * Run with: <code>java hs.mediasystem.framework.NameDecoderBenchmark [names] [seconds]</code>
+ */
+public class NameDecoderBenchmark {
+
+  public static void main(String[] args) {
+    int nameCount = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+    int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+    Hint[] hints = new Hint[] {Hint.EPISODE, Hint.MOVIE};
+    RegexSequenceDecoder regexSequenceDecoder = new RegexSequenceDecoder(hints);
+    NameDecoder nameDecoder = new NameDecoder(hints);
+    List<String> names = NameCorpus.generate(nameCount, 1);
+
+    names.removeIf(text -> text.replace(".", "").isEmpty());  // names consisting only of dots can't be decoded
+
+    for(int round = 0; round < 2; round++) {  // first round is warm up
+      System.out.println(round == 0 ? "Warm up:" : "Results:");
+
+      run("  Sequence (regular expressions)", names, seconds, regexSequenceDecoder::decodeAsSequence);
+      run("  Sequence (single pass)", names, seconds, nameDecoder::decodeAsSequence);
+      run("  Decode", names, seconds, nameDecoder::decode);
+    }
+  }
+
+  private static void run(String name, List<String> names, int seconds, Function<String, Object> decoder) {
+    long endNanos = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+    long startNanos = System.nanoTime();
+    long startBytes = getAllocatedBytes();
+    long decodes = 0;
+    int results = 0;
+
+    while(System.nanoTime() < endNanos) {
+      for(String text : names) {
+        if(decoder.apply(text) != null) {
+          results++;
+        }
+      }
+
+      decodes += names.size();
+    }
+
+    long nanos = System.nanoTime() - startNanos;
+    long bytes = getAllocatedBytes() - startBytes;
+
+    System.out.printf("%-34s %,12d decodes/s, %,8d bytes/decode, %d%% found%n", name, decodes * TimeUnit.SECONDS.toNanos(1) / nanos, startBytes < 0 ? -1 : bytes / decodes, results * 100L / decodes);
+  }
+
+  /**
+   * Returns the number of bytes allocated by the current thread so far, or -1 if this
+   * is not supported.
+   */
+  private static long getAllocatedBytes() {
+    ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+
+    if(bean instanceof com.sun.management.ThreadMXBean) {
+      return ((com.sun.management.ThreadMXBean)bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    return -1;
+  }
+}
@@ -0,0 +1,40 @@
+package hs.mediasystem.framework;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import hs.mediasystem.framework.NameDecoder.Hint;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class NameDecoderSequenceTest {
+  private static final List<Hint[]> HINTS = Arrays.asList(
+    new Hint[] {Hint.MOVIE},
+    new Hint[] {Hint.EPISODE},
+    new Hint[] {Hint.EPISODE, Hint.MOVIE},
+    new Hint[] {Hint.FOLDER_NAMES}
+  );
+
+  @Test
+  public void shouldFindSameSequencesAsRegularExpressions() {
+    List<String> names = new ArrayList<>(NameCorpus.generate(50000, 1));
+
+    names.addAll(Arrays.asList(
+      "Desperate.Housewives.S04E16E17.720p", "S01E123", "S01E1-", "Monk.S01E01-02.Mr", "1x05-06 - Home", "ttscc208-dot", "ttscc2080",
+      "215\u0301", "215_", "215\u00e9", "S01\ud835\udc00", "S01E02\ud835", "#", "#1-", "Part 1e", "Underworld  - 03 - Rise", "- 1", "- 123 [", "",
+      "Monk\nS01E02", "Monk S01E02\r", "- 01\n", "24 [S01 E03]\u2028"
+    ));
+
+    for(Hint[] hints : HINTS) {
+      NameDecoder nameDecoder = new NameDecoder(hints);
+      RegexSequenceDecoder regexSequenceDecoder = new RegexSequenceDecoder(hints);
+
+      for(String name : names) {
+        assertArrayEquals(Arrays.toString(hints) + " " + name, regexSequenceDecoder.decodeAsSequence(name), nameDecoder.decodeAsSequence(name));
+      }
+    }
+  }
+}
@@ -0,0 +1,170 @@
+package hs.mediasystem.framework;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import hs.mediasystem.dao.NegativeCacheEntry;
+import hs.mediasystem.db.ConnectionPool;
+import hs.mediasystem.db.Database;
+import hs.mediasystem.db.Database.Transaction;
+import hs.mediasystem.db.SimpleConnectionPoolDataSource;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class NegativeCacheTest {
+  private ConnectionPool pool;
+  private Database database;
+  private NegativeCache negativeCache;
+
+  @Before
+  public void before() throws SQLException {
+    pool = new ConnectionPool(new SimpleConnectionPoolDataSource("jdbc:derby:memory:NegativeCacheTest;create=true"), 2, 60 * 1000);
+    database = new Database(pool::getConnection);
+
+    createTable(pool);
+
+    negativeCache = new NegativeCache(database);
+  }
+
+  @After
+  public void after() throws SQLException {
+    dropTable(pool);
+
+    pool.close();
+  }
+
+  @Test
+  public void shouldDoubleBackoffAfterEachFailure() {
+    assertEquals(Duration.ofHours(1), NegativeCache.getBackoff(1));
+    assertEquals(Duration.ofHours(2), NegativeCache.getBackoff(2));
+    assertEquals(Duration.ofHours(4), NegativeCache.getBackoff(3));
+    assertEquals(Duration.ofHours(512), NegativeCache.getBackoff(10));
+  }
+
+  @Test
+  public void shouldLimitBackoff() {
+    assertEquals(Duration.ofDays(30), NegativeCache.getBackoff(11));
+    assertEquals(Duration.ofDays(30), NegativeCache.getBackoff(1000));
+  }
+
+  @Test
+  public void shouldNotBackOffWithoutFailures() {
+    assertFalse(negativeCache.isBackingOff("url:http://example.com/1"));
+  }
+
+  @Test
+  public void shouldBackOffAfterFailure() {
+    negativeCache.recordFailure("url:http://example.com/1");
+
+    assertTrue(negativeCache.isBackingOff("url:http://example.com/1"));
+    assertFalse(negativeCache.isBackingOff("url:http://example.com/2"));
+  }
+
+  @Test
+  public void shouldNotBackOffAfterClear() {
+    negativeCache.recordFailure("url:http://example.com/1");
+    negativeCache.clear("url:http://example.com/1");
+
+    assertFalse(negativeCache.isBackingOff("url:http://example.com/1"));
+  }
+
+  @Test
+  public void shouldPersistFailures() {
+    LocalDateTime startTime = LocalDateTime.now();
+
+    negativeCache.recordFailure("url:http://example.com/1");
+    negativeCache.recordFailure("url:http://example.com/1");
+
+    assertTrue(new NegativeCache(database).isBackingOff("url:http://example.com/1"));
+
+    List<NegativeCacheEntry> entries = selectEntries();
+
+    assertEquals(1, entries.size());
+    assertEquals("url:http://example.com/1", entries.get(0).getCacheKey());
+    assertEquals(2, entries.get(0).getFailureCount());
+    assertFalse(entries.get(0).getRetryAfter().isBefore(startTime.plus(NegativeCache.getBackoff(2))));
+  }
+
+  @Test
+  public void shouldContinueCountingFailuresAfterRestart() {
+    negativeCache.recordFailure("url:http://example.com/1");
+
+    new NegativeCache(database).recordFailure("url:http://example.com/1");
+
+    assertEquals(2, selectEntries().get(0).getFailureCount());
+  }
+
+  @Test
+  public void shouldPersistClear() {
+    negativeCache.recordFailure("url:http://example.com/1");
+    negativeCache.recordFailure("url:http://example.com/2");
+    negativeCache.clear("url:http://example.com/1");
+
+    NegativeCache restartedNegativeCache = new NegativeCache(database);
+
+    assertFalse(restartedNegativeCache.isBackingOff("url:http://example.com/1"));
+    assertTrue(restartedNegativeCache.isBackingOff("url:http://example.com/2"));
+    assertEquals(1, selectEntries().size());
+  }
+
+  @Test
+  public void shouldNotBackOffAfterRetryTimeExpired() {
+    LocalDateTime now = LocalDateTime.now();
+
+    try(Transaction transaction = database.beginTransaction()) {
+      transaction.insert(new NegativeCacheEntry("url:http://example.com/1", 1, now.minusHours(2), now.minusHours(1)));
+      transaction.commit();
+    }
+
+    assertFalse(negativeCache.isBackingOff("url:http://example.com/1"));
+  }
+
+  @Test
+  public void shouldStoreLongKeysAsHash() {
+    StringBuilder builder = new StringBuilder("url:http://example.com/");
+
+    while(builder.length() <= 3000) {
+      builder.append("path/");
+    }
+
+    String key = builder.toString();
+
+    negativeCache.recordFailure(key);
+
+    assertTrue(new NegativeCache(database).isBackingOff(key));
+    assertTrue(selectEntries().get(0).getCacheKey().startsWith("sha256:"));
+
+    negativeCache.clear(key);
+
+    assertFalse(new NegativeCache(database).isBackingOff(key));
+  }
+
+  private List<NegativeCacheEntry> selectEntries() {
+    try(Transaction transaction = database.beginReadOnlyTransaction()) {
+      return transaction.select(NegativeCacheEntry.class, null);
+    }
+  }
+
+  static void createTable(ConnectionPool pool) throws SQLException {
+    try(Connection connection = pool.getConnection();
+        Statement statement = connection.createStatement()) {
+      statement.execute("CREATE TABLE negativecache (cachekey varchar(2000) NOT NULL, failurecount integer NOT NULL, lastfailure timestamp NOT NULL, retryafter timestamp NOT NULL, CONSTRAINT negativecache_cachekey PRIMARY KEY (cachekey))");
+    }
+  }
+
+  static void dropTable(ConnectionPool pool) throws SQLException {
+    try(Connection connection = pool.getConnection();
+        Statement statement = connection.createStatement()) {
+      statement.execute("DROP TABLE negativecache");
+    }
+  }
+}
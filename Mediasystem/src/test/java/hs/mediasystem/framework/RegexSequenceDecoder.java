@@ -0,0 +1,81 @@
+package hs.mediasystem.framework;
+
+import hs.mediasystem.framework.NameDecoder.Hint;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Finds sequences with the regular expressions {@link NameDecoder} used before it
+ * matched them in a single pass, as a reference for its results and performance.
+ */
+public class RegexSequenceDecoder {
+  private static final String SEASON = "([0-9]{1,2})";
+  private static final String EPISODE = "([0-9]{1,2})(?:-?[Ee]?([0-9]{1,2}))?";
+  private static final String NOT_PRECEDED_BY_DIGIT = "(?<!\\d)";
+  private static final String NOT_SUCCEEDED_BY_DIGIT_OR_LETTER = "(?!(?:\\d|\\p{L}))";
+
+  private static final List<Pattern> EPISODE_SEQUENCE_PATTERNS = Arrays.asList(
+    Pattern.compile("(.*?)" + "-" + SEASON + "x" + EPISODE + "-" + "(.*?)"),
+    Pattern.compile("(.*?)" + "\\(" + SEASON + "x" + EPISODE + "\\)" + "(.*?)"),
+    Pattern.compile("(.*?)" + "\\[" + SEASON + "x" + EPISODE + "\\]" + "(.*?)"),
+    Pattern.compile("(.*?)" + NOT_PRECEDED_BY_DIGIT + "[Ss]" + SEASON + " ?[Ee]" + EPISODE + NOT_SUCCEEDED_BY_DIGIT_OR_LETTER + "(.*?)"),
+    Pattern.compile("(.*?)" + "-[Ss]" + SEASON + " ?[Ee]" + EPISODE + "-" + "(.*?)"),
+    Pattern.compile("(.*?)" + "\\([Ss]" + SEASON + " ?[Ee]" + EPISODE + "\\)" + "(.*?)"),
+    Pattern.compile("(.*?)" + "\\[[Ss]" + SEASON + " ?[Ee]" + EPISODE + "\\]" + "(.*?)"),
+    Pattern.compile("(.*?)" + NOT_PRECEDED_BY_DIGIT + SEASON + "x" + EPISODE + NOT_SUCCEEDED_BY_DIGIT_OR_LETTER + "(.*?)"),
+    Pattern.compile("(.*?)" + NOT_PRECEDED_BY_DIGIT + "([1-3][0-9]|0?[1-9])([1-3][0-9]|0[1-9])()" + "\\b" + "(.*?)"),
+    Pattern.compile("(.*?)" + "()#" + EPISODE + "(.*?)"),
+    Pattern.compile("(.*?)" + "()(?:Part|part|PART) " + EPISODE + "(.*?)"),
+    Pattern.compile("(.*?)" + NOT_PRECEDED_BY_DIGIT + "[Ss]" + SEASON + "()()" + NOT_SUCCEEDED_BY_DIGIT_OR_LETTER + "(.*?)")
+  );
+
+  private static final List<Pattern> MOVIE_SEQUENCE_PATTERNS = Arrays.asList(
+    Pattern.compile("(.*?)" + "- " + SEASON + "()()(( [-\\[]|$).*?)")
+  );
+
+  private final List<Pattern> patterns = new ArrayList<>();
+
+  public RegexSequenceDecoder(Hint... hints) {
+    List<Hint> hintList = Arrays.asList(hints);
+
+    if(hintList.contains(Hint.EPISODE)) {
+      patterns.addAll(EPISODE_SEQUENCE_PATTERNS);
+    }
+    if(hintList.contains(Hint.MOVIE)) {
+      patterns.addAll(MOVIE_SEQUENCE_PATTERNS);
+    }
+
+    if(patterns.isEmpty()) {
+      patterns.addAll(EPISODE_SEQUENCE_PATTERNS);
+      patterns.addAll(MOVIE_SEQUENCE_PATTERNS);
+    }
+  }
+
+  /**
+   * Finds the sequence in the given text.
+   *
+   * @param text a text
+   * @return the text before the sequence, the season, the episode, the end episode and the text after the sequence, or <code>null</code> if no sequence was found
+   */
+  public String[] decodeAsSequence(String text) {
+    for(Pattern pattern : patterns) {
+      Matcher matcher = pattern.matcher(text);
+
+      if(matcher.matches()) {
+        String[] groups = new String[5];
+
+        for(int i = 0; i < groups.length; i++) {
+          groups[i] = matcher.group(i + 1);
+        }
+
+        return groups;
+      }
+    }
+
+    return null;
+  }
+}
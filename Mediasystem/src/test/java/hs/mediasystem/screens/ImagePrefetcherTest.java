@@ -0,0 +1,70 @@
+package hs.mediasystem.screens;
+
+import static org.junit.Assert.assertEquals;
+import hs.mediasystem.beans.AsyncImagePropertyTest.FakeSource;
+import hs.mediasystem.framework.SourceImageHandle;
+import hs.mediasystem.test.JavaFXRunningRule;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+public class ImagePrefetcherTest {
+  @Rule
+  public final JavaFXRunningRule jfxRunningRule = new JavaFXRunningRule();
+
+  @Test
+  public void shouldPrefetchSurroundingImagesAndCountHits() {
+    List<MediaNode> mediaNodes = createMediaNodes("hit-test", 5);
+    ImagePrefetcher prefetcher = new ImagePrefetcher(2, media -> media.banner);
+    long prefetches = ImagePrefetcher.getPrefetchCount();
+    long hits = ImagePrefetcher.getHitCount();
+
+    prefetcher.focusChanged(mediaNodes, mediaNodes.get(0));
+    sleep(500);
+
+    assertEquals(prefetches + 2, ImagePrefetcher.getPrefetchCount());  // nodes 1 and 2
+
+    prefetcher.focusChanged(mediaNodes, mediaNodes.get(1));
+
+    assertEquals(hits + 1, ImagePrefetcher.getHitCount());
+  }
+
+  @Test
+  public void shouldNotCountHitsWhenFocusMovesBeyondPrefetchedImages() {
+    List<MediaNode> mediaNodes = createMediaNodes("miss-test", 5);
+    ImagePrefetcher prefetcher = new ImagePrefetcher(1, media -> media.banner);
+    long hits = ImagePrefetcher.getHitCount();
+
+    prefetcher.focusChanged(mediaNodes, mediaNodes.get(0));
+    sleep(500);
+    prefetcher.focusChanged(mediaNodes, mediaNodes.get(4));
+
+    assertEquals(hits, ImagePrefetcher.getHitCount());
+
+    prefetcher.cancel();
+  }
+
+  private static List<MediaNode> createMediaNodes(String prefix, int count) {
+    List<MediaNode> mediaNodes = new ArrayList<>();
+
+    for(int i = 0; i < count; i++) {
+      MediaNode mediaNode = new MediaNode(prefix + i, "Title " + i, null, true);
+
+      mediaNode.getMedia().banner.set(new SourceImageHandle(new FakeSource(), prefix + "-image-" + i));
+      mediaNodes.add(mediaNode);
+    }
+
+    return mediaNodes;
+  }
+
+  private static void sleep(long millis) {
+    try {
+      Thread.sleep(millis);
+    }
+    catch(InterruptedException e) {
+    }
+  }
+}
@@ -0,0 +1,19 @@
+package hs.mediasystem.util;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class CryptoUtilTest {
+
+  @Test
+  public void shouldHashWithSha256AsLowerCaseHex() {
+    assertEquals("e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855", CryptoUtil.sha256(new byte[0]));
+    assertEquals("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad", CryptoUtil.sha256("abc"));
+  }
+
+  @Test
+  public void shouldHashTextAsUtf8() {
+    assertEquals(CryptoUtil.sha256(new byte[] {(byte)0xc3, (byte)0xa9}), CryptoUtil.sha256("\u00e9"));
+  }
+}
@@ -0,0 +1,101 @@
+package hs.mediasystem.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import hs.mediasystem.test.JavaFXRunningRule;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import javafx.scene.image.Image;
+
+import javax.imageio.ImageIO;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class ImageCacheTest {
+  private static final long IMAGE_BYTES = 100 * 100 * 4;
+
+  @Rule
+  public final JavaFXRunningRule jfxRunningRule = new JavaFXRunningRule();
+
+  @After
+  public void after() {
+    ImageCache.setMaxStrongBytes(256L * 1024 * 1024);
+  }
+
+  @Test
+  public void shouldReturnCachedImageAndCountHitsAndMisses() {
+    ImageHandle handle = new TestImageHandle("hit-test");
+    long hits = ImageCache.getHitCount();
+    long misses = ImageCache.getMissCount();
+
+    Image image = ImageCache.loadImageUptoMaxSize(handle, 1920, 1200);
+
+    assertSame(image, ImageCache.loadImageUptoMaxSize(handle, 1920, 1200));
+    assertEquals(hits + 1, ImageCache.getHitCount());
+    assertEquals(misses + 1, ImageCache.getMissCount());
+  }
+
+  @Test
+  public void shouldEvictLeastRecentlyUsedImagesWhenByteBudgetIsExceeded() {
+    ImageCache.setMaxStrongBytes(0);  // evicts images loaded by other tests
+    ImageCache.setMaxStrongBytes(2 * IMAGE_BYTES);
+
+    long evictions = ImageCache.getEvictionCount();
+    TestImageHandle handleA = new TestImageHandle("evict-test-A");
+    Image imageA = ImageCache.loadImageUptoMaxSize(handleA, 1920, 1200);
+
+    ImageCache.loadImageUptoMaxSize(new TestImageHandle("evict-test-B"), 1920, 1200);
+    ImageCache.loadImageUptoMaxSize(new TestImageHandle("evict-test-C"), 1920, 1200);
+
+    assertEquals(evictions + 1, ImageCache.getEvictionCount());
+    assertSame(imageA, ImageCache.loadImageUptoMaxSize(handleA, 1920, 1200));  // still softly referenced
+  }
+
+  @Test
+  public void shouldExpungeAllSizesOfAnImage() {
+    TestImageHandle handle = new TestImageHandle("expunge-test");
+    Image small = ImageCache.loadImageUptoMaxSize(handle, 50, 50);
+    Image large = ImageCache.loadImageUptoMaxSize(handle, 1920, 1200);
+
+    ImageCache.expunge(handle);
+
+    assertNotSame(small, ImageCache.loadImageUptoMaxSize(handle, 50, 50));
+    assertNotSame(large, ImageCache.loadImageUptoMaxSize(handle, 1920, 1200));
+  }
+
+  private static class TestImageHandle implements ImageHandle {
+    private final String key;
+
+    TestImageHandle(String key) {
+      this.key = key;
+    }
+
+    @Override
+    public byte[] getImageData() {
+      try(ByteArrayOutputStream stream = new ByteArrayOutputStream()) {
+        ImageIO.write(new BufferedImage(100, 100, BufferedImage.TYPE_INT_RGB), "png", stream);
+
+        return stream.toByteArray();
+      }
+      catch(IOException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+
+    @Override
+    public String getKey() {
+      return key;
+    }
+
+    @Override
+    public boolean isFastSource() {
+      return true;
+    }
+  }
+}
@@ -0,0 +1,165 @@
+package hs.mediasystem.util;
+
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Function;
+
+import javafx.embed.swing.JFXPanel;
+import javafx.scene.image.Image;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import javax.swing.SwingUtilities;
+
+/**
+ * Compares decoding backdrops to fit a screen sized box using {@link ImageDecoder}
+ * with the previous approach of probing the size with an ImageIO reader and letting
+ * JavaFX decode and scale the full image.  Reports the average time and the peak
+ * heap usage per image.<p>
+ *
+ * Backdrops are read from the given directory (for example a directory of backdrops
+ * downloaded from TMDB), or when none is given, a set of 3840x2160 and 1920x1080 JPEGs
+ * resembling backdrops is generated.<p>
+ *
+ * Run with: <code>java hs.mediasystem.util.ImageDecoderBenchmark [directory] [width] [height]</code>
+ */
+public class ImageDecoderBenchmark {
+  private static final int ROUNDS = 20;
+
+  public static void main(String[] args) throws Exception {
+    List<byte[]> images = args.length > 0 ? readImages(Paths.get(args[0])) : generateImages();
+    int w = args.length > 1 ? Integer.parseInt(args[1]) : 1280;
+    int h = args.length > 2 ? Integer.parseInt(args[2]) : 720;
+
+    SwingUtilities.invokeAndWait(JFXPanel::new);  // starts JavaFX
+
+    run("ImageIO probe + JavaFX scale", images, data -> decodeWithJavaFX(data, w, h), 1);  // warm up
+    run("ImageDecoder", images, data -> ImageDecoder.decode(data, w, h), 1);  // warm up
+
+    run("ImageIO probe + JavaFX scale", images, data -> decodeWithJavaFX(data, w, h), ROUNDS);
+    run("ImageDecoder", images, data -> ImageDecoder.decode(data, w, h), ROUNDS);
+  }
+
+  private static void run(String name, List<byte[]> images, Function<byte[], Image> decoder, int rounds) {
+    long totalNanos = 0;
+    long totalPeakBytes = 0;
+
+    for(int round = 0; round < rounds; round++) {
+      for(byte[] data : images) {
+        System.gc();
+
+        long baseBytes = resetPeakHeapUsage();
+        long startNanos = System.nanoTime();
+
+        decoder.apply(data);
+
+        totalNanos += System.nanoTime() - startNanos;
+        totalPeakBytes += getPeakHeapUsage() - baseBytes;
+      }
+    }
+
+    int count = rounds * images.size();
+
+    System.out.printf("%-30s %8.2f ms/image, %8.1f MB peak heap/image%n", name, totalNanos / 1000000.0 / count, totalPeakBytes / 1024.0 / 1024.0 / count);
+  }
+
+  private static Image decodeWithJavaFX(byte[] data, int w, int h) {
+    try(ImageInputStream is = ImageIO.createImageInputStream(new ByteArrayInputStream(data))) {
+      Iterator<ImageReader> imageReaders = ImageIO.getImageReaders(is);
+      ImageReader imageReader = imageReaders.next();
+
+      imageReader.setInput(is);
+      imageReader.getWidth(imageReader.getMinIndex());
+      imageReader.getHeight(imageReader.getMinIndex());
+      imageReader.dispose();
+    }
+    catch(IOException e) {
+      throw new IllegalStateException(e);
+    }
+
+    return new Image(new ByteArrayInputStream(data), w, h, true, true);
+  }
+
+  private static long resetPeakHeapUsage() {
+    long bytes = 0;
+
+    for(MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      if(pool.getType() == MemoryType.HEAP) {
+        pool.resetPeakUsage();
+        bytes += pool.getUsage().getUsed();
+      }
+    }
+
+    return bytes;
+  }
+
+  private static long getPeakHeapUsage() {
+    long bytes = 0;
+
+    for(MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      if(pool.getType() == MemoryType.HEAP) {
+        bytes += pool.getPeakUsage().getUsed();
+      }
+    }
+
+    return bytes;
+  }
+
+  private static List<byte[]> readImages(Path directory) throws IOException {
+    List<byte[]> images = new ArrayList<>();
+
+    try(DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*.{jpg,jpeg,png}")) {
+      for(Path path : stream) {
+        images.add(Files.readAllBytes(path));
+      }
+    }
+
+    return images;
+  }
+
+  private static List<byte[]> generateImages() throws IOException {
+    Random random = new Random(1);
+    List<byte[]> images = new ArrayList<>();
+
+    for(int i = 0; i < 8; i++) {
+      int w = i % 2 == 0 ? 3840 : 1920;
+      int h = i % 2 == 0 ? 2160 : 1080;
+      BufferedImage image = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+      Graphics2D graphics = image.createGraphics();
+
+      graphics.setPaint(new GradientPaint(0, 0, new Color(random.nextInt()), w, h, new Color(random.nextInt())));
+      graphics.fillRect(0, 0, w, h);
+
+      for(int j = 0; j < 200; j++) {
+        graphics.setColor(new Color(random.nextInt(), true));
+        graphics.fillOval(random.nextInt(w), random.nextInt(h), random.nextInt(w / 4), random.nextInt(h / 4));
+      }
+
+      graphics.dispose();
+
+      try(ByteArrayOutputStream stream = new ByteArrayOutputStream()) {
+        ImageIO.write(image, "jpg", stream);
+        images.add(stream.toByteArray());
+      }
+    }
+
+    return images;
+  }
+}
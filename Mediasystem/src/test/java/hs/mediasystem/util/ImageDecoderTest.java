@@ -0,0 +1,66 @@
+package hs.mediasystem.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import hs.mediasystem.test.JavaFXRunningRule;
+
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import javafx.scene.image.Image;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+public class ImageDecoderTest {
+
+  @Rule
+  public final JavaFXRunningRule jfxRunningRule = new JavaFXRunningRule();
+
+  @Test
+  public void shouldReadSizeFromHeaders() throws IOException {
+    assertEquals(new Dimension(300, 200), ImageDecoder.readSize(encode(300, 200, "png")));
+    assertEquals(new Dimension(300, 200), ImageDecoder.readSize(encode(300, 200, "jpg")));
+    assertEquals(new Dimension(300, 200), ImageDecoder.readSize(encode(300, 200, "bmp")));
+  }
+
+  @Test
+  public void shouldNotReadSizeOfInvalidData() {
+    assertNull(ImageDecoder.readSize(new byte[] {(byte)0xFF, (byte)0xD8, (byte)0xFF, (byte)0xD9}));
+    assertNull(ImageDecoder.readSize(new byte[] {1, 2, 3}));
+    assertNull(ImageDecoder.decode(new byte[] {1, 2, 3}, 100, 100));
+  }
+
+  @Test
+  public void shouldScaleImagesToFitKeepingAspectRatio() throws IOException {
+    Image image = ImageDecoder.decode(encode(1920, 1080, "jpg"), 400, 400);
+
+    assertEquals(400, image.getWidth(), 0);
+    assertEquals(225, image.getHeight(), 0);
+
+    image = ImageDecoder.decode(encode(1000, 1500, "png"), 400, 400);
+
+    assertEquals(267, image.getWidth(), 0);
+    assertEquals(400, image.getHeight(), 0);
+  }
+
+  @Test
+  public void shouldNotScaleImagesWhichFit() throws IOException {
+    Image image = ImageDecoder.decode(encode(300, 200, "png"), 400, 400);
+
+    assertEquals(300, image.getWidth(), 0);
+    assertEquals(200, image.getHeight(), 0);
+  }
+
+  private static byte[] encode(int w, int h, String format) throws IOException {
+    try(ByteArrayOutputStream stream = new ByteArrayOutputStream()) {
+      ImageIO.write(new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB), format, stream);
+
+      return stream.toByteArray();
+    }
+  }
+}
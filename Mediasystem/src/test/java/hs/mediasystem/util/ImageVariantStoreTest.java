@@ -0,0 +1,118 @@
+package hs.mediasystem.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import org.junit.Test;
+
+public class ImageVariantStoreTest {
+
+  @Test
+  public void shouldReturnNullForMissingVariant() throws IOException {
+    Path directory = Files.createTempDirectory("variants");
+
+    try {
+      ImageVariantStore store = new ImageVariantStore(directory, 1000);
+
+      assertNull(store.read("missing", 100, 100));
+    }
+    finally {
+      Files.delete(directory);
+    }
+  }
+
+  @Test
+  public void shouldRemoveLeastRecentlyUsedVariantsWhenOverBudget() throws IOException {
+    Path directory = Files.createTempDirectory("variants");
+
+    try {
+      ImageVariantStore store = new ImageVariantStore(directory, 300, Runnable::run);
+
+      createVariant(directory, "a", 1000);
+      createVariant(directory, "b", 2000);
+      createVariant(directory, "c", 3000);
+      createVariant(directory, "d", 4000);
+
+      assertNotNull(store.read("a", 100, 100));  // makes "a" the most recently used
+
+      store.cleanUp();
+
+      assertNotNull(store.read("a", 100, 100));
+      assertNull(store.read("b", 100, 100));
+      assertNull(store.read("c", 100, 100));
+      assertNotNull(store.read("d", 100, 100));
+    }
+    finally {
+      deleteDirectory(directory);
+    }
+  }
+
+  @Test
+  public void shouldRemoveVariantsOfGivenImagesOnly() throws IOException {
+    Path directory = Files.createTempDirectory("variants");
+
+    try {
+      ImageVariantStore store = new ImageVariantStore(directory, 1000, Runnable::run);
+
+      createVariant(directory, "a", 1000);
+      createVariant(directory, "b", 2000);
+      createVariant(directory, "c", 3000);
+
+      store.remove(Arrays.asList("a", "c"));
+
+      assertNull(store.read("a", 100, 100));
+      assertNotNull(store.read("b", 100, 100));
+      assertNull(store.read("c", 100, 100));
+    }
+    finally {
+      deleteDirectory(directory);
+    }
+  }
+
+  @Test
+  public void shouldReadRemainingBytesOfBuffer() throws IOException {
+    ByteBuffer buffer = ByteBuffer.wrap(new byte[] {1, 2, 3, (byte)0xFF});
+
+    buffer.get();
+
+    try(InputStream is = ImageVariantStore.asInputStream(buffer);
+        ByteArrayOutputStream os = new ByteArrayOutputStream()) {
+      assertEquals(3, is.available());
+      assertEquals(2, is.read());
+
+      byte[] bytes = new byte[10];
+      int count = is.read(bytes, 0, bytes.length);
+
+      os.write(bytes, 0, count);
+
+      assertArrayEquals(new byte[] {3, (byte)0xFF}, os.toByteArray());
+      assertEquals(-1, is.read());
+      assertEquals(1, buffer.position());  // original buffer is left untouched
+    }
+  }
+
+  private static void createVariant(Path directory, String key, long lastModifiedMillis) throws IOException {
+    Path path = Files.write(directory.resolve(CryptoUtil.sha256(key) + "-100x100"), new byte[100]);
+
+    Files.setLastModifiedTime(path, FileTime.fromMillis(lastModifiedMillis));
+  }
+
+  private static void deleteDirectory(Path directory) throws IOException {
+    try(Stream<Path> stream = Files.walk(directory)) {
+      stream.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+    }
+  }
+}
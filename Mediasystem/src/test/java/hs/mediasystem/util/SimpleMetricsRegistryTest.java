@@ -0,0 +1,51 @@
+package hs.mediasystem.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import hs.mediasystem.util.MetricsRegistry.Histogram;
+
+import org.junit.Test;
+
+public class SimpleMetricsRegistryTest {
+  private final SimpleMetricsRegistry registry = new SimpleMetricsRegistry();
+
+  @Test
+  public void shouldReturnSameMetricForSameName() {
+    registry.counter("a").increment();
+    registry.counter("a").add(2);
+
+    assertSame(registry.counter("a"), registry.counter("a"));
+    assertEquals(3, registry.counter("a").get());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void shouldRejectMetricWithDifferentType() {
+    registry.counter("a");
+    registry.histogram("a");
+  }
+
+  @Test
+  public void shouldReportPercentilesAsBucketUpperBounds() {
+    Histogram histogram = registry.histogram("h");
+
+    for(int i = 1; i <= 100; i++) {
+      histogram.record(i);
+    }
+
+    assertEquals(100, histogram.getCount());
+    assertEquals(100, histogram.getMax());
+    assertEquals(50.5, histogram.getMean(), 0.001);
+    assertEquals(63, histogram.getPercentile(0.5));
+    assertEquals(100, histogram.getPercentile(0.99));
+    assertEquals(1, histogram.getPercentile(0.01));
+  }
+
+  @Test
+  public void shouldIncludeGaugesInSnapshot() {
+    registry.gauge("g", () -> 42);
+    registry.counter("c").increment();
+
+    assertEquals("42", registry.snapshot().get("g"));
+    assertEquals("1", registry.snapshot().get("c"));
+  }
+}
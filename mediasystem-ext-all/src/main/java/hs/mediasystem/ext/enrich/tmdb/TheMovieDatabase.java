@@ -5,9 +5,14 @@ import hs.mediasystem.dao.Source;
 import hs.mediasystem.db.Database;
 import hs.mediasystem.framework.Cache;
 import hs.mediasystem.framework.CacheEntry;
+import hs.mediasystem.framework.NegativeCache;
 import hs.mediasystem.util.CryptoUtil;
 import hs.mediasystem.util.LifoBlockingDeque;
+import hs.mediasystem.util.MetricsRegistry;
+import hs.mediasystem.util.MetricsRegistry.Counter;
 import hs.mediasystem.util.RateLimiter;
+import hs.mediasystem.util.Throwables;
+import hs.mediasystem.util.io.HttpException;
 import hs.mediasystem.util.io.RuntimeIOException;
 import hs.mediasystem.util.io.URLs;
 
@@ -22,6 +27,13 @@ import java.time.format.DateTimeParseException;
 import java.time.temporal.TemporalAccessor;
 import java.time.temporal.TemporalQuery;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
@@ -61,19 +73,49 @@ public class TheMovieDatabase {
    */
   private static final RateLimiter BACKGROUND_REFRESH_RATE_LIMITER = new RateLimiter(2, 10);
 
+  /**
+   * The maximum number of parsed responses kept in memory.
+   */
+  private static final int MAX_JSON_CACHE_ENTRIES = 500;
+
   private final String apiKey;
   private final Cache<byte[]> cache;
   private final Database database;
+  private final NegativeCache negativeCache;
   private final int maxAgeInSeconds;
   private final ObjectMapper objectMapper = new ObjectMapper();
 
+  /**
+   * Fetches in progress by URL, so concurrent requests for the same URL share a single fetch.
+   */
+  private final ConcurrentMap<String, CompletableFuture<byte[]>> fetchesInProgress = new ConcurrentHashMap<>();
+  private final Set<String> refreshesQueued = ConcurrentHashMap.newKeySet();
+  private final Counter fetches;
+  private final Counter coalescedFetches;
+  private final Counter jsonCacheHits;
+
+  /**
+   * Parsed responses by URL, so repeated queries need neither a cache lookup nor parsing.  The
+   * returned nodes are shared and must not be modified.
+   */
+  private final Map<String, CacheEntry<JsonNode>> jsonCache = new LinkedHashMap<String, CacheEntry<JsonNode>>(16, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, CacheEntry<JsonNode>> eldest) {
+      return size() > MAX_JSON_CACHE_ENTRIES;
+    }
+  };
+
   private JsonNode configuration;
 
   @Inject
-  public TheMovieDatabase(Cache<byte[]> cache, Database database, @Named("TheMovieDatabase.expirationSeconds") int maxAgeInSeconds) {  // TODO we have Cache, no need for Database
+  public TheMovieDatabase(Cache<byte[]> cache, Database database, NegativeCache negativeCache, MetricsRegistry metricsRegistry, @Named("TheMovieDatabase.expirationSeconds") int maxAgeInSeconds) {  // TODO we have Cache, no need for Database
     this.cache = cache;
     this.database = database;
+    this.negativeCache = negativeCache;
     this.maxAgeInSeconds = maxAgeInSeconds;
+    this.fetches = metricsRegistry.counter("tmdb.fetches");
+    this.coalescedFetches = metricsRegistry.counter("tmdb.coalescedFetches");
+    this.jsonCacheHits = metricsRegistry.counter("tmdb.jsonCacheHits");
     this.apiKey = CryptoUtil.decrypt("8AF22323DB8C0F235B38F578B7E09A61DB6F971EED59DE131E4EF70003CE84B483A778EBD28200A031F035F4209B61A4", "-MediaSystem-"); // Yes, I know you can still get the key.
   }
 
@@ -100,7 +142,7 @@ public class TheMovieDatabase {
 
       URL url = new URL("http://api.themoviedb.org/" + query + "?api_key=" + apiKey + sb.toString());
 
-      return objectMapper.readTree(useCache ? getURL(url) : getURLdirect(url));
+      return useCache ? getJson(url) : objectMapper.readTree(getURLdirect(url));
     }
     catch(RuntimeIOException | IOException e) {
       throw new RuntimeException("While executing query: " + query + "; parameters=" + Arrays.toString(parameters), e);
@@ -150,43 +192,149 @@ public class TheMovieDatabase {
     }
   }
 
-  private byte[] getURL(URL url) {
+  private JsonNode getJson(URL url) throws IOException {
+    String key = url.toExternalForm();
+    CacheEntry<JsonNode> jsonEntry;
+
+    synchronized(jsonCache) {
+      jsonEntry = jsonCache.get(key);
+    }
+
+    if(jsonEntry != null) {
+      jsonCacheHits.increment();
+      refreshIfNeeded(url, jsonEntry.getCreationTime());
+
+      return jsonEntry.getData();
+    }
+
+    CacheEntry<byte[]> entry = getURL(url);
+    JsonNode node = objectMapper.readTree(entry.getData());
+
+    synchronized(jsonCache) {
+      jsonCache.put(key, new CacheEntry<>(node, entry.getCreationTime()));
+    }
+
+    return node;
+  }
+
+  private CacheEntry<byte[]> getURL(URL url) {
     CacheEntry<byte[]> entry = cache.lookup(url.toExternalForm());
 
     if(entry == null) {
       // No cache, do a foreground fetch of the data now:
-      byte[] data = getURLdirect(url);
-
-      System.out.println("[FINE] [TMDB] [CACHE] Store: " + url);
-      cache.store(url.toExternalForm(), data);
-
-      return data;
+      return new CacheEntry<>(fetchAndStore(url, null), LocalDateTime.now());
     }
 
+    refreshIfNeeded(url, entry.getCreationTime());
+
     /*
-     * Entry was cached, do a background refresh if needed.  Entries are refreshed if they exceed maxAgeInSeconds
-     * plus a random number of seconds between 0 and 20%.  The randomization should help to reduce the number of
-     * expirations happening all at once.
+     * Return the entry, whether is was fresh enough or not:
      */
+
+    return entry;
+  }
+
+  /**
+   * Does a background refresh if needed.  Entries are refreshed if they exceed maxAgeInSeconds plus a random
+   * number of seconds between 0 and 20%.  The randomization should help to reduce the number of expirations
+   * happening all at once.
+   */
+  private void refreshIfNeeded(URL url, LocalDateTime creationTime) {
     LocalDateTime oldestAllowed = LocalDateTime.now().minusSeconds(maxAgeInSeconds).minusSeconds((int)(Math.random() * maxAgeInSeconds / 5));
 
-    if(entry.getCreationTime().isBefore(oldestAllowed)) {  // entry is not fresh enough?
+    if(creationTime.isBefore(oldestAllowed) && refreshesQueued.add(url.toExternalForm())) {  // entry is not fresh enough and no refresh queued yet?
       // Trigger background refresh:
       BACKGROUND_REFRESH_EXECUTOR.execute(() -> {
-        BACKGROUND_REFRESH_RATE_LIMITER.acquire();
+        try {
+          fetchAndStore(url, BACKGROUND_REFRESH_RATE_LIMITER);
+        }
+        finally {
+          refreshesQueued.remove(url.toExternalForm());
+        }
+      });
+    }
+  }
 
-        byte[] data = getURLdirect(url);
+  /**
+   * Fetches the data of the given URL and stores it in the cache.  If a fetch of the
+   * same URL is already in progress, no new fetch is done and the data of the fetch in
+   * progress is returned instead.<p>
+   *
+   * URLs which returned 404 are remembered in the {@link NegativeCache}, and are not
+   * fetched again until their back-off expires.
+   *
+   * @param url the URL to fetch
+   * @param rateLimiter an additional {@link RateLimiter} to acquire before fetching, can be null
+   * @return the data of the URL
+   */
+  private byte[] fetchAndStore(URL url, RateLimiter rateLimiter) {
+    String key = url.toExternalForm();
+    CompletableFuture<byte[]> future = new CompletableFuture<>();
+    CompletableFuture<byte[]> fetchInProgress = fetchesInProgress.putIfAbsent(key, future);
 
-        System.out.println("[FINE] [TMDB] [CACHE] Background Store: " + url);
-        cache.store(url.toExternalForm(), data);
-      });
+    if(fetchInProgress != null) {
+      coalescedFetches.increment();
+
+      try {
+        return fetchInProgress.join();
+      }
+      catch(CompletionException e) {
+        throw e.getCause() instanceof RuntimeException ? (RuntimeException)e.getCause() : e;
+      }
     }
 
-    /*
-     * Return the entry, whether is was fresh enough or not:
-     */
+    String negativeCacheKey = "url:" + key;
+
+    try {
+      if(negativeCache.isBackingOff(negativeCacheKey)) {
+        throw new HttpException(url, 404, "Not Found (remembered)");
+      }
+
+      if(rateLimiter != null) {
+        rateLimiter.acquire();
+      }
+
+      byte[] data;
+
+      try {
+        data = getURLdirect(url);
+      }
+      catch(HttpException e) {
+        if(e.getResponseCode() == 404) {
+          negativeCache.recordFailure(negativeCacheKey);
+        }
+
+        throw e;
+      }
+
+      fetches.increment();
+      negativeCache.clear(negativeCacheKey);
+
+      synchronized(jsonCache) {
+        jsonCache.remove(key);  // parsed again from the new data on next query; done before completing, so entries parsed by waiting callers are kept
+      }
+
+      future.complete(data);  // waiting callers don't need to wait for the data to be stored
+
+      System.out.println("[FINE] [TMDB] [CACHE] " + (rateLimiter == null ? "Store: " : "Background Store: ") + url);
 
-    return entry.getData();
+      try {
+        cache.store(key, data);
+      }
+      catch(RuntimeException e) {
+        LOGGER.warning("Unable to store " + url + " in cache: " + Throwables.formatAsOneLine(e));
+      }
+
+      return data;
+    }
+    catch(RuntimeException e) {
+      future.completeExceptionally(e);
+
+      throw e;
+    }
+    finally {
+      fetchesInProgress.remove(key, future);
+    }
   }
 
   private static byte[] getURLdirect(URL url) {
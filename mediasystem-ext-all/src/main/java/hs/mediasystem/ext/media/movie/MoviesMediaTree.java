@@ -6,90 +6,212 @@ import hs.mediasystem.entity.SourceKey;
 import hs.mediasystem.framework.EpisodeScanner;
 import hs.mediasystem.framework.FileEntitySource;
 import hs.mediasystem.framework.Id;
+import hs.mediasystem.framework.ItemsCache;
+import hs.mediasystem.framework.ItemsListener;
+import hs.mediasystem.framework.LibraryWatcher;
+import hs.mediasystem.framework.ManifestScanner;
 import hs.mediasystem.framework.Media;
+import hs.mediasystem.framework.MediaDataPreloader;
 import hs.mediasystem.framework.MediaItem;
 import hs.mediasystem.framework.MediaRoot;
 import hs.mediasystem.framework.NameDecoder;
 import hs.mediasystem.framework.NameDecoder.DecodeResult;
 import hs.mediasystem.framework.NameDecoder.Hint;
+import hs.mediasystem.framework.ScanManifest.Entry;
 import hs.mediasystem.framework.SettingsStore;
 import hs.mediasystem.util.PathStringConverter;
 import hs.mediasystem.util.Throwables;
 
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
+import javafx.beans.Observable;
 import javafx.collections.ObservableList;
 
 import javax.inject.Inject;
-
+import javax.inject.Singleton;
+
+/**
+ * MediaRoot of the movies found directly in the configured paths.  The movies found
+ * by the last scan are kept in a manifest, so they can be shown immediately after a
+ * restart while the paths are checked for changes in the background.  After the movies
+ * were first scanned, the paths are watched so movies which are added or removed are
+ * reported to the listeners without scanning the paths again.
+ */
+@Singleton
 public class MoviesMediaTree implements MediaRoot {
   private static final Id ID = new Id("movieRoot");
   private static final NameDecoder NAME_DECODER = new NameDecoder(Hint.MOVIE);
 
-  private final List<Path> roots;
   private final EntityContext entityContext;
   private final FileEntitySource fileEntitySource;
+  private final MediaDataPreloader mediaDataPreloader;
+  private final ItemsCache<Movie> itemsCache = new ItemsCache<>(1, TimeUnit.HOURS, this::scanItems);
+  private final ManifestScanner manifestScanner = new ManifestScanner("movies", 1, NAME_DECODER.getVersion(), (path, attributes, depth) -> !attributes.isDirectory() && EpisodeScanner.isMediaFile(path) ? NAME_DECODER.decode(path.getFileName().toString()) : null);
+
+  private volatile List<Path> roots;
+  private LibraryWatcher libraryWatcher;  // guarded by this
 
   @Inject
-  public MoviesMediaTree(FileEntitySource fileEntitySource, EntityContext entityContext, SettingsStore settingsStore) {
+  public MoviesMediaTree(FileEntitySource fileEntitySource, EntityContext entityContext, SettingsStore settingsStore, MediaDataPreloader mediaDataPreloader) {
     this.fileEntitySource = fileEntitySource;
     this.entityContext = entityContext;
+    this.mediaDataPreloader = mediaDataPreloader;
 
     ObservableList<Path> paths = settingsStore.getListProperty("MediaSystem:Ext:Movies", PersistLevel.PERMANENT, "Paths", new PathStringConverter());
 
     this.roots = new ArrayList<>(paths);
+
+    paths.addListener((Observable observable) -> {
+      roots = new ArrayList<>(paths);
+      stopWatching();
+      invalidate();
+    });
   }
 
   @Override
   public List<? extends Media> getItems() {
+    return itemsCache.get();
+  }
+
+  @Override
+  public void invalidate() {
+    itemsCache.invalidate();
+  }
+
+  @Override
+  public void addItemsListener(ItemsListener<Media> listener) {
+    itemsCache.addListener(listener);
+  }
+
+  @Override
+  public void removeItemsListener(ItemsListener<Media> listener) {
+    itemsCache.removeListener(listener);
+  }
+
+  private List<Movie> scanItems() {
+    List<Path> roots = this.roots;
     List<Movie> children = new ArrayList<>();
 
+    startWatching(roots);
+
     for(Path root : roots) {
       try {
-        List<Path> scanResults = new EpisodeScanner(1).scan(root);
+        List<Entry> entries = manifestScanner.scan(root, this::entriesChanged);
 
-        for(final Path path : scanResults) {
-          DecodeResult result = NAME_DECODER.decode(path.getFileName().toString());
+        preload(root);
 
-          String title = result.getTitle();
-          String sequence = result.getSequence();
-          String subtitle = result.getSubtitle();
-          Integer year = result.getReleaseYear();
+        for(Entry entry : entries) {
+          children.add(createMovie(entry.getPath(), entry.getDecodeResult()));
+        }
+      }
+      catch(RuntimeException e) {
+        System.out.println("[WARN] " + getClass().getName() + "::scanItems - Exception while getting items for \"" + root + "\": " + Throwables.formatAsOneLine(e));   // TODO add to some high level user error reporting facility
+      }
+    }
 
-          String imdb = result.getCode();
-          String imdbNumber = imdb != null && !imdb.isEmpty() ? String.format("tt%07d", Integer.parseInt(imdb)) : null;
+    return children;
+  }
+
+  private void preload(Path root) {
+    try {
+      mediaDataPreloader.preload(root);
+    }
+    catch(RuntimeException e) {
+      System.out.println("[WARN] " + getClass().getName() + "::preload - Exception while preloading \"" + root + "\", items will be looked up individually: " + Throwables.formatAsOneLine(e));
+    }
+  }
 
-          Integer episode = sequence == null ? null : Integer.parseInt(sequence);
+  private Movie createMovie(Path path, DecodeResult result) {
+    String title = result.getTitle();
+    String sequence = result.getSequence();
+    String subtitle = result.getSubtitle();
+    Integer year = result.getReleaseYear();
 
-          Movie movie = entityContext.add(Movie.class, new Supplier<Movie>() {
-            @Override
-            public Movie get() {
-              Movie movie = new Movie(new MediaItem(path.toString()));
+    String imdb = result.getCode();
+    String imdbNumber = imdb != null && !imdb.isEmpty() ? String.format("tt%07d", Integer.parseInt(imdb)) : null;
 
-              movie.initialTitle.set(title);
-              movie.sequence.set(episode == null ? null : episode);
-              movie.initialSubtitle.set(subtitle);
-              movie.initialImdbNumber.set(imdbNumber);
-              movie.localReleaseYear.set(year == null ? null : year.toString());
+    Integer episode = sequence == null ? null : Integer.parseInt(sequence);
 
-              return movie;
-            }
-          }, new SourceKey(fileEntitySource, path.toString()));
+    return entityContext.add(Movie.class, new Supplier<Movie>() {
+      @Override
+      public Movie get() {
+        Movie movie = new Movie(new MediaItem(path.toString()));
 
-          // TODO think about pre-loading full items...
+        movie.initialTitle.set(title);
+        movie.sequence.set(episode == null ? null : episode);
+        movie.initialSubtitle.set(subtitle);
+        movie.initialImdbNumber.set(imdbNumber);
+        movie.localReleaseYear.set(year == null ? null : year.toString());
 
-          children.add(movie);
+        return movie;
+      }
+    }, new SourceKey(fileEntitySource, path.toString()));
+  }
+
+  private synchronized void startWatching(List<Path> roots) {
+    if(libraryWatcher == null) {
+      libraryWatcher = new LibraryWatcher("Movies", roots, 1, this::filesChanged);
+      libraryWatcher.start();
+    }
+  }
+
+  private synchronized void stopWatching() {
+    if(libraryWatcher != null) {
+      libraryWatcher.close();
+      libraryWatcher = null;
+    }
+  }
+
+  private void filesChanged(Set<Path> createdPaths, Set<Path> deletedPaths) {
+    List<Movie> addedMovies = new ArrayList<>();
+
+    for(Path path : createdPaths) {
+      if(EpisodeScanner.isMediaFile(path) && !Files.isDirectory(path)) {
+        try {
+          addedMovies.add(createMovie(path, NAME_DECODER.decode(path.getFileName().toString())));
+        }
+        catch(RuntimeException e) {
+          System.out.println("[WARN] " + getClass().getName() + "::filesChanged - Exception while adding \"" + path + "\": " + Throwables.formatAsOneLine(e));
         }
       }
+    }
+
+    updateItems(addedMovies, deletedPaths.stream().map(Path::toString).collect(Collectors.toSet()));
+  }
+
+  private void entriesChanged(List<Entry> addedEntries, List<Entry> removedEntries) {
+    List<Movie> addedMovies = new ArrayList<>();
+
+    for(Entry entry : addedEntries) {
+      try {
+        addedMovies.add(createMovie(entry.getPath(), entry.getDecodeResult()));
+      }
       catch(RuntimeException e) {
-        System.out.println("[WARN] " + getClass().getName() + "::getItems - Exception while getting items for \"" + root + "\": " + Throwables.formatAsOneLine(e));   // TODO add to some high level user error reporting facility
+        System.out.println("[WARN] " + getClass().getName() + "::entriesChanged - Exception while adding \"" + entry.getPath() + "\": " + Throwables.formatAsOneLine(e));
       }
     }
 
-    return children;
+    updateItems(addedMovies, removedEntries.stream().map(entry -> entry.getPath().toString()).collect(Collectors.toSet()));
+  }
+
+  private void updateItems(List<Movie> addedMovies, Set<String> deletedUris) {
+    for(String uri : deletedUris) {
+      SourceKey key = new SourceKey(fileEntitySource, uri);
+      Movie movie = entityContext.fetch(Movie.class, key);
+
+      if(movie != null) {
+        entityContext.dissociate(movie, key);
+      }
+    }
+
+    itemsCache.update(addedMovies, movie -> deletedUris.contains(movie.getMediaItem().getUri()));
   }
 
   @Override
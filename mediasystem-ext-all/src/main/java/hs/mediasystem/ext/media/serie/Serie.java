@@ -6,22 +6,29 @@ import hs.mediasystem.ext.media.serie.Episode.Type;
 import hs.mediasystem.framework.EpisodeScanner;
 import hs.mediasystem.framework.FileEntitySource;
 import hs.mediasystem.framework.Id;
+import hs.mediasystem.framework.ItemsCache;
+import hs.mediasystem.framework.ItemsListener;
 import hs.mediasystem.framework.Media;
 import hs.mediasystem.framework.MediaItem;
 import hs.mediasystem.framework.MediaRoot;
 import hs.mediasystem.framework.NameDecoder;
 import hs.mediasystem.framework.NameDecoder.DecodeResult;
 import hs.mediasystem.framework.NameDecoder.Hint;
+import hs.mediasystem.framework.ScanManifest.Entry;
 import hs.mediasystem.framework.descriptors.AbstractEntityDescriptors;
 import hs.mediasystem.framework.descriptors.Descriptor;
 import hs.mediasystem.framework.descriptors.DescriptorSet;
 import hs.mediasystem.framework.descriptors.DescriptorSet.Attribute;
 import hs.mediasystem.framework.descriptors.EntityDescriptors;
 
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 import java.util.function.Supplier;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -47,12 +54,12 @@ public class Serie extends Media implements MediaRoot {
   }};
 
   private static final Pattern SEASON_EPISODE_PATTERN = Pattern.compile("(?:([0-9]+)(?:,([0-9]+)(?:-([0-9]+))?([ab])?)?)?");
-  private static final NameDecoder NAME_DECODER = new NameDecoder(Hint.EPISODE, Hint.MOVIE);
+  static final NameDecoder NAME_DECODER = new NameDecoder(Hint.EPISODE, Hint.MOVIE);
 
   private final SeriesMediaTree mediaRoot;
   private final Id id;
   private final FileEntitySource fileEntitySource;
-
+  private final ItemsCache<Media> itemsCache = new ItemsCache<>(1, TimeUnit.HOURS, this::scanItems);
 
   public Serie(SeriesMediaTree mediaTree, MediaItem mediaItem, FileEntitySource fileEntitySource) {
     super(DESCRIPTORS, mediaItem);
@@ -68,58 +75,154 @@ public class Serie extends Media implements MediaRoot {
 
   @Override
   public List<? extends Media> getItems() {
-    List<Path> scanResults = new EpisodeScanner(2).scan(Paths.get(getMediaItem().getUri()));
+    return itemsCache.get();
+  }
+
+  @Override
+  public void invalidate() {
+    itemsCache.invalidate();
+  }
+
+  @Override
+  public void addItemsListener(ItemsListener<Media> listener) {
+    itemsCache.addListener(listener);
+  }
+
+  @Override
+  public void removeItemsListener(ItemsListener<Media> listener) {
+    itemsCache.removeListener(listener);
+  }
+
+  private List<Media> scanItems() {
+    Path directory = Paths.get(getMediaItem().getUri());
+    List<Entry> entries = mediaRoot == null ? null : mediaRoot.takeEpisodeEntries(directory);
     List<Media> children = new ArrayList<>();
 
-    for(Path path : scanResults) {
-      DecodeResult result = NAME_DECODER.decode(path.getFileName().toString());
-      Matcher seasonEpisodeMatcher = SEASON_EPISODE_PATTERN.matcher(result.getSequence() == null ? "" : result.getSequence());
-
-      if(seasonEpisodeMatcher.matches()) {  // Should always match
-        String title = result.getTitle();
-        String subtitle = result.getSubtitle();
-        Integer season = seasonEpisodeMatcher.group(1) == null ? null : Integer.valueOf(seasonEpisodeMatcher.group(1));
-        Integer episode = seasonEpisodeMatcher.group(2) == null ? null : Integer.valueOf(seasonEpisodeMatcher.group(2));
-        Integer endEpisode = seasonEpisodeMatcher.group(3) == null ? episode : Integer.valueOf(seasonEpisodeMatcher.group(3));
-        SpecialPosition specialPosition = seasonEpisodeMatcher.group(4) == null ? null : seasonEpisodeMatcher.group(4).equals("a") ? SpecialPosition.AFTER : SpecialPosition.BEFORE;
-        Type type = specialPosition != null ? Type.SPECIAL :
-                            episode != null ? Type.EPISODE :
-                                              Type.OTHER;
-
-        Episode item = getContext().add(Episode.class, new Supplier<Episode>() {
-          @Override
-          public Episode get() {
-            Episode item = new Episode(new MediaItem(path.toString()));
-
-            item.serie.set(Serie.this);
-            item.type.set(type);
-            item.specialPosition.set(specialPosition);
-            item.season.set(season);
-            item.episode.set(episode);
-            item.endEpisode.set(endEpisode);
-
-            switch(type) {
-            case SPECIAL:
-            case EPISODE:
-              item.initialTitle.set(subtitle != null ? subtitle : title);
-              break;
-            case OTHER:
-              item.initialTitle.set(title);
-              item.initialSubtitle.set(subtitle);
-              break;
-            }
-
-            return item;
-          }
-        }, new SourceKey(fileEntitySource, path.toString()));
-
-        children.add(item);
+    if(entries != null) {  // found while scanning the series
+      for(Entry entry : entries) {
+        Episode episode = createEpisode(entry.getPath(), entry.getDecodeResult());
+
+        if(episode != null) {
+          children.add(episode);
+        }
+      }
+
+      return children;
+    }
+
+    for(Path path : new EpisodeScanner(2).scan(directory)) {
+      Episode episode = createEpisode(path, NAME_DECODER.decode(path.getFileName().toString()));
+
+      if(episode != null) {
+        children.add(episode);
       }
     }
 
     return children;
   }
 
+  /**
+   * Adds and removes episodes for files which were created or deleted in the directory
+   * of this serie.
+   *
+   * @param createdPaths the paths which were created
+   * @param deletedPaths the paths which were deleted
+   */
+  void filesChanged(Set<Path> createdPaths, Set<Path> deletedPaths) {
+    List<Media> addedEpisodes = new ArrayList<>();
+
+    for(Path path : createdPaths) {
+      if(EpisodeScanner.isMediaFile(path) && !Files.isDirectory(path)) {
+        Episode episode = createEpisode(path, NAME_DECODER.decode(path.getFileName().toString()));
+
+        if(episode != null) {
+          addedEpisodes.add(episode);
+        }
+      }
+    }
+
+    updateItems(addedEpisodes, deletedPaths.stream().map(Path::toString).collect(Collectors.toSet()));
+  }
+
+  /**
+   * Adds and removes episodes for entries which were found or no longer found while
+   * reconciling the manifest of the series.
+   *
+   * @param addedEntries the entries which were found
+   * @param removedEntries the entries which were no longer found
+   */
+  void entriesChanged(List<Entry> addedEntries, List<Entry> removedEntries) {
+    List<Media> addedEpisodes = new ArrayList<>();
+
+    for(Entry entry : addedEntries) {
+      Episode episode = createEpisode(entry.getPath(), entry.getDecodeResult());
+
+      if(episode != null) {
+        addedEpisodes.add(episode);
+      }
+    }
+
+    updateItems(addedEpisodes, removedEntries.stream().map(entry -> entry.getPath().toString()).collect(Collectors.toSet()));
+  }
+
+  private void updateItems(List<Media> addedEpisodes, Set<String> deletedUris) {
+    for(String uri : deletedUris) {
+      SourceKey key = new SourceKey(fileEntitySource, uri);
+      Episode episode = getContext().fetch(Episode.class, key);
+
+      if(episode != null) {
+        getContext().dissociate(episode, key);
+      }
+    }
+
+    itemsCache.update(addedEpisodes, media -> deletedUris.contains(media.getMediaItem().getUri()));
+  }
+
+  private Episode createEpisode(Path path, DecodeResult result) {
+    Matcher seasonEpisodeMatcher = SEASON_EPISODE_PATTERN.matcher(result.getSequence() == null ? "" : result.getSequence());
+
+    if(!seasonEpisodeMatcher.matches()) {  // Should always match
+      return null;
+    }
+
+    String title = result.getTitle();
+    String subtitle = result.getSubtitle();
+    Integer season = seasonEpisodeMatcher.group(1) == null ? null : Integer.valueOf(seasonEpisodeMatcher.group(1));
+    Integer episode = seasonEpisodeMatcher.group(2) == null ? null : Integer.valueOf(seasonEpisodeMatcher.group(2));
+    Integer endEpisode = seasonEpisodeMatcher.group(3) == null ? episode : Integer.valueOf(seasonEpisodeMatcher.group(3));
+    SpecialPosition specialPosition = seasonEpisodeMatcher.group(4) == null ? null : seasonEpisodeMatcher.group(4).equals("a") ? SpecialPosition.AFTER : SpecialPosition.BEFORE;
+    Type type = specialPosition != null ? Type.SPECIAL :
+                        episode != null ? Type.EPISODE :
+                                          Type.OTHER;
+
+    return getContext().add(Episode.class, new Supplier<Episode>() {
+      @Override
+      public Episode get() {
+        Episode item = new Episode(new MediaItem(path.toString()));
+
+        item.serie.set(Serie.this);
+        item.type.set(type);
+        item.specialPosition.set(specialPosition);
+        item.season.set(season);
+        item.episode.set(episode);
+        item.endEpisode.set(endEpisode);
+
+        switch(type) {
+        case SPECIAL:
+        case EPISODE:
+          item.initialTitle.set(subtitle != null ? subtitle : title);
+          break;
+        case OTHER:
+          item.initialTitle.set(title);
+          item.initialSubtitle.set(subtitle);
+          break;
+        }
+
+        return item;
+      }
+    }, new SourceKey(fileEntitySource, path.toString()));
+  }
+
   @Override
   public String getRootName() {
     return title.get();
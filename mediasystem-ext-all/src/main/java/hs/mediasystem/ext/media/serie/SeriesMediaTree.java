@@ -3,79 +3,367 @@ package hs.mediasystem.ext.media.serie;
 import hs.mediasystem.dao.Setting.PersistLevel;
 import hs.mediasystem.entity.EntityContext;
 import hs.mediasystem.entity.SourceKey;
+import hs.mediasystem.framework.EpisodeScanner;
 import hs.mediasystem.framework.FileEntitySource;
 import hs.mediasystem.framework.Id;
+import hs.mediasystem.framework.ItemsCache;
+import hs.mediasystem.framework.ItemsListener;
+import hs.mediasystem.framework.LibraryWatcher;
+import hs.mediasystem.framework.ManifestScanner;
 import hs.mediasystem.framework.Media;
+import hs.mediasystem.framework.MediaDataPreloader;
 import hs.mediasystem.framework.MediaItem;
 import hs.mediasystem.framework.MediaRoot;
 import hs.mediasystem.framework.NameDecoder;
 import hs.mediasystem.framework.SettingsStore;
 import hs.mediasystem.framework.NameDecoder.DecodeResult;
 import hs.mediasystem.framework.NameDecoder.Hint;
+import hs.mediasystem.framework.ScanManifest.Entry;
 import hs.mediasystem.util.PathStringConverter;
 import hs.mediasystem.util.Throwables;
 
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
+import javafx.beans.Observable;
 import javafx.collections.ObservableList;
 
 import javax.inject.Inject;
+import javax.inject.Singleton;
 
+/**
+ * MediaRoot of the series found as directories directly in the configured paths.  The
+ * series found by the last scan are kept in a manifest, so they can be shown immediately
+ * after a restart while the paths are checked for changes in the background.  After the
+ * series were first scanned, the paths are watched so series and episodes which are
+ * added or removed are reported to the listeners without scanning the paths again.<p>
+ *
+ * The episodes of all series are found in the same scan as the series themselves, and
+ * are handed to each {@link Serie} when its items are first requested.
+ */
+@Singleton
 public class SeriesMediaTree implements MediaRoot {
   private static final Id ID = new Id("serieRoot");
   private static final NameDecoder NAME_DECODER = new NameDecoder(Hint.MOVIE, Hint.FOLDER_NAMES);
 
   private final FileEntitySource fileEntitySource;
   private final EntityContext entityContext;
-  private final List<Path> roots;
+  private final MediaDataPreloader mediaDataPreloader;
+  private final ItemsCache<Media> itemsCache = new ItemsCache<>(1, TimeUnit.HOURS, this::scanItems);
+  private final ManifestScanner manifestScanner = new ManifestScanner("series", 3, NAME_DECODER.getVersion() + "/" + Serie.NAME_DECODER.getVersion(), SeriesMediaTree::decode);
+  private final Map<Path, List<Entry>> episodeEntriesBySerie = new ConcurrentHashMap<>();
+
+  private volatile List<Path> roots;
+  private LibraryWatcher libraryWatcher;  // guarded by this
 
   @Inject
-  public SeriesMediaTree(FileEntitySource fileEntitySource, EntityContext entityContext, SettingsStore settingsStore) {
+  public SeriesMediaTree(FileEntitySource fileEntitySource, EntityContext entityContext, SettingsStore settingsStore, MediaDataPreloader mediaDataPreloader) {
     this.fileEntitySource = fileEntitySource;
     this.entityContext = entityContext;
+    this.mediaDataPreloader = mediaDataPreloader;
 
     ObservableList<Path> paths = settingsStore.getListProperty("MediaSystem:Ext:Series", PersistLevel.PERMANENT, "Paths", new PathStringConverter());
 
     this.roots = new ArrayList<>(paths);
+
+    paths.addListener((Observable observable) -> {
+      roots = new ArrayList<>(paths);
+      stopWatching();
+      invalidate();
+    });
   }
 
   @Override
   public List<? extends Media> getItems() {
+    return itemsCache.get();
+  }
+
+  @Override
+  public void invalidate() {
+    itemsCache.invalidate();
+  }
+
+  @Override
+  public void addItemsListener(ItemsListener<Media> listener) {
+    itemsCache.addListener(listener);
+  }
+
+  @Override
+  public void removeItemsListener(ItemsListener<Media> listener) {
+    itemsCache.removeListener(listener);
+  }
+
+  /**
+   * Decodes serie directories directly in a root, and the media files up to two levels
+   * below them.
+   */
+  private static DecodeResult decode(Path path, BasicFileAttributes attributes, int depth) {
+    if(depth == 1) {
+      return attributes.isDirectory() && !isHidden(path) ? NAME_DECODER.decode(path.getFileName().toString()) : null;
+    }
+
+    Path serieDirectory = depth == 2 ? path.getParent() : path.getParent().getParent();
+
+    return !attributes.isDirectory() && EpisodeScanner.isMediaFile(path) && !isHidden(serieDirectory) ? Serie.NAME_DECODER.decode(path.getFileName().toString()) : null;
+  }
+
+  private static boolean isHidden(Path path) {
+    return path.getFileName().toString().startsWith(".");
+  }
+
+  private List<Media> scanItems() {
+    List<Path> roots = this.roots;
     List<Media> children = new ArrayList<>();
 
+    startWatching(roots);
+    episodeEntriesBySerie.clear();
+
     for(Path root : roots) {
       try {
-        List<Path> scanResults = new SerieScanner().scan(root);
+        List<Entry> entries = manifestScanner.scan(root, this::entriesChanged);
 
-        for(Path path : scanResults) {
-          DecodeResult result = NAME_DECODER.decode(path.getFileName().toString());
+        preload(root);  // also covers the episodes of each serie
 
-          Serie child = entityContext.add(
-            Serie.class,
-            () -> {
-              Serie serie = new Serie(SeriesMediaTree.this, new MediaItem(path.toString()), fileEntitySource);
+        for(Entry entry : entries) {
+          if(entry.getPath().getParent().equals(root)) {
+            episodeEntriesBySerie.putIfAbsent(entry.getPath(), new ArrayList<>());
+          }
+          else {
+            episodeEntriesBySerie.computeIfAbsent(toSerieDirectory(root, entry.getPath()), k -> new ArrayList<>()).add(entry);
+          }
+        }
 
-              serie.initialTitle.set(result.getTitle());
-              serie.initialSubtitle.set(result.getSubtitle());
-              serie.localReleaseYear.set(result.getReleaseYear() == null ? null : result.getReleaseYear().toString());
-              serie.initialImdbNumber.set(result.getCode());
+        for(Entry entry : entries) {
+          if(entry.getPath().getParent().equals(root)) {
+            children.add(createSerie(entry.getPath(), entry.getDecodeResult()));
+          }
+        }
+      }
+      catch(RuntimeException e) {
+        System.out.println("[WARN] " + getClass().getName() + "::scanItems - Exception while getting items for \"" + root + "\": " + Throwables.formatAsOneLine(e));   // TODO add to some high level user error reporting facility
+      }
+    }
 
-              return serie;
-            },
-            new SourceKey(fileEntitySource, path.toString())
-          );
+    return children;
+  }
+
+  private void preload(Path root) {
+    try {
+      mediaDataPreloader.preload(root);
+    }
+    catch(RuntimeException e) {
+      System.out.println("[WARN] " + getClass().getName() + "::preload - Exception while preloading \"" + root + "\", items will be looked up individually: " + Throwables.formatAsOneLine(e));
+    }
+  }
+
+  private Serie createSerie(Path path, DecodeResult result) {
+    return entityContext.add(
+      Serie.class,
+      () -> {
+        Serie serie = new Serie(SeriesMediaTree.this, new MediaItem(path.toString()), fileEntitySource);
+
+        serie.initialTitle.set(result.getTitle());
+        serie.initialSubtitle.set(result.getSubtitle());
+        serie.localReleaseYear.set(result.getReleaseYear() == null ? null : result.getReleaseYear().toString());
+        serie.initialImdbNumber.set(result.getCode());
+
+        return serie;
+      },
+      new SourceKey(fileEntitySource, path.toString())
+    );
+  }
+
+  /**
+   * Starts watching the roots for changes in series (directories directly in a root)
+   * and their episodes (up to two levels deeper).
+   */
+  private synchronized void startWatching(List<Path> roots) {
+    if(libraryWatcher == null) {
+      libraryWatcher = new LibraryWatcher("Series", roots, 3, this::filesChanged);
+      libraryWatcher.start();
+    }
+  }
+
+  /**
+   * Returns the episode entries found for the given serie directory by the last scan,
+   * if they were not taken before and are still up to date.
+   *
+   * @param serieDirectory the directory of a serie
+   * @return a list of {@link Entry}s, or <code>null</code> if not available
+   */
+  List<Entry> takeEpisodeEntries(Path serieDirectory) {
+    return episodeEntriesBySerie.remove(serieDirectory);
+  }
 
-          children.add(child);
+  private synchronized void stopWatching() {
+    if(libraryWatcher != null) {
+      libraryWatcher.close();
+      libraryWatcher = null;
+    }
+  }
+
+  private void filesChanged(Set<Path> createdPaths, Set<Path> deletedPaths) {
+    List<Media> addedSeries = new ArrayList<>();
+    Set<String> deletedUris = new HashSet<>();
+    Map<Path, Set<Path>> createdPathsBySerie = new HashMap<>();
+    Map<Path, Set<Path>> deletedPathsBySerie = new HashMap<>();
+
+    for(Path path : createdPaths) {
+      Path serieDirectory = toSerieDirectory(path);
+
+      if(serieDirectory == null) {
+        continue;
+      }
+
+      if(!serieDirectory.equals(path)) {
+        createdPathsBySerie.computeIfAbsent(serieDirectory, k -> new HashSet<>()).add(path);
+      }
+      else if(Files.isDirectory(path) && !path.getFileName().toString().startsWith(".")) {
+        try {
+          addedSeries.add(createSerie(path, NAME_DECODER.decode(path.getFileName().toString())));
+        }
+        catch(RuntimeException e) {
+          System.out.println("[WARN] " + getClass().getName() + "::filesChanged - Exception while adding \"" + path + "\": " + Throwables.formatAsOneLine(e));
         }
       }
+    }
+
+    for(Path path : deletedPaths) {
+      Path serieDirectory = toSerieDirectory(path);
+
+      if(serieDirectory == null) {
+        continue;
+      }
+
+      if(!serieDirectory.equals(path)) {
+        deletedPathsBySerie.computeIfAbsent(serieDirectory, k -> new HashSet<>()).add(path);
+      }
+      else {
+        deletedUris.add(path.toString());
+      }
+    }
+
+    /*
+     * Update the episodes of series which already existed:
+     */
+
+    Set<Path> serieDirectories = new HashSet<>(createdPathsBySerie.keySet());
+
+    serieDirectories.addAll(deletedPathsBySerie.keySet());
+
+    for(Path serieDirectory : serieDirectories) {
+      episodeEntriesBySerie.remove(serieDirectory);  // no longer up to date, serie must scan itself
+
+      Serie serie = entityContext.fetch(Serie.class, new SourceKey(fileEntitySource, serieDirectory.toString()));
+
+      if(serie != null) {
+        serie.filesChanged(createdPathsBySerie.getOrDefault(serieDirectory, new HashSet<>()), deletedPathsBySerie.getOrDefault(serieDirectory, new HashSet<>()));
+      }
+    }
+
+    updateItems(addedSeries, deletedUris);
+  }
+
+  private void entriesChanged(List<Entry> addedEntries, List<Entry> removedEntries) {
+    List<Media> addedSeries = new ArrayList<>();
+    Set<String> deletedUris = new HashSet<>();
+    Map<Path, List<Entry>> addedEntriesBySerie = new HashMap<>();
+    Map<Path, List<Entry>> removedEntriesBySerie = new HashMap<>();
+
+    for(Entry entry : addedEntries) {
+      Path serieDirectory = toSerieDirectory(entry.getPath());
+
+      if(serieDirectory == null) {
+        continue;
+      }
+
+      if(!serieDirectory.equals(entry.getPath())) {
+        addedEntriesBySerie.computeIfAbsent(serieDirectory, k -> new ArrayList<>()).add(entry);
+        continue;
+      }
+
+      try {
+        addedSeries.add(createSerie(entry.getPath(), entry.getDecodeResult()));
+      }
       catch(RuntimeException e) {
-        System.out.println("[WARN] " + getClass().getName() + "::getItems - Exception while getting items for \"" + root + "\": " + Throwables.formatAsOneLine(e));   // TODO add to some high level user error reporting facility
+        System.out.println("[WARN] " + getClass().getName() + "::entriesChanged - Exception while adding \"" + entry.getPath() + "\": " + Throwables.formatAsOneLine(e));
       }
     }
 
-    return children;
+    for(Entry entry : removedEntries) {
+      Path serieDirectory = toSerieDirectory(entry.getPath());
+
+      if(serieDirectory == null) {
+        continue;
+      }
+
+      if(!serieDirectory.equals(entry.getPath())) {
+        removedEntriesBySerie.computeIfAbsent(serieDirectory, k -> new ArrayList<>()).add(entry);
+      }
+      else {
+        deletedUris.add(entry.getPath().toString());
+      }
+    }
+
+    updateItems(addedSeries, deletedUris);
+
+    /*
+     * Update the episodes of series which already existed:
+     */
+
+    Set<Path> serieDirectories = new HashSet<>(addedEntriesBySerie.keySet());
+
+    serieDirectories.addAll(removedEntriesBySerie.keySet());
+
+    for(Path serieDirectory : serieDirectories) {
+      episodeEntriesBySerie.remove(serieDirectory);  // no longer up to date, serie must scan itself
+
+      Serie serie = entityContext.fetch(Serie.class, new SourceKey(fileEntitySource, serieDirectory.toString()));
+
+      if(serie != null) {
+        serie.entriesChanged(addedEntriesBySerie.getOrDefault(serieDirectory, new ArrayList<>()), removedEntriesBySerie.getOrDefault(serieDirectory, new ArrayList<>()));
+      }
+    }
+  }
+
+  private void updateItems(List<Media> addedSeries, Set<String> deletedUris) {
+    for(String uri : deletedUris) {
+      SourceKey key = new SourceKey(fileEntitySource, uri);
+      Serie serie = entityContext.fetch(Serie.class, key);
+
+      if(serie != null) {
+        entityContext.dissociate(serie, key);
+      }
+    }
+
+    itemsCache.update(addedSeries, media -> deletedUris.contains(media.getMediaItem().getUri()));
+  }
+
+  /**
+   * Returns the directory of the serie the given path belongs to, which is the given
+   * path itself if it is a serie directory.
+   */
+  private Path toSerieDirectory(Path path) {
+    for(Path root : roots) {
+      if(path.startsWith(root) && !path.equals(root)) {
+        return toSerieDirectory(root, path);
+      }
+    }
+
+    return null;
+  }
+
+  private static Path toSerieDirectory(Path root, Path path) {
+    return root.resolve(root.relativize(path).getName(0));
   }
 
   @Override
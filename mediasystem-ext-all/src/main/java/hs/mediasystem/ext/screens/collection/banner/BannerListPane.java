@@ -1,6 +1,7 @@
 package hs.mediasystem.ext.screens.collection.banner;
 
 import hs.mediasystem.beans.AsyncImageProperty;
+import hs.mediasystem.screens.ImagePrefetcher;
 import hs.mediasystem.screens.MediaNode;
 import hs.mediasystem.screens.MediaNodeEvent;
 import hs.mediasystem.util.Events;
@@ -53,6 +54,8 @@ public class BannerListPane extends BorderPane {
   public final ObjectProperty<MediaNode> focusedMediaNode = new SimpleObjectProperty<>();
   public final ObjectProperty<EventHandler<MediaNodeEvent>> onNodeSelected = new SimpleObjectProperty<>();
 
+  private final ImagePrefetcher imagePrefetcher = new ImagePrefetcher(6, media -> media.banner);
+
   private final TableColumn<DuoMediaNode, MediaNode> leftColumn = new TableColumn<>("Left");
   private final TableColumn<DuoMediaNode, MediaNode> rightColumn = new TableColumn<>("Right");
 
@@ -110,6 +113,7 @@ public class BannerListPane extends BorderPane {
       @Override
       public void changed(ObservableValue<? extends MediaNode> observable, MediaNode old, MediaNode current) {
         setSelectedNode(current);
+        imagePrefetcher.focusChanged(mediaNodes, current);
       }
     });
 
@@ -151,6 +155,7 @@ public class BannerListPane extends BorderPane {
     mediaNodes.addListener(new ListChangeListener<MediaNode>() {
       @Override
       public void onChanged(ListChangeListener.Change<? extends MediaNode> change) {
+        imagePrefetcher.cancel();
         tableView.getItems().clear();
         DuoMediaNode duoMediaNode = null;
 
@@ -7,6 +7,7 @@ import hs.mediasystem.framework.descriptors.EntityDescriptors;
 import hs.mediasystem.framework.descriptors.EntityDescriptors.TextType;
 import hs.mediasystem.screens.DuoLineCell;
 import hs.mediasystem.screens.Filter;
+import hs.mediasystem.screens.ImagePrefetcher;
 import hs.mediasystem.screens.MediaNode;
 import hs.mediasystem.screens.MediaNodeEvent;
 import hs.mediasystem.util.Events;
@@ -61,6 +62,7 @@ public class TreeListPane extends BorderPane {
   public final BooleanProperty expandTopLevel = new SimpleBooleanProperty();
 
   private final TreeView<MediaNode> treeView = new TreeView<>();
+  private final ImagePrefetcher imagePrefetcher = new ImagePrefetcher(3, media -> media.image, media -> media.background);
 
   private final Filter filter = new Filter() {{
     getStyleClass().add("tabs");
@@ -70,6 +72,7 @@ public class TreeListPane extends BorderPane {
     @Override
     public void invalidated(Observable observable) {
       if(treeValid) {
+        imagePrefetcher.cancel();
         treeValid = false;
         requestLayout();
       }
@@ -91,6 +94,7 @@ public class TreeListPane extends BorderPane {
       @Override
       public void changed(ObservableValue<? extends MediaNode> observable, MediaNode old, MediaNode current) {
         setSelectedNode(current);
+        imagePrefetcher.focusChanged(mediaNodes, current);
       }
     });
 